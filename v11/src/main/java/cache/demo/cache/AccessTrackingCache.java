@@ -0,0 +1,80 @@
+package cache.demo.cache;
+
+import java.util.concurrent.Callable;
+import lombok.NonNull;
+import org.springframework.cache.Cache;
+import org.springframework.lang.Nullable;
+
+/**
+ * 记录访问的缓存，每次读取时通知 {@link TwoLevelCacheManager} 中的访问监听器，用于统计热点键，详见 {@link
+ * RefreshAheadScheduler}；以及自适应过期时间函数，用于统计读取次数，详见 {@link AdaptiveTtlFunction}
+ *
+ * @author Camio1945
+ */
+public class AccessTrackingCache implements Cache {
+  private final Cache cache;
+
+  private final TwoLevelCacheManager cacheManager;
+
+  public AccessTrackingCache(@NonNull Cache cache, @NonNull TwoLevelCacheManager cacheManager) {
+    this.cache = cache;
+    this.cacheManager = cacheManager;
+  }
+
+  /**
+   * 被包装的缓存
+   *
+   * @return 缓存
+   */
+  public Cache getDelegate() {
+    return cache;
+  }
+
+  @Override
+  @NonNull
+  public String getName() {
+    return cache.getName();
+  }
+
+  @Override
+  @NonNull
+  public Object getNativeCache() {
+    return cache.getNativeCache();
+  }
+
+  @Override
+  @Nullable
+  public ValueWrapper get(@NonNull Object key) {
+    cacheManager.onAccess(getName(), key);
+    return cache.get(key);
+  }
+
+  @Override
+  @Nullable
+  public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+    cacheManager.onAccess(getName(), key);
+    return cache.get(key, type);
+  }
+
+  @Override
+  @Nullable
+  public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+    cacheManager.onAccess(getName(), key);
+    return cache.get(key, valueLoader);
+  }
+
+  @Override
+  public void put(@NonNull Object key, @Nullable Object value) {
+    cache.put(key, value);
+  }
+
+  @Override
+  public void evict(@NonNull Object key) {
+    cache.evict(key);
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+  }
+}
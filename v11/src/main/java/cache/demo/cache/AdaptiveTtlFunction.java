@@ -0,0 +1,123 @@
+package cache.demo.cache;
+
+import cache.demo.util.CountMinSketch;
+import cn.hutool.core.util.RandomUtil;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.lang.Nullable;
+
+/**
+ * 根据访问频率决定过期时间的 TTL 函数，经常被读取的键保存得更久，很少被读取或者最近被修改过的键更早过期，
+ * 把 Redis 的内存留给热点数据。
+ *
+ * <pre>
+ * 读取次数和修改次数分别记录在两个 {@link CountMinSketch} 中，每个缓存一个函数，占用的内存是固定的。
+ * 修改比读取少得多，按总次数减半时很久以前的修改也一直算作最近的修改，所以修改次数每隔 updateHalfLife 减半一次。
+ * 写入时的过期时间：
+ *   读取次数为 0 时是 minTtl ，达到 hotThreshold 时是 maxTtl ，中间按读取次数线性增长
+ *   最近每被修改过一次，过期时间减半（修改后缓存会被删除，保存得再久也用不上），但不小于 minTtl
+ *   最后加上 0 ~ 10% 的随机偏移量，避免同时过期，与 RandomOffsetTtlFunction 一致
+ * 读取次数来自 {@link TwoLevelCacheManager} 的访问统计（{@link AccessTrackingCache}），修改次数来自 {@link
+ * CacheInvalidator}。键统一转为字符串，这样 Redis 的键中解析出来的 "1" 和缓存中的 1 是同一个键。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class AdaptiveTtlFunction implements RedisCacheWriter.TtlFunction {
+  private final long minTtlSeconds;
+
+  private final long maxTtlSeconds;
+
+  private final int hotThreshold;
+
+  private final CountMinSketch reads;
+
+  private final CountMinSketch updates;
+
+  private final long updateHalfLifeNanos;
+
+  /** 修改次数上次减半的时间 */
+  private final AtomicLong lastUpdateDecayNanos = new AtomicLong(System.nanoTime());
+
+  /**
+   * @param minTtl 最短的过期时间
+   * @param maxTtl 最长的过期时间
+   * @param hotThreshold 最近读取了多少次的键使用最长的过期时间
+   * @param expectedKeys 大约有多少个需要统计的键，决定草图的大小
+   * @param updateHalfLife 修改次数每隔多久减半，一般与最短的过期时间相同
+   */
+  public AdaptiveTtlFunction(
+      @NonNull Duration minTtl,
+      @NonNull Duration maxTtl,
+      int hotThreshold,
+      int expectedKeys,
+      @NonNull Duration updateHalfLife) {
+    if (minTtl.compareTo(maxTtl) > 0) {
+      throw new IllegalArgumentException("最短的过期时间不能大于最长的过期时间：" + minTtl + " > " + maxTtl);
+    }
+    this.minTtlSeconds = minTtl.getSeconds();
+    this.maxTtlSeconds = maxTtl.getSeconds();
+    this.hotThreshold = Math.max(hotThreshold, 1);
+    this.reads = new CountMinSketch(expectedKeys, expectedKeys * 10L);
+    this.updates = new CountMinSketch(expectedKeys, expectedKeys);
+    this.updateHalfLifeNanos = Math.max(updateHalfLife.toNanos(), 1);
+  }
+
+  /**
+   * 记录一次读取
+   *
+   * @param key 缓存的键（不带前缀）
+   */
+  public void recordRead(Object key) {
+    reads.increment(String.valueOf(key));
+  }
+
+  /**
+   * 记录一次修改
+   *
+   * @param key 缓存的键（不带前缀）
+   */
+  public void recordUpdate(Object key) {
+    decayUpdates();
+    updates.increment(String.valueOf(key));
+  }
+
+  /**
+   * 最长的过期时间，过期后继续使用旧值的副本需要保存得比它更久
+   *
+   * @return 最长的过期时间
+   */
+  public Duration getMaxTtl() {
+    return Duration.ofSeconds(maxTtlSeconds);
+  }
+
+  @Override
+  @NonNull
+  public Duration getTimeToLive(@NonNull Object key, @Nullable Object value) {
+    String stringKey = String.valueOf(key);
+    int readCount = Math.min(reads.estimate(stringKey), hotThreshold);
+    long seconds = minTtlSeconds + (maxTtlSeconds - minTtlSeconds) * readCount / hotThreshold;
+    decayUpdates();
+    int updateCount = Math.min(updates.estimate(stringKey), Long.SIZE - 1);
+    seconds = Math.max(seconds >> updateCount, minTtlSeconds);
+    // 10% offset
+    long offset = RandomUtil.randomLong(0, (seconds / 10) + 1);
+    return Duration.ofSeconds(seconds + offset);
+  }
+
+  /** 距离上次减半每过去一个 updateHalfLife ，修改次数就减半一次，只有一个线程执行 */
+  private void decayUpdates() {
+    long last = lastUpdateDecayNanos.get();
+    long periods = (System.nanoTime() - last) / updateHalfLifeNanos;
+    if (periods <= 0
+        || !lastUpdateDecayNanos.compareAndSet(last, last + periods * updateHalfLifeNanos)) {
+      return;
+    }
+    // 计数器是 int ，减半 32 次之后一定是 0
+    for (long i = 0; i < Math.min(periods, Integer.SIZE); i++) {
+      updates.halve();
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package cache.demo.cache;
+
+import cache.demo.util.BoundedVirtualThreadExecutor;
+import cache.demo.util.SingleFlightUtil;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+/**
+ * 异步读取缓存，供异步方法（如 getByIdAsync ）使用 <br>
+ * 用 Lettuce 的响应式 API 读取 Redis ，命令发出后调用者不需要等待，结果由 Lettuce 的 I/O 线程完成 CompletableFuture ；
+ * 缓存未命中时在有界的虚拟线程执行器（asyncLoadExecutor）中查询数据库，同时查询数据库的数量不会超过连接池的大小。
+ * 一个请求可以同时查询多个缓存，而不需要为每个查询占用一个平台线程。
+ *
+ * <pre>
+ * 读到的值与 redisTemplate 一样用 redisValueSerializer 反序列化；
+ * 缓存写入的空值标记（JDK 序列化的 NullValue ，详见 {@link CacheBatchWriter}）返回 NullValue.INSTANCE ，
+ * 与键不存在时返回的 null 区分开：前者表示数据库中没有，后者表示需要查询数据库。
+ * 注：命中时只读取 Redis ，不经过一级缓存、空值缓存等包装，未命中时再走完整的加载路径。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Service
+@AllArgsConstructor
+public class AsyncCacheLoader {
+  private ReactiveRedisTemplate<String, byte[]> reactiveRedisTemplate;
+  private RedisSerializer<Object> redisValueSerializer;
+  private BoundedVirtualThreadExecutor asyncLoadExecutor;
+
+  /**
+   * 先异步读取 Redis ，没有时在执行器中执行 loader （单飞，同一个 key 同时只有一个 loader 在执行）
+   *
+   * @param key 键
+   * @param loader 加载函数，一般是先经过完整的缓存（再检查一次）、再查询数据库并写入缓存
+   * @param timeout 最多等待多久，超时后以 TimeoutException 结束，只影响当前调用者
+   * @return 值，缓存了空值或者数据库中没有时为 null
+   */
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> getOrLoad(
+      @NonNull String key, @NonNull Callable<T> loader, @NonNull Duration timeout) {
+    return get(key)
+        .thenCompose(
+            value -> {
+              if (value == null) {
+                return loadAsync(key, loader, null);
+              }
+              return CompletableFuture.completedFuture(
+                  value instanceof NullValue ? null : (T) value);
+            })
+        .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * 在执行器中执行 loader （单飞）
+   *
+   * @param key 键，同一个 key 同时只有一个 loader 在执行
+   * @param loader 加载函数
+   * @param timeout 最多等待多久，为 null 表示不限制
+   * @return 结果，执行器的任务数达到上限时以 RejectedExecutionException 结束
+   */
+  public <T> CompletableFuture<T> loadAsync(
+      @NonNull String key, @NonNull Callable<T> loader, @Nullable Duration timeout) {
+    return SingleFlightUtil.executeAsync(key, loader, timeout, asyncLoadExecutor);
+  }
+
+  /**
+   * 在执行器中执行 loader ，用于查询数据库
+   *
+   * @param loader 加载函数
+   * @return 结果，执行器的任务数达到上限时以 RejectedExecutionException 结束
+   */
+  public <T> CompletableFuture<T> loadAsync(@NonNull Supplier<T> loader) {
+    try {
+      return CompletableFuture.supplyAsync(loader, asyncLoadExecutor);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * 读取一个键
+   *
+   * @param key 键
+   * @return 值，键不存在时为 null ，缓存了空值时为 NullValue.INSTANCE
+   */
+  public CompletableFuture<Object> get(@NonNull String key) {
+    return reactiveRedisTemplate.opsForValue().get(key).map(this::deserialize).toFuture();
+  }
+
+  /**
+   * 用一次 MGET 读取多个键
+   *
+   * @param keys 键
+   * @return 值，顺序与 keys 一样，含义与 {@link #get} 一样
+   */
+  public CompletableFuture<List<Object>> multiGet(@NonNull List<String> keys) {
+    if (keys.isEmpty()) {
+      return CompletableFuture.completedFuture(new ArrayList<>());
+    }
+    return reactiveRedisTemplate
+        .opsForValue()
+        .multiGet(keys)
+        .map(
+            values -> {
+              List<Object> objects = new ArrayList<>(values.size());
+              for (byte[] bytes : values) {
+                objects.add(bytes == null ? null : deserialize(bytes));
+              }
+              return objects;
+            })
+        .toFuture();
+  }
+
+  /**
+   * 按分数倒序读取 zset 中所有的 id
+   *
+   * @param key 键
+   * @return id ，键不存在时为空集合
+   */
+  public CompletableFuture<List<Integer>> reverseRangeIds(@NonNull String key) {
+    return reactiveRedisTemplate
+        .opsForZSet()
+        .reverseRange(key, Range.unbounded())
+        .map(bytes -> (Integer) redisValueSerializer.deserialize(bytes))
+        .collectList()
+        .toFuture();
+  }
+
+  @Nullable
+  private Object deserialize(byte[] bytes) {
+    return CacheBatchWriter.deserialize(redisValueSerializer, bytes);
+  }
+}
@@ -0,0 +1,179 @@
+package cache.demo.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+/**
+ * 缓存批量读写 <br>
+ * 用一次 pipeline 写入多个 {@link org.springframework.cache.annotation.Cacheable} 格式的缓存（键、值的序列化方式和过期时间都与
+ * RedisCache 保持一致），避免一个一个地写入时的多次网络往返。 <br>
+ * 用一次 MGET 读取多个缓存时，空值（RedisCache 用 JDK 序列化的 NullValue）与 {@link AsyncCacheLoader} 一样解码为
+ * {@link NullValue#INSTANCE}，同步和异步的读取结果一致。 <br>
+ * 有空值缓存的缓存名称，值为 null 时放入空值缓存，不写入 Redis ，详见 {@link NegativeCachingCache}。 <br>
+ * 开启了过期后继续使用旧值的缓存名称，同时写入副本，详见 {@link StaleWhileRevalidateCache}。
+ *
+ * @author Camio1945
+ */
+@Service
+@AllArgsConstructor
+public class CacheBatchWriter {
+
+  /** 与 RedisCache 中的空值保持一致 */
+  static final byte[] BINARY_NULL_VALUE =
+      RedisSerializer.java().serialize(NullValue.INSTANCE);
+
+  private RedisTemplate<String, Object> redisTemplate;
+  private RedisCacheConfiguration cacheConfiguration;
+  private TwoLevelCacheManager cacheManager;
+
+  /**
+   * 用一次 MGET 读取多个缓存
+   *
+   * @param keys Redis 的键，如：cache:goods:id::1
+   * @return 值，顺序与 keys 一样：null 表示不在缓存中，{@link NullValue#INSTANCE} 表示缓存了空值
+   */
+  public List<Object> multiGet(List<String> keys) {
+    if (keys.isEmpty()) {
+      return new ArrayList<>();
+    }
+    byte[][] rawKeys =
+        keys.stream().map(key -> key.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+    // 值不能用 redisTemplate 反序列化，RedisCache 的空值不是 JSON
+    List<byte[]> values =
+        redisTemplate.execute(
+            (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+    List<Object> objects = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      byte[] bytes = values == null ? null : values.get(i);
+      objects.add(bytes == null ? null : deserialize(redisTemplate.getValueSerializer(), bytes));
+    }
+    return objects;
+  }
+
+  /**
+   * 反序列化缓存的值，同步和异步的读取共用
+   *
+   * @param valueSerializer 值的序列化方式
+   * @param bytes 读到的值
+   * @return 缓存了空值时为 {@link NullValue#INSTANCE}
+   */
+  @Nullable
+  static Object deserialize(RedisSerializer<?> valueSerializer, byte[] bytes) {
+    if (Arrays.equals(bytes, BINARY_NULL_VALUE)) {
+      return NullValue.INSTANCE;
+    }
+    return valueSerializer.deserialize(bytes);
+  }
+
+  /**
+   * 批量写入缓存
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param keyToValue 键（不带前缀，如商品 id）到值的映射，值为 null 时会缓存空值
+   */
+  public void putAll(String cacheName, Map<?, ?> keyToValue) {
+    Map<Object, Object> redisKeyToValue = new HashMap<>(keyToValue.size());
+    keyToValue.forEach(
+        (key, value) -> {
+          if (value != null || !cacheManager.putNegative(cacheName, String.valueOf(key))) {
+            redisKeyToValue.put(key, value);
+          }
+        });
+    if (redisKeyToValue.isEmpty()) {
+      return;
+    }
+    Map<Object, Object> staleKeyToValue = new HashMap<>();
+    if (cacheManager.isStaleWhileRevalidate(cacheName)) {
+      redisKeyToValue.forEach(
+          (key, value) -> {
+            if (value != null) {
+              staleKeyToValue.put(key, value);
+            }
+          });
+    }
+    RedisCacheConfiguration configuration = configurationOf(cacheName);
+    String staleCacheName = cacheName + StaleWhileRevalidateCache.STALE_SUFFIX;
+    RedisCacheConfiguration staleConfiguration =
+        staleKeyToValue.isEmpty() ? null : configurationOf(staleCacheName);
+    redisTemplate.executePipelined(
+        (RedisCallback<Object>)
+            connection -> {
+              RedisStringCommands stringCommands = connection.stringCommands();
+              set(stringCommands, configuration, cacheName, redisKeyToValue);
+              if (staleConfiguration != null) {
+                // 过期后继续使用旧值的副本，详见 StaleWhileRevalidateCache
+                set(stringCommands, staleConfiguration, staleCacheName, staleKeyToValue);
+              }
+              return null;
+            });
+  }
+
+  /**
+   * 后台刷新后批量写入，只写入仍然存在的键，刷新期间被删除（数据被修改）的键不会被写回旧值，详见 {@link
+   * CacheRefreshWriter}
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param keyToValue 键（不带前缀，如商品 id）到值的映射，值为 null 的键会被忽略
+   * @return 写入了多少个键
+   */
+  public int putAllIfPresent(String cacheName, Map<?, ?> keyToValue) {
+    return cacheManager.getRefreshWriter().putIfPresent(cacheName, cacheName, keyToValue);
+  }
+
+  /** 每个缓存的过期时间可能不同，优先使用缓存自己的配置 */
+  private RedisCacheConfiguration configurationOf(String cacheName) {
+    RedisCacheConfiguration configuration = cacheManager.getRedisCacheConfiguration(cacheName);
+    return configuration == null ? cacheConfiguration : configuration;
+  }
+
+  private void set(
+      RedisStringCommands stringCommands,
+      RedisCacheConfiguration configuration,
+      String cacheName,
+      Map<?, ?> keyToValue) {
+    String keyPrefix = configuration.getKeyPrefixFor(cacheName);
+    keyToValue.forEach(
+        (key, value) -> {
+          String redisKey = keyPrefix + key;
+          if (value == null && !configuration.getAllowCacheNullValues()) {
+            return;
+          }
+          Duration timeToLive = configuration.getTtlFunction().getTimeToLive(key, value);
+          stringCommands.set(
+              serializeKey(configuration, redisKey),
+              serializeValue(configuration, value),
+              Expiration.from(timeToLive),
+              RedisStringCommands.SetOption.upsert());
+        });
+  }
+
+  private byte[] serializeKey(RedisCacheConfiguration configuration, String key) {
+    ByteBuffer byteBuffer = configuration.getKeySerializationPair().write(key);
+    return ByteUtils.getBytes(byteBuffer);
+  }
+
+  private byte[] serializeValue(RedisCacheConfiguration configuration, Object value) {
+    if (value == null) {
+      return BINARY_NULL_VALUE;
+    }
+    ByteBuffer byteBuffer = configuration.getValueSerializationPair().write(value);
+    return ByteUtils.getBytes(byteBuffer);
+  }
+}
@@ -0,0 +1,158 @@
+package cache.demo.cache;
+
+import cache.demo.util.DistributedSingleFlight;
+import java.time.Duration;
+import lombok.NonNull;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.Nullable;
+
+/**
+ * 给一个 Redis 缓存逐层加上装饰器，由 {@link TwoLevelCacheManager#getCache} 使用 <br>
+ * 每个方法加上一层，需要按下面的顺序（从内到外）调用，没有开启的功能跳过对应的方法即可。
+ *
+ * <pre>
+ * 1. {@link #earlyRefresh}：需要直接读取 Redis 的剩余时间，所以只能包装 RedisCache 本身
+ * 2. {@link #staleWhileRevalidate}：主缓存（可能已经带有提前刷新）没有值时读取副本
+ * 3. {@link #logicalExpiry}：白名单中的键先读取逻辑过期的副本，其他的键交给里面的缓存
+ * 4. {@link #negativeCaching}：空值不写入 Redis ，放入 JVM 中的空值缓存
+ * 5. {@link #twoLevel}：一级缓存在 Redis 外面，命中时不再经过里面的各层
+ * 6. {@link #accessTracking}：在最外层，一级缓存命中时也要统计访问
+ * Redis 中没有这个缓存时，所有的方法都不做任何事情，{@link #build} 返回 null 。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+class CacheDecoratorBuilder {
+  private final String name;
+
+  private final CacheManager redisCacheManager;
+
+  private final TwoLevelCacheManager cacheManager;
+
+  @Nullable private Cache cache;
+
+  /**
+   * @param name 缓存名称，如：cache:goods:id
+   * @param redisCacheManager Redis 缓存管理器，用于获取缓存本身和各种副本
+   * @param cacheManager 二级缓存管理器，传给各层装饰器
+   */
+  CacheDecoratorBuilder(
+      @NonNull String name,
+      @NonNull CacheManager redisCacheManager,
+      @NonNull TwoLevelCacheManager cacheManager) {
+    this.name = name;
+    this.redisCacheManager = redisCacheManager;
+    this.cacheManager = cacheManager;
+    this.cache = redisCacheManager.getCache(name);
+  }
+
+  /**
+   * 提前刷新，详见 {@link EarlyRefreshCache}
+   *
+   * @param stringRedisTemplate 用于读取剩余时间
+   * @param beta 大于 1 时更早刷新，小于 1 时更晚刷新
+   * @param defaultRecomputeNanos 还没有刷新过时，重新加载的耗时（纳秒）
+   * @return this
+   */
+  CacheDecoratorBuilder earlyRefresh(
+      StringRedisTemplate stringRedisTemplate, double beta, long defaultRecomputeNanos) {
+    if (cache instanceof RedisCache redisCache) {
+      cache =
+          new EarlyRefreshCache(
+              redisCache, stringRedisTemplate, cacheManager, beta, defaultRecomputeNanos);
+    }
+    return this;
+  }
+
+  /**
+   * 过期后继续使用旧值，副本没有配置时跳过，详见 {@link StaleWhileRevalidateCache}
+   *
+   * @param retryIntervalMillis 重新加载失败后，同一个键多久之后才能再次加载（毫秒）
+   * @param maxFailedKeys 最多记录多少个加载失败的键
+   * @return this
+   */
+  CacheDecoratorBuilder staleWhileRevalidate(long retryIntervalMillis, int maxFailedKeys) {
+    Cache staleCache = redisCacheManager.getCache(name + StaleWhileRevalidateCache.STALE_SUFFIX);
+    if (cache != null && staleCache != null) {
+      cache =
+          new StaleWhileRevalidateCache(
+              cache, staleCache, cacheManager, retryIntervalMillis, maxFailedKeys);
+    }
+    return this;
+  }
+
+  /**
+   * 逻辑过期，副本没有配置时跳过，详见 {@link LogicalExpiryCache}
+   *
+   * @param whitelist 白名单
+   * @param leaseStore 租约存储
+   * @param logicalTtl 逻辑过期时间
+   * @param rebuildLeaseTime 重新加载的租约时长
+   * @return this
+   */
+  CacheDecoratorBuilder logicalExpiry(
+      HotKeyWhitelist whitelist,
+      DistributedSingleFlight.LeaseStore leaseStore,
+      Duration logicalTtl,
+      Duration rebuildLeaseTime) {
+    Cache hotCache = redisCacheManager.getCache(name + LogicalExpiryCache.HOT_SUFFIX);
+    if (cache != null && hotCache != null) {
+      cache =
+          new LogicalExpiryCache(
+              cache, hotCache, cacheManager, whitelist, leaseStore, logicalTtl, rebuildLeaseTime);
+    }
+    return this;
+  }
+
+  /**
+   * 空值缓存，详见 {@link NegativeCachingCache}
+   *
+   * @param negativeCache 空值缓存
+   * @param publishInvalidation 删除空值时是否通知其他节点，外面还有一级缓存时由一级缓存通知
+   * @return this
+   */
+  CacheDecoratorBuilder negativeCaching(NegativeCache negativeCache, boolean publishInvalidation) {
+    if (cache != null) {
+      cache = new NegativeCachingCache(cache, negativeCache, cacheManager, publishInvalidation);
+    }
+    return this;
+  }
+
+  /**
+   * 一级缓存，详见 {@link TwoLevelCache}
+   *
+   * @param localStore 一级缓存的存储
+   * @return this
+   */
+  CacheDecoratorBuilder twoLevel(LocalCacheStore localStore) {
+    if (cache != null) {
+      cache = new TwoLevelCache(cache, cacheManager, localStore);
+    }
+    return this;
+  }
+
+  /**
+   * 访问统计，详见 {@link AccessTrackingCache}
+   *
+   * @return this
+   */
+  CacheDecoratorBuilder accessTracking() {
+    if (cache != null) {
+      cache = new AccessTrackingCache(cache, cacheManager);
+    }
+    return this;
+  }
+
+  /**
+   * 加上了所有装饰器的缓存
+   *
+   * @return Redis 中没有这个缓存时为 null
+   */
+  @Nullable
+  Cache build() {
+    return cache;
+  }
+}
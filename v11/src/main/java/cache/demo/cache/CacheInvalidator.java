@@ -0,0 +1,34 @@
+package cache.demo.cache;
+
+import cache.demo.util.SingleFlightUtil;
+import java.util.Collection;
+import lombok.AllArgsConstructor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * 缓存失效处理 <br>
+ * 数据被修改后，除了删除 Redis 中的缓存（包括各种副本），还要删除单飞中停留的结果，以及各个节点的一级缓存
+ *
+ * @author Camio1945
+ */
+@Service
+@AllArgsConstructor
+public class CacheInvalidator {
+  private RedisTemplate<String, Object> redisTemplate;
+  private TwoLevelCacheManager cacheManager;
+
+  /**
+   * 删除缓存
+   *
+   * @param keys Redis 的键，如：cache:goods:id::1
+   */
+  public void delete(Collection<String> keys) {
+    keys.forEach(SingleFlightUtil::forget);
+    // 过期后继续使用的副本和逻辑过期的副本也要删除，否则数据被修改后还会返回旧值
+    redisTemplate.delete(cacheManager.withShadowKeys(keys));
+    cacheManager.invalidateLocal(keys);
+    // 最近被修改过的键下次写入时过期时间更短
+    cacheManager.onUpdate(keys);
+  }
+}
@@ -0,0 +1,199 @@
+package cache.demo.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import lombok.NonNull;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+
+/**
+ * 后台刷新的条件写入 <br>
+ * 后台刷新从数据库读取之后、写入缓存之前，数据可能被修改，{@link CacheInvalidator} 已经删除了缓存，
+ * 这时直接写入会把旧值放回去，而且在整个过期时间内一直返回旧值。这里只有守护键仍然存在时才写入。
+ *
+ * <pre>
+ * 守护键是刷新之前读取到的键：提前刷新和热点键提前刷新是主缓存的键，过期后继续使用旧值是副本的键（主缓存已经过期），
+ * 逻辑过期是逻辑过期副本的键。删除缓存时主缓存和副本在同一个 DEL 中删除，所以删除之后的刷新都不会再写入。
+ * 写入的键与通过缓存管理器放入时一样：主缓存，开启了过期后继续使用旧值时的副本，白名单中的键的逻辑过期副本，
+ * 序列化方式和过期时间都与 RedisCache 保持一致。判断和写入在同一个 Lua 脚本中，所有的键只执行一次脚本。
+ * 写入后删除本节点的一级缓存，下次读取时从 Redis 重新加载。
+ * 不是 Redis 缓存时（如测试中的 ConcurrentMapCacheManager）逐个判断守护键后通过缓存管理器放入，不是原子的。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class CacheRefreshWriter {
+  private static final String KEY_SEPARATOR = "::";
+
+  /**
+   * 每个键一组：KEYS 是守护键和要写入的键，ARGV 是要写入的键的个数，以及每个键的值和过期时间（毫秒，不大于 0 表示不过期）
+   */
+  private static final RedisScript<Long> PUT_IF_PRESENT_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          local k, a, written = 1, 1, 0
+          while a <= #ARGV do
+            local count = tonumber(ARGV[a])
+            local present = redis.call('EXISTS', KEYS[k]) == 1
+            k, a = k + 1, a + 1
+            for i = 1, count do
+              if present then
+                local ttl = tonumber(ARGV[a + 1])
+                if ttl > 0 then
+                  redis.call('SET', KEYS[k], ARGV[a], 'PX', ttl)
+                else
+                  redis.call('SET', KEYS[k], ARGV[a])
+                end
+              end
+              k, a = k + 1, a + 2
+            end
+            if present then
+              written = written + 1
+            end
+          end
+          return written
+          """,
+          Long.class);
+
+  private static final RedisSerializer<Long> LONG_RESULT_SERIALIZER =
+      new GenericToStringSerializer<>(Long.class);
+
+  private final TwoLevelCacheManager cacheManager;
+
+  private final StringRedisTemplate stringRedisTemplate;
+
+  /**
+   * @param cacheManager 缓存管理器，用于获取缓存的配置和删除一级缓存
+   * @param stringRedisTemplate 用于执行 Lua 脚本
+   */
+  public CacheRefreshWriter(
+      @NonNull TwoLevelCacheManager cacheManager,
+      @NonNull StringRedisTemplate stringRedisTemplate) {
+    this.cacheManager = cacheManager;
+    this.stringRedisTemplate = stringRedisTemplate;
+  }
+
+  /**
+   * 守护键仍然存在时写入
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param guardCacheName 守护键所在的缓存名称，如：cache:goods:id 或 cache:goods:id:stale
+   * @param keyToValue 键（不带前缀，如商品 id）到值的映射，值为 null 的键会被忽略
+   * @return 写入了多少个键
+   */
+  public int putIfPresent(
+      @NonNull String cacheName, @NonNull String guardCacheName, @NonNull Map<?, ?> keyToValue) {
+    RedisCacheConfiguration configuration = cacheManager.getRedisCacheConfiguration(cacheName);
+    RedisCacheConfiguration guardConfiguration =
+        cacheManager.getRedisCacheConfiguration(guardCacheName);
+    if (configuration == null || guardConfiguration == null) {
+      return putIfPresentOneByOne(cacheName, guardCacheName, keyToValue);
+    }
+    List<String> keys = new ArrayList<>();
+    List<Object> args = new ArrayList<>();
+    List<String> redisKeys = new ArrayList<>();
+    keyToValue.forEach(
+        (key, value) -> {
+          if (value == null) {
+            return;
+          }
+          keys.add(guardConfiguration.getKeyPrefixFor(guardCacheName) + key);
+          List<Target> targets = targetsOf(cacheName, configuration, key, value);
+          args.add(toBytes(targets.size()));
+          for (Target target : targets) {
+            RedisCacheConfiguration targetConfiguration = target.configuration();
+            keys.add(targetConfiguration.getKeyPrefixFor(target.cacheName()) + key);
+            args.add(serializeValue(targetConfiguration, target.value()));
+            Duration timeToLive = targetConfiguration.getTtlFunction().getTimeToLive(key, value);
+            args.add(toBytes(timeToLive.toMillis()));
+          }
+          redisKeys.add(cacheName + KEY_SEPARATOR + key);
+        });
+    if (redisKeys.isEmpty()) {
+      return 0;
+    }
+    // 参数已经是 byte[] ，不再序列化
+    Long written =
+        stringRedisTemplate.execute(
+            PUT_IF_PRESENT_SCRIPT,
+            (RedisSerializer<?>) null,
+            LONG_RESULT_SERIALIZER,
+            keys,
+            args.toArray());
+    redisKeys.forEach(cacheManager::evictLocal);
+    return written == null ? 0 : written.intValue();
+  }
+
+  private List<Target> targetsOf(
+      String cacheName, RedisCacheConfiguration configuration, Object key, Object value) {
+    List<Target> targets = new ArrayList<>(3);
+    targets.add(new Target(cacheName, configuration, value));
+    if (cacheManager.isStaleWhileRevalidate(cacheName)) {
+      String staleCacheName = cacheName + StaleWhileRevalidateCache.STALE_SUFFIX;
+      RedisCacheConfiguration staleConfiguration =
+          cacheManager.getRedisCacheConfiguration(staleCacheName);
+      if (staleConfiguration != null) {
+        targets.add(new Target(staleCacheName, staleConfiguration, value));
+      }
+    }
+    HotKeyWhitelist whitelist = cacheManager.getHotKeyWhitelist();
+    if (cacheManager.isLogicalExpiry(cacheName)
+        && whitelist != null
+        && whitelist.contains(cacheName, key)) {
+      String hotCacheName = cacheName + LogicalExpiryCache.HOT_SUFFIX;
+      RedisCacheConfiguration hotConfiguration =
+          cacheManager.getRedisCacheConfiguration(hotCacheName);
+      if (hotConfiguration != null) {
+        long expireAt = System.currentTimeMillis() + cacheManager.getLogicalTtl().toMillis();
+        targets.add(
+            new Target(hotCacheName, hotConfiguration, new LogicalExpiryValue(value, expireAt)));
+      }
+    }
+    return targets;
+  }
+
+  private int putIfPresentOneByOne(
+      String cacheName, String guardCacheName, Map<?, ?> keyToValue) {
+    Cache guardCache = cacheManager.getRedisCache(guardCacheName);
+    Cache cache = cacheManager.getCache(cacheName);
+    if (guardCache == null || cache == null) {
+      return 0;
+    }
+    int written = 0;
+    for (Map.Entry<?, ?> entry : keyToValue.entrySet()) {
+      if (entry.getValue() != null && guardCache.get(entry.getKey()) != null) {
+        cache.put(entry.getKey(), entry.getValue());
+        written++;
+      }
+    }
+    return written;
+  }
+
+  private static byte[] serializeValue(RedisCacheConfiguration configuration, Object value) {
+    ByteBuffer byteBuffer = configuration.getValueSerializationPair().write(value);
+    return ByteUtils.getBytes(byteBuffer);
+  }
+
+  private static byte[] toBytes(long value) {
+    return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 要写入的一个键
+   *
+   * @param cacheName 缓存名称
+   * @param configuration 缓存的配置
+   * @param value 写入的值
+   */
+  private record Target(String cacheName, RedisCacheConfiguration configuration, Object value) {}
+}
@@ -0,0 +1,236 @@
+package cache.demo.cache;
+
+import cache.demo.util.SingleFlightUtil;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.Nullable;
+
+/**
+ * 概率提前刷新的缓存，参考了 XFetch 算法（<a href="https://www.vldb.org/pvldb/vol8/p886-vattani.pdf">Optimal
+ * Probabilistic Cache Stampede Prevention</a>） <br>
+ * 热点键过期时，所有请求都会同步地查询数据库；这里在键过期之前，就有一定的概率在后台重新加载，热点键几乎不会过期。
+ *
+ * <pre>
+ * 读取时用一次 pipeline 同时执行 GET 和 PTTL ，命中后满足以下条件时在后台刷新：
+ *   剩余时间 <= 重新加载的耗时 * beta * -ln(random) ，random 在 (0, 1] 之间均匀分布
+ * 剩余时间越短、重新加载越慢，提前刷新的概率越大；访问越频繁，越早有请求触发刷新，冷门的键则基本不会被提前刷新。
+ * 重新加载的耗时是每次刷新耗时的指数移动平均值，还没有刷新过时使用配置的默认值。
+ * 刷新在单飞中执行（键是 refresh: 加上 Redis 的键），同一个键同时只有一个刷新任务，结果用 {@link CacheRefreshWriter}
+ * 在键仍然存在时写入，过期时间也随之重新计算；刷新期间键被删除（数据被修改）时不写入，避免把旧值放回去。
+ * 刷新使用 {@link TwoLevelCacheManager#registerRefreshLoader} 注册的加载函数，没有注册时不刷新。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Slf4j
+public class EarlyRefreshCache implements Cache {
+  private static final byte[] BINARY_NULL_VALUE = CacheBatchWriter.BINARY_NULL_VALUE;
+
+  private static final String REFRESH_KEY_PREFIX = "refresh:";
+
+  private final RedisCache redisCache;
+
+  private final StringRedisTemplate stringRedisTemplate;
+
+  private final TwoLevelCacheManager cacheManager;
+
+  private final double beta;
+
+  /** 重新加载的耗时（纳秒），指数移动平均值 */
+  private volatile long recomputeNanos;
+
+  private final LongAdder refreshCount = new LongAdder();
+
+  /**
+   * @param redisCache Redis 缓存
+   * @param stringRedisTemplate 用于执行 GET 和 PTTL
+   * @param cacheManager 缓存管理器，用于获取加载函数和放入刷新后的值
+   * @param beta 大于 1 时更早刷新，小于 1 时更晚刷新，一般用 1
+   * @param defaultRecomputeNanos 还没有刷新过时，重新加载的耗时（纳秒）
+   */
+  public EarlyRefreshCache(
+      @NonNull RedisCache redisCache,
+      @NonNull StringRedisTemplate stringRedisTemplate,
+      @NonNull TwoLevelCacheManager cacheManager,
+      double beta,
+      long defaultRecomputeNanos) {
+    this.redisCache = redisCache;
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.cacheManager = cacheManager;
+    this.beta = beta;
+    this.recomputeNanos = defaultRecomputeNanos;
+  }
+
+  @Override
+  @NonNull
+  public String getName() {
+    return redisCache.getName();
+  }
+
+  @Override
+  @NonNull
+  public Object getNativeCache() {
+    return redisCache.getNativeCache();
+  }
+
+  @Override
+  @Nullable
+  public ValueWrapper get(@NonNull Object key) {
+    String redisKey = redisCache.getCacheConfiguration().getKeyPrefixFor(getName()) + key;
+    List<Object> results;
+    try {
+      results = getWithTtl(redisKey);
+    } catch (RuntimeException e) {
+      log.warn("读取缓存和剩余时间失败，改为只读取缓存：{}", redisKey, e);
+      return redisCache.get(key);
+    }
+    byte[] bytes = (byte[]) results.get(0);
+    if (bytes == null) {
+      return null;
+    }
+    Long ttlMillis = (Long) results.get(1);
+    if (ttlMillis != null && shouldRefresh(ttlMillis)) {
+      refresh(key, redisKey);
+    }
+    return new SimpleValueWrapper(deserialize(bytes));
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+    ValueWrapper valueWrapper = get(key);
+    Object value = valueWrapper == null ? null : valueWrapper.get();
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException("缓存中的值不是 [" + type.getName() + "] 类型：" + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+    ValueWrapper valueWrapper = get(key);
+    if (valueWrapper != null) {
+      return (T) valueWrapper.get();
+    }
+    return redisCache.get(key, valueLoader);
+  }
+
+  @Override
+  public void put(@NonNull Object key, @Nullable Object value) {
+    redisCache.put(key, value);
+  }
+
+  @Override
+  public void evict(@NonNull Object key) {
+    redisCache.evict(key);
+  }
+
+  @Override
+  public void clear() {
+    redisCache.clear();
+  }
+
+  /**
+   * 提前刷新的次数
+   *
+   * @return 次数
+   */
+  public long getRefreshCount() {
+    return refreshCount.sum();
+  }
+
+  /**
+   * 重新加载的耗时
+   *
+   * @return 纳秒
+   */
+  public long getRecomputeNanos() {
+    return recomputeNanos;
+  }
+
+  /**
+   * 是否需要提前刷新
+   *
+   * @param ttlMillis 剩余时间（毫秒），为负数表示没有过期时间或者已经过期
+   * @return true 表示需要
+   */
+  boolean shouldRefresh(long ttlMillis) {
+    if (ttlMillis < 0) {
+      return false;
+    }
+    // 1 - nextDouble() 在 (0, 1] 之间，避免 ln(0)
+    double random = 1 - ThreadLocalRandom.current().nextDouble();
+    double thresholdMillis = recomputeNanos / 1_000_000.0 * beta * -Math.log(random);
+    return ttlMillis <= thresholdMillis;
+  }
+
+  private List<Object> getWithTtl(String redisKey) {
+    byte[] rawKey = redisKey.getBytes(StandardCharsets.UTF_8);
+    // 结果不反序列化，值的反序列化与 RedisCache 保持一致
+    return stringRedisTemplate.executePipelined(
+        (RedisCallback<Object>)
+            connection -> {
+              connection.stringCommands().get(rawKey);
+              connection.keyCommands().pTtl(rawKey);
+              return null;
+            },
+        null);
+  }
+
+  @Nullable
+  private Object deserialize(byte[] bytes) {
+    if (Arrays.equals(bytes, BINARY_NULL_VALUE)) {
+      return null;
+    }
+    RedisCacheConfiguration cacheConfiguration = redisCache.getCacheConfiguration();
+    Object value = cacheConfiguration.getValueSerializationPair().read(ByteBuffer.wrap(bytes));
+    return value instanceof NullValue ? null : value;
+  }
+
+  private void refresh(Object key, String redisKey) {
+    Function<Object, Object> loader = cacheManager.getRefreshLoader(getName());
+    if (loader == null) {
+      return;
+    }
+    SingleFlightUtil.executeAsync(
+            REFRESH_KEY_PREFIX + redisKey,
+            () -> {
+              long start = System.nanoTime();
+              Object value = loader.apply(key);
+              long elapsed = System.nanoTime() - start;
+              recomputeNanos = (recomputeNanos * 7 + elapsed) / 8;
+              // 数据已经被删除时不放入，让缓存自然过期
+              if (value != null) {
+                cacheManager
+                    .getRefreshWriter()
+                    .putIfPresent(getName(), getName(), Map.of(key, value));
+              }
+              refreshCount.increment();
+              return value;
+            })
+        .exceptionally(
+            e -> {
+              log.warn("提前刷新缓存失败：{}", redisKey, e);
+              return null;
+            });
+  }
+}
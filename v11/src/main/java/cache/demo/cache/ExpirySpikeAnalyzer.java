@@ -0,0 +1,212 @@
+package cache.demo.cache;
+
+import cache.demo.util.ExpiryHistogram;
+import cn.hutool.core.collection.ListUtil;
+import cn.hutool.core.util.RandomUtil;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * 集中过期分析 <br>
+ * {@link cache.demo.common.RandomOffsetTtlFunction} 只有 0 ~ 10% 的随机偏移量，批量预热（如 DbVsCacheTest
+ * 中一次写入 10 万个键）后，大量的键仍然会在同一个时间段内过期，引起数据库的压力尖峰。这里定期找出这样的尖峰并把它们重新打散。
+ *
+ * <pre>
+ * 每个周期（cache.expiry-spike.interval）对每个缓存执行一次：
+ * 1. 用 SCAN 遍历缓存名称开头的键（MATCH cache:goods:id::*），最多 maxSampledKeys 个，不会像 KEYS 一样阻塞 Redis
+ * 2. 分批用 pipeline 查询剩余时间（PTTL），放入 {@link ExpiryHistogram}
+ * 3. 找出键数超过总数 spikeRatio 的桶，把这些桶中的键的剩余时间分别加上 0 ~ spreadWindow 之间的随机值，
+ *    分批用 pipeline 执行 PEXPIRE
+ * 只会延长，不会缩短剩余时间，所以重新打散不会让键提前过期。
+ * 查询剩余时间和重新设置之间键可能被修改过，这时剩余时间会被设置为旧的剩余时间加上随机值，数据被修改时缓存会被删除，所以不影响正确性。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Slf4j
+public class ExpirySpikeAnalyzer {
+  private static final String KEY_SEPARATOR = "::";
+
+  private final StringRedisTemplate stringRedisTemplate;
+
+  private final boolean enabled;
+
+  private final List<String> cacheNames;
+
+  private final int maxSampledKeys;
+
+  private final int scanCount;
+
+  private final long bucketWidthMillis;
+
+  private final double spikeRatio;
+
+  private final int minSpikeKeys;
+
+  private final long spreadWindowMillis;
+
+  private final int batchSize;
+
+  private final LongAdder rejitteredCount = new LongAdder();
+
+  /**
+   * @param stringRedisTemplate 用于扫描键和修改过期时间
+   * @param enabled 是否启用
+   * @param cacheNames 需要分析的缓存名称，如：cache:goods:id
+   * @param maxSampledKeys 每个缓存每个周期最多扫描多少个键
+   * @param scanCount SCAN 的 COUNT 参数
+   * @param bucketWidth 直方图的桶宽
+   * @param spikeRatio 一个桶中的键数超过总数的多少时认为是尖峰，如：0.02
+   * @param minSpikeKeys 一个桶中至少有多少个键时才可能是尖峰
+   * @param spreadWindow 尖峰中的键的剩余时间最多延长多久
+   * @param batchSize 一次 pipeline 最多包含多少个键
+   */
+  public ExpirySpikeAnalyzer(
+      @NonNull StringRedisTemplate stringRedisTemplate,
+      boolean enabled,
+      @NonNull List<String> cacheNames,
+      int maxSampledKeys,
+      int scanCount,
+      @NonNull Duration bucketWidth,
+      double spikeRatio,
+      int minSpikeKeys,
+      @NonNull Duration spreadWindow,
+      int batchSize) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.enabled = enabled;
+    this.cacheNames = List.copyOf(cacheNames);
+    this.maxSampledKeys = maxSampledKeys;
+    this.scanCount = scanCount;
+    this.bucketWidthMillis = bucketWidth.toMillis();
+    this.spikeRatio = spikeRatio;
+    this.minSpikeKeys = minSpikeKeys;
+    this.spreadWindowMillis = spreadWindow.toMillis();
+    this.batchSize = batchSize;
+  }
+
+  /** 分析所有缓存，并重新打散尖峰中的键 */
+  @Scheduled(
+      initialDelayString = "${cache.expiry-spike.interval:PT30M}",
+      fixedDelayString = "${cache.expiry-spike.interval:PT30M}")
+  public void analyze() {
+    if (!enabled) {
+      return;
+    }
+    for (String cacheName : cacheNames) {
+      try {
+        analyze(cacheName);
+      } catch (RuntimeException e) {
+        log.warn("集中过期分析失败：{}", cacheName, e);
+      }
+    }
+  }
+
+  /**
+   * 分析一个缓存，并重新打散尖峰中的键
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @return 重新设置了剩余时间的键数
+   */
+  public int analyze(String cacheName) {
+    List<String> keys = scan(cacheName);
+    long[] ttls = new long[keys.size()];
+    ExpiryHistogram histogram = new ExpiryHistogram(bucketWidthMillis);
+    int offset = 0;
+    for (List<String> batch : ListUtil.partition(keys, batchSize)) {
+      List<Object> results = pTtl(batch);
+      for (int i = 0; i < batch.size(); i++) {
+        // -1 表示没有过期时间，-2 表示不存在
+        long ttl = results.get(i) instanceof Long value ? value : -2;
+        ttls[offset + i] = ttl;
+        histogram.add(ttl);
+      }
+      offset += batch.size();
+    }
+    Set<Long> spikes = new HashSet<>(histogram.findSpikes(spikeRatio, minSpikeKeys));
+    if (spikes.isEmpty()) {
+      log.debug("{} 没有集中过期，扫描了 {} 个键", cacheName, histogram.getTotal());
+      return 0;
+    }
+    List<String> spikeKeys = new ArrayList<>();
+    List<Long> newTtls = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i++) {
+      if (ttls[i] >= 0 && spikes.contains(histogram.bucketOf(ttls[i]))) {
+        spikeKeys.add(keys.get(i));
+        newTtls.add(ttls[i] + RandomUtil.randomLong(0, spreadWindowMillis + 1));
+      }
+    }
+    List<List<String>> keyBatches = ListUtil.partition(spikeKeys, batchSize);
+    List<List<Long>> ttlBatches = ListUtil.partition(newTtls, batchSize);
+    for (int i = 0; i < keyBatches.size(); i++) {
+      pExpire(keyBatches.get(i), ttlBatches.get(i));
+    }
+    rejitteredCount.add(spikeKeys.size());
+    log.info(
+        "{} 有 {} 个时间段集中过期，扫描了 {} 个键，重新打散了 {} 个键，剩余时间最多延长 {} ms",
+        cacheName,
+        spikes.size(),
+        histogram.getTotal(),
+        spikeKeys.size(),
+        spreadWindowMillis);
+    return spikeKeys.size();
+  }
+
+  /**
+   * 已经重新打散了多少个键
+   *
+   * @return 键数
+   */
+  public long getRejitteredCount() {
+    return rejitteredCount.sum();
+  }
+
+  private List<String> scan(String cacheName) {
+    ScanOptions options =
+        ScanOptions.scanOptions().match(cacheName + KEY_SEPARATOR + "*").count(scanCount).build();
+    List<String> keys = new ArrayList<>();
+    try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+      while (cursor.hasNext() && keys.size() < maxSampledKeys) {
+        keys.add(cursor.next());
+      }
+    }
+    return keys;
+  }
+
+  private List<Object> pTtl(List<String> keys) {
+    return stringRedisTemplate.executePipelined(
+        (RedisCallback<Object>)
+            connection -> {
+              for (String key : keys) {
+                connection.keyCommands().pTtl(key.getBytes(StandardCharsets.UTF_8));
+              }
+              return null;
+            },
+        null);
+  }
+
+  private void pExpire(List<String> keys, List<Long> ttls) {
+    stringRedisTemplate.executePipelined(
+        (RedisCallback<Object>)
+            connection -> {
+              for (int i = 0; i < keys.size(); i++) {
+                connection
+                    .keyCommands()
+                    .pExpire(keys.get(i).getBytes(StandardCharsets.UTF_8), ttls.get(i));
+              }
+              return null;
+            },
+        null);
+  }
+}
@@ -2,18 +2,27 @@ package cache.demo.cache;
 
 import cache.demo.entity.Goods;
 import cache.demo.mapper.GoodsMapper;
+import cache.demo.util.BatchLoader;
+import cache.demo.util.DistributedSingleFlight;
 import cache.demo.util.SingleFlightUtil;
-import cn.hutool.core.lang.Assert;
+import cache.demo.util.TransactionUtil;
 
+import jakarta.annotation.PostConstruct;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import org.springframework.cache.Cache;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 /**
@@ -30,71 +39,351 @@ public class GoodsCache {
 
   public static final String GOODS_IDS_BY_STORE_ID_CACHE_PREFIX = "cache:goods:goodsIdsByStoreId";
 
-  /** 允许多少个空值缓存 */
-  private static final int ALLOW_NULL_CACHE_NUMBER = 1000;
-
-  private static int maxAllowedId = Integer.MAX_VALUE;
+  /** 目标键（KEYS[2]）存在时把临时键（KEYS[1]）改名为目标键，否则删除临时键 */
+  private static final RedisScript<Long> RENAME_IF_PRESENT_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          if redis.call('EXISTS', KEYS[2]) == 1 then
+            redis.call('RENAME', KEYS[1], KEYS[2])
+            return 1
+          end
+          redis.call('DEL', KEYS[1])
+          return 0
+          """,
+          Long.class);
 
   private GoodsMapper goodsMapper;
   private RedisTemplate<String, Object> redisTemplate;
+  private TwoLevelCacheManager cacheManager;
+  private CacheInvalidator cacheInvalidator;
+  private RefreshAheadScheduler refreshAheadScheduler;
+  private DistributedSingleFlight distributedSingleFlight;
+  private BatchLoader<Integer, Goods> goodsBatchLoader;
+  private IdExistenceFilter goodsIdFilter;
   private RedisCacheConfiguration cacheConfiguration;
+  private GoodsHashStore goodsHashStore;
+  private CacheBatchWriter cacheBatchWriter;
+  private AsyncCacheLoader asyncCacheLoader;
+
+  /** 注册提前刷新时使用的加载函数，刷新是后台查询，不经过批量加载器 */
+  @PostConstruct
+  public void registerRefreshLoader() {
+    cacheManager.registerRefreshLoader(
+        GOODS_ID_CACHE_PREFIX, id -> goodsMapper.selectById((Integer) id));
+    refreshAheadScheduler.register(
+        GOODS_ID_CACHE_PREFIX,
+        ids ->
+            goodsMapper.selectBatchIds(ids.stream().map(Integer.class::cast).toList()).stream()
+                .collect(Collectors.toMap(Goods::getId, Function.identity())));
+    // zset 不能用 CacheBatchWriter 写入，每个店铺单独查询、单独写入
+    refreshAheadScheduler.register(
+        GOODS_IDS_BY_STORE_ID_CACHE_PREFIX,
+        1,
+        storeIds -> {
+          for (Object storeId : storeIds) {
+            String key = GOODS_IDS_BY_STORE_ID_CACHE_PREFIX + "::" + storeId;
+            List<Integer> goodsIds = goodsMapper.selectIdsByStoreId((Integer) storeId);
+            if (goodsIds != null && !goodsIds.isEmpty()) {
+              // 先写入临时键再改名，读取的线程不会看到写了一半的 zset ；
+              // 刷新期间键被删除（店铺的商品有变化）时不改名，避免把旧的列表写回去
+              String tempKey = key + ":refresh";
+              putGoodsIdsByStoreId(tempKey, goodsIds);
+              redisTemplate.execute(RENAME_IF_PRESENT_SCRIPT, List.of(tempKey, key));
+            }
+          }
+          return Map.of();
+        });
+  }
 
   /**
-   * 更新 {@link #maxAllowedId} 的值
-   *
-   * <pre>
-   * 代码中加上 ALLOW_NULL_CACHE_NUMBER 是为了应对集群的情况，如果不加上 ALLOW_NULL_CACHE_NUMBER，
-   * 假设数据库中当前最大的 id 是 100000，
-   * 张三调用了集群 1 的 add 方法，新增了一个商品，id 是 100001，JVM 1 中的 maxAllowedId 会更新为 100001，
-   * 李四调用了集群 2 的 add 方法，新增了一个商品，id 是 100002，JVM 2 中的 maxAllowedId 会更新为 100002，
-   * 此时王五调用了集群 1 的 getById 方法，传入的 id 是 100002，而 JVM 1 中的 maxAllowedId 是 100001，就会出错
-   * </pre>
+   * 根据 id 获取商品
    *
    * @param id 商品 id
+   * @return 商品
    */
-  public static void updateMaxAllowedIdByGoodsId(int id) {
-    maxAllowedId = id + ALLOW_NULL_CACHE_NUMBER;
+  // id 位图中没有的 id 由方法直接返回 null ，不查询数据库；只在这里判断一次，不在 condition 中重复判断
+  // 以哈希的方式缓存时不使用 cache:goods:id ，详见 GoodsHashStore
+  @Cacheable(
+      value = GOODS_ID_CACHE_PREFIX,
+      key = "#id",
+      condition = "!#root.target.hashStorageEnabled",
+      unless = "#root.target.isCachePutSkipped(#result)")
+  public Goods getById(@NonNull Integer id) {
+    if (!goodsIdFilter.mightExist(id)) {
+      return null;
+    }
+    if (isHashStorageEnabled()) {
+      return getByIdFromHash(id);
+    }
+    String key = GOODS_ID_CACHE_PREFIX + "::" + id;
+    Cache cache = Objects.requireNonNull(cacheManager.getCache(GOODS_ID_CACHE_PREFIX));
+    return SingleFlightUtil.execute(
+        key,
+        () ->
+            distributedSingleFlight.execute(
+                key, cache, id, () -> loadById(id), this::isCachePutSkipped));
   }
 
   /**
-   * 根据 id 获取商品
+   * 根据 id 异步获取商品（非阻塞版本） <br>
+   * 先用响应式 API 读取 Redis ，没有时在有界的虚拟线程执行器中查询数据库并放入缓存，调用者不会被阻塞，详见 {@link
+   * AsyncCacheLoader}
    *
    * @param id 商品 id
+   * @param timeout 最多等待多久，超时后只影响当前调用者
    * @return 商品
    */
-  @Cacheable(value = GOODS_ID_CACHE_PREFIX, key = "#id")
-  public Goods getById(@NonNull Integer id) {
-    Assert.isTrue(id <= maxAllowedId, "非法 id");
+  public CompletableFuture<Goods> getByIdAsync(@NonNull Integer id, @NonNull Duration timeout) {
+    if (!goodsIdFilter.mightExist(id)) {
+      return CompletableFuture.completedFuture(null);
+    }
     String key = GOODS_ID_CACHE_PREFIX + "::" + id;
-    return SingleFlightUtil.execute(key, () -> goodsMapper.selectById(id));
+    if (isHashStorageEnabled()) {
+      // 哈希不能用 GET 读取，整个过程都在执行器中执行
+      return asyncCacheLoader.loadAsync(key, () -> getByIdFromHash(id), timeout);
+    }
+    return asyncCacheLoader.getOrLoad(
+        key,
+        () -> {
+          // 经过完整的缓存（一级缓存、空值缓存等）再检查一次
+          Cache cache = Objects.requireNonNull(cacheManager.getCache(GOODS_ID_CACHE_PREFIX));
+          Cache.ValueWrapper valueWrapper = cache.get(id);
+          if (valueWrapper != null) {
+            return (Goods) valueWrapper.get();
+          }
+          Goods value = loadById(id);
+          if (!isCachePutSkipped(value)) {
+            cache.put(id, value);
+          }
+          return value;
+        },
+        timeout);
+  }
+
+  /**
+   * 从哈希中读取商品，没有缓存时查询数据库并写入哈希，详见 {@link GoodsHashStore}
+   *
+   * @param id 商品 id
+   * @return 商品
+   */
+  private Goods getByIdFromHash(Integer id) {
+    Goods goods = goodsHashStore.get(id);
+    if (goods != null) {
+      return goods;
+    }
+    return SingleFlightUtil.execute(
+        GoodsHashStore.keyOf(id),
+        () -> {
+          // 先读取版本号再查询数据库，查询期间商品被修改了则不写入
+          long version = goodsHashStore.currentVersion(id);
+          Goods loaded = goodsMapper.selectById(id);
+          if (loaded != null) {
+            goodsHashStore.put(loaded, version);
+          }
+          return loaded;
+        });
+  }
+
+  /**
+   * 是否以哈希的方式缓存商品
+   *
+   * @return true 表示是，详见 {@link GoodsHashStore}
+   */
+  public boolean isHashStorageEnabled() {
+    return goodsHashStore.isEnabled();
+  }
+
+  /**
+   * 是否不需要把查询结果放入缓存 <br>
+   * 开启批量加载时，结果已经由批量加载器用 pipeline 写入缓存了，不需要再写一次；
+   * id 位图加载完成后，不存在的 id 由方法直接返回 null ，不需要再缓存空值
+   *
+   * @param result 查询结果
+   * @return true 表示不需要
+   */
+  public boolean isCachePutSkipped(Goods result) {
+    return isBatchLoadEnabled() || (result == null && goodsIdFilter.isReady());
+  }
+
+  /**
+   * 是否开启了批量加载
+   *
+   * @return true 表示开启
+   */
+  public boolean isBatchLoadEnabled() {
+    return goodsBatchLoader.isEnabled();
+  }
+
+  /**
+   * 从数据库中加载商品，开启批量加载时，会与其他线程同时加载的 id 合并成一次查询
+   *
+   * @param id 商品 id
+   * @return 商品
+   */
+  private Goods loadById(Integer id) {
+    if (isBatchLoadEnabled()) {
+      return goodsBatchLoader.load(id).join();
+    }
+    return goodsMapper.selectById(id);
   }
 
   /**
    * 根据店铺 id 获取商品集合（按 id 倒序排列） <br>
-   * 注：不要用 {@Cacheable} 注解，因为需要用到 redis 中的 zset，而不是普通的 string
+   * 注：不要用 {@Cacheable} 注解，因为需要用到 redis 中的 zset，而不是普通的 string <br>
+   * 缓存中没有的商品用一次 selectBatchIds 查询，并用一次 pipeline 写入缓存，而不是一个一个地调用 getById ，
+   * 店铺的商品同时过期后，一次查询不会变成几百次串行的 Redis 和数据库访问
    *
    * @param storeId 店铺 id
-   * @param function 生成商品的函数，请传递：goodsCache::getById <br>
+   * @param function 生成商品的函数，请传递：goodsCache::getById ，只有一个商品不在缓存中时使用（可以合并并发的查询） <br>
    *     注：这个参数只能从外面传过来，如果直接从里面调用的话，不会走缓存
    * @return 商品 id
    */
   public List<Goods> getListByStoreId(
       @NonNull Integer storeId, @NonNull IntFunction<Goods> function) {
     List<Integer> goodsIds = getGoodsIdsByStoreId(storeId);
-    List<String> keys = goodsIds.stream().map(id -> GOODS_ID_CACHE_PREFIX + "::" + id).toList();
-    List<Object> objects = redisTemplate.opsForValue().multiGet(keys);
-    assert objects != null;
-    List<Goods> goodsList = new ArrayList<>();
+    List<Goods> goodsList;
+    List<Integer> missedIds = new ArrayList<>();
+    // 只有一个商品不在缓存中时，它在列表中的位置
+    int missedIndex = -1;
+    if (isHashStorageEnabled()) {
+      goodsList = goodsHashStore.multiGet(goodsIds);
+      for (int i = 0; i < goodsList.size(); i++) {
+        if (goodsList.get(i) == null) {
+          missedIds.add(goodsIds.get(i));
+          missedIndex = i;
+        }
+      }
+    } else {
+      List<String> keys = goodsIds.stream().map(id -> GOODS_ID_CACHE_PREFIX + "::" + id).toList();
+      List<Object> objects = cacheBatchWriter.multiGet(keys);
+      goodsList = new ArrayList<>(objects.size());
+      for (int i = 0; i < objects.size(); i++) {
+        Object obj = objects.get(i);
+        // 与 fillMissesAsync 一样，缓存了空值（NullValue）的商品不存在，不需要再查询
+        goodsList.add(obj instanceof Goods goods ? goods : null);
+        if (obj == null) {
+          missedIds.add(goodsIds.get(i));
+          missedIndex = i;
+        }
+      }
+    }
+    if (missedIds.size() == 1) {
+      goodsList.set(missedIndex, function.apply(missedIds.get(0)));
+    } else if (!missedIds.isEmpty()) {
+      Map<Integer, Goods> idToGoods = loadAll(missedIds);
+      // 按位置填充，缓存了空值的位置不在 idToGoods 中，仍然是 null
+      for (int i = 0; i < goodsList.size(); i++) {
+        if (goodsList.get(i) == null) {
+          goodsList.set(i, idToGoods.get(goodsIds.get(i)));
+        }
+      }
+    }
+    return goodsList;
+  }
+
+  /**
+   * 根据店铺 id 异步获取商品集合（非阻塞版本，按 id 倒序排列） <br>
+   * 用响应式 API 读取 zset 和商品，缓存中没有的商品在有界的虚拟线程执行器中查询，与 {@link #getListByStoreId} 一样，
+   * 只有一个商品不在缓存中时使用 {@link #getByIdAsync}（可以合并并发的查询），多个时用一次 selectBatchIds 查询
+   *
+   * @param storeId 店铺 id
+   * @param timeout 最多等待多久，超时后只影响当前调用者
+   * @return 商品集合
+   */
+  public CompletableFuture<List<Goods>> getListByStoreIdAsync(
+      @NonNull Integer storeId, @NonNull Duration timeout) {
+    if (isHashStorageEnabled()) {
+      // 哈希用 pipeline 读取，整个过程都在执行器中执行；以哈希的方式缓存时 getById 不经过 @Cacheable ，可以直接调用
+      return asyncCacheLoader
+          .loadAsync(() -> getListByStoreId(storeId, this::getById))
+          .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+    String key = GOODS_IDS_BY_STORE_ID_CACHE_PREFIX + "::" + storeId;
+    refreshAheadScheduler.recordAccess(GOODS_IDS_BY_STORE_ID_CACHE_PREFIX, storeId);
+    return asyncCacheLoader
+        .reverseRangeIds(key)
+        .thenCompose(
+            goodsIds ->
+                goodsIds.isEmpty()
+                    ? asyncCacheLoader.loadAsync(() -> loadGoodsIdsByStoreId(storeId))
+                    : CompletableFuture.completedFuture(goodsIds))
+        .thenCompose(
+            goodsIds -> {
+              if (goodsIds == null || goodsIds.isEmpty()) {
+                return CompletableFuture.completedFuture(new ArrayList<>());
+              }
+              List<String> keys =
+                  goodsIds.stream().map(id -> GOODS_ID_CACHE_PREFIX + "::" + id).toList();
+              return asyncCacheLoader
+                  .multiGet(keys)
+                  .thenCompose(objects -> fillMissesAsync(goodsIds, objects, timeout));
+            })
+        .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  private CompletableFuture<List<Goods>> fillMissesAsync(
+      List<Integer> goodsIds, List<Object> objects, Duration timeout) {
+    List<Goods> goodsList = new ArrayList<>(objects.size());
+    List<Integer> missedIds = new ArrayList<>();
+    int missedIndex = -1;
     for (int i = 0; i < objects.size(); i++) {
       Object obj = objects.get(i);
+      // 缓存了空值（NullValue）的商品不存在，不需要再查询
+      goodsList.add(obj instanceof Goods goods ? goods : null);
       if (obj == null) {
-        Goods goods = function.apply(goodsIds.get(i));
-        goodsList.add(goods);
-      } else {
-        goodsList.add((Goods) obj);
+        missedIds.add(goodsIds.get(i));
+        missedIndex = i;
       }
     }
-    return goodsList;
+    if (missedIds.isEmpty()) {
+      return CompletableFuture.completedFuture(goodsList);
+    }
+    if (missedIds.size() == 1) {
+      int index = missedIndex;
+      return getByIdAsync(missedIds.get(0), timeout)
+          .thenApply(
+              goods -> {
+                goodsList.set(index, goods);
+                return goodsList;
+              });
+    }
+    return asyncCacheLoader
+        .loadAsync(() -> loadAll(missedIds))
+        .thenApply(
+            idToGoods -> {
+              for (int i = 0; i < goodsList.size(); i++) {
+                if (goodsList.get(i) == null) {
+                  goodsList.set(i, idToGoods.get(goodsIds.get(i)));
+                }
+              }
+              return goodsList;
+            });
+  }
+
+  /**
+   * 用一次 selectBatchIds 查询多个商品，并用一次 pipeline 写入缓存（过期时间与 @Cacheable 一样带随机偏移量）
+   *
+   * @param ids 商品 id
+   * @return 商品 id 到商品的映射，数据库中不存在的 id 不在其中
+   */
+  private Map<Integer, Goods> loadAll(List<Integer> ids) {
+    List<Integer> existingIds = ids.stream().filter(goodsIdFilter::mightExist).toList();
+    if (existingIds.isEmpty()) {
+      return Map.of();
+    }
+    if (isHashStorageEnabled()) {
+      return goodsHashStore.loadAll(existingIds, goodsMapper::selectBatchIds);
+    }
+    Map<Integer, Goods> idToGoods =
+        goodsMapper.selectBatchIds(existingIds).stream()
+            .collect(Collectors.toMap(Goods::getId, Function.identity()));
+    Map<Integer, Goods> idToValue = new HashMap<>(idToGoods);
+    if (!goodsIdFilter.isReady()) {
+      // 与 isCachePutSkipped 一致，id 位图加载完成之前，不存在的 id 也要缓存空值
+      existingIds.forEach(id -> idToValue.putIfAbsent(id, null));
+    }
+    cacheBatchWriter.putAll(GOODS_ID_CACHE_PREFIX, idToValue);
+    return idToGoods;
   }
 
   /**
@@ -105,29 +394,43 @@ public class GoodsCache {
    * @return 商品 id
    */
   private List<Integer> getGoodsIdsByStoreId(@NonNull Integer storeId) {
+    refreshAheadScheduler.recordAccess(GOODS_IDS_BY_STORE_ID_CACHE_PREFIX, storeId);
+    return loadGoodsIdsByStoreId(storeId);
+  }
+
+  /**
+   * 先读取 zset ，没有时查询数据库并写入（单飞）
+   *
+   * @param storeId 店铺 id
+   * @return 商品 id
+   */
+  private List<Integer> loadGoodsIdsByStoreId(@NonNull Integer storeId) {
     String key = GOODS_IDS_BY_STORE_ID_CACHE_PREFIX + "::" + storeId;
     return SingleFlightUtil.execute(
         key,
         () -> {
-          ZSetOperations<String, Object> zSetOperations = redisTemplate.opsForZSet();
-          Set<Object> values = zSetOperations.reverseRange(key, 0, -1);
+          Set<Object> values = redisTemplate.opsForZSet().reverseRange(key, 0, -1);
           if (values != null && !values.isEmpty()) {
             return values.stream().map(Integer.class::cast).toList();
           }
           List<Integer> goodsIds = goodsMapper.selectIdsByStoreId(storeId);
           if (goodsIds != null && !goodsIds.isEmpty()) {
-            Set<ZSetOperations.TypedTuple<Object>> set =
-                goodsIds.stream()
-                    .map(id -> ZSetOperations.TypedTuple.of((Object) id, id.doubleValue()))
-                    .collect(Collectors.toSet());
-            zSetOperations.add(key, set);
-            Duration timeToLive = cacheConfiguration.getTtlFunction().getTimeToLive(key, set);
-            redisTemplate.expire(key, timeToLive);
+            putGoodsIdsByStoreId(key, goodsIds);
           }
           return goodsIds;
         });
   }
 
+  private void putGoodsIdsByStoreId(String key, List<Integer> goodsIds) {
+    Set<ZSetOperations.TypedTuple<Object>> set =
+        goodsIds.stream()
+            .map(id -> ZSetOperations.TypedTuple.of((Object) id, id.doubleValue()))
+            .collect(Collectors.toSet());
+    redisTemplate.opsForZSet().add(key, set);
+    Duration timeToLive = cacheConfiguration.getTtlFunction().getTimeToLive(key, set);
+    redisTemplate.expire(key, timeToLive);
+  }
+
   /**
    * 根据店铺 id 和商品名称获取商品 id
    *
@@ -148,40 +451,61 @@ public class GoodsCache {
    */
   public void handleCacheAfterAdd(Goods after) {
     Integer id = after.getId();
+    goodsIdFilter.add(id);
     List<String> keys =
         List.of(
             GOODS_ID_CACHE_PREFIX + "::" + id,
             GOODS_IDS_BY_STORE_ID_CACHE_PREFIX + "::" + after.getStoreId(),
             GOODS_STORE_ID_NAME_CACHE_PREFIX + "::" + after.getStoreId() + ":" + after.getName());
-    redisTemplate.delete(keys);
+    cacheInvalidator.delete(keys);
   }
 
   /**
-   * 删除操作后的缓存处理
+   * 删除操作后的缓存处理，id 位图在事务提交后才删除，回滚时数据仍然存在，不能被判断为不存在
    *
    * @param before 删除前的商品
    */
   public void handleCacheAfterDelete(Goods before) {
+    TransactionUtil.afterCommit(() -> goodsIdFilter.remove(before.getId()));
+    if (isHashStorageEnabled()) {
+      SingleFlightUtil.forget(GoodsHashStore.keyOf(before.getId()));
+      goodsHashStore.invalidate(before.getId());
+    }
     List<String> keys =
         List.of(
             GOODS_ID_CACHE_PREFIX + "::" + before.getId(),
             GOODS_IDS_BY_STORE_ID_CACHE_PREFIX + "::" + before.getStoreId(),
             GOODS_STORE_ID_NAME_CACHE_PREFIX + "::" + before.getStoreId() + ":" + before.getName());
-    redisTemplate.delete(keys);
+    cacheInvalidator.delete(keys);
   }
 
   /**
-   * 更新操作后的缓存处理
+   * 更新操作后的缓存处理，需要在数据库事务中调用，缓存在事务提交后才会被删除或修改 <br>
+   * 以哈希的方式缓存时，不删除商品的缓存，而是在事务中分配版本号，提交后只把修改了的字段写入哈希，详见 {@link
+   * GoodsHashStore}
    *
    * @param before 更新前的商品
    * @param after 更新后的商品
    */
   public void handleCacheAfterUpdate(Goods before, Goods after) {
-    List<String> keys =
-        List.of(
-            GOODS_ID_CACHE_PREFIX + "::" + after.getId(),
-            GOODS_STORE_ID_NAME_CACHE_PREFIX + "::" + before.getStoreId() + ":" + before.getName(),
-            GOODS_STORE_ID_NAME_CACHE_PREFIX + "::" + after.getStoreId() + ":" + after.getName());
-    redisTemplate.delete(keys);
+    Integer id = after.getId();
+    String storeIdNamePrefix = GOODS_STORE_ID_NAME_CACHE_PREFIX + "::";
+    List<String> keys = new ArrayList<>();
+    keys.add(storeIdNamePrefix + before.getStoreId() + ":" + before.getName());
+    keys.add(storeIdNamePrefix + after.getStoreId() + ":" + after.getName());
+    if (!isHashStorageEnabled()) {
+      keys.add(GOODS_ID_CACHE_PREFIX + "::" + id);
+      TransactionUtil.afterCommit(() -> cacheInvalidator.delete(keys));
+      return;
+    }
+    // 此时持有数据库的行锁，同一个商品的版本号与提交的顺序一致
+    long version = goodsHashStore.nextVersion(id);
+    Map<String, String> updatedFields = GoodsHashStore.updatedFields(after);
+    TransactionUtil.afterCommit(
+        () -> {
+          cacheInvalidator.delete(keys);
+          SingleFlightUtil.forget(GoodsHashStore.keyOf(id));
+          goodsHashStore.update(id, updatedFields, version);
+        });
   }
 }
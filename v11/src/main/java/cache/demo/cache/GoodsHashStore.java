@@ -0,0 +1,375 @@
+package cache.demo.cache;
+
+import cache.demo.entity.Goods;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.lang.Nullable;
+
+/**
+ * 以 Redis 哈希的方式缓存商品，每个字段是哈希中的一个字段 <br>
+ * 默认的缓存方式中，修改商品（哪怕只修改了库存）会删除整个缓存，下次读取时重新查询数据库；
+ * 这里修改后只把变化了的字段写入哈希，热点商品的库存频繁变化时不再反复查询数据库。
+ *
+ * <pre>
+ * 键：cache:goods:hash::1 ，与 cache:goods:id::1 （字符串）分开，两种方式不会互相干扰
+ * 字段：id 、 storeId 、 name 、 stock 、 price （为 null 的字段不写入），以及版本号 _v
+ * 版本号：每个商品在 cache:goods:hash:version::1 中有一个计数器，每次修改加 1 ，哈希中的 _v 是写入时计数器的值
+ * 1. 修改：在数据库事务中、 updateById 之后（持有行锁）调用 {@link #nextVersion}，所以同一个商品的版本号与提交的顺序一致；
+ *    提交后调用 {@link #update}，只有哈希中的版本号正好比新的版本号小 1 时才写入变化了的字段，
+ *    否则（乱序到达，或者中间有一次修改没有写入）删除整个哈希，下次读取时重新加载，不会留下旧的字段
+ * 2. 加载：查询数据库之前调用 {@link #currentVersion}，写入时计数器已经变化（期间有修改或删除）则放弃写入，
+ *    避免把查询到的旧数据写入缓存
+ * 3. 删除：删除数据库中的数据后调用 {@link #invalidate}，计数器加 1 并删除哈希
+ * 计数器的过期时间是哈希的最长过期时间的 2 倍，每次加 1 时重新设置，所以不会比哈希先过期。
+ * 不缓存空值，不存在的 id 由 id 位图过滤；也不经过一级缓存、提前刷新等装饰。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Slf4j
+public class GoodsHashStore {
+  public static final String GOODS_HASH_CACHE_PREFIX = "cache:goods:hash";
+
+  private static final String VERSION_KEY_PREFIX = "cache:goods:hash:version";
+
+  private static final String KEY_SEPARATOR = "::";
+
+  static final String VERSION_FIELD = "_v";
+
+  /** KEYS[1] 哈希，KEYS[2] 计数器；ARGV[1] 加载前的版本号，ARGV[2] 过期时间（毫秒），之后是字段和值 */
+  private static final RedisScript<Long> PUT_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          local current = tonumber(redis.call('GET', KEYS[2]) or '0')
+          if current ~= tonumber(ARGV[1]) then
+            return 0
+          end
+          redis.call('DEL', KEYS[1])
+          redis.call('HSET', KEYS[1], '_v', ARGV[1], unpack(ARGV, 3))
+          redis.call('PEXPIRE', KEYS[1], ARGV[2])
+          return 1
+          """,
+          Long.class);
+
+  /** KEYS[1] 哈希；ARGV[1] 新的版本号，之后是变化了的字段和值 */
+  private static final RedisScript<Long> UPDATE_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          local stored = redis.call('HGET', KEYS[1], '_v')
+          if not stored then
+            return 0
+          end
+          if tonumber(stored) + 1 ~= tonumber(ARGV[1]) then
+            redis.call('DEL', KEYS[1])
+            return -1
+          end
+          redis.call('HSET', KEYS[1], '_v', ARGV[1], unpack(ARGV, 2))
+          return 1
+          """,
+          Long.class);
+
+  /** KEYS[1] 计数器，KEYS[2] 为空或者要删除的哈希；ARGV[1] 计数器的过期时间（毫秒） */
+  private static final RedisScript<Long> NEXT_VERSION_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          local version = redis.call('INCR', KEYS[1])
+          redis.call('PEXPIRE', KEYS[1], ARGV[1])
+          if KEYS[2] then
+            redis.call('DEL', KEYS[2])
+          end
+          return version
+          """,
+          Long.class);
+
+  private final StringRedisTemplate stringRedisTemplate;
+
+  @Getter private final boolean enabled;
+
+  private final RedisCacheWriter.TtlFunction ttlFunction;
+
+  private final long versionTtlMillis;
+
+  /**
+   * @param stringRedisTemplate 用于读写 Redis
+   * @param enabled 是否启用，为 false 时商品仍然以字符串的方式缓存在 cache:goods:id 中
+   * @param ttlFunction 哈希的过期时间
+   * @param maxTimeToLive 哈希最长的过期时间，计数器的过期时间是它的 2 倍
+   */
+  public GoodsHashStore(
+      @NonNull StringRedisTemplate stringRedisTemplate,
+      boolean enabled,
+      @NonNull RedisCacheWriter.TtlFunction ttlFunction,
+      @NonNull Duration maxTimeToLive) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.enabled = enabled;
+    this.ttlFunction = ttlFunction;
+    this.versionTtlMillis = maxTimeToLive.multipliedBy(2).toMillis();
+  }
+
+  /**
+   * 哈希的键
+   *
+   * @param id 商品 id
+   * @return 如：cache:goods:hash::1
+   */
+  public static String keyOf(Integer id) {
+    return GOODS_HASH_CACHE_PREFIX + KEY_SEPARATOR + id;
+  }
+
+  /**
+   * 读取商品
+   *
+   * @param id 商品 id
+   * @return 为 null 表示没有缓存
+   */
+  @Nullable
+  public Goods get(@NonNull Integer id) {
+    return fromHash(stringRedisTemplate.<String, String>opsForHash().entries(keyOf(id)));
+  }
+
+  /**
+   * 用一次 pipeline 读取多个商品
+   *
+   * @param ids 商品 id
+   * @return 与 ids 一一对应，没有缓存的为 null
+   */
+  public List<Goods> multiGet(@NonNull List<Integer> ids) {
+    List<Object> results =
+        stringRedisTemplate.executePipelined(
+            (RedisCallback<Object>)
+                connection -> {
+                  for (Integer id : ids) {
+                    connection.hashCommands().hGetAll(keyOf(id).getBytes(StandardCharsets.UTF_8));
+                  }
+                  return null;
+                });
+    List<Goods> goodsList = new ArrayList<>(ids.size());
+    for (Object result : results) {
+      @SuppressWarnings("unchecked")
+      Map<String, String> hash = result instanceof Map<?, ?> map ? (Map<String, String>) map : null;
+      goodsList.add(fromHash(hash));
+    }
+    return goodsList;
+  }
+
+  /**
+   * 加载前读取当前的版本号，写入时传给 {@link #put}
+   *
+   * @param id 商品 id
+   * @return 版本号，没有修改过时为 0
+   */
+  public long currentVersion(@NonNull Integer id) {
+    String value = stringRedisTemplate.opsForValue().get(versionKeyOf(id));
+    return value == null ? 0 : Long.parseLong(value);
+  }
+
+  /**
+   * 写入从数据库中加载的商品
+   *
+   * @param goods 商品
+   * @param version 加载前的版本号
+   * @return false 表示加载期间商品被修改或删除了，没有写入
+   */
+  public boolean put(@NonNull Goods goods, long version) {
+    Integer id = goods.getId();
+    Long result =
+        stringRedisTemplate.execute(
+            PUT_SCRIPT, List.of(keyOf(id), versionKeyOf(id)), putArgs(goods, version).toArray());
+    return Objects.equals(result, 1L);
+  }
+
+  /**
+   * 批量加载：用一次 MGET 读取版本号、一次 loader 查询数据库、一次 pipeline 写入所有查询到的商品
+   *
+   * @param ids 商品 id
+   * @param loader 查询数据库的函数，如：goodsMapper::selectBatchIds
+   * @return 商品 id 到商品的映射，数据库中不存在的 id 不在其中
+   */
+  public Map<Integer, Goods> loadAll(
+      @NonNull List<Integer> ids, @NonNull Function<List<Integer>, List<Goods>> loader) {
+    // 先读取版本号再查询数据库，与 put 一样
+    List<String> versionKeys = ids.stream().map(GoodsHashStore::versionKeyOf).toList();
+    List<String> versions = stringRedisTemplate.opsForValue().multiGet(versionKeys);
+    Map<Integer, Long> idToVersion = new HashMap<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      String version = versions == null ? null : versions.get(i);
+      idToVersion.put(ids.get(i), version == null ? 0 : Long.parseLong(version));
+    }
+    Map<Integer, Goods> idToGoods = new HashMap<>(ids.size());
+    for (Goods goods : loader.apply(ids)) {
+      idToGoods.put(goods.getId(), goods);
+    }
+    if (idToGoods.isEmpty()) {
+      return idToGoods;
+    }
+    byte[] script = PUT_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+    stringRedisTemplate.executePipelined(
+        (RedisCallback<Object>)
+            connection -> {
+              for (Goods goods : idToGoods.values()) {
+                List<String> keysAndArgs = new ArrayList<>();
+                keysAndArgs.add(keyOf(goods.getId()));
+                keysAndArgs.add(versionKeyOf(goods.getId()));
+                keysAndArgs.addAll(putArgs(goods, idToVersion.get(goods.getId())));
+                connection
+                    .scriptingCommands()
+                    .eval(
+                        script,
+                        ReturnType.INTEGER,
+                        2,
+                        keysAndArgs.stream()
+                            .map(value -> value.getBytes(StandardCharsets.UTF_8))
+                            .toArray(byte[][]::new));
+              }
+              return null;
+            });
+    return idToGoods;
+  }
+
+  /** PUT_SCRIPT 的 ARGV */
+  private List<String> putArgs(Goods goods, long version) {
+    long ttlMillis = ttlFunction.getTimeToLive(keyOf(goods.getId()), goods).toMillis();
+    List<String> args = new ArrayList<>();
+    args.add(String.valueOf(version));
+    args.add(String.valueOf(ttlMillis));
+    toHash(goods)
+        .forEach(
+            (field, value) -> {
+              args.add(field);
+              args.add(value);
+            });
+    return args;
+  }
+
+  /**
+   * 分配新的版本号，必须在数据库事务中、修改数据之后调用
+   *
+   * @param id 商品 id
+   * @return 新的版本号
+   */
+  public long nextVersion(@NonNull Integer id) {
+    Long version =
+        stringRedisTemplate.execute(
+            NEXT_VERSION_SCRIPT, List.of(versionKeyOf(id)), String.valueOf(versionTtlMillis));
+    return Objects.requireNonNull(version);
+  }
+
+  /**
+   * 把变化了的字段写入哈希，事务提交后调用
+   *
+   * @param id 商品 id
+   * @param changedFields 变化了的字段，详见 {@link #updatedFields}
+   * @param version {@link #nextVersion} 分配的版本号
+   * @return 1 表示已写入；0 表示没有缓存，不需要写入；-1 表示版本号不连续，已删除整个哈希
+   */
+  public long update(
+      @NonNull Integer id, @NonNull Map<String, String> changedFields, long version) {
+    List<String> args = new ArrayList<>();
+    args.add(String.valueOf(version));
+    changedFields.forEach(
+        (field, value) -> {
+          args.add(field);
+          args.add(value);
+        });
+    Long result = stringRedisTemplate.execute(UPDATE_SCRIPT, List.of(keyOf(id)), args.toArray());
+    if (Objects.equals(result, -1L)) {
+      log.info("商品 {} 的版本号 {} 不连续，已删除缓存", id, version);
+    }
+    return result == null ? 0 : result;
+  }
+
+  /**
+   * 删除商品后调用，版本号加 1 并删除哈希，正在加载的旧数据不会再被写入
+   *
+   * @param id 商品 id
+   */
+  public void invalidate(@NonNull Integer id) {
+    stringRedisTemplate.execute(
+        NEXT_VERSION_SCRIPT,
+        List.of(versionKeyOf(id), keyOf(id)),
+        String.valueOf(versionTtlMillis));
+  }
+
+  /**
+   * updateById 写入了的字段，即修改后要写入哈希的字段 <br>
+   * updateById 不会修改为 null 的字段，所以这些字段不写入，哈希中保留原来的值；stock 是基本类型，总是会被写入
+   *
+   * @param after 修改后的商品（即传给 updateById 的参数）
+   * @return 字段名到新的值的映射，不包括 id
+   */
+  public static Map<String, String> updatedFields(@NonNull Goods after) {
+    Map<String, String> fields = toHash(after);
+    fields.remove("id");
+    return fields;
+  }
+
+  /**
+   * 商品转换为哈希，为 null 的字段不写入
+   *
+   * @param goods 商品
+   * @return 字段名到值的映射
+   */
+  static Map<String, String> toHash(Goods goods) {
+    Map<String, String> hash = new LinkedHashMap<>();
+    putIfNotNull(hash, "id", goods.getId());
+    putIfNotNull(hash, "storeId", goods.getStoreId());
+    putIfNotNull(hash, "name", goods.getName());
+    hash.put("stock", String.valueOf(goods.getStock()));
+    if (goods.getPrice() != null) {
+      hash.put("price", goods.getPrice().toPlainString());
+    }
+    return hash;
+  }
+
+  /**
+   * 哈希转换为商品
+   *
+   * @param hash 字段名到值的映射，没有版本号时说明哈希不存在（或者只剩下部分字段）
+   * @return 商品，为 null 表示没有缓存
+   */
+  @Nullable
+  static Goods fromHash(@Nullable Map<String, String> hash) {
+    if (hash == null || !hash.containsKey(VERSION_FIELD)) {
+      return null;
+    }
+    Goods goods = new Goods();
+    goods.setId(parseInteger(hash.get("id")));
+    goods.setStoreId(parseInteger(hash.get("storeId")));
+    goods.setName(hash.get("name"));
+    goods.setStock(Integer.parseInt(hash.getOrDefault("stock", "0")));
+    String price = hash.get("price");
+    goods.setPrice(price == null ? null : new BigDecimal(price));
+    return goods;
+  }
+
+  private static void putIfNotNull(Map<String, String> hash, String field, Object value) {
+    if (value != null) {
+      hash.put(field, String.valueOf(value));
+    }
+  }
+
+  private static Integer parseInteger(String value) {
+    return value == null ? null : Integer.valueOf(value);
+  }
+
+  private static String versionKeyOf(Integer id) {
+    return VERSION_KEY_PREFIX + KEY_SEPARATOR + id;
+  }
+}
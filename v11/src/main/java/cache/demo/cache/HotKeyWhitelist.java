@@ -0,0 +1,127 @@
+package cache.demo.cache;
+
+import cache.demo.util.JmxUtil;
+import cn.hutool.cache.impl.TimedCache;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import lombok.NonNull;
+
+/**
+ * 热点键白名单，白名单中的键使用逻辑过期，详见 {@link LogicalExpiryCache}
+ *
+ * <pre>
+ * 有两种方式加入白名单：
+ * 1. 手动加入：配置文件中的 cache.logical-expiry.whitelist ，或者运行时通过 JMX 调用 {@link #add}，直到调用 {@link #remove}
+ * 2. 自动加入：热点键统计（{@link RefreshAheadScheduler}）每个周期把最热的键交给 {@link #promote}，
+ *    在 promoteTtl 内没有再次被选中的键会自动移出白名单
+ * 移出白名单时通知移除监听器，由它删除 Redis 中没有过期时间的逻辑过期副本，避免副本一直留在 Redis 中。
+ * 键统一转为字符串，这样通过 JMX 加入的 "1" 和缓存中的 1 是同一个键。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class HotKeyWhitelist implements HotKeyWhitelistMBean {
+  private final Map<String, Set<String>> nameToKeys = new ConcurrentHashMap<>();
+
+  private final Map<String, TimedCache<String, Boolean>> nameToPromotedKeys =
+      new ConcurrentHashMap<>();
+
+  private final long promoteTtlMillis;
+
+  /** 移出白名单时的回调，参数是缓存名称和键 */
+  private volatile BiConsumer<String, String> removalListener = (cacheName, key) -> {};
+
+  /**
+   * @param initialKeys 手动加入的键，缓存名称到键的映射
+   * @param promoteTtl 自动加入的键在白名单中保留多久（毫秒）
+   */
+  public HotKeyWhitelist(
+      @NonNull Map<String, ? extends Collection<String>> initialKeys, long promoteTtl) {
+    this.promoteTtlMillis = promoteTtl;
+    initialKeys.forEach((cacheName, keys) -> keys.forEach(key -> add(cacheName, key)));
+    JmxUtil.register("HotKeyWhitelist", "default", this, HotKeyWhitelistMBean.class);
+  }
+
+  /**
+   * 是否在白名单中
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param key 缓存的键（不带前缀），如商品 id
+   * @return true 表示在
+   */
+  public boolean contains(String cacheName, Object key) {
+    String stringKey = String.valueOf(key);
+    Set<String> keys = nameToKeys.get(cacheName);
+    if (keys != null && keys.contains(stringKey)) {
+      return true;
+    }
+    TimedCache<String, Boolean> promotedKeys = nameToPromotedKeys.get(cacheName);
+    return promotedKeys != null && promotedKeys.containsKey(stringKey);
+  }
+
+  @Override
+  public void add(String cacheName, String key) {
+    nameToKeys.computeIfAbsent(cacheName, name -> ConcurrentHashMap.newKeySet()).add(key);
+  }
+
+  @Override
+  public void remove(String cacheName, String key) {
+    Set<String> keys = nameToKeys.get(cacheName);
+    boolean removed = keys != null && keys.remove(key);
+    TimedCache<String, Boolean> promotedKeys = nameToPromotedKeys.get(cacheName);
+    if (promotedKeys != null && promotedKeys.containsKey(key)) {
+      // 通过 TimedCache 的监听器通知
+      promotedKeys.remove(key);
+      return;
+    }
+    if (removed) {
+      removalListener.accept(cacheName, key);
+    }
+  }
+
+  @Override
+  public List<String> list(String cacheName) {
+    Set<String> keys = new TreeSet<>(nameToKeys.getOrDefault(cacheName, Set.of()));
+    TimedCache<String, Boolean> promotedKeys = nameToPromotedKeys.get(cacheName);
+    if (promotedKeys != null) {
+      promotedKeys.keySet().forEach(keys::add);
+    }
+    return new ArrayList<>(keys);
+  }
+
+  /**
+   * 自动加入白名单，已经在白名单中的键会重新计时
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param keys 缓存的键（不带前缀）
+   */
+  public void promote(String cacheName, Collection<?> keys) {
+    TimedCache<String, Boolean> promotedKeys =
+        nameToPromotedKeys.computeIfAbsent(cacheName, this::newPromotedKeys);
+    keys.forEach(key -> promotedKeys.put(String.valueOf(key), Boolean.TRUE));
+  }
+
+  /**
+   * 设置移出白名单时的回调
+   *
+   * @param removalListener 参数是缓存名称和键
+   */
+  public void setRemovalListener(@NonNull BiConsumer<String, String> removalListener) {
+    this.removalListener = removalListener;
+  }
+
+  private TimedCache<String, Boolean> newPromotedKeys(String cacheName) {
+    TimedCache<String, Boolean> promotedKeys = new TimedCache<>(promoteTtlMillis);
+    promotedKeys.setListener(
+        (key, value) -> {
+          // 手动加入的键仍然在白名单中
+          Set<String> keys = nameToKeys.get(cacheName);
+          if (keys == null || !keys.contains(key)) {
+            removalListener.accept(cacheName, key);
+          }
+        });
+    promotedKeys.schedulePrune(promoteTtlMillis);
+    return promotedKeys;
+  }
+}
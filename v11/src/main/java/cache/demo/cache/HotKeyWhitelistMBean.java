@@ -0,0 +1,35 @@
+package cache.demo.cache;
+
+import java.util.List;
+
+/**
+ * 热点键白名单（JMX 接口），可以在运行时增加和删除
+ *
+ * @author Camio1945
+ */
+public interface HotKeyWhitelistMBean {
+
+  /**
+   * 加入白名单
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param key 缓存的键（不带前缀），如商品 id
+   */
+  void add(String cacheName, String key);
+
+  /**
+   * 从白名单中删除（包括自动加入的），并删除 Redis 中的逻辑过期副本
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param key 缓存的键（不带前缀），如商品 id
+   */
+  void remove(String cacheName, String key);
+
+  /**
+   * 白名单中的键
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @return 手动加入和自动加入的键
+   */
+  List<String> list(String cacheName);
+}
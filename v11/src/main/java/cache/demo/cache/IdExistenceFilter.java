@@ -0,0 +1,216 @@
+package cache.demo.cache;
+
+import cache.demo.util.IdBitmap;
+import cn.hutool.core.util.IdUtil;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * id 存在性过滤器，用 {@link IdBitmap} 记录数据库中存在的 id ，用 {@link IdHighWaterMark} 记录集群中最大的 id <br>
+ * 位图中没有的 id 直接返回 null ，不查询 Redis 和数据库，也就不需要再缓存空值了。
+ *
+ * <pre>
+ * 项目启动时从数据库中加载所有的 id（{@link #rebuild}），加载完成之前只根据高水位判断。
+ * 新增和删除数据后调用 {@link #add} 和 {@link #remove} ，并通过 Redis 的发布订阅通知其他节点。
+ * 加载期间发生的新增和删除会先记录下来，加载完成后再应用到新的位图上，避免被加载前的查询结果覆盖。
+ * 其他节点新增的 id 在消息到达之前不在本节点的位图中，所以大于位图中最大 id 、但不大于高水位的 id 也被认为可能存在，
+ * 高水位与新增的 id 在同一个 Lua 脚本中发布，大于本地副本的 id 会先阻塞地从 Redis 读取最新的高水位再判断，
+ * 所以已经提交的新增数据不会被误判为不存在。
+ * 消息格式（每行一个）：发送消息的节点 id 、过滤器的名称、 +id 或 -id
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Slf4j
+public class IdExistenceFilter {
+  /** id 变化消息的频道 */
+  public static final String CHANNEL = "cache:id:bitmap";
+
+  private static final String LINE_SEPARATOR = "\n";
+
+  private static final String NODE_ID = IdUtil.fastSimpleUUID();
+
+  @Getter private final String name;
+
+  private final Supplier<Collection<Integer>> idsLoader;
+
+  private final StringRedisTemplate stringRedisTemplate;
+
+  @Getter private final IdHighWaterMark highWaterMark;
+
+  @Getter private final boolean enabled;
+
+  private volatile IdBitmap bitmap;
+
+  /** 位图中见过的最大 id */
+  private volatile int bitmapMaxId = -1;
+
+  /** 加载期间发生的变化，正数表示新增，负数表示删除（用 ~id 表示，这样 id 为 0 时也能区分） */
+  private List<Integer> pendingChanges;
+
+  /**
+   * @param name 名称，如：goods
+   * @param idsLoader 从数据库中加载所有 id 的函数
+   * @param stringRedisTemplate 用于发布 id 变化的消息
+   * @param highWaterMark 集群中最大的 id
+   * @param enabled 是否启用，不启用时所有的 id 都被认为可能存在
+   */
+  public IdExistenceFilter(
+      @NonNull String name,
+      @NonNull Supplier<Collection<Integer>> idsLoader,
+      @NonNull StringRedisTemplate stringRedisTemplate,
+      @NonNull IdHighWaterMark highWaterMark,
+      boolean enabled) {
+    this.name = name;
+    this.idsLoader = idsLoader;
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.highWaterMark = highWaterMark;
+    this.enabled = enabled;
+  }
+
+  /**
+   * id 是否可能存在
+   *
+   * @param id id
+   * @return false 表示数据库中一定没有这个 id ；未启用时总是返回 true ；位图还没有加载完成时，只根据高水位判断
+   */
+  public boolean mightExist(Integer id) {
+    if (!enabled) {
+      return true;
+    }
+    IdBitmap currentBitmap = bitmap;
+    if (id == null) {
+      return currentBitmap == null;
+    }
+    if (!highWaterMark.mightContain(id)) {
+      return false;
+    }
+    return currentBitmap == null || id > bitmapMaxId || currentBitmap.contains(id);
+  }
+
+  /**
+   * 是否已经加载完成，加载完成后查询结果为 null 时不需要缓存空值
+   *
+   * @return true 表示加载完成
+   */
+  public boolean isReady() {
+    return bitmap != null;
+  }
+
+  /** 从数据库中加载所有的 id ，替换当前的位图 */
+  public void rebuild() {
+    if (!enabled) {
+      return;
+    }
+    synchronized (this) {
+      pendingChanges = new ArrayList<>();
+    }
+    long start = System.currentTimeMillis();
+    IdBitmap newBitmap = new IdBitmap();
+    int maxId = -1;
+    try {
+      for (Integer id : idsLoader.get()) {
+        newBitmap.add(id);
+        maxId = Math.max(maxId, id);
+      }
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        pendingChanges = null;
+      }
+      throw e;
+    }
+    // 先更新高水位，位图生效后，不大于高水位的新 id 都能被正确判断
+    highWaterMark.advance(maxId);
+    synchronized (this) {
+      for (int change : pendingChanges) {
+        if (change >= 0) {
+          newBitmap.add(change);
+          maxId = Math.max(maxId, change);
+        } else {
+          newBitmap.remove(~change);
+        }
+      }
+      pendingChanges = null;
+      bitmapMaxId = Math.max(bitmapMaxId, maxId);
+      bitmap = newBitmap;
+    }
+    log.info(
+        "{} 的 id 位图加载完成，共 {} 个 id ，占用 {} 字节，高水位 {} ，耗时 {} ms",
+        name,
+        newBitmap.getCardinality(),
+        newBitmap.getSizeInBytes(),
+        highWaterMark.getLocalValue(),
+        System.currentTimeMillis() - start);
+  }
+
+  /**
+   * 新增数据后调用，并通知其他节点
+   *
+   * @param id 新增的 id
+   */
+  public void add(int id) {
+    if (enabled) {
+      apply(id);
+      highWaterMark.advance(id);
+      publish("+" + id);
+    }
+  }
+
+  /**
+   * 删除数据后调用，并通知其他节点
+   *
+   * @param id 删除的 id
+   */
+  public void remove(int id) {
+    if (enabled) {
+      apply(~id);
+      publish("-" + id);
+    }
+  }
+
+  /**
+   * 处理其他节点发来的消息，每个节点都会收到所有过滤器的消息，名称不一致的会被忽略
+   *
+   * @param message 消息，格式见类的注释
+   */
+  public void onMessage(String message) {
+    String[] lines = message.split(LINE_SEPARATOR);
+    if (!enabled || lines.length != 3 || NODE_ID.equals(lines[0]) || !name.equals(lines[1])) {
+      return;
+    }
+    int id = Integer.parseInt(lines[2].substring(1));
+    apply(lines[2].charAt(0) == '+' ? id : ~id);
+  }
+
+  private synchronized void apply(int change) {
+    if (pendingChanges != null) {
+      pendingChanges.add(change);
+    }
+    IdBitmap currentBitmap = bitmap;
+    if (currentBitmap == null) {
+      return;
+    }
+    if (change >= 0) {
+      currentBitmap.add(change);
+      bitmapMaxId = Math.max(bitmapMaxId, change);
+    } else {
+      currentBitmap.remove(~change);
+    }
+  }
+
+  private void publish(String change) {
+    try {
+      String message = String.join(LINE_SEPARATOR, NODE_ID, name, change);
+      stringRedisTemplate.convertAndSend(CHANNEL, message);
+    } catch (RuntimeException e) {
+      // 发布失败时，其他节点的位图会在下次重新加载时修正
+      log.warn("发布 id 变化消息失败：{} {}", name, change, e);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package cache.demo.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+/**
+ * 集群共享的最大 id（高水位），保存在 Redis 中，每个节点在本地保存一份副本 <br>
+ * 大于高水位的 id 在数据库中一定不存在，不需要查询 Redis 和数据库。
+ *
+ * <pre>
+ * 新增数据后用 Lua 脚本原子地更新最大值，值变大时在同一个脚本中发布消息，所有节点收到后更新本地副本，
+ * 所以判断时只使用本地副本，不会阻塞地访问 Redis 。
+ * 本地副本可能因为消息延迟或丢失而偏小，所以遇到大于本地副本的 id 时，会在后台从 Redis 读取最新的值，
+ * 两次读取的间隔不小于 refreshInterval 。
+ * 代价是其他节点刚新增的 id ，在消息到达（或后台读取完成）之前的很短时间内会被判断为不存在，
+ * 这个延迟通常只有几毫秒，是可以接受的。
+ * 高水位只增不减，删除最大的 id 后不会变小。
+ * 消息格式（每行一个）：Redis 的键、最新的值
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Slf4j
+public class IdHighWaterMark {
+  /** 高水位变化消息的频道 */
+  public static final String CHANNEL = "cache:id:high-water-mark";
+
+  private static final String KEY_PREFIX = "cache:id:high-water-mark:";
+
+  private static final String LINE_SEPARATOR = "\n";
+
+  private static final RedisScript<Long> ADVANCE_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          local current = tonumber(redis.call('GET', KEYS[1]) or '-1')
+          local candidate = tonumber(ARGV[1])
+          if candidate > current then
+            redis.call('SET', KEYS[1], ARGV[1])
+            redis.call('PUBLISH', ARGV[2], KEYS[1] .. '\\n' .. ARGV[1])
+            return candidate
+          end
+          return current
+          """,
+          Long.class);
+
+  private final String key;
+
+  private final StringRedisTemplate stringRedisTemplate;
+
+  /** 本地副本，为 -1 表示还不知道 */
+  private final AtomicLong localValue = new AtomicLong(-1);
+
+  /** 两次从 Redis 读取的最小间隔 */
+  private final long refreshIntervalNanos;
+
+  /** 在后台从 Redis 读取 */
+  private final Executor executor;
+
+  /** 上次从 Redis 读取的时间 */
+  private final AtomicLong lastRefreshNanos;
+
+  /**
+   * @param name 名称，如：goods
+   * @param stringRedisTemplate 用于读写 Redis
+   * @param refreshInterval 两次从 Redis 读取的最小间隔
+   * @param executor 在后台从 Redis 读取
+   */
+  public IdHighWaterMark(
+      @NonNull String name,
+      @NonNull StringRedisTemplate stringRedisTemplate,
+      @NonNull Duration refreshInterval,
+      @NonNull Executor executor) {
+    this.key = KEY_PREFIX + name;
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.refreshIntervalNanos = refreshInterval.toNanos();
+    this.executor = executor;
+    this.lastRefreshNanos = new AtomicLong(System.nanoTime() - refreshIntervalNanos);
+  }
+
+  /**
+   * id 是否不大于高水位
+   *
+   * @param id id
+   * @return false 表示 id 大于本地副本，数据库中不存在或者刚在其他节点新增；还不知道高水位时返回 true
+   */
+  public boolean mightContain(int id) {
+    long current = localValue.get();
+    if (current < 0 || id <= current) {
+      return true;
+    }
+    refreshIfDue();
+    return false;
+  }
+
+  /**
+   * 新增数据或加载完所有 id 后调用，如果 id 比高水位大，则更新高水位并通知其他节点
+   *
+   * @param id id
+   */
+  public void advance(long id) {
+    try {
+      Long value =
+          stringRedisTemplate.execute(
+              ADVANCE_SCRIPT, List.of(key), String.valueOf(id), CHANNEL);
+      raise(value == null ? id : value);
+    } catch (RuntimeException e) {
+      // 更新失败时本地仍然使用新的值，其他节点会在遇到这个 id 时从 Redis 读取，或者等下次更新
+      raise(id);
+      log.warn("更新高水位失败：{} {}", key, id, e);
+    }
+  }
+
+  /**
+   * 处理高水位变化的消息，键不一致的会被忽略
+   *
+   * @param message 消息，格式见类的注释
+   */
+  public void onMessage(String message) {
+    String[] lines = message.split(LINE_SEPARATOR);
+    if (lines.length == 2 && key.equals(lines[0])) {
+      raise(Long.parseLong(lines[1]));
+    }
+  }
+
+  /**
+   * 本地副本的值
+   *
+   * @return 为 -1 表示还不知道
+   */
+  public long getLocalValue() {
+    return localValue.get();
+  }
+
+  /** 距离上次读取超过 refreshInterval 时，在后台从 Redis 读取最新的值，同时到达的线程只有一个会发起 */
+  private void refreshIfDue() {
+    long now = System.nanoTime();
+    long last = lastRefreshNanos.get();
+    if (now - last < refreshIntervalNanos || !lastRefreshNanos.compareAndSet(last, now)) {
+      return;
+    }
+    try {
+      executor.execute(this::read);
+    } catch (RuntimeException e) {
+      log.warn("提交高水位读取任务失败：{}", key, e);
+    }
+  }
+
+  private void read() {
+    try {
+      String value = stringRedisTemplate.opsForValue().get(key);
+      if (value != null) {
+        raise(Long.parseLong(value));
+      }
+    } catch (RuntimeException e) {
+      log.warn("读取高水位失败：{}", key, e);
+    }
+  }
+
+  private void raise(long value) {
+    localValue.accumulateAndGet(value, Math::max);
+  }
+}
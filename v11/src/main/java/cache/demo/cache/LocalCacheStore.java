@@ -0,0 +1,39 @@
+package cache.demo.cache;
+
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.lang.Nullable;
+
+/**
+ * 一级缓存的存储，详见 {@link TwoLevelCache} <br>
+ * 键是 Redis 中 :: 后面的部分，如 cache:goods:id::1 中的 1
+ *
+ * @author Camio1945
+ */
+public interface LocalCacheStore {
+  /**
+   * 获取值
+   *
+   * @param key 键
+   * @return 没有缓存时返回 null ，缓存的是 null 时返回值为 null 的 ValueWrapper
+   */
+  @Nullable
+  ValueWrapper get(String key);
+
+  /**
+   * 放入值，存储可以因为容量或格式的原因不保存，但必须保证之后不会读到旧值
+   *
+   * @param key 键
+   * @param value 值，可以为 null
+   */
+  void put(String key, @Nullable Object value);
+
+  /**
+   * 删除值
+   *
+   * @param key 键
+   */
+  void remove(String key);
+
+  /** 清空 */
+  void clear();
+}
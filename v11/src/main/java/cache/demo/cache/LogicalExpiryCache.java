@@ -0,0 +1,213 @@
+package cache.demo.cache;
+
+import cache.demo.util.DistributedSingleFlight;
+import cache.demo.util.SingleFlightUtil;
+import cn.hutool.core.util.IdUtil;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.lang.Nullable;
+
+/**
+ * 逻辑过期的缓存，只对 {@link HotKeyWhitelist} 中的极热点键生效 <br>
+ * 这些键在 Redis 中另外保存一份没有过期时间的副本，值中带有逻辑过期时间，逻辑过期后仍然返回旧值，
+ * 同时由一个节点在后台重新加载，热点键不会因为过期而被击穿。
+ *
+ * <pre>
+ * 副本保存在另一个缓存中，名称是主缓存的名称加上 {@link #HOT_SUFFIX}，如：cache:goods:id:hot::1 ，值是 {@link LogicalExpiryValue}。
+ * 主缓存的值不变，所以 multiGet 等直接读取主缓存的代码不受影响。
+ * 读取（只针对白名单中的键，其他键直接读取主缓存）：
+ *   副本存在且没有逻辑过期：直接返回
+ *   副本存在但已经逻辑过期：返回旧值，并尝试获取 Redis 租约（键是 lock: 加上副本的键），拿到租约的节点在单飞中重新加载，
+ *     结果用 {@link CacheRefreshWriter} 在副本仍然存在时写入（同时更新主缓存和副本），加载期间数据被修改时不写入；
+ *     拿不到租约说明其他节点正在重新加载，直接返回旧值
+ *   副本不存在：读取主缓存，命中时写入副本（刚被加入白名单，或者数据被修改后副本被删除了）
+ * 写入：白名单中的键值不为 null 时同时写入副本；删除和清空时总是删除副本，数据被修改后不会再返回旧值。
+ * 移出白名单时由 {@link TwoLevelCacheManager} 删除副本，直接用 RedisTemplate 删除缓存时需要同时删除副本，
+ * 详见 {@link TwoLevelCacheManager#withShadowKeys}。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Slf4j
+public class LogicalExpiryCache implements Cache {
+  /** 逻辑过期副本缓存名称的后缀 */
+  public static final String HOT_SUFFIX = ":hot";
+
+  private static final String LOCK_KEY_PREFIX = "lock:";
+
+  private static final String REBUILD_KEY_PREFIX = "rebuild:";
+
+  private static final String KEY_SEPARATOR = "::";
+
+  private static final String NODE_ID = IdUtil.fastSimpleUUID();
+
+  private final Cache cache;
+
+  private final Cache hotCache;
+
+  private final TwoLevelCacheManager cacheManager;
+
+  private final HotKeyWhitelist whitelist;
+
+  private final DistributedSingleFlight.LeaseStore leaseStore;
+
+  private final long logicalTtlMillis;
+
+  private final Duration leaseTime;
+
+  /**
+   * @param cache 主缓存
+   * @param hotCache 副本缓存，不设置过期时间
+   * @param cacheManager 缓存管理器，用于获取加载函数和放入加载后的值
+   * @param whitelist 白名单
+   * @param leaseStore 租约存储，保证同一个键同时只有一个节点重新加载
+   * @param logicalTtl 逻辑过期时间
+   * @param leaseTime 租约时长，应该大于一次重新加载的耗时
+   */
+  public LogicalExpiryCache(
+      @NonNull Cache cache,
+      @NonNull Cache hotCache,
+      @NonNull TwoLevelCacheManager cacheManager,
+      @NonNull HotKeyWhitelist whitelist,
+      @NonNull DistributedSingleFlight.LeaseStore leaseStore,
+      @NonNull Duration logicalTtl,
+      @NonNull Duration leaseTime) {
+    this.cache = cache;
+    this.hotCache = hotCache;
+    this.cacheManager = cacheManager;
+    this.whitelist = whitelist;
+    this.leaseStore = leaseStore;
+    this.logicalTtlMillis = logicalTtl.toMillis();
+    this.leaseTime = leaseTime;
+  }
+
+  @Override
+  @NonNull
+  public String getName() {
+    return cache.getName();
+  }
+
+  @Override
+  @NonNull
+  public Object getNativeCache() {
+    return cache.getNativeCache();
+  }
+
+  @Override
+  @Nullable
+  public ValueWrapper get(@NonNull Object key) {
+    if (!whitelist.contains(getName(), key)) {
+      return cache.get(key);
+    }
+    if (hotCache.get(key, LogicalExpiryValue.class) instanceof LogicalExpiryValue hotValue) {
+      if (System.currentTimeMillis() >= hotValue.getExpireAt()) {
+        rebuild(key);
+      }
+      return new SimpleValueWrapper(hotValue.getValue());
+    }
+    ValueWrapper valueWrapper = cache.get(key);
+    if (valueWrapper != null && valueWrapper.get() != null) {
+      putHot(key, valueWrapper.get());
+    }
+    return valueWrapper;
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+    ValueWrapper valueWrapper = get(key);
+    Object value = valueWrapper == null ? null : valueWrapper.get();
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException("缓存中的值不是 [" + type.getName() + "] 类型：" + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+    ValueWrapper valueWrapper = get(key);
+    if (valueWrapper != null) {
+      return (T) valueWrapper.get();
+    }
+    T value;
+    try {
+      value = valueLoader.call();
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    }
+    put(key, value);
+    return value;
+  }
+
+  @Override
+  public void put(@NonNull Object key, @Nullable Object value) {
+    cache.put(key, value);
+    if (value != null && whitelist.contains(getName(), key)) {
+      putHot(key, value);
+    }
+  }
+
+  @Override
+  public void evict(@NonNull Object key) {
+    cache.evict(key);
+    hotCache.evict(key);
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+    hotCache.clear();
+  }
+
+  private void putHot(Object key, Object value) {
+    hotCache.put(key, new LogicalExpiryValue(value, System.currentTimeMillis() + logicalTtlMillis));
+  }
+
+  private void rebuild(Object key) {
+    Function<Object, Object> loader = cacheManager.getRefreshLoader(getName());
+    if (loader == null) {
+      return;
+    }
+    String hotRedisKey = hotCache.getName() + KEY_SEPARATOR + key;
+    String leaseKey = LOCK_KEY_PREFIX + hotRedisKey;
+    String token = NODE_ID + ":" + Thread.currentThread().threadId();
+    SingleFlightUtil.executeAsync(
+            REBUILD_KEY_PREFIX + hotRedisKey,
+            () -> {
+              if (!leaseStore.tryAcquire(leaseKey, token, leaseTime)) {
+                return null;
+              }
+              // 加载失败时不释放租约，租约过期之前所有节点都不再重试，避免数据库不可用时每次读取都去查询
+              Object value = loader.apply(key);
+              try {
+                if (value == null) {
+                  // 数据已经被删除
+                  hotCache.evict(key);
+                  return null;
+                }
+                // 副本仍然存在时才写入，加载期间数据被修改（副本被删除）时不会把旧值写回去
+                cacheManager
+                    .getRefreshWriter()
+                    .putIfPresent(getName(), hotCache.getName(), Map.of(key, value));
+                return value;
+              } finally {
+                leaseStore.release(leaseKey, token);
+              }
+            })
+        .exceptionally(
+            e -> {
+              // 副本仍然是逻辑过期的，租约过期后的读取会再次尝试
+              log.warn("逻辑过期的热点键重新加载失败，继续使用旧值：{}", hotRedisKey, e);
+              return null;
+            });
+  }
+}
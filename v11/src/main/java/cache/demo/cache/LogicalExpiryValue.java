@@ -0,0 +1,21 @@
+package cache.demo.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 带逻辑过期时间的值，详见 {@link LogicalExpiryCache}
+ *
+ * @author Camio1945
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LogicalExpiryValue {
+  /** 缓存的值 */
+  private Object value;
+
+  /** 逻辑过期时间（毫秒时间戳），过期后仍然返回这个值，同时在后台重新加载 */
+  private long expireAt;
+}
@@ -0,0 +1,139 @@
+package cache.demo.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import lombok.NonNull;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.lang.Nullable;
+
+/**
+ * 堆内的 LRU 一级缓存，键的数量或者值的总字节数超过上限后淘汰最近最少使用的 <br>
+ * 每个值的字节数由 sizer 估算（如序列化后的长度），值的大小差别很大时，只限制键的数量无法控制占用的内存。
+ *
+ * @author Camio1945
+ */
+public class LruLocalCacheStore implements LocalCacheStore {
+  private final int maxSize;
+
+  private final long maxBytes;
+
+  private final long ttlMillis;
+
+  private final ToIntFunction<Object> sizer;
+
+  /** 按访问顺序排列，最近最少使用的在最前面，读写都要持有 this 的锁 */
+  private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** 所有值的字节数之和 */
+  private long totalBytes;
+
+  /**
+   * @param maxSize 最多缓存多少个键
+   * @param maxBytes 所有值最多占用多少字节，为 0 表示不限制
+   * @param ttlMillis 过期时间（毫秒），为 0 表示不过期
+   * @param sizer 估算一个值占用的字节数，值可能为 null
+   */
+  public LruLocalCacheStore(
+      int maxSize, long maxBytes, long ttlMillis, @NonNull ToIntFunction<Object> sizer) {
+    this.maxSize = maxSize;
+    this.maxBytes = maxBytes;
+    this.ttlMillis = ttlMillis;
+    this.sizer = sizer;
+  }
+
+  @Override
+  @Nullable
+  public synchronized ValueWrapper get(String key) {
+    Entry entry = cache.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.isExpired(System.currentTimeMillis())) {
+      removeEntry(key);
+      return null;
+    }
+    return entry.valueWrapper();
+  }
+
+  @Override
+  public void put(String key, @Nullable Object value) {
+    // 在锁外估算大小，序列化比较慢
+    int bytes = maxBytes > 0 ? sizer.applyAsInt(value) : 0;
+    long expireAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+    synchronized (this) {
+      if (bytes > maxBytes && maxBytes > 0) {
+        // 放不下的值不缓存，但不能再读到旧值
+        removeEntry(key);
+        return;
+      }
+      Entry old = cache.put(key, new Entry(new SimpleValueWrapper(value), bytes, expireAt));
+      if (old != null) {
+        totalBytes -= old.bytes();
+      }
+      totalBytes += bytes;
+      evict();
+    }
+  }
+
+  @Override
+  public synchronized void remove(String key) {
+    removeEntry(key);
+  }
+
+  @Override
+  public synchronized void clear() {
+    cache.clear();
+    totalBytes = 0;
+  }
+
+  /**
+   * 所有值的字节数之和
+   *
+   * @return 字节数，没有限制字节数时为 0
+   */
+  public synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * 缓存了多少个键（包括已经过期但还没有被删除的）
+   *
+   * @return 键的数量
+   */
+  public synchronized int size() {
+    return cache.size();
+  }
+
+  private void removeEntry(String key) {
+    Entry old = cache.remove(key);
+    if (old != null) {
+      totalBytes -= old.bytes();
+    }
+  }
+
+  /** 从最近最少使用的开始淘汰，直到不超过上限 */
+  private void evict() {
+    Iterator<Map.Entry<String, Entry>> iterator = cache.entrySet().iterator();
+    while (iterator.hasNext()
+        && (cache.size() > maxSize || (maxBytes > 0 && totalBytes > maxBytes))) {
+      totalBytes -= iterator.next().getValue().bytes();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * 缓存的值
+   *
+   * @param valueWrapper 值
+   * @param bytes 估算的字节数
+   * @param expireAt 过期的时间戳（毫秒）
+   */
+  private record Entry(ValueWrapper valueWrapper, int bytes, long expireAt) {
+    boolean isExpired(long now) {
+      return now >= expireAt;
+    }
+  }
+}
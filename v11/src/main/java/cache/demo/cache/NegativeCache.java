@@ -0,0 +1,103 @@
+package cache.demo.cache;
+
+import cache.demo.util.JmxUtil;
+import cn.hutool.cache.impl.LRUCache;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+/**
+ * 空值缓存，记录数据库中不存在的键，详见 {@link NegativeCachingCache} <br>
+ * 只保存键（值固定是 true），有单独的容量上限和较短的过期时间，超过容量后淘汰最近最少使用的。
+ *
+ * @author Camio1945
+ */
+public class NegativeCache implements NegativeCacheMBean {
+  @Getter private final String cacheName;
+
+  @Getter private final int maxSize;
+
+  @Getter private final long ttlMillis;
+
+  private final LRUCache<String, Boolean> keys;
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  private final LongAdder putCount = new LongAdder();
+
+  /**
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param maxSize 最多缓存多少个键
+   * @param ttlMillis 过期时间（毫秒）
+   */
+  public NegativeCache(String cacheName, int maxSize, long ttlMillis) {
+    this.cacheName = cacheName;
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+    this.keys = new LRUCache<>(maxSize, ttlMillis);
+    JmxUtil.register("NegativeCache", cacheName, this, NegativeCacheMBean.class);
+  }
+
+  /**
+   * 是否缓存了这个键，会记录命中和未命中的次数
+   *
+   * @param localKey 键，与 Redis 中 :: 后面的部分一致
+   * @return true 表示数据库中没有这个键对应的数据
+   */
+  public boolean contains(String localKey) {
+    if (keys.containsKey(localKey)) {
+      hitCount.increment();
+      return true;
+    }
+    missCount.increment();
+    return false;
+  }
+
+  public void put(String localKey) {
+    keys.put(localKey, Boolean.TRUE);
+    putCount.increment();
+  }
+
+  public void remove(String localKey) {
+    keys.remove(localKey);
+  }
+
+  public void clear() {
+    keys.clear();
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  @Override
+  public double getHitRatio() {
+    long hits = hitCount.sum();
+    long total = hits + missCount.sum();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  @Override
+  public long getPutCount() {
+    return putCount.sum();
+  }
+
+  @Override
+  public int getSize() {
+    return keys.size();
+  }
+
+  @Override
+  public void reset() {
+    hitCount.reset();
+    missCount.reset();
+    putCount.reset();
+  }
+}
@@ -0,0 +1,31 @@
+package cache.demo.cache;
+
+/**
+ * 空值缓存统计信息（JMX 接口）
+ *
+ * @author Camio1945
+ */
+public interface NegativeCacheMBean {
+
+  /** 命中次数（即被拦截的 Redis 查询次数） */
+  long getHitCount();
+
+  /** 未命中次数 */
+  long getMissCount();
+
+  /** 命中率，即：命中次数 / (命中次数 + 未命中次数) */
+  double getHitRatio();
+
+  /** 放入次数 */
+  long getPutCount();
+
+  /** 当前缓存了多少个键（可能包括已过期但还没有被清理的） */
+  int getSize();
+
+  int getMaxSize();
+
+  long getTtlMillis();
+
+  /** 清空统计信息 */
+  void reset();
+}
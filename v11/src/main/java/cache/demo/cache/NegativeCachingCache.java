@@ -0,0 +1,121 @@
+package cache.demo.cache;
+
+import java.util.concurrent.Callable;
+import lombok.NonNull;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.lang.Nullable;
+
+/**
+ * 空值单独缓存 <br>
+ * 值为 null 时不写入 Redis ，而是放入当前 JVM 中的 {@link NegativeCache} ，它的过期时间短、容量有限，
+ * 被大量不存在的键攻击时，不会在 Redis 中留下大量长时间存在的空值。 <br>
+ * 其他节点的空值缓存与一级缓存一样，由 {@link TwoLevelCacheManager} 通过 Redis 的发布订阅来失效。
+ *
+ * @author Camio1945
+ */
+public class NegativeCachingCache implements Cache {
+  private final Cache redisCache;
+
+  private final NegativeCache negativeCache;
+
+  private final TwoLevelCacheManager cacheManager;
+
+  private final boolean publishInvalidation;
+
+  /**
+   * @param redisCache Redis 缓存
+   * @param negativeCache 空值缓存
+   * @param cacheManager 缓存管理器，用于通知其他节点
+   * @param publishInvalidation 删除时是否通知其他节点，外面还有 {@link TwoLevelCache} 时由它通知，这里不需要
+   */
+  public NegativeCachingCache(
+      @NonNull Cache redisCache,
+      @NonNull NegativeCache negativeCache,
+      @NonNull TwoLevelCacheManager cacheManager,
+      boolean publishInvalidation) {
+    this.redisCache = redisCache;
+    this.negativeCache = negativeCache;
+    this.cacheManager = cacheManager;
+    this.publishInvalidation = publishInvalidation;
+  }
+
+  @Override
+  @NonNull
+  public String getName() {
+    return redisCache.getName();
+  }
+
+  @Override
+  @NonNull
+  public Object getNativeCache() {
+    return redisCache.getNativeCache();
+  }
+
+  @Override
+  @Nullable
+  public ValueWrapper get(@NonNull Object key) {
+    if (negativeCache.contains(String.valueOf(key))) {
+      return new SimpleValueWrapper(null);
+    }
+    return redisCache.get(key);
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+    ValueWrapper valueWrapper = get(key);
+    Object value = valueWrapper == null ? null : valueWrapper.get();
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException("缓存中的值不是 [" + type.getName() + "] 类型：" + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+    ValueWrapper valueWrapper = get(key);
+    if (valueWrapper != null) {
+      return (T) valueWrapper.get();
+    }
+    T value;
+    try {
+      value = valueLoader.call();
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    }
+    put(key, value);
+    return value;
+  }
+
+  @Override
+  public void put(@NonNull Object key, @Nullable Object value) {
+    if (value == null) {
+      negativeCache.put(String.valueOf(key));
+      return;
+    }
+    negativeCache.remove(String.valueOf(key));
+    redisCache.put(key, value);
+  }
+
+  @Override
+  public void evict(@NonNull Object key) {
+    redisCache.evict(key);
+    negativeCache.remove(String.valueOf(key));
+    if (publishInvalidation) {
+      cacheManager.publishEvict(getName(), String.valueOf(key));
+    }
+  }
+
+  @Override
+  public void clear() {
+    redisCache.clear();
+    negativeCache.clear();
+    if (publishInvalidation) {
+      cacheManager.publishClear(getName());
+    }
+  }
+}
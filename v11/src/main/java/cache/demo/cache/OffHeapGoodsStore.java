@@ -0,0 +1,382 @@
+package cache.demo.cache;
+
+import cache.demo.entity.Goods;
+import cn.hutool.core.lang.Assert;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.StampedLock;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.lang.Nullable;
+
+/**
+ * 堆外的商品一级缓存，键是 int 类型的商品 id <br>
+ * 堆内缓存 10 万个商品时，Integer 、 Goods 、 String 、 BigDecimal 以及 map 的节点都是单独的对象，占用的内存比数据本身大很多，还会增加 GC
+ * 的压力。这里把商品按固定的格式写入一块直接内存（{@link ByteBuffer#allocateDirect}），GC 只需要扫描一个 ByteBuffer 对象。
+ *
+ * <pre>
+ * 每条记录 80 字节：
+ * 偏移  长度  内容
+ * 0     1     状态：0 空，1 有值，2 缓存的是 null
+ * 1     1     标记：第 0 位 storeId 不为 null ，第 1 位 price 不为 null ，第 2 位 name 不为 null
+ * 2     1     price 的 scale
+ * 3     1     name 的字节数
+ * 4     4     id
+ * 8     4     storeId
+ * 12    4     stock
+ * 16    8     price 的 unscaledValue
+ * 24    8     过期时间（毫秒），为 0 表示不过期
+ * 32    48    name （UTF-8）
+ * 使用线性探测的开放寻址，删除时把后面的记录往前移（backward shift），不需要墓碑。
+ * 读使用 StampedLock 的乐观读，读的过程中如果有写入，改为加读锁重新读。
+ * name 超过 48 字节或 price 超出 long 范围的商品不放入一级缓存（每次从 Redis 读取），满了之后也不再放入，直到有记录过期或被删除。
+ * 每次读取都会创建新的 Goods 对象，调用者修改返回的对象不会影响缓存。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class OffHeapGoodsStore implements LocalCacheStore {
+  static final int NAME_CAPACITY = 48;
+
+  private static final int STATE = 0;
+
+  private static final int FLAGS = 1;
+
+  private static final int PRICE_SCALE = 2;
+
+  private static final int NAME_LENGTH = 3;
+
+  private static final int ID = 4;
+
+  private static final int STORE_ID = 8;
+
+  private static final int STOCK = 12;
+
+  private static final int PRICE_UNSCALED = 16;
+
+  private static final int EXPIRE_AT = 24;
+
+  private static final int NAME = 32;
+
+  static final int RECORD_SIZE = NAME + NAME_CAPACITY;
+
+  private static final byte EMPTY = 0;
+
+  private static final byte VALUE = 1;
+
+  private static final byte NULL_VALUE = 2;
+
+  private static final int HAS_STORE_ID = 1;
+
+  private static final int HAS_PRICE = 1 << 1;
+
+  private static final int HAS_NAME = 1 << 2;
+
+  /** 满了之后，多久才再次清理过期的记录 */
+  private static final long PURGE_INTERVAL_MILLIS = 1000;
+
+  private static final long INVALID_ID = Long.MIN_VALUE;
+
+  private final ByteBuffer buffer;
+
+  private final int mask;
+
+  private final int maxSize;
+
+  private final long ttlMillis;
+
+  private final StampedLock lock = new StampedLock();
+
+  /** 以下字段只在写锁中访问 */
+  private int size;
+
+  private long nextPurgeAt;
+
+  /**
+   * @param maxSize 最多缓存多少个商品，槽位数量是大于 maxSize 的 4/3 的最小的 2 的幂
+   * @param ttlMillis 过期时间（毫秒），为 0 表示不过期
+   */
+  public OffHeapGoodsStore(int maxSize, long ttlMillis) {
+    Assert.isTrue(maxSize > 0 && maxSize <= (1 << 22), "maxSize 必须在 1 到 4194304 之间");
+    int capacity = Integer.highestOneBit(maxSize + maxSize / 3) << 1;
+    this.buffer = ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+    this.mask = capacity - 1;
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+  }
+
+  @Override
+  @Nullable
+  public ValueWrapper get(String key) {
+    long id = parseId(key);
+    if (id == INVALID_ID) {
+      return null;
+    }
+    long stamp = lock.tryOptimisticRead();
+    ValueWrapper valueWrapper = find((int) id);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        valueWrapper = find((int) id);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return valueWrapper;
+  }
+
+  @Override
+  public void put(String key, @Nullable Object value) {
+    long id = parseId(key);
+    if (id == INVALID_ID) {
+      return;
+    }
+    byte[] name = null;
+    if (value instanceof Goods goods) {
+      name = goods.getName() == null ? null : goods.getName().getBytes(StandardCharsets.UTF_8);
+      if (!isEncodable(goods, name)) {
+        remove(key);
+        return;
+      }
+    } else if (value != null) {
+      remove(key);
+      return;
+    }
+    long stamp = lock.writeLock();
+    try {
+      int slot = findSlotForWrite((int) id);
+      if (slot >= 0) {
+        write(slot * RECORD_SIZE, (int) id, (Goods) value, name);
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void remove(String key) {
+    long id = parseId(key);
+    if (id == INVALID_ID) {
+      return;
+    }
+    long stamp = lock.writeLock();
+    try {
+      int slot = indexOf((int) id);
+      if (slot >= 0) {
+        delete(slot);
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void clear() {
+    long stamp = lock.writeLock();
+    try {
+      for (int slot = 0; slot <= mask; slot++) {
+        buffer.put(slot * RECORD_SIZE + STATE, EMPTY);
+      }
+      size = 0;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * 当前缓存了多少个商品（包括已过期但还没有被清理的）
+   *
+   * @return 数量
+   */
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * 占用的直接内存
+   *
+   * @return 字节数
+   */
+  public long getMemoryBytes() {
+    return buffer.capacity();
+  }
+
+  private static long parseId(String key) {
+    try {
+      return Integer.parseInt(key);
+    } catch (NumberFormatException e) {
+      return INVALID_ID;
+    }
+  }
+
+  private static int home(int id, int mask) {
+    int hash = id * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private static boolean isEncodable(Goods goods, @Nullable byte[] name) {
+    if (goods.getId() == null || (name != null && name.length > NAME_CAPACITY)) {
+      return false;
+    }
+    BigDecimal price = goods.getPrice();
+    return price == null
+        || (price.unscaledValue().bitLength() < Long.SIZE
+            && price.scale() >= Byte.MIN_VALUE
+            && price.scale() <= Byte.MAX_VALUE);
+  }
+
+  /** 乐观读时可能读到写了一半的数据，所以所有的长度和循环次数都有上限，不能抛出异常 */
+  @Nullable
+  private ValueWrapper find(int id) {
+    int slot = home(id, mask);
+    for (int i = 0; i <= mask; i++, slot = (slot + 1) & mask) {
+      int base = slot * RECORD_SIZE;
+      byte state = buffer.get(base + STATE);
+      if (state == EMPTY) {
+        return null;
+      }
+      if (buffer.getInt(base + ID) == id) {
+        if (isExpired(base, System.currentTimeMillis())) {
+          return null;
+        }
+        return new SimpleValueWrapper(state == NULL_VALUE ? null : read(base));
+      }
+    }
+    return null;
+  }
+
+  private Goods read(int base) {
+    int flags = buffer.get(base + FLAGS);
+    Goods goods = new Goods();
+    goods.setId(buffer.getInt(base + ID));
+    if ((flags & HAS_STORE_ID) != 0) {
+      goods.setStoreId(buffer.getInt(base + STORE_ID));
+    }
+    goods.setStock(buffer.getInt(base + STOCK));
+    if ((flags & HAS_PRICE) != 0) {
+      goods.setPrice(
+          BigDecimal.valueOf(buffer.getLong(base + PRICE_UNSCALED), buffer.get(base + PRICE_SCALE)));
+    }
+    if ((flags & HAS_NAME) != 0) {
+      int length = Math.min(Byte.toUnsignedInt(buffer.get(base + NAME_LENGTH)), NAME_CAPACITY);
+      byte[] name = new byte[length];
+      buffer.get(base + NAME, name);
+      goods.setName(new String(name, StandardCharsets.UTF_8));
+    }
+    return goods;
+  }
+
+  private void write(int base, int id, @Nullable Goods goods, @Nullable byte[] name) {
+    buffer.putInt(base + ID, id);
+    buffer.putLong(base + EXPIRE_AT, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0);
+    if (goods == null) {
+      buffer.put(base + STATE, NULL_VALUE);
+      return;
+    }
+    int flags = 0;
+    if (goods.getStoreId() != null) {
+      flags |= HAS_STORE_ID;
+      buffer.putInt(base + STORE_ID, goods.getStoreId());
+    }
+    buffer.putInt(base + STOCK, goods.getStock());
+    if (goods.getPrice() != null) {
+      flags |= HAS_PRICE;
+      buffer.putLong(base + PRICE_UNSCALED, goods.getPrice().unscaledValue().longValue());
+      buffer.put(base + PRICE_SCALE, (byte) goods.getPrice().scale());
+    }
+    if (name != null) {
+      flags |= HAS_NAME;
+      buffer.put(base + NAME_LENGTH, (byte) name.length);
+      buffer.put(base + NAME, name);
+    }
+    buffer.put(base + FLAGS, (byte) flags);
+    buffer.put(base + STATE, VALUE);
+  }
+
+  private boolean isExpired(int base, long now) {
+    long expireAt = buffer.getLong(base + EXPIRE_AT);
+    return expireAt != 0 && expireAt <= now;
+  }
+
+  /** 在写锁中调用 */
+  private int indexOf(int id) {
+    int slot = home(id, mask);
+    while (buffer.get(slot * RECORD_SIZE + STATE) != EMPTY) {
+      if (buffer.getInt(slot * RECORD_SIZE + ID) == id) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * 在写锁中调用，找到 id 所在的槽位，没有的话找一个空的槽位
+   *
+   * @return 槽位，满了返回 -1
+   */
+  private int findSlotForWrite(int id) {
+    int slot = indexOf(id);
+    if (slot >= 0) {
+      return slot;
+    }
+    if (size >= maxSize) {
+      long now = System.currentTimeMillis();
+      if (now < nextPurgeAt || purgeExpired(now) == 0) {
+        nextPurgeAt = now + PURGE_INTERVAL_MILLIS;
+        return -1;
+      }
+    }
+    slot = home(id, mask);
+    while (buffer.get(slot * RECORD_SIZE + STATE) != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    size++;
+    return slot;
+  }
+
+  /** 在写锁中调用，返回清理的数量 */
+  private int purgeExpired(long now) {
+    int purged = 0;
+    for (int slot = 0; slot <= mask; slot++) {
+      int base = slot * RECORD_SIZE;
+      // 删除后，后面的记录可能被移到当前槽位，需要再检查一次
+      while (buffer.get(base + STATE) != EMPTY && isExpired(base, now)) {
+        delete(slot);
+        purged++;
+      }
+    }
+    return purged;
+  }
+
+  /** 在写锁中调用，删除后把后面的记录往前移，保证线性探测的查找不会在空槽位处提前结束 */
+  private void delete(int slot) {
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    while (buffer.get(next * RECORD_SIZE + STATE) != EMPTY) {
+      int home = home(buffer.getInt(next * RECORD_SIZE + ID), mask);
+      // home 不在 (hole, next] 之间时，才能移到 hole
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        copy(next, hole);
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    buffer.put(hole * RECORD_SIZE + STATE, EMPTY);
+    size--;
+  }
+
+  private void copy(int fromSlot, int toSlot) {
+    int from = fromSlot * RECORD_SIZE;
+    int to = toSlot * RECORD_SIZE;
+    for (int offset = 0; offset < RECORD_SIZE; offset += Long.BYTES) {
+      buffer.putLong(to + offset, buffer.getLong(from + offset));
+    }
+  }
+}
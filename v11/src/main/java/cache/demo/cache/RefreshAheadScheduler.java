@@ -0,0 +1,280 @@
+package cache.demo.cache;
+
+import cache.demo.util.HotKeyTracker;
+import cache.demo.util.RateLimiter;
+import cn.hutool.core.collection.ListUtil;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * 热点键提前刷新 <br>
+ * 统计每个缓存中访问次数最多的键，在它们过期之前从数据库重新加载，热点数据不会因为过期而出现同步的缓存未命中。
+ *
+ * <pre>
+ * 每个周期（cache.refresh-ahead.interval）执行一次：
+ * 1. 从每个缓存的 {@link HotKeyTracker} 中取出访问次数最多的 topKeys 个键，并把所有键的次数减半
+ * 2. 用一次 pipeline 查询这些键的剩余时间（PTTL），只保留剩余时间不超过 refreshBefore 的键（已经不存在的键不刷新，
+ *    它们一般是刚被修改过，下次访问时会正常加载）
+ * 3. 按注册时指定的批次大小分批，每个批次拿一个令牌（每秒的令牌数即每秒最多查询数据库的次数）后交给固定大小的线程池，
+ *    加载函数一般用 selectBatchIds 一次查询一个批次，结果用 {@link CacheBatchWriter#putAllIfPresent}
+ *    一次写入，只写入仍然存在的键，刷新期间被删除（数据被修改）的键不会被写回旧值
+ * 拿不到令牌或者线程池的队列已满时，本周期剩下的批次不再刷新，下个周期再试。
+ * 访问次数来自 {@link TwoLevelCacheManager} 的访问监听器（{@link AccessTrackingCache}），
+ * 不是 {@link org.springframework.cache.annotation.Cacheable} 的缓存（如 zset）需要自己调用 {@link #recordAccess}。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Slf4j
+public class RefreshAheadScheduler implements AutoCloseable {
+  private static final String KEY_SEPARATOR = "::";
+
+  private final StringRedisTemplate stringRedisTemplate;
+
+  private final CacheBatchWriter cacheBatchWriter;
+
+  private final boolean enabled;
+
+  private final long refreshBeforeMillis;
+
+  private final int topKeys;
+
+  private final int maxTrackedKeys;
+
+  private final int batchSize;
+
+  private final RateLimiter rateLimiter;
+
+  private final ThreadPoolExecutor executor;
+
+  private final Map<String, Source> nameToSource = new ConcurrentHashMap<>();
+
+  private final LongAdder refreshedCount = new LongAdder();
+
+  private final LongAdder skippedBatchCount = new LongAdder();
+
+  /** 每个周期取出热点键后的回调，参数是缓存名称和按访问次数从多到少排列的键 */
+  private volatile BiConsumer<String, List<Object>> hotKeysListener = (cacheName, keys) -> {};
+
+  /**
+   * @param stringRedisTemplate 用于查询剩余时间
+   * @param cacheBatchWriter 用于写入重新加载的值
+   * @param enabled 是否启用，不启用时不统计也不刷新
+   * @param refreshBefore 剩余时间不超过多少时刷新，应该大于刷新周期
+   * @param topKeys 每个周期每个缓存最多检查多少个热点键
+   * @param maxTrackedKeys 每个缓存最多统计多少个键
+   * @param batchSize 注册时没有指定批次大小时，一次最多加载多少个键
+   * @param workers 执行刷新的线程数
+   * @param queueCapacity 等待执行的批次最多有多少个
+   * @param maxQueriesPerSecond 每秒最多查询数据库的次数（一个批次算一次）
+   */
+  public RefreshAheadScheduler(
+      @NonNull StringRedisTemplate stringRedisTemplate,
+      @NonNull CacheBatchWriter cacheBatchWriter,
+      boolean enabled,
+      @NonNull Duration refreshBefore,
+      int topKeys,
+      int maxTrackedKeys,
+      int batchSize,
+      int workers,
+      int queueCapacity,
+      double maxQueriesPerSecond) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.cacheBatchWriter = cacheBatchWriter;
+    this.enabled = enabled;
+    this.refreshBeforeMillis = refreshBefore.toMillis();
+    this.topKeys = topKeys;
+    this.maxTrackedKeys = maxTrackedKeys;
+    this.batchSize = batchSize;
+    this.rateLimiter = new RateLimiter(maxQueriesPerSecond);
+    this.executor =
+        new ThreadPoolExecutor(
+            workers,
+            workers,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            Thread.ofPlatform().name("refresh-ahead-", 0).daemon().factory());
+  }
+
+  /**
+   * 注册需要提前刷新的缓存，使用默认的批次大小
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param loader 加载函数，详见 {@link #register(String, int, Function)}
+   */
+  public void register(
+      @NonNull String cacheName, @NonNull Function<List<Object>, Map<?, ?>> loader) {
+    register(cacheName, batchSize, loader);
+  }
+
+  /**
+   * 注册需要提前刷新的缓存
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param batchSize 一次最多加载多少个键
+   * @param loader 加载函数，参数是缓存的键（不带前缀），返回需要写入缓存的键值对，不存在的键不放在结果中；
+   *     自己写入缓存时（如 zset）返回空的 Map ，同样只能在键仍然存在时写入
+   */
+  public void register(
+      @NonNull String cacheName, int batchSize, @NonNull Function<List<Object>, Map<?, ?>> loader) {
+    nameToSource.put(cacheName, new Source(cacheName, batchSize, loader));
+  }
+
+  /**
+   * 记录一次访问，没有注册的缓存会被忽略
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param key 缓存的键（不带前缀），如商品 id
+   */
+  public void recordAccess(String cacheName, Object key) {
+    if (!enabled) {
+      return;
+    }
+    Source source = nameToSource.get(cacheName);
+    if (source != null) {
+      source.tracker.record(key);
+    }
+  }
+
+  /**
+   * 设置取出热点键后的回调，如：把最热的键加入 {@link HotKeyWhitelist}
+   *
+   * @param hotKeysListener 参数是缓存名称和按访问次数从多到少排列的键（不带前缀）
+   */
+  public void setHotKeysListener(@NonNull BiConsumer<String, List<Object>> hotKeysListener) {
+    this.hotKeysListener = hotKeysListener;
+  }
+
+  /** 刷新所有缓存中即将过期的热点键 */
+  @Scheduled(
+      initialDelayString = "${cache.refresh-ahead.interval:PT10S}",
+      fixedDelayString = "${cache.refresh-ahead.interval:PT10S}")
+  public void refresh() {
+    if (!enabled) {
+      return;
+    }
+    for (Source source : nameToSource.values()) {
+      try {
+        if (!refresh(source)) {
+          return;
+        }
+      } catch (RuntimeException e) {
+        log.warn("提前刷新失败：{}", source.cacheName, e);
+      }
+    }
+  }
+
+  /**
+   * 已经刷新了多少个键
+   *
+   * @return 键数
+   */
+  public long getRefreshedCount() {
+    return refreshedCount.sum();
+  }
+
+  /**
+   * 因为限流或者队列已满而跳过了多少个批次
+   *
+   * @return 批次数
+   */
+  public long getSkippedBatchCount() {
+    return skippedBatchCount.sum();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * 刷新一个缓存中即将过期的热点键
+   *
+   * @return false 表示因为限流或者队列已满，本周期不再继续刷新
+   */
+  private boolean refresh(Source source) {
+    List<Object> hotKeys = source.tracker.pollHottest(topKeys);
+    if (hotKeys.isEmpty()) {
+      return true;
+    }
+    hotKeysListener.accept(source.cacheName, hotKeys);
+    List<Object> dueKeys = filterDue(source.cacheName, hotKeys);
+    List<List<Object>> batches = ListUtil.partition(dueKeys, source.batchSize);
+    for (int i = 0; i < batches.size(); i++) {
+      List<Object> batch = batches.get(i);
+      if (!rateLimiter.tryAcquire()) {
+        skippedBatchCount.add(batches.size() - i);
+        return false;
+      }
+      try {
+        executor.execute(() -> reload(source, batch));
+      } catch (RejectedExecutionException e) {
+        skippedBatchCount.add(batches.size() - i);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private List<Object> filterDue(String cacheName, List<Object> keys) {
+    List<Object> ttls =
+        stringRedisTemplate.executePipelined(
+            (RedisCallback<Object>)
+                connection -> {
+                  for (Object key : keys) {
+                    String redisKey = cacheName + KEY_SEPARATOR + key;
+                    connection.keyCommands().pTtl(redisKey.getBytes(StandardCharsets.UTF_8));
+                  }
+                  return null;
+                },
+            null);
+    List<Object> dueKeys = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i++) {
+      // -1 表示没有过期时间，-2 表示不存在
+      if (ttls.get(i) instanceof Long ttl && ttl >= 0 && ttl <= refreshBeforeMillis) {
+        dueKeys.add(keys.get(i));
+      }
+    }
+    return dueKeys;
+  }
+
+  private void reload(Source source, List<Object> keys) {
+    try {
+      Map<?, ?> keyToValue = source.loader.apply(keys);
+      cacheBatchWriter.putAllIfPresent(source.cacheName, keyToValue);
+      refreshedCount.add(keys.size());
+    } catch (RuntimeException e) {
+      log.warn("提前刷新失败：{} {}", source.cacheName, keys, e);
+    }
+  }
+
+  private class Source {
+    private final String cacheName;
+
+    private final int batchSize;
+
+    private final Function<List<Object>, Map<?, ?>> loader;
+
+    private final HotKeyTracker<Object> tracker;
+
+    Source(String cacheName, int batchSize, Function<List<Object>, Map<?, ?>> loader) {
+      this.cacheName = cacheName;
+      this.batchSize = batchSize;
+      this.loader = loader;
+      this.tracker = new HotKeyTracker<>(maxTrackedKeys);
+    }
+  }
+}
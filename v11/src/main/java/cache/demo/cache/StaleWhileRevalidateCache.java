@@ -0,0 +1,178 @@
+package cache.demo.cache;
+
+import cache.demo.util.SingleFlightUtil;
+import cn.hutool.cache.impl.LRUCache;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.lang.Nullable;
+
+/**
+ * 过期后继续使用旧值的缓存（stale-while-revalidate） <br>
+ * 数据库变慢或者不可用时，过期的键会让请求阻塞到超时或者直接报错；这里给每个值多保存一份过期时间更长的副本，
+ * 主缓存过期后先返回副本，同时在后台重新加载，加载失败时继续返回副本。
+ *
+ * <pre>
+ * 副本保存在另一个缓存中，名称是主缓存的名称加上 {@link #STALE_SUFFIX}，如：cache:goods:id:stale::1 ，
+ * 它的过期时间在 {@link cache.demo.common.RedisConfig} 中单独配置（主缓存的过期时间加上宽限期）。
+ * 读取：主缓存命中时直接返回；未命中时读取副本，副本命中时返回副本，并在单飞中（键是 revalidate: 加上 Redis 的键）
+ *      用 {@link TwoLevelCacheManager#registerRefreshLoader} 注册的加载函数重新加载，
+ *      结果用 {@link CacheRefreshWriter} 在副本仍然存在时写入（同时更新主缓存和副本），加载期间数据被修改时不写入；
+ *      副本也未命中时返回 null ，由调用者同步加载。
+ * 加载失败后，同一个键在 retryInterval 内不再重新加载，避免数据库不可用时每个请求都去查询一次。
+ * 写入：值不为 null 时同时写入主缓存和副本；删除和清空时两者都删除，数据被修改后不会再返回旧的副本。
+ * 直接用 RedisTemplate 删除缓存时，需要同时删除副本，详见 {@link TwoLevelCacheManager#withShadowKeys}。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Slf4j
+public class StaleWhileRevalidateCache implements Cache {
+  /** 副本缓存名称的后缀 */
+  public static final String STALE_SUFFIX = ":stale";
+
+  private static final String REVALIDATE_KEY_PREFIX = "revalidate:";
+
+  private static final String KEY_SEPARATOR = "::";
+
+  private final Cache cache;
+
+  private final Cache staleCache;
+
+  private final TwoLevelCacheManager cacheManager;
+
+  /** 最近加载失败的键，过期之前不再重新加载 */
+  private final LRUCache<Object, Boolean> failedKeys;
+
+  /**
+   * @param cache 主缓存
+   * @param staleCache 副本缓存
+   * @param cacheManager 缓存管理器，用于获取加载函数和放入加载后的值
+   * @param retryIntervalMillis 加载失败后，同一个键多久之后才能再次加载（毫秒）
+   * @param maxFailedKeys 最多记录多少个加载失败的键
+   */
+  public StaleWhileRevalidateCache(
+      @NonNull Cache cache,
+      @NonNull Cache staleCache,
+      @NonNull TwoLevelCacheManager cacheManager,
+      long retryIntervalMillis,
+      int maxFailedKeys) {
+    this.cache = cache;
+    this.staleCache = staleCache;
+    this.cacheManager = cacheManager;
+    this.failedKeys = new LRUCache<>(maxFailedKeys, retryIntervalMillis);
+  }
+
+  @Override
+  @NonNull
+  public String getName() {
+    return cache.getName();
+  }
+
+  @Override
+  @NonNull
+  public Object getNativeCache() {
+    return cache.getNativeCache();
+  }
+
+  @Override
+  @Nullable
+  public ValueWrapper get(@NonNull Object key) {
+    ValueWrapper valueWrapper = cache.get(key);
+    if (valueWrapper != null) {
+      return valueWrapper;
+    }
+    ValueWrapper staleValueWrapper = staleCache.get(key);
+    if (staleValueWrapper == null || staleValueWrapper.get() == null) {
+      return null;
+    }
+    revalidate(key);
+    return staleValueWrapper;
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+    ValueWrapper valueWrapper = get(key);
+    Object value = valueWrapper == null ? null : valueWrapper.get();
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException("缓存中的值不是 [" + type.getName() + "] 类型：" + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+    ValueWrapper valueWrapper = get(key);
+    if (valueWrapper != null) {
+      return (T) valueWrapper.get();
+    }
+    T value;
+    try {
+      value = valueLoader.call();
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    }
+    put(key, value);
+    return value;
+  }
+
+  @Override
+  public void put(@NonNull Object key, @Nullable Object value) {
+    cache.put(key, value);
+    if (value != null) {
+      staleCache.put(key, value);
+      failedKeys.remove(key);
+    }
+  }
+
+  @Override
+  public void evict(@NonNull Object key) {
+    cache.evict(key);
+    staleCache.evict(key);
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+    staleCache.clear();
+  }
+
+  private void revalidate(Object key) {
+    Function<Object, Object> loader = cacheManager.getRefreshLoader(getName());
+    if (loader == null || failedKeys.containsKey(key)) {
+      return;
+    }
+    String redisKey = getName() + KEY_SEPARATOR + key;
+    SingleFlightUtil.executeAsync(
+            REVALIDATE_KEY_PREFIX + redisKey,
+            () -> {
+              Object value = loader.apply(key);
+              if (value == null) {
+                // 数据已经被删除，不再返回旧值
+                staleCache.evict(key);
+                return null;
+              }
+              // 副本仍然存在时才写入，加载期间数据被修改（副本被删除）时不会把旧值写回去
+              if (cacheManager
+                      .getRefreshWriter()
+                      .putIfPresent(getName(), staleCache.getName(), Map.of(key, value))
+                  > 0) {
+                failedKeys.remove(key);
+              }
+              return value;
+            })
+        .exceptionally(
+            e -> {
+              failedKeys.put(key, Boolean.TRUE);
+              log.warn("重新加载失败，继续使用旧值：{}", redisKey, e);
+              return null;
+            });
+  }
+}
@@ -0,0 +1,125 @@
+package cache.demo.cache;
+
+import java.util.concurrent.Callable;
+import lombok.NonNull;
+import org.springframework.cache.Cache;
+import org.springframework.lang.Nullable;
+
+/**
+ * 二级缓存：一级是当前 JVM 中的缓存（L1，默认是 {@link LruLocalCacheStore}），二级是 Redis （L2）。 <br>
+ * 读的时候先读 L1 ，没有再读 L2 ，读到后放入 L1 ；写和删除的时候两级都处理。 <br>
+ * 其他节点的 L1 由 {@link TwoLevelCacheManager} 通过 Redis 的发布订阅来失效。
+ *
+ * @author Camio1945
+ */
+public class TwoLevelCache implements Cache {
+  private final Cache redisCache;
+
+  private final TwoLevelCacheManager cacheManager;
+
+  /** 键是 String.valueOf(key) ，与 Redis 中 :: 后面的部分一致，方便根据 Redis 的键来失效 */
+  private final LocalCacheStore localCache;
+
+  /**
+   * @param redisCache Redis 缓存
+   * @param cacheManager 缓存管理器，用于通知其他节点
+   * @param localCache L1 的存储
+   */
+  public TwoLevelCache(
+      @NonNull Cache redisCache,
+      @NonNull TwoLevelCacheManager cacheManager,
+      @NonNull LocalCacheStore localCache) {
+    this.redisCache = redisCache;
+    this.cacheManager = cacheManager;
+    this.localCache = localCache;
+  }
+
+  @Override
+  @NonNull
+  public String getName() {
+    return redisCache.getName();
+  }
+
+  @Override
+  @NonNull
+  public Object getNativeCache() {
+    return redisCache.getNativeCache();
+  }
+
+  @Override
+  @Nullable
+  public ValueWrapper get(@NonNull Object key) {
+    String localKey = String.valueOf(key);
+    ValueWrapper valueWrapper = localCache.get(localKey);
+    if (valueWrapper != null) {
+      return valueWrapper;
+    }
+    valueWrapper = redisCache.get(key);
+    if (valueWrapper != null) {
+      localCache.put(localKey, valueWrapper.get());
+      cacheManager.onLocalFill(getName(), localKey);
+    }
+    return valueWrapper;
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+    ValueWrapper valueWrapper = get(key);
+    Object value = valueWrapper == null ? null : valueWrapper.get();
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException("缓存中的值不是 [" + type.getName() + "] 类型：" + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+    ValueWrapper valueWrapper = localCache.get(String.valueOf(key));
+    if (valueWrapper != null) {
+      return (T) valueWrapper.get();
+    }
+    T value = redisCache.get(key, valueLoader);
+    localCache.put(String.valueOf(key), value);
+    cacheManager.onLocalFill(getName(), String.valueOf(key));
+    return value;
+  }
+
+  @Override
+  public void put(@NonNull Object key, @Nullable Object value) {
+    redisCache.put(key, value);
+    localCache.put(String.valueOf(key), value);
+    cacheManager.onLocalFill(getName(), String.valueOf(key));
+  }
+
+  @Override
+  public void evict(@NonNull Object key) {
+    redisCache.evict(key);
+    evictLocal(String.valueOf(key));
+    cacheManager.publishEvict(getName(), String.valueOf(key));
+  }
+
+  @Override
+  public void clear() {
+    redisCache.clear();
+    clearLocal();
+    cacheManager.publishClear(getName());
+  }
+
+  /**
+   * 只删除 L1 中的值
+   *
+   * @param localKey 键
+   */
+  public void evictLocal(String localKey) {
+    localCache.remove(localKey);
+  }
+
+  /** 只清空 L1 */
+  public void clearLocal() {
+    localCache.clear();
+  }
+}
@@ -0,0 +1,613 @@
+package cache.demo.cache;
+
+import cache.demo.util.DistributedSingleFlight;
+import cn.hutool.core.util.IdUtil;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.Nullable;
+
+/**
+ * 二级缓存管理器，包装了 {@link RedisCacheManager} ，给指定的缓存名称加上 JVM 中的一级缓存（详见 {@link TwoLevelCache}）。 <br>
+ * 某个节点删除缓存时，通过 Redis 的发布订阅通知所有节点删除各自的一级缓存。 <br>
+ * 也可以不发布消息，改为由 Redis 的客户端缓存（CLIENT TRACKING）推送失效消息，详见 {@link
+ * cache.demo.listener.L1CacheTrackingListener}。 <br>
+ * 注册了空值缓存（{@link #registerNegativeCache}）的缓存名称，值为 null 时不写入 Redis ，详见 {@link
+ * NegativeCachingCache}，空值缓存的失效消息总是通过发布订阅发送，因为 Redis 中没有对应的键，客户端缓存不会推送。 <br>
+ * 开启了提前刷新（{@link #enableEarlyRefresh}）的缓存名称，在键过期之前有一定的概率在后台刷新，详见 {@link
+ * EarlyRefreshCache}。 <br>
+ * 开启了过期后继续使用旧值（{@link #enableStaleWhileRevalidate}）的缓存名称，主缓存过期后先返回副本，详见 {@link
+ * StaleWhileRevalidateCache}。 <br>
+ * 开启了逻辑过期（{@link #enableLogicalExpiry}）的缓存名称，白名单中的极热点键逻辑过期后仍然返回旧值，详见 {@link
+ * LogicalExpiryCache}。 <br>
+ * 开启了访问统计（{@link #enableAccessTracking}）的缓存名称，每次读取时通知访问监听器，详见 {@link AccessTrackingCache}。 <br>
+ * 注册了自适应过期时间（{@link #registerAdaptiveTtl}）的缓存名称，同样统计读取次数，并由 {@link CacheInvalidator} 记录修改次数，
+ * 详见 {@link AdaptiveTtlFunction}。
+ *
+ * <pre>
+ * 消息格式（每行一个）：
+ * 第 1 行是发送消息的节点 id ，节点收到自己发出的消息时忽略（因为发送前已经删除过了）
+ * 之后的每一行是一个 Redis 的键，如 cache:goods:id::1 ，表示删除这个键；如果不包含 ::（如 cache:goods:id），表示清空这个缓存
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager {
+  /** 一级缓存失效消息的频道 */
+  public static final String INVALIDATION_CHANNEL = "cache:l1:invalidation";
+
+  private static final String KEY_SEPARATOR = "::";
+
+  private static final String LINE_SEPARATOR = "\n";
+
+  private final String nodeId = IdUtil.fastSimpleUUID();
+
+  private final CacheManager redisCacheManager;
+
+  private final StringRedisTemplate stringRedisTemplate;
+
+  private final boolean enabled;
+
+  private final boolean publishInvalidation;
+
+  private final Set<String> localCacheNames;
+
+  private final int maxSize;
+
+  private final long maxBytes;
+
+  private final long ttlMillis;
+
+  private final Map<String, Cache> nameToCache = new ConcurrentHashMap<>();
+
+  /** 指定了一级缓存存储的缓存名称，没有指定的使用 {@link LruLocalCacheStore} */
+  private final Map<String, LocalCacheStore> nameToLocalStore = new ConcurrentHashMap<>();
+
+  /** 空值缓存，与是否启用一级缓存无关 */
+  private final Map<String, NegativeCache> nameToNegativeCache = new ConcurrentHashMap<>();
+
+  /** 开启了提前刷新的缓存名称 */
+  private volatile Set<String> earlyRefreshCacheNames = Set.of();
+
+  private volatile double earlyRefreshBeta;
+
+  private volatile long defaultRecomputeNanos;
+
+  /** 提前刷新时使用的加载函数，参数是缓存的键（不带前缀），如商品 id */
+  private final Map<String, Function<Object, Object>> nameToRefreshLoader =
+      new ConcurrentHashMap<>();
+
+  /** 开启了过期后继续使用旧值的缓存名称 */
+  private volatile Set<String> staleCacheNames = Set.of();
+
+  private volatile long staleRetryIntervalMillis;
+
+  private volatile int maxStaleFailedKeys;
+
+  /** 开启了逻辑过期的缓存名称，只对白名单中的键生效 */
+  private volatile Set<String> logicalExpiryCacheNames = Set.of();
+
+  private volatile HotKeyWhitelist hotKeyWhitelist;
+
+  private volatile DistributedSingleFlight.LeaseStore leaseStore;
+
+  private volatile Duration logicalTtl;
+
+  private volatile Duration rebuildLeaseTime;
+
+  private final CacheRefreshWriter refreshWriter;
+
+  /** 开启了访问统计的缓存名称 */
+  private volatile Set<String> accessTrackingCacheNames = Set.of();
+
+  /** 缓存名称到自适应过期时间函数的映射 */
+  private final Map<String, AdaptiveTtlFunction> nameToTtlFunction = new ConcurrentHashMap<>();
+
+  /** 读取缓存时的回调，参数是缓存名称和缓存的键（不带前缀） */
+  private volatile BiConsumer<String, Object> accessListener = (cacheName, key) -> {};
+
+  /** 从 Redis 读取到值并放入一级缓存后的回调，参数是 Redis 的键 */
+  private volatile Consumer<String> localFillListener = redisKey -> {};
+
+  /**
+   * @param redisCacheManager Redis 缓存管理器，一般是 {@link RedisCacheManager}
+   * @param stringRedisTemplate 用于发布失效消息
+   * @param enabled 是否启用一级缓存，不启用时和 RedisCacheManager 完全一样
+   * @param publishInvalidation 是否通过发布订阅通知其他节点，使用 Redis 的客户端缓存时不需要
+   * @param localCacheNames 哪些缓存需要一级缓存，如：cache:goods:id
+   * @param maxSize 每个缓存的一级缓存最多缓存多少个键
+   * @param maxBytes 每个缓存的一级缓存中的值最多占用多少字节（按序列化后的长度估算），为 0 表示不限制
+   * @param ttlMillis 一级缓存的过期时间（毫秒）
+   */
+  public TwoLevelCacheManager(
+      @NonNull CacheManager redisCacheManager,
+      @NonNull StringRedisTemplate stringRedisTemplate,
+      boolean enabled,
+      boolean publishInvalidation,
+      @NonNull Collection<String> localCacheNames,
+      int maxSize,
+      long maxBytes,
+      long ttlMillis) {
+    this.redisCacheManager = redisCacheManager;
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.enabled = enabled;
+    this.publishInvalidation = publishInvalidation;
+    this.localCacheNames = Set.copyOf(localCacheNames);
+    this.maxSize = maxSize;
+    this.maxBytes = maxBytes;
+    this.ttlMillis = ttlMillis;
+    this.refreshWriter = new CacheRefreshWriter(this, stringRedisTemplate);
+  }
+
+  @Override
+  @Nullable
+  public Cache getCache(@NonNull String name) {
+    return nameToCache.computeIfAbsent(name, this::buildCache);
+  }
+
+  /** 按 {@link CacheDecoratorBuilder} 中的顺序加上开启了的装饰器 */
+  @Nullable
+  private Cache buildCache(String name) {
+    CacheDecoratorBuilder builder = new CacheDecoratorBuilder(name, redisCacheManager, this);
+    if (earlyRefreshCacheNames.contains(name)) {
+      builder.earlyRefresh(stringRedisTemplate, earlyRefreshBeta, defaultRecomputeNanos);
+    }
+    if (staleCacheNames.contains(name)) {
+      builder.staleWhileRevalidate(staleRetryIntervalMillis, maxStaleFailedKeys);
+    }
+    if (logicalExpiryCacheNames.contains(name)) {
+      builder.logicalExpiry(hotKeyWhitelist, leaseStore, logicalTtl, rebuildLeaseTime);
+    }
+    boolean local = enabled && localCacheNames.contains(name);
+    NegativeCache negativeCache = nameToNegativeCache.get(name);
+    if (negativeCache != null) {
+      builder.negativeCaching(negativeCache, !local);
+    }
+    if (local) {
+      builder.twoLevel(nameToLocalStore.computeIfAbsent(name, this::newLocalStore));
+    }
+    if (accessTrackingCacheNames.contains(name) || nameToTtlFunction.containsKey(name)) {
+      builder.accessTracking();
+    }
+    return builder.build();
+  }
+
+  /** 创建默认的一级缓存存储，值占用的字节数用它在 Redis 中序列化后的长度估算，不是 Redis 缓存时不估算 */
+  private LocalCacheStore newLocalStore(String cacheName) {
+    RedisCacheConfiguration configuration = getRedisCacheConfiguration(cacheName);
+    ToIntFunction<Object> sizer =
+        configuration == null
+            ? value -> 0
+            : value ->
+                configuration
+                    .getValueSerializationPair()
+                    .write(value == null ? NullValue.INSTANCE : value)
+                    .remaining();
+    return new LruLocalCacheStore(maxSize, maxBytes, ttlMillis, sizer);
+  }
+
+  @Override
+  @NonNull
+  public Collection<String> getCacheNames() {
+    return redisCacheManager.getCacheNames();
+  }
+
+  /**
+   * 根据 Redis 的键删除本节点的一级缓存和空值缓存，并通知其他节点 <br>
+   * 直接用 RedisTemplate 删除了 {@link org.springframework.cache.annotation.Cacheable} 的缓存后，需要调用这个方法
+   *
+   * @param redisKeys Redis 的键，如：cache:goods:id::1 ，没有一级缓存和空值缓存的键会被忽略
+   */
+  public void invalidateLocal(Collection<String> redisKeys) {
+    if (!enabled && nameToNegativeCache.isEmpty()) {
+      return;
+    }
+    List<String> localKeys = redisKeys.stream().filter(this::hasLocalCache).toList();
+    if (localKeys.isEmpty()) {
+      return;
+    }
+    localKeys.forEach(this::evictLocal);
+    publish(localKeys);
+  }
+
+  /**
+   * 只删除本节点的一级缓存和空值缓存，不通知其他节点
+   *
+   * @param redisKey Redis 的键，如：cache:goods:id::1
+   */
+  public void evictLocal(String redisKey) {
+    int index = redisKey.indexOf(KEY_SEPARATOR);
+    if (index <= 0) {
+      return;
+    }
+    String cacheName = redisKey.substring(0, index);
+    String localKey = redisKey.substring(index + KEY_SEPARATOR.length());
+    if (unwrap(nameToCache.get(cacheName)) instanceof TwoLevelCache twoLevelCache) {
+      twoLevelCache.evictLocal(localKey);
+    }
+    NegativeCache negativeCache = nameToNegativeCache.get(cacheName);
+    if (negativeCache != null) {
+      negativeCache.remove(localKey);
+    }
+  }
+
+  /** 清空本节点所有的一级缓存和空值缓存，不通知其他节点 */
+  public void clearLocal() {
+    nameToCache.values().stream()
+        .map(this::unwrap)
+        .filter(TwoLevelCache.class::isInstance)
+        .forEach(cache -> ((TwoLevelCache) cache).clearLocal());
+    nameToNegativeCache.values().forEach(NegativeCache::clear);
+  }
+
+  /**
+   * 给某个缓存加上空值缓存，需要在第一次调用 {@link #getCache} 之前调用
+   *
+   * @param negativeCache 空值缓存
+   */
+  public void registerNegativeCache(@NonNull NegativeCache negativeCache) {
+    nameToNegativeCache.put(negativeCache.getCacheName(), negativeCache);
+  }
+
+  /**
+   * 开启提前刷新，需要在第一次调用 {@link #getCache} 之前调用
+   *
+   * @param cacheNames 哪些缓存需要提前刷新，如：cache:goods:id
+   * @param beta 大于 1 时更早刷新，小于 1 时更晚刷新，一般用 1
+   * @param defaultRecomputeTime 还没有刷新过时，重新加载的耗时
+   */
+  public void enableEarlyRefresh(
+      @NonNull Collection<String> cacheNames, double beta, @NonNull Duration defaultRecomputeTime) {
+    this.earlyRefreshBeta = beta;
+    this.defaultRecomputeNanos = defaultRecomputeTime.toNanos();
+    this.earlyRefreshCacheNames = Set.copyOf(cacheNames);
+  }
+
+  /**
+   * 注册提前刷新时使用的加载函数，没有开启提前刷新时不会被调用
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param loader 加载函数，参数是缓存的键（不带前缀），如商品 id
+   */
+  public void registerRefreshLoader(
+      @NonNull String cacheName, @NonNull Function<Object, Object> loader) {
+    nameToRefreshLoader.put(cacheName, loader);
+  }
+
+  @Nullable
+  Function<Object, Object> getRefreshLoader(String cacheName) {
+    return nameToRefreshLoader.get(cacheName);
+  }
+
+  /**
+   * 后台刷新的条件写入，详见 {@link CacheRefreshWriter}
+   *
+   * @return 条件写入
+   */
+  public CacheRefreshWriter getRefreshWriter() {
+    return refreshWriter;
+  }
+
+  /**
+   * 开启过期后继续使用旧值，需要在第一次调用 {@link #getCache} 之前调用 <br>
+   * 副本缓存（名称加上 {@link StaleWhileRevalidateCache#STALE_SUFFIX}）的过期时间需要在 RedisCacheManager 中单独配置
+   *
+   * @param cacheNames 哪些缓存需要，如：cache:goods:id
+   * @param retryInterval 重新加载失败后，同一个键多久之后才能再次加载
+   * @param maxFailedKeys 最多记录多少个加载失败的键
+   */
+  public void enableStaleWhileRevalidate(
+      @NonNull Collection<String> cacheNames, @NonNull Duration retryInterval, int maxFailedKeys) {
+    this.staleRetryIntervalMillis = retryInterval.toMillis();
+    this.maxStaleFailedKeys = maxFailedKeys;
+    this.staleCacheNames = Set.copyOf(cacheNames);
+  }
+
+  /**
+   * 是否开启了过期后继续使用旧值
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @return true 表示开启
+   */
+  public boolean isStaleWhileRevalidate(String cacheName) {
+    return staleCacheNames.contains(cacheName);
+  }
+
+  /**
+   * 开启逻辑过期，需要在第一次调用 {@link #getCache} 之前调用，详见 {@link LogicalExpiryCache} <br>
+   * 副本缓存（名称加上 {@link LogicalExpiryCache#HOT_SUFFIX}）需要在 RedisCacheManager 中配置为不过期
+   *
+   * @param cacheNames 哪些缓存需要，如：cache:goods:id
+   * @param whitelist 白名单，只有白名单中的键使用逻辑过期
+   * @param leaseStore 租约存储，保证同一个键同时只有一个节点重新加载
+   * @param logicalTtl 逻辑过期时间
+   * @param rebuildLeaseTime 重新加载的租约时长
+   */
+  public void enableLogicalExpiry(
+      @NonNull Collection<String> cacheNames,
+      @NonNull HotKeyWhitelist whitelist,
+      @NonNull DistributedSingleFlight.LeaseStore leaseStore,
+      @NonNull Duration logicalTtl,
+      @NonNull Duration rebuildLeaseTime) {
+    this.hotKeyWhitelist = whitelist;
+    this.leaseStore = leaseStore;
+    this.logicalTtl = logicalTtl;
+    this.rebuildLeaseTime = rebuildLeaseTime;
+    this.logicalExpiryCacheNames = Set.copyOf(cacheNames);
+    // 移出白名单后删除副本，否则没有过期时间的副本会一直留在 Redis 中
+    whitelist.setRemovalListener(
+        (cacheName, key) -> {
+          Cache hotCache = redisCacheManager.getCache(cacheName + LogicalExpiryCache.HOT_SUFFIX);
+          if (hotCache != null) {
+            hotCache.evict(key);
+          }
+        });
+  }
+
+  /**
+   * 是否开启了逻辑过期
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @return true 表示开启
+   */
+  public boolean isLogicalExpiry(String cacheName) {
+    return logicalExpiryCacheNames.contains(cacheName);
+  }
+
+  Duration getLogicalTtl() {
+    return logicalTtl;
+  }
+
+  /**
+   * 在 Redis 的键中加上对应的副本的键，直接用 RedisTemplate 删除缓存时需要一起删除
+   *
+   * @param redisKeys Redis 的键，如：cache:goods:id::1
+   * @return 原来的键，以及副本的键：过期后继续使用的副本（如：cache:goods:id:stale::1）、 逻辑过期的副本（如：cache:goods:id:hot::1）
+   */
+  public List<String> withShadowKeys(Collection<String> redisKeys) {
+    List<String> keys = new ArrayList<>(redisKeys);
+    for (String redisKey : redisKeys) {
+      int index = redisKey.indexOf(KEY_SEPARATOR);
+      if (index <= 0) {
+        continue;
+      }
+      String cacheName = redisKey.substring(0, index);
+      String suffix = redisKey.substring(index);
+      if (staleCacheNames.contains(cacheName)) {
+        keys.add(cacheName + StaleWhileRevalidateCache.STALE_SUFFIX + suffix);
+      }
+      if (logicalExpiryCacheNames.contains(cacheName)) {
+        keys.add(cacheName + LogicalExpiryCache.HOT_SUFFIX + suffix);
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * 缓存在 Redis 中的配置（过期时间、序列化方式等）
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @return 不是 Redis 缓存时为 null
+   */
+  @Nullable
+  public RedisCacheConfiguration getRedisCacheConfiguration(String cacheName) {
+    return redisCacheManager.getCache(cacheName) instanceof RedisCache redisCache
+        ? redisCache.getCacheConfiguration()
+        : null;
+  }
+
+  /**
+   * 没有包装的缓存，读写都不经过一级缓存和各种副本
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id:stale
+   * @return 缓存
+   */
+  @Nullable
+  Cache getRedisCache(String cacheName) {
+    return redisCacheManager.getCache(cacheName);
+  }
+
+  /**
+   * 开启访问统计，需要在第一次调用 {@link #getCache} 之前调用
+   *
+   * @param cacheNames 哪些缓存需要统计访问，如：cache:goods:id
+   */
+  public void enableAccessTracking(@NonNull Collection<String> cacheNames) {
+    this.accessTrackingCacheNames = Set.copyOf(cacheNames);
+  }
+
+  /**
+   * 设置读取缓存时的回调，默认什么也不做
+   *
+   * @param accessListener 参数是缓存名称和缓存的键（不带前缀），如：cache:goods:id 和 1
+   */
+  public void setAccessListener(@NonNull BiConsumer<String, Object> accessListener) {
+    this.accessListener = accessListener;
+  }
+
+  /**
+   * 注册自适应过期时间函数，需要在第一次调用 {@link #getCache} 之前调用 <br>
+   * 函数本身需要在 RedisCacheManager 中配置为这个缓存的 TTL 函数，这里只负责把读取和修改转给它
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param ttlFunction 自适应过期时间函数
+   */
+  public void registerAdaptiveTtl(
+      @NonNull String cacheName, @NonNull AdaptiveTtlFunction ttlFunction) {
+    nameToTtlFunction.put(cacheName, ttlFunction);
+  }
+
+  /**
+   * 数据被修改后调用，记录修改次数，详见 {@link AdaptiveTtlFunction}
+   *
+   * @param redisKeys Redis 的键，如：cache:goods:id::1
+   */
+  public void onUpdate(Collection<String> redisKeys) {
+    if (nameToTtlFunction.isEmpty()) {
+      return;
+    }
+    for (String redisKey : redisKeys) {
+      int index = redisKey.indexOf(KEY_SEPARATOR);
+      if (index <= 0) {
+        continue;
+      }
+      AdaptiveTtlFunction ttlFunction = nameToTtlFunction.get(redisKey.substring(0, index));
+      if (ttlFunction != null) {
+        ttlFunction.recordUpdate(redisKey.substring(index + KEY_SEPARATOR.length()));
+      }
+    }
+  }
+
+  /**
+   * 逻辑过期的白名单
+   *
+   * @return 没有开启逻辑过期时为 null
+   */
+  @Nullable
+  public HotKeyWhitelist getHotKeyWhitelist() {
+    return hotKeyWhitelist;
+  }
+
+  void onAccess(String cacheName, Object key) {
+    AdaptiveTtlFunction ttlFunction = nameToTtlFunction.get(cacheName);
+    if (ttlFunction != null) {
+      ttlFunction.recordRead(key);
+    }
+    accessListener.accept(cacheName, key);
+  }
+
+  /**
+   * 如果这个缓存有空值缓存，则把键放入空值缓存
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param localKey 键（不带前缀），如商品 id
+   * @return false 表示这个缓存没有空值缓存，需要由调用者自己处理
+   */
+  public boolean putNegative(String cacheName, String localKey) {
+    NegativeCache negativeCache = nameToNegativeCache.get(cacheName);
+    if (negativeCache == null) {
+      return false;
+    }
+    negativeCache.put(localKey);
+    return true;
+  }
+
+  /**
+   * 给某个缓存指定一级缓存的存储，需要在第一次调用 {@link #getCache} 之前调用
+   *
+   * @param cacheName 缓存名称，如：cache:goods:id
+   * @param localStore 一级缓存的存储，如 {@link OffHeapGoodsStore}
+   */
+  public void registerLocalStore(@NonNull String cacheName, @NonNull LocalCacheStore localStore) {
+    nameToLocalStore.put(cacheName, localStore);
+  }
+
+  /**
+   * 设置放入一级缓存后的回调，默认什么也不做
+   *
+   * @param localFillListener 参数是 Redis 的键，如：cache:goods:id::1
+   */
+  public void setLocalFillListener(@NonNull Consumer<String> localFillListener) {
+    this.localFillListener = localFillListener;
+  }
+
+  void onLocalFill(String cacheName, String localKey) {
+    localFillListener.accept(cacheName + KEY_SEPARATOR + localKey);
+  }
+
+  /**
+   * 需要一级缓存的键的前缀，如：cache:goods:id::
+   *
+   * @return 前缀
+   */
+  public List<String> getLocalKeyPrefixes() {
+    return localCacheNames.stream().map(name -> name + KEY_SEPARATOR).sorted().toList();
+  }
+
+  void publishEvict(String cacheName, String localKey) {
+    publish(List.of(cacheName + KEY_SEPARATOR + localKey));
+  }
+
+  void publishClear(String cacheName) {
+    publish(List.of(cacheName));
+  }
+
+  /**
+   * 处理其他节点发来的失效消息
+   *
+   * @param message 消息，格式见类的注释
+   */
+  public void onInvalidationMessage(String message) {
+    String[] lines = message.split(LINE_SEPARATOR);
+    if (lines.length == 0 || nodeId.equals(lines[0])) {
+      return;
+    }
+    for (int i = 1; i < lines.length; i++) {
+      String line = lines[i];
+      if (line.contains(KEY_SEPARATOR)) {
+        evictLocal(line);
+        continue;
+      }
+      if (unwrap(nameToCache.get(line)) instanceof TwoLevelCache twoLevelCache) {
+        twoLevelCache.clearLocal();
+      }
+      NegativeCache negativeCache = nameToNegativeCache.get(line);
+      if (negativeCache != null) {
+        negativeCache.clear();
+      }
+    }
+  }
+
+  private boolean hasLocalCache(String redisKey) {
+    int index = redisKey.indexOf(KEY_SEPARATOR);
+    if (index <= 0) {
+      return false;
+    }
+    String cacheName = redisKey.substring(0, index);
+    return (enabled && localCacheNames.contains(cacheName))
+        || nameToNegativeCache.containsKey(cacheName);
+  }
+
+  private void publish(List<String> lines) {
+    if (!publishInvalidation) {
+      // 使用客户端缓存时，只需要为空值缓存发布消息
+      lines = lines.stream().filter(this::hasNegativeCache).toList();
+    }
+    if (lines.isEmpty()) {
+      return;
+    }
+    try {
+      String message = nodeId + LINE_SEPARATOR + String.join(LINE_SEPARATOR, lines);
+      stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+    } catch (RuntimeException e) {
+      // 发布失败时，其他节点的一级缓存会在过期后失效
+      log.warn("发布一级缓存失效消息失败：{}", lines, e);
+    }
+  }
+
+  @Nullable
+  private Cache unwrap(@Nullable Cache cache) {
+    return cache instanceof AccessTrackingCache accessTrackingCache
+        ? accessTrackingCache.getDelegate()
+        : cache;
+  }
+
+  private boolean hasNegativeCache(String line) {
+    int index = line.indexOf(KEY_SEPARATOR);
+    return nameToNegativeCache.containsKey(index < 0 ? line : line.substring(0, index));
+  }
+}
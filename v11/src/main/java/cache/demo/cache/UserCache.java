@@ -2,11 +2,20 @@ package cache.demo.cache;
 
 import cache.demo.entity.User;
 import cache.demo.mapper.UserMapper;
+import cache.demo.util.BatchLoader;
+import cache.demo.util.DistributedSingleFlight;
 import cache.demo.util.SingleFlightUtil;
-import cn.hutool.core.lang.Assert;
+import cache.demo.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import org.springframework.cache.Cache;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
@@ -24,13 +33,27 @@ public class UserCache {
   public static final String USER_ID_CACHE_PREFIX = "cache:user:id";
   public static final String USER_ACCOUNT_CACHE_PREFIX = "cache:user:account";
 
-  /** 允许多少个空值缓存 */
-  private static final int ALLOW_NULL_CACHE_NUMBER = 1000;
-
-  private static int maxAllowedId = Integer.MAX_VALUE;
-
   private UserMapper userMapper;
   private RedisTemplate<String, Object> redisTemplate;
+  private TwoLevelCacheManager cacheManager;
+  private CacheInvalidator cacheInvalidator;
+  private RefreshAheadScheduler refreshAheadScheduler;
+  private DistributedSingleFlight distributedSingleFlight;
+  private BatchLoader<Integer, User> userBatchLoader;
+  private IdExistenceFilter userIdFilter;
+  private AsyncCacheLoader asyncCacheLoader;
+
+  /** 注册提前刷新时使用的加载函数，刷新是后台查询，不经过批量加载器 */
+  @PostConstruct
+  public void registerRefreshLoader() {
+    cacheManager.registerRefreshLoader(
+        USER_ID_CACHE_PREFIX, id -> userMapper.selectById((Integer) id));
+    refreshAheadScheduler.register(
+        USER_ID_CACHE_PREFIX,
+        ids ->
+            userMapper.selectBatchIds(ids.stream().map(Integer.class::cast).toList()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity())));
+  }
 
   /**
    * 根据 id 获取用户
@@ -38,11 +61,87 @@ public class UserCache {
    * @param id 用户 id
    * @return 用户
    */
-  @Cacheable(value = USER_ID_CACHE_PREFIX, key = "#id")
+  // id 位图中没有的 id 由方法直接返回 null ，不查询数据库；只在这里判断一次，不在 condition 中重复判断
+  @Cacheable(
+      value = USER_ID_CACHE_PREFIX,
+      key = "#id",
+      unless = "#root.target.isCachePutSkipped(#result)")
   public User getById(@NonNull Integer id) {
-    Assert.isTrue(id <= maxAllowedId, "非法 id");
+    if (!userIdFilter.mightExist(id)) {
+      return null;
+    }
     String key = USER_ID_CACHE_PREFIX + "::" + id;
-    return SingleFlightUtil.execute(key, () -> userMapper.selectById(id));
+    Cache cache = Objects.requireNonNull(cacheManager.getCache(USER_ID_CACHE_PREFIX));
+    return SingleFlightUtil.execute(
+        key,
+        () ->
+            distributedSingleFlight.execute(
+                key, cache, id, () -> loadById(id), this::isCachePutSkipped));
+  }
+
+  /**
+   * 根据 id 异步获取用户（非阻塞版本） <br>
+   * 先用响应式 API 读取 Redis ，没有时在有界的虚拟线程执行器中查询数据库并放入缓存，调用者不会被阻塞，详见 {@link
+   * AsyncCacheLoader}
+   *
+   * @param id 用户 id
+   * @param timeout 最多等待多久，超时后只影响当前调用者
+   * @return 用户
+   */
+  public CompletableFuture<User> getByIdAsync(@NonNull Integer id, @NonNull Duration timeout) {
+    if (!userIdFilter.mightExist(id)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return asyncCacheLoader.getOrLoad(
+        USER_ID_CACHE_PREFIX + "::" + id,
+        () -> {
+          // 经过完整的缓存（一级缓存、空值缓存等）再检查一次
+          Cache cache = Objects.requireNonNull(cacheManager.getCache(USER_ID_CACHE_PREFIX));
+          Cache.ValueWrapper valueWrapper = cache.get(id);
+          if (valueWrapper != null) {
+            return (User) valueWrapper.get();
+          }
+          User value = loadById(id);
+          if (!isCachePutSkipped(value)) {
+            cache.put(id, value);
+          }
+          return value;
+        },
+        timeout);
+  }
+
+  /**
+   * 是否不需要把查询结果放入缓存 <br>
+   * 开启批量加载时，结果已经由批量加载器用 pipeline 写入缓存了，不需要再写一次；
+   * id 位图加载完成后，不存在的 id 由方法直接返回 null ，不需要再缓存空值
+   *
+   * @param result 查询结果
+   * @return true 表示不需要
+   */
+  public boolean isCachePutSkipped(User result) {
+    return isBatchLoadEnabled() || (result == null && userIdFilter.isReady());
+  }
+
+  /**
+   * 是否开启了批量加载
+   *
+   * @return true 表示开启
+   */
+  public boolean isBatchLoadEnabled() {
+    return userBatchLoader.isEnabled();
+  }
+
+  /**
+   * 从数据库中加载用户，开启批量加载时，会与其他线程同时加载的 id 合并成一次查询
+   *
+   * @param id 用户 id
+   * @return 用户
+   */
+  private User loadById(Integer id) {
+    if (isBatchLoadEnabled()) {
+      return userBatchLoader.load(id).join();
+    }
+    return userMapper.selectById(id);
   }
 
   /**
@@ -63,25 +162,27 @@ public class UserCache {
    * @param after 新增的用户
    */
   public void handleCacheAfterAdd(User after) {
+    userIdFilter.add(after.getId());
     List<String> keys =
         List.of(
             USER_ID_CACHE_PREFIX + "::" + after.getId(),
             USER_ACCOUNT_CACHE_PREFIX + "::" + after.getAccount());
-    redisTemplate.delete(keys);
+    cacheInvalidator.delete(keys);
   }
 
   /**
-   * 删除操作后的缓存处理
+   * 删除操作后的缓存处理，id 位图在事务提交后才删除，回滚时数据仍然存在，不能被判断为不存在
    *
    * @param before 删除前的用户
    */
   public void handleCacheAfterDelete(User before) {
+    TransactionUtil.afterCommit(() -> userIdFilter.remove(before.getId()));
     List<String> keys =
         List.of(
             USER_ID_CACHE_PREFIX + "::" + before.getId(),
             USER_ACCOUNT_CACHE_PREFIX + "::" + before.getAccount(),
             WEIBO_IDS_BY_USER_ID_CACHE_PREFIX + "::" + before.getId());
-    redisTemplate.delete(keys);
+    cacheInvalidator.delete(keys);
   }
 
   /**
@@ -96,15 +197,6 @@ public class UserCache {
             USER_ID_CACHE_PREFIX + "::" + after.getId(),
             USER_ACCOUNT_CACHE_PREFIX + "::" + before.getAccount(),
             USER_ACCOUNT_CACHE_PREFIX + "::" + after.getAccount());
-    redisTemplate.delete(keys);
-  }
-
-  /**
-   * 更新 {@link #maxAllowedId} 的值
-   *
-   * @param id 用户 id
-   */
-  public static void updateMaxAllowedIdByUserId(int id) {
-    maxAllowedId = id + ALLOW_NULL_CACHE_NUMBER;
+    cacheInvalidator.delete(keys);
   }
 }
@@ -2,19 +2,31 @@ package cache.demo.cache;
 
 import cache.demo.entity.Weibo;
 import cache.demo.mapper.WeiboMapper;
+import cache.demo.util.BatchLoader;
+import cache.demo.util.DistributedSingleFlight;
 import cache.demo.util.SingleFlightUtil;
-import cn.hutool.core.lang.Assert;
+import cache.demo.util.TransactionUtil;
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import org.springframework.cache.Cache;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
 /**
@@ -31,14 +43,54 @@ public class WeiboCache {
   /** 每个用户缓存多少条微博 */
   public static final int CACHE_WEIBO_SIZE_EACH_USER = 50;
 
-  /** 允许多少个空值缓存 */
-  private static final int ALLOW_NULL_CACHE_NUMBER = 1000;
+  /**
+   * 把新微博加到用户的微博 id 列表中：只有列表已经缓存时才追加，追加后只保留最新的若干条，并刷新过期时间 <br>
+   * KEYS[1] 微博 id 列表；ARGV[1] 微博 id （序列化后），ARGV[2] 分数，ARGV[3] 最多保留多少条，ARGV[4] 过期时间（毫秒，不大于 0 表示不过期）
+   */
+  private static final RedisScript<Long> APPEND_WEIBO_ID_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          if redis.call('EXISTS', KEYS[1]) == 0 then
+            return 0
+          end
+          redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+          local overflow = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[3])
+          if overflow > 0 then
+            redis.call('ZREMRANGEBYRANK', KEYS[1], 0, overflow - 1)
+          end
+          if tonumber(ARGV[4]) > 0 then
+            redis.call('PEXPIRE', KEYS[1], ARGV[4])
+          end
+          return 1
+          """,
+          Long.class);
 
-  private static int maxAllowedId = Integer.MAX_VALUE;
+  private static final RedisSerializer<Long> LONG_RESULT_SERIALIZER =
+      new GenericToStringSerializer<>(Long.class);
 
   private WeiboMapper weiboMapper;
   private RedisTemplate<String, Object> redisTemplate;
+  private TwoLevelCacheManager cacheManager;
+  private CacheInvalidator cacheInvalidator;
+  private RefreshAheadScheduler refreshAheadScheduler;
+  private DistributedSingleFlight distributedSingleFlight;
+  private BatchLoader<Integer, Weibo> weiboBatchLoader;
+  private IdExistenceFilter weiboIdFilter;
   private RedisCacheConfiguration cacheConfiguration;
+  private CacheBatchWriter cacheBatchWriter;
+  private AsyncCacheLoader asyncCacheLoader;
+
+  /** 注册提前刷新时使用的加载函数，刷新是后台查询，不经过批量加载器 */
+  @PostConstruct
+  public void registerRefreshLoader() {
+    cacheManager.registerRefreshLoader(
+        WEIBO_ID_CACHE_PREFIX, id -> weiboMapper.selectById((Integer) id));
+    refreshAheadScheduler.register(
+        WEIBO_ID_CACHE_PREFIX,
+        ids ->
+            weiboMapper.selectBatchIds(ids.stream().map(Integer.class::cast).toList()).stream()
+                .collect(Collectors.toMap(Weibo::getId, Function.identity())));
+  }
 
   /**
    * 根据 id 获取微博
@@ -46,19 +98,96 @@ public class WeiboCache {
    * @param id 微博 id
    * @return 微博
    */
-  @Cacheable(value = WEIBO_ID_CACHE_PREFIX, key = "#id")
+  // id 位图中没有的 id 由方法直接返回 null ，不查询数据库；只在这里判断一次，不在 condition 中重复判断
+  @Cacheable(
+      value = WEIBO_ID_CACHE_PREFIX,
+      key = "#id",
+      unless = "#root.target.isCachePutSkipped(#result)")
   public Weibo getById(@NonNull Integer id) {
-    Assert.isTrue(id <= maxAllowedId, "非法 id");
+    if (!weiboIdFilter.mightExist(id)) {
+      return null;
+    }
     String key = WEIBO_ID_CACHE_PREFIX + "::" + id;
-    return SingleFlightUtil.execute(key, () -> weiboMapper.selectById(id));
+    Cache cache = Objects.requireNonNull(cacheManager.getCache(WEIBO_ID_CACHE_PREFIX));
+    return SingleFlightUtil.execute(
+        key,
+        () ->
+            distributedSingleFlight.execute(
+                key, cache, id, () -> loadById(id), this::isCachePutSkipped));
   }
 
   /**
-   * 根据用户 id 获取微博列表（指定分页）
+   * 根据 id 异步获取微博（非阻塞版本） <br>
+   * 先用响应式 API 读取 Redis ，没有时在有界的虚拟线程执行器中查询数据库并放入缓存，调用者不会被阻塞，详见 {@link
+   * AsyncCacheLoader}
+   *
+   * @param id 微博 id
+   * @param timeout 最多等待多久，超时后只影响当前调用者
+   * @return 微博
+   */
+  public CompletableFuture<Weibo> getByIdAsync(@NonNull Integer id, @NonNull Duration timeout) {
+    if (!weiboIdFilter.mightExist(id)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return asyncCacheLoader.getOrLoad(
+        WEIBO_ID_CACHE_PREFIX + "::" + id,
+        () -> {
+          // 经过完整的缓存（一级缓存、空值缓存等）再检查一次
+          Cache cache = Objects.requireNonNull(cacheManager.getCache(WEIBO_ID_CACHE_PREFIX));
+          Cache.ValueWrapper valueWrapper = cache.get(id);
+          if (valueWrapper != null) {
+            return (Weibo) valueWrapper.get();
+          }
+          Weibo value = loadById(id);
+          if (!isCachePutSkipped(value)) {
+            cache.put(id, value);
+          }
+          return value;
+        },
+        timeout);
+  }
+
+  /**
+   * 是否不需要把查询结果放入缓存 <br>
+   * 开启批量加载时，结果已经由批量加载器用 pipeline 写入缓存了，不需要再写一次；
+   * id 位图加载完成后，不存在的 id 由方法直接返回 null ，不需要再缓存空值
+   *
+   * @param result 查询结果
+   * @return true 表示不需要
+   */
+  public boolean isCachePutSkipped(Weibo result) {
+    return isBatchLoadEnabled() || (result == null && weiboIdFilter.isReady());
+  }
+
+  /**
+   * 是否开启了批量加载
+   *
+   * @return true 表示开启
+   */
+  public boolean isBatchLoadEnabled() {
+    return weiboBatchLoader.isEnabled();
+  }
+
+  /**
+   * 从数据库中加载微博，开启批量加载时，会与其他线程同时加载的 id 合并成一次查询
+   *
+   * @param id 微博 id
+   * @return 微博
+   */
+  private Weibo loadById(Integer id) {
+    if (isBatchLoadEnabled()) {
+      return weiboBatchLoader.load(id).join();
+    }
+    return weiboMapper.selectById(id);
+  }
+
+  /**
+   * 根据用户 id 获取微博列表（指定分页） <br>
+   * 缓存中没有的微博用一次 selectBatchIds 查询，并用一次 pipeline 写入缓存，而不是一个一个地调用 getById
    *
    * @param userId 用户 id
    * @param pageReq 分页参数
-   * @param function 根据 id 获取微博的函数，请传递：weiboCache::getById <br>
+   * @param function 根据 id 获取微博的函数，请传递：weiboCache::getById ，只有一条微博不在缓存中时使用（可以合并并发的查询） <br>
    *     注：这个参数只能从外面传过来，如果直接从里面调用的话，不会走缓存
    * @return 微博列表
    */
@@ -68,21 +197,133 @@ public class WeiboCache {
     List<Integer> weiboIds =
         getWeiboIdsByUserId(userId).stream().skip(fromIndex).limit(pageReq.getSize()).toList();
     List<String> keys = weiboIds.stream().map(id -> WEIBO_ID_CACHE_PREFIX + "::" + id).toList();
-    List<Object> objects = redisTemplate.opsForValue().multiGet(keys);
-    assert objects != null;
-    List<Weibo> weiboList = new ArrayList<>();
+    List<Object> objects = cacheBatchWriter.multiGet(keys);
+    List<Weibo> weiboList = new ArrayList<>(objects.size());
+    List<Integer> missedIds = new ArrayList<>();
+    // 只有一条微博不在缓存中时，它在列表中的位置
+    int missedIndex = -1;
     for (int i = 0; i < objects.size(); i++) {
       Object obj = objects.get(i);
+      // 与 fillMissesAsync 一样，缓存了空值（NullValue）的微博不存在，不需要再查询
+      weiboList.add(obj instanceof Weibo weibo ? weibo : null);
       if (obj == null) {
-        Weibo weibo = function.apply(weiboIds.get(i));
-        weiboList.add(weibo);
-      } else {
-        weiboList.add((Weibo) obj);
+        missedIds.add(weiboIds.get(i));
+        missedIndex = i;
+      }
+    }
+    if (missedIds.size() == 1) {
+      weiboList.set(missedIndex, function.apply(missedIds.get(0)));
+    } else if (!missedIds.isEmpty()) {
+      Map<Integer, Weibo> idToWeibo = loadAll(missedIds);
+      // 按位置填充，缓存了空值的位置不在 idToWeibo 中，仍然是 null
+      for (int i = 0; i < weiboList.size(); i++) {
+        if (weiboList.get(i) == null) {
+          weiboList.set(i, idToWeibo.get(weiboIds.get(i)));
+        }
       }
     }
     return weiboList;
   }
 
+  /**
+   * 根据用户 id 异步获取微博列表（非阻塞版本，指定分页） <br>
+   * 用响应式 API 读取 zset 和微博，缓存中没有的微博在有界的虚拟线程执行器中查询，与 {@link
+   * #getLatestWeiboListByUserId} 一样，只有一条微博不在缓存中时使用 {@link #getByIdAsync}，多条时用一次 selectBatchIds 查询
+   *
+   * @param userId 用户 id
+   * @param pageReq 分页参数
+   * @param timeout 最多等待多久，超时后只影响当前调用者
+   * @return 微博列表
+   */
+  public CompletableFuture<List<Weibo>> getLatestWeiboListByUserIdAsync(
+      @NonNull Integer userId, IPage<Weibo> pageReq, @NonNull Duration timeout) {
+    int fromIndex = (int) ((pageReq.getCurrent() - 1) * pageReq.getSize());
+    String key = WEIBO_IDS_BY_USER_ID_CACHE_PREFIX + "::" + userId;
+    return asyncCacheLoader
+        .reverseRangeIds(key)
+        .thenCompose(
+            weiboIds ->
+                weiboIds.isEmpty()
+                    ? asyncCacheLoader.loadAsync(() -> getWeiboIdsByUserId(userId))
+                    : CompletableFuture.completedFuture(weiboIds))
+        .thenCompose(
+            allWeiboIds -> {
+              if (allWeiboIds == null) {
+                return CompletableFuture.completedFuture(new ArrayList<>());
+              }
+              List<Integer> weiboIds =
+                  allWeiboIds.stream().skip(fromIndex).limit(pageReq.getSize()).toList();
+              List<String> keys =
+                  weiboIds.stream().map(id -> WEIBO_ID_CACHE_PREFIX + "::" + id).toList();
+              return asyncCacheLoader
+                  .multiGet(keys)
+                  .thenCompose(objects -> fillMissesAsync(weiboIds, objects, timeout));
+            })
+        .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  private CompletableFuture<List<Weibo>> fillMissesAsync(
+      List<Integer> weiboIds, List<Object> objects, Duration timeout) {
+    List<Weibo> weiboList = new ArrayList<>(objects.size());
+    List<Integer> missedIds = new ArrayList<>();
+    int missedIndex = -1;
+    for (int i = 0; i < objects.size(); i++) {
+      Object obj = objects.get(i);
+      // 缓存了空值（NullValue）的微博不存在，不需要再查询
+      weiboList.add(obj instanceof Weibo weibo ? weibo : null);
+      if (obj == null) {
+        missedIds.add(weiboIds.get(i));
+        missedIndex = i;
+      }
+    }
+    if (missedIds.isEmpty()) {
+      return CompletableFuture.completedFuture(weiboList);
+    }
+    if (missedIds.size() == 1) {
+      int index = missedIndex;
+      return getByIdAsync(missedIds.get(0), timeout)
+          .thenApply(
+              weibo -> {
+                weiboList.set(index, weibo);
+                return weiboList;
+              });
+    }
+    return asyncCacheLoader
+        .loadAsync(() -> loadAll(missedIds))
+        .thenApply(
+            idToWeibo -> {
+              for (int i = 0; i < weiboList.size(); i++) {
+                if (weiboList.get(i) == null) {
+                  weiboList.set(i, idToWeibo.get(weiboIds.get(i)));
+                }
+              }
+              return weiboList;
+            });
+  }
+
+  /**
+   * 用一次 selectBatchIds 查询多条微博，并用一次 pipeline 写入缓存（过期时间与 @Cacheable 一样带随机偏移量）
+   *
+   * @param ids 微博 id
+   * @return 微博 id 到微博的映射，数据库中不存在的 id 不在其中
+   */
+  private Map<Integer, Weibo> loadAll(List<Integer> ids) {
+    List<Integer> existingIds = ids.stream().filter(weiboIdFilter::mightExist).toList();
+    if (existingIds.isEmpty()) {
+      return Map.of();
+    }
+    Map<Integer, Weibo> idToWeibo =
+        weiboMapper.selectBatchIds(existingIds).stream()
+            .collect(Collectors.toMap(Weibo::getId, Function.identity()));
+    Map<Integer, Weibo> idToValue = new HashMap<>(idToWeibo);
+    if (!weiboIdFilter.isReady()) {
+      // 与 isCachePutSkipped 一致，id 位图加载完成之前，不存在的 id 也要缓存空值
+      existingIds.forEach(id -> idToValue.putIfAbsent(id, null));
+    }
+    cacheBatchWriter.putAll(WEIBO_ID_CACHE_PREFIX, idToValue);
+    return idToWeibo;
+  }
+
   /**
    * 根据用户 id 获取微博 id 集合（倒序排列） <br>
    * 注：不要用 {@Cacheable} 注解，因为需要用到 redis 中的 zset，而不是普通的 string
@@ -121,35 +362,58 @@ public class WeiboCache {
    * @param after 新增的微博
    */
   public void handleCacheAfterAdd(Weibo after) {
-    redisTemplate.delete(WEIBO_ID_CACHE_PREFIX + "::" + after.getId());
-    ZSetOperations<String, Object> zSetOperations = redisTemplate.opsForZSet();
-    String key = WEIBO_IDS_BY_USER_ID_CACHE_PREFIX + "::" + after.getUserId();
-    Long size = zSetOperations.size(key);
-    // 如果缓存中的条数为 0 ，说明很有可能还没有查询过，这个时候触发一次查询
-    if (size == null || size == 0) {
-      getWeiboIdsByUserId(after.getUserId());
-    }
-    // 新微博加到缓存中，并设置缓存过期时间
-    zSetOperations.add(key, after.getId(), after.getId().doubleValue());
-    Duration timeToLive = cacheConfiguration.getTtlFunction().getTimeToLive(key, after.getId());
-    redisTemplate.expire(key, timeToLive);
-    // 如果缓存中的微博数量超过指定条数，那么删除最旧的微博
-    if (size != null && size >= CACHE_WEIBO_SIZE_EACH_USER) {
-      zSetOperations.popMin(key, (size + 1) - CACHE_WEIBO_SIZE_EACH_USER);
-    }
+    weiboIdFilter.add(after.getId());
+    cacheInvalidator.delete(List.of(WEIBO_ID_CACHE_PREFIX + "::" + after.getId()));
+    // 读取时不能再共享停留中的旧 id 列表
+    SingleFlightUtil.forget(WEIBO_IDS_BY_USER_ID_CACHE_PREFIX + "::" + after.getUserId());
+    appendWeiboId(after.getUserId(), after.getId());
+  }
+
+  /**
+   * 把新微博加到用户的微博 id 列表中，一次往返原子地完成追加、裁剪和刷新过期时间，同一个用户并发发微博时不会多删或者少删 <br>
+   * 列表没有缓存时不追加（只有一条的列表是错误的），下次读取时从数据库中加载，加载的结果已经包含了这条微博
+   *
+   * @param userId 用户 id
+   * @param weiboId 新微博的 id
+   * @return true 表示已追加，false 表示列表没有缓存
+   */
+  public boolean appendWeiboId(@NonNull Integer userId, @NonNull Integer weiboId) {
+    String key = WEIBO_IDS_BY_USER_ID_CACHE_PREFIX + "::" + userId;
+    // 成员与 getWeiboIdsByUserId 写入的一样用值的序列化，其他参数是数字字符串；
+    // 参数的序列化传 null ，所有参数都是已经序列化好的字节数组，原样传给 Redis
+    @SuppressWarnings("unchecked")
+    RedisSerializer<Object> valueSerializer =
+        (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    Duration timeToLive = cacheConfiguration.getTtlFunction().getTimeToLive(key, weiboId);
+    Long result =
+        redisTemplate.execute(
+            APPEND_WEIBO_ID_SCRIPT,
+            (RedisSerializer<?>) null,
+            LONG_RESULT_SERIALIZER,
+            List.of(key),
+            valueSerializer.serialize(weiboId),
+            toBytes(weiboId),
+            toBytes(CACHE_WEIBO_SIZE_EACH_USER),
+            toBytes(timeToLive.toMillis()));
+    return Objects.equals(result, 1L);
+  }
+
+  private static byte[] toBytes(long number) {
+    return String.valueOf(number).getBytes(StandardCharsets.UTF_8);
   }
 
   /**
-   * 删除操作后的缓存处理
+   * 删除操作后的缓存处理，id 位图在事务提交后才删除，回滚时数据仍然存在，不能被判断为不存在
    *
    * @param before 删除前的微博
    */
   public void handleCacheAfterDelete(Weibo before) {
+    TransactionUtil.afterCommit(() -> weiboIdFilter.remove(before.getId()));
     List<String> keys =
         List.of(
             WEIBO_ID_CACHE_PREFIX + "::" + before.getId(),
             WEIBO_IDS_BY_USER_ID_CACHE_PREFIX + "::" + before.getUserId());
-    redisTemplate.delete(keys);
+    cacheInvalidator.delete(keys);
   }
 
   /**
@@ -160,7 +424,7 @@ public class WeiboCache {
    */
   public void handleCacheAfterUpdate(Weibo before, Weibo after) {
     List<String> keys = List.of(WEIBO_ID_CACHE_PREFIX + "::" + after.getId());
-    redisTemplate.delete(keys);
+    cacheInvalidator.delete(keys);
   }
 
   /**
@@ -174,13 +438,4 @@ public class WeiboCache {
     String key = WEIBO_ID_CACHE_PREFIX + "::" + after.getId();
     redisTemplate.opsForValue().set(key, after);
   }
-
-  /**
-   * 更新 {@link #maxAllowedId} 的值
-   *
-   * @param id 微博 id
-   */
-  public static void updateMaxAllowedIdByWeiboId(int id) {
-    maxAllowedId = id + ALLOW_NULL_CACHE_NUMBER;
-  }
 }
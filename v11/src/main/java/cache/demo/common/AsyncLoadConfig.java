@@ -0,0 +1,27 @@
+package cache.demo.common;
+
+import cache.demo.util.BoundedVirtualThreadExecutor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 异步查询配置 <br>
+ * 异步方法（如 getByIdAsync ）用 Lettuce 的响应式 API 读取 Redis ，缓存未命中时在有界的虚拟线程执行器中查询数据库
+ *
+ * @author Camio1945
+ */
+@Configuration
+@RequiredArgsConstructor
+public class AsyncLoadConfig {
+
+  private final AsyncLoadProperties asyncLoadProperties;
+
+  @Bean
+  public BoundedVirtualThreadExecutor asyncLoadExecutor() {
+    return new BoundedVirtualThreadExecutor(
+        "async-load",
+        asyncLoadProperties.getMaxConcurrentLoads(),
+        asyncLoadProperties.getMaxPendingLoads());
+  }
+}
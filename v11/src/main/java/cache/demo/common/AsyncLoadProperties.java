@@ -0,0 +1,22 @@
+package cache.demo.common;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 异步查询配置，详见 {@link cache.demo.util.BoundedVirtualThreadExecutor}
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.async")
+public class AsyncLoadProperties {
+
+  /** 最多同时查询数据库的数量，应该不大于数据库连接池的大小 */
+  private int maxConcurrentLoads = 10;
+
+  /** 最多有多少个查询（包括正在等待的） */
+  private int maxPendingLoads = 10000;
+}
@@ -0,0 +1,76 @@
+package cache.demo.common;
+
+import static cache.demo.cache.GoodsCache.GOODS_ID_CACHE_PREFIX;
+import static cache.demo.cache.UserCache.USER_ID_CACHE_PREFIX;
+import static cache.demo.cache.WeiboCache.WEIBO_ID_CACHE_PREFIX;
+
+import cache.demo.cache.CacheBatchWriter;
+import cache.demo.entity.Goods;
+import cache.demo.entity.User;
+import cache.demo.entity.Weibo;
+import cache.demo.mapper.GoodsMapper;
+import cache.demo.mapper.UserMapper;
+import cache.demo.mapper.WeiboMapper;
+import cache.demo.util.BatchLoader;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 批量加载配置 <br>
+ * 缓存未命中时，把一个时间窗口内不同 id 的查询合并成一次 selectBatchIds ，并用一次 pipeline 把结果写入缓存
+ *
+ * @author Camio1945
+ */
+@Configuration
+@RequiredArgsConstructor
+public class BatchLoadConfig {
+
+  private final BatchLoadProperties batchLoadProperties;
+
+  @Bean
+  public BatchLoader<Integer, Goods> goodsBatchLoader(
+      GoodsMapper goodsMapper, CacheBatchWriter cacheBatchWriter) {
+    return newBatchLoader(GOODS_ID_CACHE_PREFIX, goodsMapper, Goods::getId, cacheBatchWriter);
+  }
+
+  @Bean
+  public BatchLoader<Integer, User> userBatchLoader(
+      UserMapper userMapper, CacheBatchWriter cacheBatchWriter) {
+    return newBatchLoader(USER_ID_CACHE_PREFIX, userMapper, User::getId, cacheBatchWriter);
+  }
+
+  @Bean
+  public BatchLoader<Integer, Weibo> weiboBatchLoader(
+      WeiboMapper weiboMapper, CacheBatchWriter cacheBatchWriter) {
+    return newBatchLoader(WEIBO_ID_CACHE_PREFIX, weiboMapper, Weibo::getId, cacheBatchWriter);
+  }
+
+  private <T> BatchLoader<Integer, T> newBatchLoader(
+      String cacheName,
+      BaseMapper<T> mapper,
+      Function<T, Integer> idGetter,
+      CacheBatchWriter cacheBatchWriter) {
+    return new BatchLoader<>(
+        ids -> {
+          Map<Integer, T> idToEntity = new HashMap<>();
+          for (T entity : mapper.selectBatchIds(ids)) {
+            idToEntity.put(idGetter.apply(entity), entity);
+          }
+          // 数据库中不存在的 id 也要写入（空值），与单个查询时的行为保持一致
+          Map<Integer, T> idToValue = new HashMap<>();
+          for (Integer id : ids) {
+            idToValue.put(id, idToEntity.get(id));
+          }
+          cacheBatchWriter.putAll(cacheName, idToValue);
+          return idToEntity;
+        },
+        batchLoadProperties.isEnabled(),
+        batchLoadProperties.getWindow(),
+        batchLoadProperties.getMaxBatchSize());
+  }
+}
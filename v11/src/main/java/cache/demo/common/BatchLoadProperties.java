@@ -0,0 +1,25 @@
+package cache.demo.common;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 批量加载配置，详见 {@link cache.demo.util.BatchLoader}
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.batch-load")
+public class BatchLoadProperties {
+
+  private boolean enabled = false;
+
+  /** 收集 id 的时间窗口 */
+  private Duration window = Duration.ofMillis(2);
+
+  /** 一个批次最多多少个 id ，凑够了就立即查询 */
+  private int maxBatchSize = 100;
+}
@@ -0,0 +1,41 @@
+package cache.demo.common;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 缓存值的序列化配置 <br>
+ * redisTemplate 和缓存使用同样的序列化方式，详见 {@link EntityBinaryRedisSerializer} 和 {@link
+ * CompressingRedisSerializer}
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache")
+public class CacheCodecProperties {
+
+  /** 值的序列化方式：json 或 binary */
+  private String codec = "json";
+
+  private Compression compression = new Compression();
+
+  /**
+   * 超过阈值时实际使用的阈值
+   *
+   * @return 关闭压缩时为 Integer.MAX_VALUE ，仍然可以读取已经压缩了的值
+   */
+  public int compressionThreshold() {
+    return compression.isEnabled() ? compression.getThreshold() : Integer.MAX_VALUE;
+  }
+
+  /** 压缩配置 */
+  @Data
+  public static class Compression {
+    private boolean enabled = false;
+
+    /** 序列化后超过多少字节时压缩 */
+    private int threshold = 1024;
+  }
+}
@@ -0,0 +1,99 @@
+package cache.demo.common;
+
+import cache.demo.cache.AdaptiveTtlFunction;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.stereotype.Component;
+
+/**
+ * 每个缓存单独的过期时间配置 <br>
+ * 没有在 caches 中列出的缓存使用 spring.cache.redis.time-to-live ；列出的缓存可以使用固定的过期时间，
+ * 也可以根据访问频率自适应，详见 {@link AdaptiveTtlFunction}。
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.ttl")
+public class CacheTtlProperties {
+
+  /** 没有单独配置时使用的默认值，timeToLive 为 null 时使用 spring.cache.redis.time-to-live */
+  private Spec defaults =
+      new Spec(
+          null,
+          false,
+          Duration.ofMinutes(10),
+          Duration.ofDays(3),
+          100,
+          100000,
+          Duration.ofMinutes(10));
+
+  /** 缓存名称到配置的映射，名称中有冒号，在 yml 中要写成 "[cache:goods:id]" */
+  private Map<String, Spec> caches = new LinkedHashMap<>();
+
+  /**
+   * 创建所有配置了的缓存的 TTL 函数
+   *
+   * @param defaultTimeToLive 默认的过期时间，即 spring.cache.redis.time-to-live
+   * @return 缓存名称到 TTL 函数的映射，自适应的是 {@link AdaptiveTtlFunction}，固定的是 {@link
+   *     RandomOffsetTtlFunction}
+   */
+  public Map<String, RedisCacheWriter.TtlFunction> buildTtlFunctions(Duration defaultTimeToLive) {
+    Map<String, RedisCacheWriter.TtlFunction> nameToTtlFunction = new LinkedHashMap<>();
+    caches.forEach(
+        (name, spec) -> {
+          if (!valueOf(spec.getAdaptive(), defaults.getAdaptive())) {
+            Duration ttl = valueOf(spec.getTimeToLive(), defaults.getTimeToLive());
+            nameToTtlFunction.put(
+                name, new RandomOffsetTtlFunction(ttl == null ? defaultTimeToLive : ttl));
+            return;
+          }
+          nameToTtlFunction.put(
+              name,
+              new AdaptiveTtlFunction(
+                  valueOf(spec.getMinTimeToLive(), defaults.getMinTimeToLive()),
+                  valueOf(spec.getMaxTimeToLive(), defaults.getMaxTimeToLive()),
+                  valueOf(spec.getHotThreshold(), defaults.getHotThreshold()),
+                  valueOf(spec.getExpectedKeys(), defaults.getExpectedKeys()),
+                  valueOf(spec.getUpdateHalfLife(), defaults.getUpdateHalfLife())));
+        });
+    return nameToTtlFunction;
+  }
+
+  private static <T> T valueOf(T value, T defaultValue) {
+    return value == null ? defaultValue : value;
+  }
+
+  /** 为 null 的字段使用默认值 */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Spec {
+    /** 固定的过期时间，adaptive 为 false 时使用 */
+    private Duration timeToLive;
+
+    /** 是否根据访问频率自适应 */
+    private Boolean adaptive;
+
+    /** 自适应时最短的过期时间，很少被读取或者最近被修改过的键使用 */
+    private Duration minTimeToLive;
+
+    /** 自适应时最长的过期时间，热点键使用 */
+    private Duration maxTimeToLive;
+
+    /** 最近读取了多少次的键算作热点键 */
+    private Integer hotThreshold;
+
+    /** 大约有多少个需要统计的键，决定频率草图的大小（每个键约 32 字节） */
+    private Integer expectedKeys;
+
+    /** 修改次数每隔多久减半，减半后最近被修改过的键的过期时间逐渐恢复 */
+    private Duration updateHalfLife;
+  }
+}
@@ -0,0 +1,184 @@
+package cache.demo.common;
+
+import cache.demo.util.JmxUtil;
+import cache.demo.util.Lz4Codec;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+/**
+ * 超过阈值的值压缩后再写入 Redis <br>
+ * 微博的内容可能很长，时间线一页要用 multiGet 读取几十条微博，压缩可以同时减少 Redis 的内存和网络传输的字节数。
+ * 小的值压缩的收益很小，还要多花 CPU ，所以只压缩序列化后超过 threshold 字节的值。
+ *
+ * <pre>
+ * 格式：
+ * 1 字节   魔数 0xC6 ，与 JSON 的第一个字节、二进制序列化的魔数 0xC5 都不同，所以可以区分
+ * 4 字节   压缩前的长度（大端）
+ * 之后是 {@link Lz4Codec} 压缩后的数据，解压后交给被包装的序列化反序列化
+ * 压缩后没有变小的值按原样写入。第一个字节不是魔数的值直接交给被包装的序列化，所以开启压缩前写入的值仍然可以读取；
+ * 关闭压缩时仍然要使用这个类（阈值设置为 Integer.MAX_VALUE ），以读取已经压缩了的值。
+ * 压缩率、压缩和解压的耗时可以在 JMX 中查看：cache.demo:type=Compression,name="redis"
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class CompressingRedisSerializer
+    implements RedisSerializer<Object>, CompressingRedisSerializerMBean {
+  static final byte MAGIC = (byte) 0xC6;
+
+  private static final int HEADER_LENGTH = 5;
+
+  /** Redis 中一个字符串最大 512 MB ，超过时说明头部已损坏 */
+  private static final int MAX_ORIGINAL_LENGTH = 512 * 1024 * 1024;
+
+  private final RedisSerializer<Object> delegate;
+
+  @Getter private final int threshold;
+
+  private final LongAdder compressedCount = new LongAdder();
+
+  private final LongAdder incompressibleCount = new LongAdder();
+
+  private final LongAdder skippedCount = new LongAdder();
+
+  private final LongAdder originalBytes = new LongAdder();
+
+  private final LongAdder compressedBytes = new LongAdder();
+
+  private final LongAdder compressNanos = new LongAdder();
+
+  private final LongAdder decompressedCount = new LongAdder();
+
+  private final LongAdder decompressNanos = new LongAdder();
+
+  /**
+   * @param delegate 被包装的序列化，如 {@link TypeAliasJsonRedisSerializer}
+   * @param threshold 序列化后超过多少字节时压缩
+   */
+  public CompressingRedisSerializer(@NonNull RedisSerializer<Object> delegate, int threshold) {
+    this.delegate = delegate;
+    this.threshold = threshold;
+    JmxUtil.register("Compression", "redis", this, CompressingRedisSerializerMBean.class);
+  }
+
+  @Override
+  @Nullable
+  public byte[] serialize(@Nullable Object value) throws SerializationException {
+    byte[] bytes = delegate.serialize(value);
+    if (bytes == null || bytes.length <= threshold) {
+      skippedCount.increment();
+      return bytes;
+    }
+    long start = System.nanoTime();
+    byte[] compressed = Lz4Codec.compress(bytes);
+    compressNanos.add(System.nanoTime() - start);
+    if (HEADER_LENGTH + compressed.length >= bytes.length) {
+      incompressibleCount.increment();
+      return bytes;
+    }
+    byte[] result = new byte[HEADER_LENGTH + compressed.length];
+    result[0] = MAGIC;
+    result[1] = (byte) (bytes.length >>> 24);
+    result[2] = (byte) (bytes.length >>> 16);
+    result[3] = (byte) (bytes.length >>> 8);
+    result[4] = (byte) bytes.length;
+    System.arraycopy(compressed, 0, result, HEADER_LENGTH, compressed.length);
+    compressedCount.increment();
+    originalBytes.add(bytes.length);
+    compressedBytes.add(result.length);
+    return result;
+  }
+
+  @Override
+  @Nullable
+  public Object deserialize(@Nullable byte[] bytes) throws SerializationException {
+    if (bytes == null || bytes.length == 0 || bytes[0] != MAGIC) {
+      return delegate.deserialize(bytes);
+    }
+    if (bytes.length < HEADER_LENGTH) {
+      throw new SerializationException("数据不完整，长度：" + bytes.length);
+    }
+    int originalLength =
+        (bytes[1] & 0xFF) << 24
+            | (bytes[2] & 0xFF) << 16
+            | (bytes[3] & 0xFF) << 8
+            | (bytes[4] & 0xFF);
+    if (originalLength < 0 || originalLength > MAX_ORIGINAL_LENGTH) {
+      throw new SerializationException("压缩前的长度错误：" + originalLength);
+    }
+    long start = System.nanoTime();
+    byte[] original;
+    try {
+      original = Lz4Codec.decompress(bytes, HEADER_LENGTH, originalLength);
+    } catch (IllegalArgumentException e) {
+      throw new SerializationException("解压失败", e);
+    }
+    decompressNanos.add(System.nanoTime() - start);
+    decompressedCount.increment();
+    return delegate.deserialize(original);
+  }
+
+  @Override
+  public long getCompressedCount() {
+    return compressedCount.sum();
+  }
+
+  @Override
+  public long getIncompressibleCount() {
+    return incompressibleCount.sum();
+  }
+
+  @Override
+  public long getSkippedCount() {
+    return skippedCount.sum();
+  }
+
+  @Override
+  public long getOriginalBytes() {
+    return originalBytes.sum();
+  }
+
+  @Override
+  public long getCompressedBytes() {
+    return compressedBytes.sum();
+  }
+
+  @Override
+  public double getCompressionRatio() {
+    long original = originalBytes.sum();
+    return original == 0 ? 1 : (double) compressedBytes.sum() / original;
+  }
+
+  @Override
+  public double getCompressTimeMeanMicros() {
+    long count = compressedCount.sum() + incompressibleCount.sum();
+    return count == 0 ? 0 : compressNanos.sum() / 1000.0 / count;
+  }
+
+  @Override
+  public long getDecompressedCount() {
+    return decompressedCount.sum();
+  }
+
+  @Override
+  public double getDecompressTimeMeanMicros() {
+    long count = decompressedCount.sum();
+    return count == 0 ? 0 : decompressNanos.sum() / 1000.0 / count;
+  }
+
+  @Override
+  public void reset() {
+    compressedCount.reset();
+    incompressibleCount.reset();
+    skippedCount.reset();
+    originalBytes.reset();
+    compressedBytes.reset();
+    compressNanos.reset();
+    decompressedCount.reset();
+    decompressNanos.reset();
+  }
+}
@@ -0,0 +1,42 @@
+package cache.demo.common;
+
+/**
+ * 值压缩统计信息（JMX 接口）
+ *
+ * @author Camio1945
+ */
+public interface CompressingRedisSerializerMBean {
+
+  /** 超过阈值的值才压缩（字节） */
+  int getThreshold();
+
+  /** 压缩后写入的值的个数 */
+  long getCompressedCount();
+
+  /** 超过阈值但压缩后没有变小，按原样写入的值的个数 */
+  long getIncompressibleCount();
+
+  /** 没有超过阈值，直接写入的值的个数 */
+  long getSkippedCount();
+
+  /** 压缩前的总字节数（只统计压缩后写入的值） */
+  long getOriginalBytes();
+
+  /** 压缩后的总字节数（包括头部） */
+  long getCompressedBytes();
+
+  /** 压缩率，即：压缩后的总字节数 / 压缩前的总字节数，越小越好 */
+  double getCompressionRatio();
+
+  /** 平均每次压缩的耗时（微秒），包括压缩后没有变小的 */
+  double getCompressTimeMeanMicros();
+
+  /** 解压的次数 */
+  long getDecompressedCount();
+
+  /** 平均每次解压的耗时（微秒） */
+  double getDecompressTimeMeanMicros();
+
+  /** 清空统计信息 */
+  void reset();
+}
@@ -0,0 +1,30 @@
+package cache.demo.common;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 概率提前刷新配置，详见 {@link cache.demo.cache.EarlyRefreshCache}
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.early-refresh")
+public class EarlyRefreshProperties {
+
+  private boolean enabled = false;
+
+  /** 哪些缓存需要提前刷新（需要在代码中注册加载函数） */
+  private List<String> cacheNames = new ArrayList<>();
+
+  /** 大于 1 时更早刷新，小于 1 时更晚刷新 */
+  private double beta = 1.0;
+
+  /** 还没有刷新过时，重新加载的耗时 */
+  private Duration defaultRecomputeTime = Duration.ofMillis(50);
+}
@@ -0,0 +1,34 @@
+package cache.demo.common;
+
+import cache.demo.cache.ExpirySpikeAnalyzer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 集中过期分析配置，详见 {@link ExpirySpikeAnalyzer}
+ *
+ * @author Camio1945
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ExpirySpikeConfig {
+
+  private final ExpirySpikeProperties expirySpikeProperties;
+
+  @Bean
+  public ExpirySpikeAnalyzer expirySpikeAnalyzer(StringRedisTemplate stringRedisTemplate) {
+    return new ExpirySpikeAnalyzer(
+        stringRedisTemplate,
+        expirySpikeProperties.isEnabled(),
+        expirySpikeProperties.getCacheNames(),
+        expirySpikeProperties.getMaxSampledKeys(),
+        expirySpikeProperties.getScanCount(),
+        expirySpikeProperties.getBucketWidth(),
+        expirySpikeProperties.getSpikeRatio(),
+        expirySpikeProperties.getMinSpikeKeys(),
+        expirySpikeProperties.getSpreadWindow(),
+        expirySpikeProperties.getBatchSize());
+  }
+}
@@ -0,0 +1,46 @@
+package cache.demo.common;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 集中过期分析配置，详见 {@link cache.demo.cache.ExpirySpikeAnalyzer} <br>
+ * 分析周期 cache.expiry-spike.interval 由 @Scheduled 直接读取，不在这里。
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.expiry-spike")
+public class ExpirySpikeProperties {
+
+  private boolean enabled = false;
+
+  /** 需要分析的缓存名称 */
+  private List<String> cacheNames = new ArrayList<>();
+
+  /** 每个缓存每次最多扫描多少个键 */
+  private int maxSampledKeys = 200000;
+
+  /** SCAN 的 COUNT 参数 */
+  private int scanCount = 1000;
+
+  /** 剩余时间直方图的桶宽 */
+  private Duration bucketWidth = Duration.ofMinutes(5);
+
+  /** 一个桶中的键数超过总数的多少时认为是集中过期 */
+  private double spikeRatio = 0.02;
+
+  /** 一个桶中至少有多少个键时才可能是集中过期 */
+  private int minSpikeKeys = 1000;
+
+  /** 集中过期的键的剩余时间最多延长多久 */
+  private Duration spreadWindow = Duration.ofHours(6);
+
+  /** 一次 pipeline 最多包含多少个键 */
+  private int batchSize = 1000;
+}
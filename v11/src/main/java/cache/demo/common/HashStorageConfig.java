@@ -0,0 +1,37 @@
+package cache.demo.common;
+
+import cache.demo.cache.GoodsHashStore;
+import java.time.Duration;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 哈希存储配置 <br>
+ * 开启后商品以 Redis 哈希的方式缓存，修改时只写入修改了的字段，不再删除整个缓存，详见 {@link GoodsHashStore}
+ *
+ * @author Camio1945
+ */
+@Configuration
+@RequiredArgsConstructor
+public class HashStorageConfig {
+
+  private final HashStorageProperties hashStorageProperties;
+
+  /** 单位为分钟，与 cache:goods:id 一样 */
+  @Value("${spring.cache.redis.time-to-live}")
+  private long redisTimeToLive;
+
+  @Bean
+  public GoodsHashStore goodsHashStore(StringRedisTemplate stringRedisTemplate) {
+    Duration timeToLive = Duration.ofMinutes(redisTimeToLive);
+    // RandomOffsetTtlFunction 最多多加 10%
+    return new GoodsHashStore(
+        stringRedisTemplate,
+        hashStorageProperties.isEnabled(),
+        new RandomOffsetTtlFunction(timeToLive),
+        timeToLive.plus(timeToLive.dividedBy(10)));
+  }
+}
@@ -0,0 +1,18 @@
+package cache.demo.common;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 哈希存储配置，详见 {@link cache.demo.cache.GoodsHashStore}
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.hash-storage")
+public class HashStorageProperties {
+
+  private boolean enabled = false;
+}
@@ -0,0 +1,26 @@
+package cache.demo.common;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * id 位图配置，详见 {@link cache.demo.cache.IdExistenceFilter} <br>
+ * 重新加载的周期 cache.id-bitmap.rebuild-interval 由 @Scheduled 直接读取，不在这里。
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.id-bitmap")
+public class IdBitmapProperties {
+
+  private boolean enabled = false;
+
+  /** 遇到大于高水位本地副本的 id 时，在后台从 Redis 读取最新的值，两次读取的最小间隔 */
+  private Duration highWaterMarkRefreshInterval = Duration.ofMillis(100);
+
+  /** 位图加载完成之前缓存的空值的过期时间，加载完成后不再缓存空值 */
+  private Duration nullTimeToLive = Duration.ofMinutes(1);
+}
@@ -0,0 +1,60 @@
+package cache.demo.common;
+
+import cache.demo.cache.IdExistenceFilter;
+import cache.demo.cache.IdHighWaterMark;
+import cache.demo.mapper.GoodsMapper;
+import cache.demo.mapper.UserMapper;
+import cache.demo.mapper.WeiboMapper;
+import cn.hutool.core.thread.ThreadUtil;
+import java.util.Collection;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * id 存在性过滤器配置 <br>
+ * 用位图记录数据库中存在的 id ，用 Redis 中的高水位记录集群中最大的 id ，不存在的 id 直接返回 null ，详见 {@link
+ * IdExistenceFilter}
+ *
+ * @author Camio1945
+ */
+@Configuration
+@RequiredArgsConstructor
+public class IdExistenceConfig {
+
+  private final IdBitmapProperties idBitmapProperties;
+
+  @Bean
+  public IdExistenceFilter goodsIdFilter(
+      GoodsMapper goodsMapper, StringRedisTemplate stringRedisTemplate) {
+    return newFilter("goods", goodsMapper::selectAllIds, stringRedisTemplate);
+  }
+
+  @Bean
+  public IdExistenceFilter userIdFilter(
+      UserMapper userMapper, StringRedisTemplate stringRedisTemplate) {
+    return newFilter("user", userMapper::selectAllIds, stringRedisTemplate);
+  }
+
+  @Bean
+  public IdExistenceFilter weiboIdFilter(
+      WeiboMapper weiboMapper, StringRedisTemplate stringRedisTemplate) {
+    return newFilter("weibo", weiboMapper::selectAllIds, stringRedisTemplate);
+  }
+
+  private IdExistenceFilter newFilter(
+      String name,
+      Supplier<Collection<Integer>> idsLoader,
+      StringRedisTemplate stringRedisTemplate) {
+    IdHighWaterMark highWaterMark =
+        new IdHighWaterMark(
+            name,
+            stringRedisTemplate,
+            idBitmapProperties.getHighWaterMarkRefreshInterval(),
+            ThreadUtil::execute);
+    return new IdExistenceFilter(
+        name, idsLoader, stringRedisTemplate, highWaterMark, idBitmapProperties.isEnabled());
+  }
+}
@@ -0,0 +1,58 @@
+package cache.demo.common;
+
+import cache.demo.listener.L1CacheTrackingListener;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * 一级缓存配置，详见 {@link cache.demo.cache.TwoLevelCacheManager}
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.l1")
+public class L1CacheProperties {
+
+  private boolean enabled = false;
+
+  /** 哪些缓存需要一级缓存 */
+  private List<String> cacheNames = new ArrayList<>();
+
+  /** 每个缓存的一级缓存最多缓存多少个键 */
+  private int maxSize = 10000;
+
+  /** 每个缓存的一级缓存中的值最多占用多少内存（按序列化后的长度估算），为 0 表示不限制，只限制键的数量 */
+  private DataSize maxBytes = DataSize.ofMegabytes(64);
+
+  private Duration timeToLive = Duration.ofSeconds(60);
+
+  /** 商品的一级缓存是否使用堆外存储 */
+  private boolean offHeapGoods = false;
+
+  /** 失效方式：pubsub 表示自己发布消息，tracking 表示由 Redis 的客户端缓存推送 */
+  private String invalidation = "pubsub";
+
+  private Tracking tracking = new Tracking();
+
+  /**
+   * 是否由 Redis 的客户端缓存推送失效消息
+   *
+   * @return true 表示是，详见 {@link L1CacheTrackingListener}
+   */
+  public boolean isTrackingInvalidation() {
+    return enabled && L1CacheTrackingListener.INVALIDATION.equals(invalidation);
+  }
+
+  /** 客户端缓存配置 */
+  @Data
+  public static class Tracking {
+    /** bcast 或 default */
+    private String mode = "bcast";
+  }
+}
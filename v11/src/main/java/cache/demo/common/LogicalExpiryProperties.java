@@ -0,0 +1,52 @@
+package cache.demo.common;
+
+import cache.demo.cache.HotKeyWhitelist;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 逻辑过期配置，详见 {@link cache.demo.cache.LogicalExpiryCache} <br>
+ * 只有 cacheNames 中的缓存、并且在白名单中的键才会使用逻辑过期，其他键仍然按照 Redis 的过期时间过期。
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.logical-expiry")
+public class LogicalExpiryProperties {
+
+  private boolean enabled = false;
+
+  /** 哪些缓存可以使用逻辑过期（需要在代码中注册加载函数） */
+  private List<String> cacheNames = new ArrayList<>();
+
+  /** 逻辑过期时间，过期后返回旧值，同时在后台重新加载 */
+  private Duration logicalTtl = Duration.ofMinutes(10);
+
+  /** 重新加载的租约时长，应该大于一次重新加载的耗时；加载失败时，租约过期之前不再重试 */
+  private Duration leaseTime = Duration.ofSeconds(10);
+
+  /** 手动加入白名单的键，缓存名称到键的映射，名称中有冒号，在 yml 中要写成 "[cache:goods:id]" */
+  private Map<String, List<String>> whitelist = new LinkedHashMap<>();
+
+  /** 每个周期自动把热点键统计中最热的多少个键加入白名单，为 0 表示不自动加入，需要开启 cache.refresh-ahead */
+  private int autoPromoteTop = 0;
+
+  /** 自动加入的键在白名单中保留多久，期间没有再次被选中的键会被移出，应该大于热点键统计的周期 */
+  private Duration autoPromoteTtl = Duration.ofMinutes(10);
+
+  /**
+   * 创建白名单
+   *
+   * @return 包含手动加入的键的白名单
+   */
+  public HotKeyWhitelist buildWhitelist() {
+    return new HotKeyWhitelist(whitelist, autoPromoteTtl.toMillis());
+  }
+}
@@ -0,0 +1,63 @@
+package cache.demo.common;
+
+import cache.demo.cache.NegativeCache;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 空值缓存配置，详见 {@link cache.demo.cache.NegativeCachingCache} <br>
+ * 只有在 caches 中列出的缓存名称才会使用空值缓存，没有列出的仍然把空值写入 Redis 。
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.negative")
+public class NegativeCacheProperties {
+
+  private boolean enabled = false;
+
+  /** 没有单独配置时使用的默认值 */
+  private Spec defaults = new Spec(10000, Duration.ofSeconds(60));
+
+  /** 缓存名称到配置的映射，名称中有冒号，在 yml 中要写成 "[cache:goods:id]" */
+  private Map<String, Spec> caches = new LinkedHashMap<>();
+
+  /**
+   * 创建所有配置了的空值缓存
+   *
+   * @return 空值缓存，未启用时为空
+   */
+  public Map<String, NegativeCache> buildNegativeCaches() {
+    Map<String, NegativeCache> nameToNegativeCache = new LinkedHashMap<>();
+    if (!enabled) {
+      return nameToNegativeCache;
+    }
+    caches.forEach(
+        (name, spec) -> {
+          Integer maxSize = spec.getMaxSize() == null ? defaults.getMaxSize() : spec.getMaxSize();
+          Duration ttl =
+              spec.getTimeToLive() == null ? defaults.getTimeToLive() : spec.getTimeToLive();
+          nameToNegativeCache.put(name, new NegativeCache(name, maxSize, ttl.toMillis()));
+        });
+    return nameToNegativeCache;
+  }
+
+  /** 为 null 的字段使用默认值 */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Spec {
+    /** 最多缓存多少个键 */
+    private Integer maxSize;
+
+    /** 过期时间，不经过缓存（如直接改库）新增的数据，最多在这段时间后可见 */
+    private Duration timeToLive;
+  }
+}
@@ -0,0 +1,24 @@
+package cache.demo.common;
+
+import java.time.Duration;
+import lombok.NonNull;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.lang.Nullable;
+
+/**
+ * 空值使用单独的过期时间，其他值交给 delegate <br>
+ * 用于 id 位图加载完成之前缓存的空值：加载完成后不再缓存空值，之前缓存的空值也不需要保留到正常的过期时间。
+ *
+ * @param delegate 非空值的 TTL 函数
+ * @param nullTimeToLive 空值的过期时间
+ * @author Camio1945
+ */
+public record NullValueTtlFunction(
+    @NonNull RedisCacheWriter.TtlFunction delegate, @NonNull Duration nullTimeToLive)
+    implements RedisCacheWriter.TtlFunction {
+
+  @Override
+  public Duration getTimeToLive(Object key, @Nullable Object value) {
+    return value == null ? nullTimeToLive : delegate.getTimeToLive(key, value);
+  }
+}
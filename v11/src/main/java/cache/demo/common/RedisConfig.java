@@ -1,10 +1,26 @@
 package cache.demo.common;
 
-import cn.hutool.core.util.ReflectUtil;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import cache.demo.cache.AdaptiveTtlFunction;
+import cache.demo.cache.AsyncCacheLoader;
+import cache.demo.cache.GoodsCache;
+import cache.demo.cache.IdExistenceFilter;
+import cache.demo.cache.IdHighWaterMark;
+import cache.demo.cache.LogicalExpiryCache;
+import cache.demo.cache.NegativeCache;
+import cache.demo.cache.OffHeapGoodsStore;
+import cache.demo.cache.StaleWhileRevalidateCache;
+import cache.demo.cache.TwoLevelCacheManager;
+import cache.demo.cache.UserCache;
+import cache.demo.cache.WeiboCache;
+import cache.demo.listener.IdBitmapListener;
+import cache.demo.listener.L1CacheInvalidationListener;
+import io.lettuce.core.ClientOptions;
 import io.lettuce.core.ReadFrom;
+import io.lettuce.core.protocol.ProtocolVersion;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,11 +31,16 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.*;
 import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
 
@@ -34,6 +55,13 @@ import org.springframework.data.redis.serializer.RedisSerializationContext.Seria
 @RequiredArgsConstructor
 public class RedisConfig implements CachingConfigurer {
 
+  /** 由 id 位图过滤的缓存 */
+  private static final List<String> ID_CACHE_NAMES =
+      List.of(
+          GoodsCache.GOODS_ID_CACHE_PREFIX,
+          UserCache.USER_ID_CACHE_PREFIX,
+          WeiboCache.WEIBO_ID_CACHE_PREFIX);
+
   /**
    * 这个对象是从 application.yml 中读取，然后注入到当前类中的 <br>
    * 因为当前类 RedisSingleConfig 上有 @Configuration 注解 <br>
@@ -41,12 +69,28 @@ public class RedisConfig implements CachingConfigurer {
    */
   private final RedisProperties redisProperties;
 
+  private final NegativeCacheProperties negativeCacheProperties;
+
+  private final LogicalExpiryProperties logicalExpiryProperties;
+
+  private final CacheTtlProperties cacheTtlProperties;
+
+  private final CacheCodecProperties cacheCodecProperties;
+
+  private final L1CacheProperties l1CacheProperties;
+
+  private final EarlyRefreshProperties earlyRefreshProperties;
+
+  private final StaleWhileRevalidateProperties staleProperties;
+
+  private final RefreshAheadProperties refreshAheadProperties;
+
+  private final IdBitmapProperties idBitmapProperties;
+
+  /** 单位为分钟，不是 Duration ，所以不能通过 spring-boot 的 CacheProperties 读取 */
   @Value("${spring.cache.redis.time-to-live}")
   private long redisTimeToLive;
 
-  @Value("${spring.data.redis.timeout}")
-  private Duration redisCommandTimeout;
-
   /**
    * 创建 RedisTemplate Bean，使用 JSON 序列化方式，来自：<a
    * href="https://github.com/YunaiV/yudao-cloud/blob/3a25879064279ea478c5efc09b629ffc632b04da/yudao-framework/yudao-spring-boot-starter-redis/src/main/java/cn/iocoder/yudao/framework/redis/config/YudaoRedisAutoConfiguration.java#L16">yudao-cloud</a>
@@ -60,19 +104,37 @@ public class RedisConfig implements CachingConfigurer {
     // 使用 String 序列化方式，序列化 KEY 。
     template.setKeySerializer(RedisSerializer.string());
     template.setHashKeySerializer(RedisSerializer.string());
-    // 使用 JSON 序列化方式（库是 Jackson ），序列化 VALUE 。
-    RedisSerializer<?> serializer = buildRedisSerializer();
+    // 使用 JSON 序列化方式（库是 Jackson ），序列化 VALUE 。商品、用户、微博可以使用二进制序列化
+    RedisSerializer<Object> serializer = this.redisValueSerializer();
     template.setValueSerializer(serializer);
     template.setHashValueSerializer(serializer);
     return template;
   }
 
-  public static RedisSerializer<Object> buildRedisSerializer() {
-    RedisSerializer<Object> json = RedisSerializer.json();
-    // 解决 LocalDateTime 的序列化
-    ObjectMapper objectMapper = (ObjectMapper) ReflectUtil.getFieldValue(json, "mapper");
-    objectMapper.registerModules(new JavaTimeModule());
-    return json;
+  /**
+   * 创建 ReactiveRedisTemplate Bean ，底层是 Lettuce 的响应式 API ，供异步方法使用 <br>
+   * 值按原始字节读取，由 {@link AsyncCacheLoader} 反序列化，以识别缓存写入的空值标记
+   */
+  @Bean
+  public ReactiveRedisTemplate<String, byte[]> reactiveRedisTemplate() {
+    RedisSerializationContext<String, byte[]> context =
+        RedisSerializationContext.<String, byte[]>newSerializationContext(RedisSerializer.string())
+            .value(RedisSerializer.byteArray())
+            .hashValue(RedisSerializer.byteArray())
+            .build();
+    return new ReactiveRedisTemplate<>(this.redisConnectionFactory(), context);
+  }
+
+  /**
+   * 值的序列化，redisTemplate 和缓存共用同一个实例（同一个 ObjectMapper ），详见 {@link
+   * TypeAliasJsonRedisSerializer} <br>
+   * 超过阈值的值再压缩，关闭压缩时也要包装一层，以读取已经压缩了的值
+   */
+  @Bean
+  public RedisSerializer<Object> redisValueSerializer() {
+    return new CompressingRedisSerializer(
+        withCodec(new TypeAliasJsonRedisSerializer()),
+        cacheCodecProperties.compressionThreshold());
   }
 
   @Bean
@@ -81,21 +143,155 @@ public class RedisConfig implements CachingConfigurer {
         new RedisStandaloneConfiguration(redisProperties.getHost(), redisProperties.getPort());
     serverConfig.setPassword(redisProperties.getPassword());
     serverConfig.setDatabase(redisProperties.getDatabase());
-    LettuceClientConfiguration clientConfig =
+    LettuceClientConfiguration.LettuceClientConfigurationBuilder builder =
         LettuceClientConfiguration.builder()
-            .commandTimeout(redisCommandTimeout)
+            .commandTimeout(redisProperties.getTimeout())
             // 优先读取从库
-            .readFrom(ReadFrom.REPLICA_PREFERRED)
-            .build();
+            .readFrom(ReadFrom.REPLICA_PREFERRED);
+    if (l1CacheProperties.isTrackingInvalidation()) {
+      // 客户端缓存的失效消息是 RESP3 的 push 消息，需要 Redis 6 及以上
+      builder.clientOptions(
+          ClientOptions.builder().protocolVersion(ProtocolVersion.RESP3).build());
+    }
+    LettuceClientConfiguration clientConfig = builder.build();
     return new LettuceConnectionFactory(serverConfig, clientConfig);
   }
 
+  /**
+   * 在 RedisCacheManager 外面包装一层一级缓存和空值缓存，详见 {@link TwoLevelCacheManager} <br>
+   * 在 cache.ttl 中单独配置了的缓存使用自己的过期时间，详见 {@link CacheTtlProperties}
+   */
   @Override
   @Bean
-  public RedisCacheManager cacheManager() {
-    return RedisCacheManager.builder(this.redisConnectionFactory())
-        .cacheDefaults(this.cacheConfiguration())
-        .build();
+  public TwoLevelCacheManager cacheManager() {
+    RedisCacheManager.RedisCacheManagerBuilder builder =
+        RedisCacheManager.builder(this.redisConnectionFactory())
+            .cacheDefaults(this.cacheConfiguration());
+    Map<String, RedisCacheWriter.TtlFunction> nameToTtlFunction =
+        cacheTtlProperties.buildTtlFunctions(Duration.ofMinutes(redisTimeToLive));
+    Map<String, RedisCacheWriter.TtlFunction> nameToEntryTtlFunction =
+        new HashMap<>(nameToTtlFunction);
+    if (idBitmapProperties.isEnabled()) {
+      // id 位图加载完成之前缓存的空值使用较短的过期时间，详见 IdExistenceFilter
+      for (String cacheName : ID_CACHE_NAMES) {
+        RedisCacheWriter.TtlFunction ttlFunction =
+            nameToTtlFunction.getOrDefault(
+                cacheName, new RandomOffsetTtlFunction(Duration.ofMinutes(redisTimeToLive)));
+        nameToEntryTtlFunction.put(
+            cacheName,
+            new NullValueTtlFunction(ttlFunction, idBitmapProperties.getNullTimeToLive()));
+      }
+    }
+    nameToEntryTtlFunction.forEach(
+        (cacheName, ttlFunction) ->
+            builder.withCacheConfiguration(
+                cacheName, this.cacheConfiguration().entryTtl(ttlFunction)));
+    if (staleProperties.isEnabled()) {
+      // 过期后继续使用旧值的副本，过期时间是主缓存最长的过期时间加上宽限期
+      for (String cacheName : staleProperties.getCacheNames()) {
+        Duration staleTimeToLive =
+            maxTimeToLive(nameToTtlFunction.get(cacheName)).plus(staleProperties.getGracePeriod());
+        builder.withCacheConfiguration(
+            cacheName + StaleWhileRevalidateCache.STALE_SUFFIX,
+            this.cacheConfiguration().entryTtl(new RandomOffsetTtlFunction(staleTimeToLive)));
+      }
+    }
+    if (logicalExpiryProperties.isEnabled()) {
+      // 逻辑过期的副本没有过期时间，由逻辑过期时间决定何时重新加载
+      for (String cacheName : logicalExpiryProperties.getCacheNames()) {
+        builder.withCacheConfiguration(
+            cacheName + LogicalExpiryCache.HOT_SUFFIX,
+            this.cacheConfiguration().entryTtl(Duration.ZERO));
+      }
+    }
+    RedisCacheManager redisCacheManager = builder.build();
+    redisCacheManager.afterPropertiesSet();
+    TwoLevelCacheManager cacheManager =
+        new TwoLevelCacheManager(
+            redisCacheManager,
+            new StringRedisTemplate(this.redisConnectionFactory()),
+            l1CacheProperties.isEnabled(),
+            !l1CacheProperties.isTrackingInvalidation(),
+            l1CacheProperties.getCacheNames(),
+            l1CacheProperties.getMaxSize(),
+            l1CacheProperties.getMaxBytes().toBytes(),
+            l1CacheProperties.getTimeToLive().toMillis());
+    if (l1CacheProperties.isOffHeapGoods()) {
+      cacheManager.registerLocalStore(
+          GoodsCache.GOODS_ID_CACHE_PREFIX,
+          new OffHeapGoodsStore(
+              l1CacheProperties.getMaxSize(), l1CacheProperties.getTimeToLive().toMillis()));
+    }
+    if (earlyRefreshProperties.isEnabled()) {
+      cacheManager.enableEarlyRefresh(
+          earlyRefreshProperties.getCacheNames(),
+          earlyRefreshProperties.getBeta(),
+          earlyRefreshProperties.getDefaultRecomputeTime());
+    }
+    if (staleProperties.isEnabled()) {
+      cacheManager.enableStaleWhileRevalidate(
+          staleProperties.getCacheNames(),
+          staleProperties.getRetryInterval(),
+          staleProperties.getMaxFailedKeys());
+    }
+    if (logicalExpiryProperties.isEnabled()) {
+      cacheManager.enableLogicalExpiry(
+          logicalExpiryProperties.getCacheNames(),
+          logicalExpiryProperties.buildWhitelist(),
+          new RedisLeaseStore(new StringRedisTemplate(this.redisConnectionFactory())),
+          logicalExpiryProperties.getLogicalTtl(),
+          logicalExpiryProperties.getLeaseTime());
+    }
+    if (refreshAheadProperties.isEnabled()) {
+      // 统计访问次数，交给 RefreshAheadScheduler 刷新热点键
+      cacheManager.enableAccessTracking(refreshAheadProperties.getCacheNames());
+    }
+    nameToTtlFunction.forEach(
+        (cacheName, ttlFunction) -> {
+          if (ttlFunction instanceof AdaptiveTtlFunction adaptiveTtlFunction) {
+            // 统计读取和修改次数
+            cacheManager.registerAdaptiveTtl(cacheName, adaptiveTtlFunction);
+          }
+        });
+    for (NegativeCache negativeCache : negativeCacheProperties.buildNegativeCaches().values()) {
+      cacheManager.registerNegativeCache(negativeCache);
+    }
+    return cacheManager;
+  }
+
+  /** 订阅一级缓存的失效消息、 id 变化消息和高水位变化消息 */
+  @Bean
+  public RedisMessageListenerContainer redisMessageListenerContainer(
+      L1CacheInvalidationListener l1CacheInvalidationListener, IdBitmapListener idBitmapListener) {
+    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(this.redisConnectionFactory());
+    container.addMessageListener(
+        l1CacheInvalidationListener,
+        new ChannelTopic(TwoLevelCacheManager.INVALIDATION_CHANNEL));
+    container.addMessageListener(
+        idBitmapListener,
+        List.of(
+            new ChannelTopic(IdExistenceFilter.CHANNEL),
+            new ChannelTopic(IdHighWaterMark.CHANNEL)));
+    return container;
+  }
+
+  /** 没有单独配置的缓存使用 spring.cache.redis.time-to-live */
+  private Duration maxTimeToLive(RedisCacheWriter.TtlFunction ttlFunction) {
+    if (ttlFunction instanceof AdaptiveTtlFunction adaptiveTtlFunction) {
+      return adaptiveTtlFunction.getMaxTtl();
+    }
+    if (ttlFunction instanceof RandomOffsetTtlFunction randomOffsetTtlFunction) {
+      return randomOffsetTtlFunction.duration();
+    }
+    return Duration.ofMinutes(redisTimeToLive);
+  }
+
+  /** 缓存的值也会被 redisTemplate 直接读取（如 multiGet），所以两边使用同样的序列化方式 */
+  private RedisSerializer<Object> withCodec(RedisSerializer<Object> jsonSerializer) {
+    return EntityBinaryRedisSerializer.CODEC.equals(cacheCodecProperties.getCodec())
+        ? new EntityBinaryRedisSerializer(jsonSerializer)
+        : jsonSerializer;
   }
 
   @Bean
@@ -103,6 +299,6 @@ public class RedisConfig implements CachingConfigurer {
     return RedisCacheConfiguration.defaultCacheConfig()
         .entryTtl(new RandomOffsetTtlFunction(Duration.ofMinutes(redisTimeToLive)))
         .serializeValuesWith(
-            SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()));
+            SerializationPair.fromSerializer(this.redisValueSerializer()));
   }
 }
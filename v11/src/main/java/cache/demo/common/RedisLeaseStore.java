@@ -0,0 +1,38 @@
+package cache.demo.common;
+
+import cache.demo.util.DistributedSingleFlight;
+import java.time.Duration;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+/**
+ * 基于 Redis 的租约存储
+ *
+ * @author Camio1945
+ */
+@AllArgsConstructor
+public class RedisLeaseStore implements DistributedSingleFlight.LeaseStore {
+
+  /** 只有值等于 token 时才删除，避免删掉其他节点在租约过期后重新获取的租约 */
+  private static final RedisScript<Long> RELEASE_SCRIPT =
+      new DefaultRedisScript<>(
+          "if redis.call('get', KEYS[1]) == ARGV[1] then "
+              + "return redis.call('del', KEYS[1]) else return 0 end",
+          Long.class);
+
+  private final StringRedisTemplate stringRedisTemplate;
+
+  @Override
+  public boolean tryAcquire(String leaseKey, String token, Duration leaseTime) {
+    Boolean success = stringRedisTemplate.opsForValue().setIfAbsent(leaseKey, token, leaseTime);
+    return success != null && success;
+  }
+
+  @Override
+  public void release(String leaseKey, String token) {
+    stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(leaseKey), token);
+  }
+}
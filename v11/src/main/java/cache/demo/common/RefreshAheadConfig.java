@@ -0,0 +1,57 @@
+package cache.demo.common;
+
+import cache.demo.cache.CacheBatchWriter;
+import cache.demo.cache.HotKeyWhitelist;
+import cache.demo.cache.RefreshAheadScheduler;
+import cache.demo.cache.TwoLevelCacheManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 热点键提前刷新配置，详见 {@link RefreshAheadScheduler} <br>
+ * 需要统计访问次数的缓存名称在 {@link RedisConfig} 中开启，这里只把访问转给调度器，
+ * 并按需把每个周期最热的键自动加入逻辑过期的白名单（{@link HotKeyWhitelist}）
+ *
+ * @author Camio1945
+ */
+@Configuration
+@RequiredArgsConstructor
+public class RefreshAheadConfig {
+
+  private final RefreshAheadProperties refreshAheadProperties;
+
+  @Bean
+  public RefreshAheadScheduler refreshAheadScheduler(
+      StringRedisTemplate stringRedisTemplate,
+      CacheBatchWriter cacheBatchWriter,
+      TwoLevelCacheManager cacheManager,
+      LogicalExpiryProperties logicalExpiryProperties) {
+    RefreshAheadScheduler scheduler =
+        new RefreshAheadScheduler(
+            stringRedisTemplate,
+            cacheBatchWriter,
+            refreshAheadProperties.isEnabled(),
+            refreshAheadProperties.getRefreshBefore(),
+            refreshAheadProperties.getTopKeys(),
+            refreshAheadProperties.getMaxTrackedKeys(),
+            refreshAheadProperties.getBatchSize(),
+            refreshAheadProperties.getWorkers(),
+            refreshAheadProperties.getQueueCapacity(),
+            refreshAheadProperties.getMaxQueriesPerSecond());
+    cacheManager.setAccessListener(scheduler::recordAccess);
+    HotKeyWhitelist whitelist = cacheManager.getHotKeyWhitelist();
+    int autoPromoteTop = logicalExpiryProperties.getAutoPromoteTop();
+    if (whitelist != null && autoPromoteTop > 0) {
+      scheduler.setHotKeysListener(
+          (cacheName, hotKeys) -> {
+            if (logicalExpiryProperties.getCacheNames().contains(cacheName)) {
+              whitelist.promote(
+                  cacheName, hotKeys.subList(0, Math.min(autoPromoteTop, hotKeys.size())));
+            }
+          });
+    }
+    return scheduler;
+  }
+}
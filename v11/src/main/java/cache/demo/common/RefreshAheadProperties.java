@@ -0,0 +1,46 @@
+package cache.demo.common;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 热点键提前刷新配置，详见 {@link cache.demo.cache.RefreshAheadScheduler} <br>
+ * 检查周期 cache.refresh-ahead.interval 由 @Scheduled 直接读取，不在这里。
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.refresh-ahead")
+public class RefreshAheadProperties {
+
+  private boolean enabled = false;
+
+  /** 哪些缓存需要提前刷新（需要在代码中注册加载函数） */
+  private List<String> cacheNames = new ArrayList<>();
+
+  /** 剩余时间不超过多少时刷新，应该大于检查周期 */
+  private Duration refreshBefore = Duration.ofMinutes(5);
+
+  /** 每个周期每个缓存最多检查多少个热点键 */
+  private int topKeys = 1000;
+
+  /** 每个缓存最多统计多少个键 */
+  private int maxTrackedKeys = 100000;
+
+  /** 一次 selectBatchIds 最多加载多少个键 */
+  private int batchSize = 100;
+
+  /** 执行刷新的线程数 */
+  private int workers = 2;
+
+  /** 等待执行的批次数 */
+  private int queueCapacity = 100;
+
+  /** 每秒最多查询数据库的次数（一个批次算一次） */
+  private double maxQueriesPerSecond = 50;
+}
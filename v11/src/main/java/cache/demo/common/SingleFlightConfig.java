@@ -0,0 +1,38 @@
+package cache.demo.common;
+
+import cache.demo.util.DistributedSingleFlight;
+import cache.demo.util.SingleFlightUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 单飞配置
+ *
+ * @author Camio1945
+ */
+@Configuration
+@RequiredArgsConstructor
+public class SingleFlightConfig {
+
+  private final SingleFlightProperties singleFlightProperties;
+
+  @PostConstruct
+  public void initLinger() {
+    SingleFlightUtil.setLinger(
+        singleFlightProperties.getLinger(), singleFlightProperties.getMaxLingeringKeys());
+  }
+
+  @Bean
+  public DistributedSingleFlight distributedSingleFlight(StringRedisTemplate stringRedisTemplate) {
+    SingleFlightProperties.Distributed distributed = singleFlightProperties.getDistributed();
+    return new DistributedSingleFlight(
+        new RedisLeaseStore(stringRedisTemplate),
+        distributed.isEnabled(),
+        distributed.getLeaseTime(),
+        distributed.getMaxWait(),
+        distributed.getPollInterval());
+  }
+}
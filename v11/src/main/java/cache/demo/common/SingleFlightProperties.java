@@ -0,0 +1,41 @@
+package cache.demo.common;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 单飞配置，详见 {@link cache.demo.util.SingleFlightUtil} 和 {@link
+ * cache.demo.util.DistributedSingleFlight}
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.single-flight")
+public class SingleFlightProperties {
+
+  /** 领导者执行成功后，结果在单飞中多停留多久，为 0 表示不停留 */
+  private Duration linger = Duration.ZERO;
+
+  /** 最多有多少个 key 同时停留 */
+  private int maxLingeringKeys = 10000;
+
+  private Distributed distributed = new Distributed();
+
+  /** 集群级别的单飞配置 */
+  @Data
+  public static class Distributed {
+    private boolean enabled = false;
+
+    /** 租约时长，应该大于一次数据库查询的耗时 */
+    private Duration leaseTime = Duration.ofMillis(3000);
+
+    /** 没拿到租约的节点最多等待多久 */
+    private Duration maxWait = Duration.ofMillis(2000);
+
+    /** 没拿到租约的节点多久检查一次缓存 */
+    private Duration pollInterval = Duration.ofMillis(20);
+  }
+}
@@ -0,0 +1,33 @@
+package cache.demo.common;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 过期后继续使用旧值的配置，详见 {@link cache.demo.cache.StaleWhileRevalidateCache}
+ *
+ * @author Camio1945
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.stale")
+public class StaleWhileRevalidateProperties {
+
+  private boolean enabled = false;
+
+  /** 哪些缓存需要保存副本（需要在代码中注册加载函数） */
+  private List<String> cacheNames = new ArrayList<>();
+
+  /** 副本比主缓存多保存多久 */
+  private Duration gracePeriod = Duration.ofHours(6);
+
+  /** 重新加载失败后，同一个键多久之后才能再次加载 */
+  private Duration retryInterval = Duration.ofSeconds(10);
+
+  /** 最多记录多少个加载失败的键 */
+  private int maxFailedKeys = 10000;
+}
@@ -0,0 +1,145 @@
+package cache.demo.common;
+
+import cache.demo.entity.Goods;
+import cache.demo.entity.User;
+import cache.demo.entity.Weibo;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.DatabindContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.TypeIdResolver;
+import com.fasterxml.jackson.databind.jsontype.impl.ClassNameIdResolver;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 使用短类型别名的 JSON 序列化，整个项目共用一个实例，RedisTemplate 和 @Cacheable 写入的值用同样的方式读写 <br>
+ * GenericJackson2JsonRedisSerializer 在每个对象中写入 "@class":"cache.demo.entity.Goods" ，
+ * 这里对常用的类型改为写入别名（如 "@class":"G"），其他类型仍然写入全类名。
+ *
+ * <pre>
+ * 别名只在写入时使用，读取时别名和全类名都可以识别，所以切换前写入的值仍然可以读取；
+ * 但切换后写入的值不能被旧版本读取，滚动发布时需要先发布能识别别名的版本。别名一旦使用就不能修改或者复用。
+ * 与 GenericJackson2JsonRedisSerializer 默认的配置相比：
+ *   注册了 JavaTimeModule ，可以序列化 LocalDateTime 等类型
+ *   读取时不再先把 JSON 解析成树来找 @class（别名不是类名，会解析失败），而是直接交给 Jackson 的默认类型处理，每次读取少解析一遍
+ * 创建时把每个别名对应的类型都序列化和反序列化一次，让 Jackson 提前创建好序列化器，第一次读写缓存时不会变慢。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class TypeAliasJsonRedisSerializer extends GenericJackson2JsonRedisSerializer {
+  /** 类型信息的属性名，与 GenericJackson2JsonRedisSerializer 默认的一致 */
+  private static final String TYPE_PROPERTY = "@class";
+
+  /** 类型到别名的映射 */
+  static final Map<Class<?>, String> TYPE_TO_ALIAS =
+      Map.of(Goods.class, "G", User.class, "U", Weibo.class, "W");
+
+  private static final Map<String, Class<?>> ALIAS_TO_TYPE =
+      TYPE_TO_ALIAS.entrySet().stream()
+          .collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
+
+  public TypeAliasJsonRedisSerializer() {
+    super(buildObjectMapper());
+    warmUp();
+  }
+
+  private static ObjectMapper buildObjectMapper() {
+    ObjectMapper mapper = new ObjectMapper();
+    // 解决 LocalDateTime 的序列化
+    mapper.registerModule(new JavaTimeModule());
+    registerNullValueSerializer(mapper, TYPE_PROPERTY);
+    mapper.setDefaultTyping(
+        new AliasTypeResolverBuilder(mapper.getPolymorphicTypeValidator())
+            .init(JsonTypeInfo.Id.CLASS, null)
+            .inclusion(JsonTypeInfo.As.PROPERTY)
+            .typeProperty(TYPE_PROPERTY));
+    return mapper;
+  }
+
+  @Override
+  protected JavaType resolveType(byte[] source, Class<?> type) throws IOException {
+    return getObjectMapper().getTypeFactory().constructType(type);
+  }
+
+  private void warmUp() {
+    Goods goods = new Goods();
+    goods.setPrice(BigDecimal.ONE);
+    for (Object value : new Object[] {goods, new User(), new Weibo()}) {
+      deserialize(serialize(value));
+    }
+  }
+
+  /** 与 GenericJackson2JsonRedisSerializer 中的一样，基本类型、枚举和 java 包中的 final 类不写入类型信息 */
+  private static class AliasTypeResolverBuilder extends ObjectMapper.DefaultTypeResolverBuilder {
+
+    AliasTypeResolverBuilder(PolymorphicTypeValidator polymorphicTypeValidator) {
+      super(ObjectMapper.DefaultTyping.EVERYTHING, polymorphicTypeValidator);
+    }
+
+    @Override
+    public boolean useForType(JavaType javaType) {
+      if (javaType.isJavaLangObject()) {
+        return true;
+      }
+      while (javaType.isArrayType() || javaType.isReferenceType()) {
+        javaType =
+            javaType.isArrayType() ? javaType.getContentType() : javaType.getReferencedType();
+      }
+      Class<?> rawClass = javaType.getRawClass();
+      if (javaType.isEnumType() || ClassUtils.isPrimitiveOrWrapper(rawClass)) {
+        return false;
+      }
+      if (javaType.isFinal() && rawClass.getPackageName().startsWith("java")) {
+        return false;
+      }
+      return !TreeNode.class.isAssignableFrom(rawClass);
+    }
+
+    @Override
+    protected TypeIdResolver idResolver(
+        MapperConfig<?> config,
+        JavaType baseType,
+        PolymorphicTypeValidator subtypeValidator,
+        Collection<NamedType> subtypes,
+        boolean forSer,
+        boolean forDeser) {
+      return new AliasTypeIdResolver(baseType, config.getTypeFactory(), subtypeValidator);
+    }
+  }
+
+  /** 有别名的类型写入别名，其他类型写入全类名 */
+  private static class AliasTypeIdResolver extends ClassNameIdResolver {
+
+    AliasTypeIdResolver(
+        JavaType baseType, TypeFactory typeFactory, PolymorphicTypeValidator subtypeValidator) {
+      super(baseType, typeFactory, subtypeValidator);
+    }
+
+    @Override
+    protected String _idFrom(Object value, Class<?> cls, TypeFactory typeFactory) {
+      String alias = TYPE_TO_ALIAS.get(cls);
+      return alias == null ? super._idFrom(value, cls, typeFactory) : alias;
+    }
+
+    @Override
+    protected JavaType _typeFromId(String id, DatabindContext context) throws IOException {
+      Class<?> type = ALIAS_TO_TYPE.get(id);
+      return type == null
+          ? super._typeFromId(id, context)
+          : context.constructSpecializedType(_baseType, type);
+    }
+  }
+}
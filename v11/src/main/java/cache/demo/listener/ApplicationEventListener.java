@@ -1,7 +1,8 @@
 package cache.demo.listener;
 
-import cache.demo.service.*;
+import cache.demo.cache.IdExistenceFilter;
 import cn.hutool.core.thread.ThreadUtil;
+import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -9,6 +10,7 @@ import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.ContextStoppedEvent;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 /**
@@ -20,16 +22,15 @@ import org.springframework.stereotype.Service;
 @Service
 @AllArgsConstructor
 public class ApplicationEventListener implements ApplicationListener {
-  private IGoodsService goodsService;
-  private IUserService userService;
-  private IWeiboService weiboService;
+  private List<IdExistenceFilter> idExistenceFilters;
 
   @Override
   public void onApplicationEvent(ApplicationEvent event) {
     // 项目启动完成事件
     if (event instanceof ApplicationReadyEvent) {
       log.info("项目启动完成，监听器 " + ApplicationEventListener.class + " 开始执行");
-      updateMaxAllowedId();
+      // 在后台加载，不推迟启动完成，也不占用定时任务的线程
+      ThreadUtil.execute(this::rebuildIdExistenceFilters);
       return;
     }
     // 项目停止和应用关闭事件
@@ -38,12 +39,21 @@ public class ApplicationEventListener implements ApplicationListener {
     }
   }
 
-  private void updateMaxAllowedId() {
-    ThreadUtil.execute(
-        () -> {
-          goodsService.updateMaxAllowedId();
-          userService.updateMaxAllowedId();
-          weiboService.updateMaxAllowedId();
-        });
+  /**
+   * 从数据库中重新加载 id 位图 <br>
+   * 启动时在后台加载，加载完成之前的查询不会被过滤，也不会出错，只是仍然会缓存空值（过期时间较短）；
+   * 之后定时重新加载，修正因为丢失了其他节点的消息而产生的偏差
+   */
+  @Scheduled(
+      initialDelayString = "${cache.id-bitmap.rebuild-interval:PT10M}",
+      fixedDelayString = "${cache.id-bitmap.rebuild-interval:PT10M}")
+  public void rebuildIdExistenceFilters() {
+    for (IdExistenceFilter filter : idExistenceFilters) {
+      try {
+        filter.rebuild();
+      } catch (RuntimeException e) {
+        log.error("{} 的 id 位图加载失败", filter.getName(), e);
+      }
+    }
   }
 }
@@ -0,0 +1,33 @@
+package cache.demo.listener;
+
+import cache.demo.cache.IdExistenceFilter;
+import cache.demo.cache.IdHighWaterMark;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+/**
+ * id 变化消息监听器，收到其他节点发来的消息后，更新本节点的 id 位图或高水位
+ *
+ * @author Camio1945
+ */
+@Service
+@AllArgsConstructor
+public class IdBitmapListener implements MessageListener {
+  private List<IdExistenceFilter> idExistenceFilters;
+
+  @Override
+  public void onMessage(Message message, @Nullable byte[] pattern) {
+    String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+    String body = new String(message.getBody(), StandardCharsets.UTF_8);
+    if (IdHighWaterMark.CHANNEL.equals(channel)) {
+      idExistenceFilters.forEach(filter -> filter.getHighWaterMark().onMessage(body));
+    } else {
+      idExistenceFilters.forEach(filter -> filter.onMessage(body));
+    }
+  }
+}
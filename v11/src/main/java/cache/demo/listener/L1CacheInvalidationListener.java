@@ -0,0 +1,25 @@
+package cache.demo.listener;
+
+import cache.demo.cache.TwoLevelCacheManager;
+import java.nio.charset.StandardCharsets;
+import lombok.AllArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+/**
+ * 一级缓存失效消息监听器，收到其他节点发来的消息后，删除本节点的一级缓存
+ *
+ * @author Camio1945
+ */
+@Service
+@AllArgsConstructor
+public class L1CacheInvalidationListener implements MessageListener {
+  private TwoLevelCacheManager cacheManager;
+
+  @Override
+  public void onMessage(Message message, @Nullable byte[] pattern) {
+    cacheManager.onInvalidationMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+  }
+}
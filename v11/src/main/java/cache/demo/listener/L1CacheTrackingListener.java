@@ -0,0 +1,134 @@
+package cache.demo.listener;
+
+import cache.demo.cache.TwoLevelCacheManager;
+import cache.demo.common.L1CacheProperties;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushListener;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.SocketAddress;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * 通过 Redis 的客户端缓存（CLIENT TRACKING ，需要 Redis 6 及以上）失效一级缓存 <br>
+ * 单独建立一个 RESP3 连接开启跟踪，Redis 在键被修改或过期时推送 invalidate 消息，收到后删除本节点的一级缓存。
+ *
+ * <pre>
+ * 支持两种模式（cache.l1.tracking.mode）：
+ * bcast ：广播模式，只要是以一级缓存的名称开头（如 cache:goods:id::）的键被修改，就会收到消息，服务端不需要记录每个客户端读过哪些键
+ * default ：默认模式，只会收到本连接读过的键的消息，所以放入一级缓存后，会在跟踪连接上异步执行一次 EXISTS 来登记这个键
+ *          （从读取到值到登记之间如果键被修改，会错过失效消息，此时由一级缓存的过期时间兜底）
+ * 断开连接期间可能会丢失失效消息，并且重连后服务端已经忘记了之前的跟踪状态，所以断开和重连时都会清空一级缓存，重连后重新开启跟踪。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class L1CacheTrackingListener implements PushListener, RedisConnectionStateListener {
+  /** cache.l1.invalidation 的值为这个时，使用客户端缓存 */
+  public static final String INVALIDATION = "tracking";
+
+  private static final String MODE_BCAST = "bcast";
+
+  private static final String INVALIDATE = "invalidate";
+
+  private final LettuceConnectionFactory redisConnectionFactory;
+
+  private final TwoLevelCacheManager cacheManager;
+
+  private final L1CacheProperties l1CacheProperties;
+
+  private volatile StatefulRedisConnection<String, String> connection;
+
+  @PostConstruct
+  public void start() {
+    if (!l1CacheProperties.isTrackingInvalidation()) {
+      return;
+    }
+    RedisClient redisClient = (RedisClient) redisConnectionFactory.getRequiredNativeClient();
+    StatefulRedisConnection<String, String> trackingConnection =
+        redisClient.connect(StringCodec.UTF8);
+    trackingConnection.addListener((PushListener) this);
+    trackingConnection.addListener((RedisConnectionStateListener) this);
+    trackingConnection.sync().clientTracking(buildTrackingArgs());
+    connection = trackingConnection;
+    if (!isBcast()) {
+      cacheManager.setLocalFillListener(redisKey -> trackingConnection.async().exists(redisKey));
+    }
+    log.info(
+        "已开启 Redis 客户端缓存，模式：{}，前缀：{}",
+        l1CacheProperties.getTracking().getMode(),
+        cacheManager.getLocalKeyPrefixes());
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (connection != null) {
+      connection.close();
+    }
+  }
+
+  @Override
+  public void onPushMessage(PushMessage message) {
+    if (!INVALIDATE.equals(message.getType())) {
+      return;
+    }
+    // 内容是 ["invalidate", 键的列表] ，键的列表为 null 表示 Redis 执行了 FLUSHALL 或 FLUSHDB
+    List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+    if (content.size() > 1 && content.get(1) instanceof List<?> keys) {
+      keys.forEach(key -> cacheManager.evictLocal(String.valueOf(key)));
+    } else {
+      cacheManager.clearLocal();
+    }
+  }
+
+  @Override
+  public void onRedisConnected(RedisChannelHandler<?, ?> handler, SocketAddress local) {
+    StatefulRedisConnection<String, String> trackingConnection = connection;
+    // 第一次连接时 connection 还没有赋值，跟踪在 start 中开启
+    if (trackingConnection == null) {
+      return;
+    }
+    cacheManager.clearLocal();
+    // 在 Lettuce 的事件线程中，不能执行同步命令
+    trackingConnection
+        .async()
+        .clientTracking(buildTrackingArgs())
+        .exceptionally(
+            e -> {
+              log.warn("重新开启 Redis 客户端缓存失败", e);
+              return null;
+            });
+  }
+
+  @Override
+  public void onRedisDisconnected(RedisChannelHandler<?, ?> handler) {
+    if (connection != null) {
+      cacheManager.clearLocal();
+    }
+  }
+
+  private TrackingArgs buildTrackingArgs() {
+    TrackingArgs trackingArgs = TrackingArgs.Builder.enabled();
+    if (isBcast()) {
+      trackingArgs.bcast().prefixes(cacheManager.getLocalKeyPrefixes().toArray(String[]::new));
+    }
+    return trackingArgs;
+  }
+
+  private boolean isBcast() {
+    return MODE_BCAST.equals(l1CacheProperties.getTracking().getMode());
+  }
+}
@@ -22,6 +22,14 @@ public interface GoodsMapper extends BaseMapper<Goods> {
   @Select("select ifnull(max(id), 0) from goods")
   int selectMaxId();
 
+  /**
+   * 查询所有 id ，用于构建 id 位图
+   *
+   * @return 所有 id
+   */
+  @Select("select id from goods")
+  List<Integer> selectAllIds();
+
   /**
    * 根据店铺 id 和商品名称获取商品 id
    *
@@ -2,6 +2,7 @@ package cache.demo.mapper;
 
 import cache.demo.entity.User;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import java.util.List;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
@@ -21,6 +22,14 @@ public interface UserMapper extends BaseMapper<User> {
   @Select("select ifnull(max(id), 0) from user")
   int selectMaxId();
 
+  /**
+   * 查询所有 id ，用于构建 id 位图
+   *
+   * @return 所有 id
+   */
+  @Select("select id from user")
+  List<Integer> selectAllIds();
+
   /**
    * 根据账号查询 id
    *
@@ -22,6 +22,14 @@ public interface WeiboMapper extends BaseMapper<Weibo> {
   @Select("select ifnull(max(id), 0) from weibo")
   int selectMaxId();
 
+  /**
+   * 查询所有 id ，用于构建 id 位图
+   *
+   * @return 所有 id
+   */
+  @Select("select id from weibo")
+  List<Integer> selectAllIds();
+
   /**
    * 查询该用户最新的若干条微博 id
    *
@@ -3,6 +3,8 @@ package cache.demo.service;
 import cache.demo.entity.Goods;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import lombok.NonNull;
 
 /**
@@ -20,6 +22,15 @@ public interface IGoodsService {
    */
   Goods getById(@NonNull Integer id);
 
+  /**
+   * 根据 id 异步获取商品信息（非阻塞版本）
+   *
+   * @param id 商品 id
+   * @param timeout 最多等待多久，超时后以 TimeoutException 结束
+   * @return 商品信息
+   */
+  CompletableFuture<Goods> getByIdAsync(@NonNull Integer id, @NonNull Duration timeout);
+
   /**
    * 根据店铺 id 获取商品信息（分页）
    *
@@ -30,6 +41,21 @@ public interface IGoodsService {
    */
   IPage<Goods> getPageByStoreId(@NonNull Integer storeId, @NonNull Page<Goods> pageReq, String name);
 
+  /**
+   * 根据店铺 id 异步获取商品信息（分页，非阻塞版本）
+   *
+   * @param storeId 店铺 id
+   * @param pageReq 分页信息
+   * @param name 商品名称
+   * @param timeout 最多等待多久，超时后以 TimeoutException 结束
+   * @return 商品信息
+   */
+  CompletableFuture<IPage<Goods>> getPageByStoreIdAsync(
+      @NonNull Integer storeId,
+      @NonNull Page<Goods> pageReq,
+      String name,
+      @NonNull Duration timeout);
+
   /**
    * 根据店铺 id 和商品名称获取商品 id
    *
@@ -62,7 +88,4 @@ public interface IGoodsService {
    * @return true 表示删除成功，false 表示删除失败
    */
   boolean delete(@NonNull Integer id);
-
-  /** 更新最大允许的 id */
-  void updateMaxAllowedId();
 }
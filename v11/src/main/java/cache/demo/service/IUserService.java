@@ -1,6 +1,8 @@
 package cache.demo.service;
 
 import cache.demo.entity.User;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import lombok.NonNull;
 
 /**
@@ -18,6 +20,15 @@ public interface IUserService {
    */
   User getById(@NonNull Integer id);
 
+  /**
+   * 根据 id 异步获取用户信息（非阻塞版本）
+   *
+   * @param id 用户 id
+   * @param timeout 最多等待多久，超时后以 TimeoutException 结束
+   * @return 用户信息
+   */
+  CompletableFuture<User> getByIdAsync(@NonNull Integer id, @NonNull Duration timeout);
+
   /**
    * 根据账号获取用户
    *
@@ -49,7 +60,4 @@ public interface IUserService {
    * @return true 表示删除成功，false 表示删除失败
    */
   boolean delete(@NonNull Integer id);
-
-  /** 更新最大允许的 id */
-  void updateMaxAllowedId();
 }
@@ -3,6 +3,8 @@ package cache.demo.service;
 import cache.demo.entity.Weibo;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import lombok.NonNull;
 
 /**
@@ -20,6 +22,15 @@ public interface IWeiboService {
    */
   Weibo getById(@NonNull Integer id);
 
+  /**
+   * 根据 id 异步获取微博信息（非阻塞版本）
+   *
+   * @param id 微博 id
+   * @param timeout 最多等待多久，超时后以 TimeoutException 结束
+   * @return 微博信息
+   */
+  CompletableFuture<Weibo> getByIdAsync(@NonNull Integer id, @NonNull Duration timeout);
+
   /**
    * 根据用户 id 获取最新的微博信息（分页）
    *
@@ -31,6 +42,17 @@ public interface IWeiboService {
    */
   IPage<Weibo> getLatestPageByUserId(@NonNull Integer userId, Page<Weibo> pageReq);
 
+  /**
+   * 根据用户 id 异步获取最新的微博信息（分页，非阻塞版本）
+   *
+   * @param userId 用户 id
+   * @param pageReq 分页信息，详见 {@link #getLatestPageByUserId}
+   * @param timeout 最多等待多久，超时后以 TimeoutException 结束
+   * @return 微博信息
+   */
+  CompletableFuture<IPage<Weibo>> getLatestPageByUserIdAsync(
+      @NonNull Integer userId, Page<Weibo> pageReq, @NonNull Duration timeout);
+
   /**
    * 新增微博
    *
@@ -63,7 +85,4 @@ public interface IWeiboService {
    * @return true 表示删除成功，false 表示删除失败
    */
   boolean delete(@NonNull Integer id);
-
-  /** 更新最大允许的 id */
-  void updateMaxAllowedId();
 }
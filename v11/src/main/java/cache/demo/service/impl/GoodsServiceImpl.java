@@ -10,10 +10,13 @@ import cn.hutool.core.text.CharSequenceUtil;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.core.metadata.OrderItem;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * 商品服务实现类
@@ -31,11 +34,31 @@ public class GoodsServiceImpl implements IGoodsService {
     return goodsCache.getById(id);
   }
 
+  @Override
+  public CompletableFuture<Goods> getByIdAsync(@NonNull Integer id, @NonNull Duration timeout) {
+    return goodsCache.getByIdAsync(id, timeout);
+  }
+
   @Override
   public IPage<Goods> getPageByStoreId(
       @NonNull Integer storeId, @NonNull Page<Goods> pageReq, String name) {
-    IPage<Goods> pageRes = new Page<>(pageReq.getCurrent(), pageReq.getSize(), 0);
     List<Goods> fullList = goodsCache.getListByStoreId(storeId, goodsCache::getById);
+    return toPage(fullList, pageReq, name);
+  }
+
+  @Override
+  public CompletableFuture<IPage<Goods>> getPageByStoreIdAsync(
+      @NonNull Integer storeId,
+      @NonNull Page<Goods> pageReq,
+      String name,
+      @NonNull Duration timeout) {
+    return goodsCache
+        .getListByStoreIdAsync(storeId, timeout)
+        .thenApply(fullList -> toPage(fullList, pageReq, name));
+  }
+
+  private static IPage<Goods> toPage(List<Goods> fullList, Page<Goods> pageReq, String name) {
+    IPage<Goods> pageRes = new Page<>(pageReq.getCurrent(), pageReq.getSize(), 0);
     if (CollUtil.isEmpty(fullList)) {
       return pageRes;
     }
@@ -100,13 +123,14 @@ public class GoodsServiceImpl implements IGoodsService {
   public boolean add(@NonNull Goods goods) {
     boolean success = goodsMapper.insert(goods) > 0;
     if (success) {
-      GoodsCache.updateMaxAllowedIdByGoodsId(goods.getId());
       goodsCache.handleCacheAfterAdd(goods);
     }
     return success;
   }
 
+  /** 在事务中修改，缓存在提交后才会被删除或修改，详见 {@link GoodsCache#handleCacheAfterUpdate} */
   @Override
+  @Transactional(rollbackFor = Exception.class)
   public boolean update(@NonNull Goods goods) {
     Goods before = getById(goods.getId());
     Assert.equals(goods.getStoreId(), before.getStoreId(), "不允许修改商品所属的店铺");
@@ -126,9 +150,4 @@ public class GoodsServiceImpl implements IGoodsService {
     }
     return deleteRes;
   }
-
-  @Override
-  public void updateMaxAllowedId() {
-    GoodsCache.updateMaxAllowedIdByGoodsId(goodsMapper.selectMaxId());
-  }
 }
@@ -4,6 +4,8 @@ import cache.demo.cache.UserCache;
 import cache.demo.entity.User;
 import cache.demo.mapper.UserMapper;
 import cache.demo.service.IUserService;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import org.springframework.stereotype.Service;
@@ -24,6 +26,11 @@ public class UserServiceImpl implements IUserService {
     return userCache.getById(id);
   }
 
+  @Override
+  public CompletableFuture<User> getByIdAsync(@NonNull Integer id, @NonNull Duration timeout) {
+    return userCache.getByIdAsync(id, timeout);
+  }
+
   @Override
   public User getByAccount(@NonNull String account) {
     return userCache.getById(userCache.getIdByAccount(account));
@@ -33,7 +40,6 @@ public class UserServiceImpl implements IUserService {
   public boolean add(@NonNull User user) {
     boolean success = userMapper.insert(user) > 0;
     if (success) {
-      UserCache.updateMaxAllowedIdByUserId(user.getId());
       userCache.handleCacheAfterAdd(user);
     }
     return success;
@@ -58,9 +64,4 @@ public class UserServiceImpl implements IUserService {
     }
     return deleteRes;
   }
-
-  @Override
-  public void updateMaxAllowedId() {
-    UserCache.updateMaxAllowedIdByUserId(userMapper.selectMaxId());
-  }
 }
@@ -2,6 +2,7 @@ package cache.demo.service.impl;
 
 import static cache.demo.cache.WeiboCache.CACHE_WEIBO_SIZE_EACH_USER;
 
+import cache.demo.cache.AsyncCacheLoader;
 import cache.demo.cache.WeiboCache;
 import cache.demo.entity.Weibo;
 import cache.demo.mapper.WeiboMapper;
@@ -10,7 +11,10 @@ import cn.hutool.core.lang.Assert;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import org.springframework.stereotype.Service;
@@ -25,36 +29,66 @@ import org.springframework.stereotype.Service;
 public class WeiboServiceImpl implements IWeiboService {
   private WeiboCache weiboCache;
   private WeiboMapper weiboMapper;
+  private AsyncCacheLoader asyncCacheLoader;
 
   @Override
   public Weibo getById(@NonNull Integer id) {
     return weiboCache.getById(id);
   }
 
+  @Override
+  public CompletableFuture<Weibo> getByIdAsync(@NonNull Integer id, @NonNull Duration timeout) {
+    return weiboCache.getByIdAsync(id, timeout);
+  }
+
   @Override
   public IPage<Weibo> getLatestPageByUserId(@NonNull Integer userId, Page<Weibo> pageReq) {
+    if (isCached(pageReq)) {
+      List<Weibo> weiboList =
+          weiboCache.getLatestWeiboListByUserId(userId, pageReq, weiboCache::getById);
+      return pageReq.setRecords(weiboList);
+    } else {
+      return weiboMapper.selectPage(pageReq, latestQueryWrapper(userId));
+    }
+  }
+
+  @Override
+  public CompletableFuture<IPage<Weibo>> getLatestPageByUserIdAsync(
+      @NonNull Integer userId, Page<Weibo> pageReq, @NonNull Duration timeout) {
+    if (isCached(pageReq)) {
+      return weiboCache
+          .getLatestWeiboListByUserIdAsync(userId, pageReq, timeout)
+          .<IPage<Weibo>>thenApply(pageReq::setRecords);
+    }
+    return asyncCacheLoader
+        .<IPage<Weibo>>loadAsync(() -> weiboMapper.selectPage(pageReq, latestQueryWrapper(userId)))
+        .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * 校验分页参数，并判断要查询的这一页是否在缓存中（每个用户只缓存最新的 CACHE_WEIBO_SIZE_EACH_USER 条）
+   *
+   * @param pageReq 分页参数，其中的 searchCount 会被强制设置为 false
+   * @return true 表示在缓存中
+   */
+  private static boolean isCached(Page<Weibo> pageReq) {
     pageReq.setSearchCount(false);
     long size = pageReq.getSize();
     Assert.isTrue(
         size > 0 && CACHE_WEIBO_SIZE_EACH_USER % size == 0,
         "分页参数非法，每页大小必须是 " + CACHE_WEIBO_SIZE_EACH_USER + " 的约数");
     int toIndex = (int) (pageReq.getCurrent() * size);
-    if (toIndex < CACHE_WEIBO_SIZE_EACH_USER) {
-      List<Weibo> weiboList =
-          weiboCache.getLatestWeiboListByUserId(userId, pageReq, weiboCache::getById);
-      return pageReq.setRecords(weiboList);
-    } else {
-      LambdaQueryWrapper<Weibo> queryWrapper =
-          new LambdaQueryWrapper<Weibo>().eq(Weibo::getUserId, userId).orderByDesc(Weibo::getId);
-      return weiboMapper.selectPage(pageReq, queryWrapper);
-    }
+    return toIndex < CACHE_WEIBO_SIZE_EACH_USER;
+  }
+
+  private static LambdaQueryWrapper<Weibo> latestQueryWrapper(Integer userId) {
+    return new LambdaQueryWrapper<Weibo>().eq(Weibo::getUserId, userId).orderByDesc(Weibo::getId);
   }
 
   @Override
   public boolean add(@NonNull Weibo weibo) {
     boolean success = weiboMapper.insert(weibo) > 0;
     if (success) {
-      WeiboCache.updateMaxAllowedIdByWeiboId(weibo.getId());
       weiboCache.handleCacheAfterAdd(weibo);
     }
     return success;
@@ -92,9 +126,4 @@ public class WeiboServiceImpl implements IWeiboService {
     }
     return deleteRes;
   }
-
-  @Override
-  public void updateMaxAllowedId() {
-    WeiboCache.updateMaxAllowedIdByWeiboId(weiboMapper.selectMaxId());
-  }
 }
@@ -0,0 +1,125 @@
+package cache.demo.util;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * 批量加载器（参考 DataLoader）
+ *
+ * <pre>
+ * 很多请求同时查询不同的 id 时，如果每个请求都单独查一次数据库，数据库的压力会很大（比如冷启动、大量缓存同时过期时）。
+ * 批量加载器把一个时间窗口内（或者凑够指定数量）的 id 收集起来，只调用一次批量加载函数（比如 selectBatchIds），再把结果分发给各个请求。
+ * 同一批次中重复的 id 只会加载一次。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class BatchLoader<K, V> {
+
+  /** 批量加载函数在虚拟线程中执行 */
+  private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+  private final Function<List<K>, Map<K, V>> batchFunction;
+
+  @Getter private final boolean enabled;
+
+  private final Executor delayedExecutor;
+
+  private final int maxBatchSize;
+
+  /** 用 ReentrantLock 而不是 synchronized ，避免虚拟线程被固定在平台线程上 */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private Batch<K, V> currentBatch = new Batch<>();
+
+  /**
+   * @param batchFunction 批量加载函数，入参是不重复的 key 列表，返回 key 到值的映射，不存在的 key 可以不放在结果中
+   * @param enabled 是否启用，不启用时调用方应该直接单个加载
+   * @param window 收集 key 的时间窗口，从批次中的第一个 key 开始计时
+   * @param maxBatchSize 一个批次最多多少个 key ，凑够了就立即加载，不再等待时间窗口结束
+   */
+  public BatchLoader(
+      @NonNull Function<List<K>, Map<K, V>> batchFunction,
+      boolean enabled,
+      @NonNull Duration window,
+      int maxBatchSize) {
+    this.batchFunction = batchFunction;
+    this.enabled = enabled;
+    this.delayedExecutor =
+        CompletableFuture.delayedExecutor(window.toNanos(), TimeUnit.NANOSECONDS, EXECUTOR);
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * 加载
+   *
+   * @param key 键
+   * @return 值，不存在时为 null
+   */
+  public CompletableFuture<V> load(@NonNull K key) {
+    Batch<K, V> fullBatch = null;
+    CompletableFuture<V> future;
+    lock.lock();
+    try {
+      Batch<K, V> batch = currentBatch;
+      future = batch.keyToFuture.computeIfAbsent(key, k -> new CompletableFuture<>());
+      int size = batch.keyToFuture.size();
+      if (size == 1) {
+        // 批次中的第一个 key ，开始计时，时间窗口结束后加载
+        delayedExecutor.execute(() -> dispatchIfOpen(batch));
+      }
+      if (size >= maxBatchSize) {
+        close(batch);
+        fullBatch = batch;
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (fullBatch != null) {
+      Batch<K, V> batch = fullBatch;
+      EXECUTOR.execute(() -> dispatch(batch));
+    }
+    return future;
+  }
+
+  private void dispatchIfOpen(Batch<K, V> batch) {
+    lock.lock();
+    try {
+      // 已经因为凑够了数量而提前加载了
+      if (batch.closed) {
+        return;
+      }
+      close(batch);
+    } finally {
+      lock.unlock();
+    }
+    dispatch(batch);
+  }
+
+  /** 必须在持有锁的情况下调用 */
+  private void close(Batch<K, V> batch) {
+    batch.closed = true;
+    if (currentBatch == batch) {
+      currentBatch = new Batch<>();
+    }
+  }
+
+  private void dispatch(Batch<K, V> batch) {
+    try {
+      Map<K, V> result = batchFunction.apply(new ArrayList<>(batch.keyToFuture.keySet()));
+      batch.keyToFuture.forEach((key, future) -> future.complete(result.get(key)));
+    } catch (Throwable e) {
+      batch.keyToFuture.values().forEach(future -> future.completeExceptionally(e));
+    }
+  }
+
+  private static class Batch<K, V> {
+    private final Map<K, CompletableFuture<V>> keyToFuture = new LinkedHashMap<>();
+    private boolean closed;
+  }
+}
@@ -0,0 +1,104 @@
+package cache.demo.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+/**
+ * 有界的虚拟线程执行器 <br>
+ * 每个任务一个虚拟线程，但是最多同时执行 maxConcurrency 个，用于异步查询数据库：
+ * 一个请求可以同时查询多个缓存而不占用平台线程，缓存同时失效时也不会有成千上万个查询同时打到数据库上、耗尽连接池。
+ *
+ * <pre>
+ * 超过 maxConcurrency 的任务在自己的虚拟线程中等待信号量，等待中的虚拟线程不占用平台线程，只占用很少的内存。
+ * 已提交但还没有执行完的任务超过 maxPending 时直接拒绝（抛出 RejectedExecutionException ），
+ * 数据库长时间变慢时不会无限制地堆积任务，调用者可以尽早失败或者降级。
+ * 统计信息可以在 JMX 中查看：cache.demo:type=Executor,name="名称"
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class BoundedVirtualThreadExecutor implements Executor, BoundedVirtualThreadExecutorMBean {
+  private final String name;
+
+  @Getter private final int maxConcurrency;
+
+  @Getter private final int maxPending;
+
+  private final Semaphore permits;
+
+  private final ThreadFactory threadFactory;
+
+  private final AtomicInteger pendingCount = new AtomicInteger();
+
+  private final LongAdder completedCount = new LongAdder();
+
+  private final LongAdder rejectedCount = new LongAdder();
+
+  /**
+   * @param name 名称，也是虚拟线程名称的前缀
+   * @param maxConcurrency 最多同时执行多少个任务，应该不大于数据库连接池的大小
+   * @param maxPending 最多有多少个任务（包括正在执行的和正在等待的），不能小于 maxConcurrency
+   */
+  public BoundedVirtualThreadExecutor(String name, int maxConcurrency, int maxPending) {
+    if (maxConcurrency <= 0 || maxPending < maxConcurrency) {
+      throw new IllegalArgumentException(
+          "参数错误，maxConcurrency：" + maxConcurrency + "，maxPending：" + maxPending);
+    }
+    this.name = name;
+    this.maxConcurrency = maxConcurrency;
+    this.maxPending = maxPending;
+    this.permits = new Semaphore(maxConcurrency);
+    this.threadFactory = Thread.ofVirtual().name(name + "-", 0).factory();
+    JmxUtil.register("Executor", name, this, BoundedVirtualThreadExecutorMBean.class);
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (pendingCount.incrementAndGet() > maxPending) {
+      pendingCount.decrementAndGet();
+      rejectedCount.increment();
+      throw new RejectedExecutionException(name + " 的任务数已经达到上限：" + maxPending);
+    }
+    threadFactory
+        .newThread(
+            () -> {
+              try {
+                permits.acquireUninterruptibly();
+                try {
+                  command.run();
+                } finally {
+                  permits.release();
+                }
+              } finally {
+                pendingCount.decrementAndGet();
+                completedCount.increment();
+              }
+            })
+        .start();
+  }
+
+  @Override
+  public int getActiveCount() {
+    return maxConcurrency - permits.availablePermits();
+  }
+
+  @Override
+  public int getPendingCount() {
+    return pendingCount.get();
+  }
+
+  @Override
+  public long getCompletedCount() {
+    return completedCount.sum();
+  }
+
+  @Override
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+}
@@ -0,0 +1,27 @@
+package cache.demo.util;
+
+/**
+ * 有界虚拟线程执行器统计信息（JMX 接口）
+ *
+ * @author Camio1945
+ */
+public interface BoundedVirtualThreadExecutorMBean {
+
+  /** 最多同时执行多少个任务 */
+  int getMaxConcurrency();
+
+  /** 最多有多少个任务（包括正在执行的和正在等待的） */
+  int getMaxPending();
+
+  /** 正在执行的任务数 */
+  int getActiveCount();
+
+  /** 已提交但还没有执行完的任务数（包括正在执行的） */
+  int getPendingCount();
+
+  /** 执行完的任务数 */
+  long getCompletedCount();
+
+  /** 因为任务数超过 maxPending 而被拒绝的次数 */
+  long getRejectedCount();
+}
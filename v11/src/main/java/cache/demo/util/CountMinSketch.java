@@ -0,0 +1,91 @@
+package cache.demo.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 频率草图（Count-Min Sketch），用固定的内存估算每个键出现的次数 <br>
+ * 估算值只会偏大不会偏小，键越多、宽度越小，偏大得越多。
+ *
+ * <pre>
+ * 有 4 行计数器，每个键在每一行用不同的哈希函数选一个计数器加 1 ，估算时取 4 个计数器中最小的一个。
+ * 总次数达到 sampleSize 后，所有计数器减半，这样估算的是最近一段时间的频率，很久以前的热点会逐渐变冷
+ * （参考了 <a href="https://arxiv.org/abs/1512.00727">TinyLFU</a> 的做法）。
+ * 计数器用 AtomicIntegerArray ，减半时不加锁，与并发的累加交错时只会有少量的误差。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class CountMinSketch {
+  private static final int DEPTH = 4;
+
+  private static final int[] SEEDS = {0x97cb3127, 0xb8b3e9c5, 0x5bd1e995, 0x27d4eb2d};
+
+  private final AtomicIntegerArray counters;
+
+  private final int widthMask;
+
+  private final long sampleSize;
+
+  private final AtomicLong additions = new AtomicLong();
+
+  /**
+   * @param width 每一行有多少个计数器，会向上取整为 2 的幂，一般是需要统计的键数
+   * @param sampleSize 总次数达到多少后所有计数器减半，一般是宽度的 10 倍
+   */
+  public CountMinSketch(int width, long sampleSize) {
+    int powerOfTwoWidth = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+    this.counters = new AtomicIntegerArray(DEPTH * powerOfTwoWidth);
+    this.widthMask = powerOfTwoWidth - 1;
+    this.sampleSize = sampleSize;
+  }
+
+  /**
+   * 次数加 1
+   *
+   * @param key 键
+   */
+  public void increment(Object key) {
+    int hash = spread(key.hashCode());
+    for (int i = 0; i < DEPTH; i++) {
+      counters.incrementAndGet(indexOf(hash, i));
+    }
+    if (additions.incrementAndGet() == sampleSize) {
+      additions.set(0);
+      halve();
+    }
+  }
+
+  /**
+   * 估算次数
+   *
+   * @param key 键
+   * @return 最近一段时间的次数，可能偏大
+   */
+  public int estimate(Object key) {
+    int hash = spread(key.hashCode());
+    int min = Integer.MAX_VALUE;
+    for (int i = 0; i < DEPTH; i++) {
+      min = Math.min(min, counters.get(indexOf(hash, i)));
+    }
+    return min;
+  }
+
+  /** 所有计数器减半，除了按总次数减半之外，也可以由调用者按时间减半 */
+  public void halve() {
+    for (int i = 0; i < counters.length(); i++) {
+      counters.updateAndGet(i, count -> count >>> 1);
+    }
+  }
+
+  private int indexOf(int hash, int row) {
+    int h = hash * SEEDS[row];
+    h ^= h >>> 16;
+    return row * (widthMask + 1) + (h & widthMask);
+  }
+
+  private static int spread(int hash) {
+    int h = hash * 0x9e3779b9;
+    return h ^ (h >>> 15);
+  }
+}
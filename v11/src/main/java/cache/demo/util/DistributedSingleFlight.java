@@ -0,0 +1,161 @@
+package cache.demo.util;
+
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.util.IdUtil;
+import java.time.Duration;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import lombok.NonNull;
+import org.springframework.cache.Cache;
+
+/**
+ * 集群级别的单飞
+ *
+ * <pre>
+ * {@link SingleFlightUtil} 只能保证同一个 JVM 中只有一个线程查询数据库，有 N 个节点时，同一个 key 过期后仍然会查询 N 次数据库。
+ * 这里借助一个短期的租约（Redis 中的 SET NX PX）：
+ * 1. 拿到租约的节点查询数据库，把结果放入缓存，然后释放租约。
+ * 2. 没拿到租约的节点轮询缓存，拿到值就直接返回；如果租约被释放了但缓存中还是没有值（比如拿到租约的节点查询失败了），就尝试接手租约。
+ * 3. 等待时间有上限，超过上限后直接查询数据库，避免因为租约节点宕机而一直等下去。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class DistributedSingleFlight {
+  private static final String LEASE_KEY_PREFIX = "lease:";
+
+  private final LeaseStore leaseStore;
+  private final boolean enabled;
+  private final Duration leaseTime;
+  private final Duration maxWait;
+  private final Duration pollInterval;
+
+  /**
+   * @param leaseStore 租约存储
+   * @param enabled 是否启用，不启用时直接执行加载函数
+   * @param leaseTime 租约时长，应该大于一次数据库查询的耗时
+   * @param maxWait 没拿到租约的节点最多等待多久
+   * @param pollInterval 没拿到租约的节点多久检查一次缓存
+   */
+  public DistributedSingleFlight(
+      @NonNull LeaseStore leaseStore,
+      boolean enabled,
+      @NonNull Duration leaseTime,
+      @NonNull Duration maxWait,
+      @NonNull Duration pollInterval) {
+    this.leaseStore = leaseStore;
+    this.enabled = enabled;
+    this.leaseTime = leaseTime;
+    this.maxWait = maxWait;
+    this.pollInterval = pollInterval;
+  }
+
+  /**
+   * 执行
+   *
+   * @param key 键，如：cache:goods:id::1
+   * @param cache 加载结果要放入的缓存，没拿到租约的节点也从这里轮询结果
+   * @param cacheKey 在 cache 中的键，如：1
+   * @param loader 加载函数（一般是查询数据库）
+   * @return 加载结果
+   */
+  public <T> T execute(
+      @NonNull String key,
+      @NonNull Cache cache,
+      @NonNull Object cacheKey,
+      @NonNull Supplier<T> loader) {
+    return execute(key, cache, cacheKey, loader, value -> false);
+  }
+
+  /**
+   * 执行，拿到租约的节点加载后由 putSkipped 决定是否放入缓存 <br>
+   * 不放入时（如结果已经由批量加载器写入，或者不需要缓存空值）与 {@code @Cacheable} 的 unless 保持一致，
+   * 没拿到租约的节点轮询不到值，会在租约释放后接手租约或者等待超时后自己加载。
+   *
+   * @param key 键，如：cache:goods:id::1
+   * @param cache 加载结果要放入的缓存，没拿到租约的节点也从这里轮询结果
+   * @param cacheKey 在 cache 中的键，如：1
+   * @param loader 加载函数（一般是查询数据库）
+   * @param putSkipped 判断加载结果是否不需要放入缓存，如：GoodsCache::isCachePutSkipped
+   * @return 加载结果
+   */
+  public <T> T execute(
+      @NonNull String key,
+      @NonNull Cache cache,
+      @NonNull Object cacheKey,
+      @NonNull Supplier<T> loader,
+      @NonNull Predicate<? super T> putSkipped) {
+    if (!enabled) {
+      return loader.get();
+    }
+    String leaseKey = LEASE_KEY_PREFIX + key;
+    String token = IdUtil.fastSimpleUUID();
+    long deadline = System.nanoTime() + maxWait.toNanos();
+    while (true) {
+      if (leaseStore.tryAcquire(leaseKey, token, leaseTime)) {
+        return loadAsLeader(leaseKey, token, cache, cacheKey, loader, putSkipped);
+      }
+      if (System.nanoTime() - deadline >= 0) {
+        // 等待超时，直接查询数据库
+        return loader.get();
+      }
+      sleep(pollInterval);
+      Cache.ValueWrapper valueWrapper = cache.get(cacheKey);
+      if (valueWrapper != null) {
+        @SuppressWarnings("unchecked")
+        T value = (T) valueWrapper.get();
+        return value;
+      }
+    }
+  }
+
+  private <T> T loadAsLeader(
+      String leaseKey,
+      String token,
+      Cache cache,
+      Object cacheKey,
+      Supplier<T> loader,
+      Predicate<? super T> putSkipped) {
+    try {
+      T value = loader.get();
+      // 先放入缓存再释放租约，其他节点才能在释放租约之前轮询到值
+      if (!putSkipped.test(value)) {
+        cache.put(cacheKey, value);
+      }
+      return value;
+    } finally {
+      leaseStore.release(leaseKey, token);
+    }
+  }
+
+  private static void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw ExceptionUtil.wrapRuntime(e);
+    }
+  }
+
+  /** 租约存储，生产环境用 Redis 实现，单元测试时可以用内存实现 */
+  public interface LeaseStore {
+
+    /**
+     * 尝试获取租约（相当于 SET key token NX PX leaseTime）
+     *
+     * @param leaseKey 租约的键
+     * @param token 租约持有者的标识，释放时用于校验
+     * @param leaseTime 租约时长
+     * @return true 表示获取成功
+     */
+    boolean tryAcquire(String leaseKey, String token, Duration leaseTime);
+
+    /**
+     * 释放租约，只有持有者才能释放
+     *
+     * @param leaseKey 租约的键
+     * @param token 租约持有者的标识
+     */
+    void release(String leaseKey, String token);
+  }
+}
@@ -0,0 +1,97 @@
+package cache.demo.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 过期时间直方图，按剩余时间把键分到固定宽度的桶中，找出集中过期的时间段 <br>
+ * 剩余时间都是在同一次扫描中读取的，所以按剩余时间分桶和按过期时刻分桶是一样的。
+ *
+ * <pre>
+ * 一个桶中的键数超过总数的 spikeRatio ，并且不少于 minKeys 时，认为这个桶是一个尖峰。
+ * 如：桶宽 5 分钟、过期时间 24 小时，均匀分布时每个桶约占 0.35% ；
+ * 批量预热后的键都在 [24, 26.4] 小时之间过期，每个桶约占 3.5% ，超过 2% 的阈值。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class ExpiryHistogram {
+  private final long bucketWidthMillis;
+
+  /** 桶的序号（剩余时间除以桶宽）到键数的映射 */
+  private final TreeMap<Long, Integer> bucketToCount = new TreeMap<>();
+
+  private int total;
+
+  /**
+   * @param bucketWidthMillis 桶宽（毫秒）
+   */
+  public ExpiryHistogram(long bucketWidthMillis) {
+    if (bucketWidthMillis <= 0) {
+      throw new IllegalArgumentException("桶宽必须大于 0 ：" + bucketWidthMillis);
+    }
+    this.bucketWidthMillis = bucketWidthMillis;
+  }
+
+  /**
+   * 加入一个键的剩余时间
+   *
+   * @param ttlMillis 剩余时间（毫秒），小于 0 的（没有过期时间或者已经不存在）会被忽略
+   */
+  public void add(long ttlMillis) {
+    if (ttlMillis < 0) {
+      return;
+    }
+    bucketToCount.merge(bucketOf(ttlMillis), 1, Integer::sum);
+    total++;
+  }
+
+  /**
+   * 剩余时间所在的桶
+   *
+   * @param ttlMillis 剩余时间（毫秒）
+   * @return 桶的序号
+   */
+  public long bucketOf(long ttlMillis) {
+    return ttlMillis / bucketWidthMillis;
+  }
+
+  /**
+   * 找出尖峰
+   *
+   * @param spikeRatio 一个桶中的键数超过总数的多少时认为是尖峰，如：0.02
+   * @param minKeys 一个桶中至少有多少个键时才可能是尖峰，避免键很少时误判
+   * @return 尖峰的桶的序号，从小到大排列
+   */
+  public List<Long> findSpikes(double spikeRatio, int minKeys) {
+    List<Long> spikes = new ArrayList<>();
+    for (Map.Entry<Long, Integer> entry : bucketToCount.entrySet()) {
+      int count = entry.getValue();
+      if (count >= minKeys && count > total * spikeRatio) {
+        spikes.add(entry.getKey());
+      }
+    }
+    return spikes;
+  }
+
+  /**
+   * 桶中的键数
+   *
+   * @param bucket 桶的序号
+   * @return 键数
+   */
+  public int countOf(long bucket) {
+    return bucketToCount.getOrDefault(bucket, 0);
+  }
+
+  /**
+   * 加入的键数（不包括被忽略的）
+   *
+   * @return 键数
+   */
+  public int getTotal() {
+    return total;
+  }
+}
@@ -0,0 +1,84 @@
+package cache.demo.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点键统计 <br>
+ * 记录每个键的访问次数，定期取出访问次数最多的键，并把所有键的次数减半，这样很久没有被访问的键会逐渐被淘汰。
+ *
+ * <pre>
+ * 记录的键数达到上限后，新的键不再记录，直到下次减半时淘汰了一部分键，以限制占用的内存。
+ * 已经记录的键，每次访问只是一次 LongAdder 的累加，高并发时也不会有明显的竞争。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class HotKeyTracker<K> {
+  private final ConcurrentHashMap<K, LongAdder> keyToCount = new ConcurrentHashMap<>();
+
+  private final int maxKeys;
+
+  /**
+   * @param maxKeys 最多记录多少个键
+   */
+  public HotKeyTracker(int maxKeys) {
+    this.maxKeys = maxKeys;
+  }
+
+  /**
+   * 记录一次访问
+   *
+   * @param key 键
+   */
+  public void record(K key) {
+    LongAdder count = keyToCount.get(key);
+    if (count == null) {
+      if (keyToCount.size() >= maxKeys) {
+        return;
+      }
+      count = keyToCount.computeIfAbsent(key, k -> new LongAdder());
+    }
+    count.increment();
+  }
+
+  /**
+   * 取出访问次数最多的键，然后把所有键的次数减半，减到 0 的键不再记录
+   *
+   * @param limit 最多取多少个
+   * @return 按访问次数从多到少排列的键
+   */
+  public List<K> pollHottest(int limit) {
+    List<Map.Entry<K, Long>> entries = new ArrayList<>(keyToCount.size());
+    keyToCount.forEach(
+        (key, count) -> {
+          long sum = count.sum();
+          if (sum <= 1) {
+            keyToCount.remove(key, count);
+          } else {
+            count.add(-(sum / 2));
+          }
+          if (sum > 0) {
+            entries.add(Map.entry(key, sum));
+          }
+        });
+    return entries.stream()
+        .sorted(Map.Entry.<K, Long>comparingByValue(Comparator.reverseOrder()))
+        .limit(limit)
+        .map(Map.Entry::getKey)
+        .toList();
+  }
+
+  /**
+   * 当前记录了多少个键
+   *
+   * @return 键数
+   */
+  public int size() {
+    return keyToCount.size();
+  }
+}
@@ -0,0 +1,287 @@
+package cache.demo.util;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 非负整数 id 的压缩位图，参考了 <a href="https://roaringbitmap.org/">Roaring Bitmap</a> 的思路 <br>
+ * 与布隆过滤器不同，这里的结果是精确的，没有误判。
+ *
+ * <pre>
+ * id 的高 16 位决定放在哪个容器中，低 16 位放在容器中：
+ * 容器中的 id 不超过 4096 个时，用有序的 char 数组存储，每个 id 占 2 字节；
+ * 超过 4096 个时，转为 65536 位（8KB）的位图，id 越密集越省内存；删除后不超过 4096 个时，再转回数组。
+ * 自增 id 是连续的，10 万个 id 只需要 2 个位图容器，约 16KB 。
+ * 读使用 StampedLock 的乐观读，写（新增和删除数据时才会发生）加写锁。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class IdBitmap {
+  /** 非负的 int 的高 16 位最大是 32767 */
+  private static final int CONTAINER_COUNT = 1 << 15;
+
+  private static final int ARRAY_MAX_SIZE = 4096;
+
+  private final Container[] containers = new Container[CONTAINER_COUNT];
+
+  private final StampedLock lock = new StampedLock();
+
+  /** 以下字段只在写锁中修改 */
+  private int cardinality;
+
+  /**
+   * 是否包含
+   *
+   * @param id id ，负数一定不包含
+   * @return true 表示包含
+   */
+  public boolean contains(int id) {
+    if (id < 0) {
+      return false;
+    }
+    long stamp = lock.tryOptimisticRead();
+    boolean contains = containsWithoutLock(id);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        contains = containsWithoutLock(id);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return contains;
+  }
+
+  /**
+   * 添加
+   *
+   * @param id id ，负数会被忽略
+   */
+  public void add(int id) {
+    if (id < 0) {
+      return;
+    }
+    long stamp = lock.writeLock();
+    try {
+      int high = id >>> 16;
+      Container container = containers[high];
+      if (container == null) {
+        container = new ArrayContainer();
+        containers[high] = container;
+      }
+      if (container.add((char) id)) {
+        cardinality++;
+        if (container instanceof ArrayContainer arrayContainer
+            && arrayContainer.size > ARRAY_MAX_SIZE) {
+          containers[high] = arrayContainer.toBitmapContainer();
+        }
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * 删除
+   *
+   * @param id id
+   */
+  public void remove(int id) {
+    if (id < 0) {
+      return;
+    }
+    long stamp = lock.writeLock();
+    try {
+      int high = id >>> 16;
+      Container container = containers[high];
+      if (container == null || !container.remove((char) id)) {
+        return;
+      }
+      cardinality--;
+      if (container.size() == 0) {
+        containers[high] = null;
+      } else if (container instanceof BitmapContainer bitmapContainer
+          && bitmapContainer.size <= ARRAY_MAX_SIZE) {
+        containers[high] = bitmapContainer.toArrayContainer();
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * id 的数量
+   *
+   * @return 数量
+   */
+  public int getCardinality() {
+    long stamp = lock.readLock();
+    try {
+      return cardinality;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * 容器占用的内存（近似值，不包括对象头）
+   *
+   * @return 字节数
+   */
+  public long getSizeInBytes() {
+    long stamp = lock.readLock();
+    try {
+      long bytes = 0;
+      for (Container container : containers) {
+        if (container != null) {
+          bytes += container.sizeInBytes();
+        }
+      }
+      return bytes;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** 乐观读时可能读到修改了一半的容器，所以容器的读取不能抛出异常 */
+  private boolean containsWithoutLock(int id) {
+    Container container = containers[id >>> 16];
+    return container != null && container.contains((char) id);
+  }
+
+  private interface Container {
+    boolean contains(char low);
+
+    /** 返回 true 表示原来不存在 */
+    boolean add(char low);
+
+    /** 返回 true 表示原来存在 */
+    boolean remove(char low);
+
+    int size();
+
+    long sizeInBytes();
+  }
+
+  private static class ArrayContainer implements Container {
+    private char[] values = new char[4];
+
+    private int size;
+
+    @Override
+    public boolean contains(char low) {
+      char[] currentValues = values;
+      int currentSize = Math.min(size, currentValues.length);
+      return Arrays.binarySearch(currentValues, 0, currentSize, low) >= 0;
+    }
+
+    @Override
+    public boolean add(char low) {
+      int index = Arrays.binarySearch(values, 0, size, low);
+      if (index >= 0) {
+        return false;
+      }
+      index = -index - 1;
+      char[] newValues = values;
+      if (size == values.length) {
+        newValues = Arrays.copyOf(values, Math.min(size * 2, ARRAY_MAX_SIZE + 1));
+      }
+      System.arraycopy(values, index, newValues, index + 1, size - index);
+      newValues[index] = low;
+      values = newValues;
+      size++;
+      return true;
+    }
+
+    @Override
+    public boolean remove(char low) {
+      int index = Arrays.binarySearch(values, 0, size, low);
+      if (index < 0) {
+        return false;
+      }
+      System.arraycopy(values, index + 1, values, index, size - index - 1);
+      size--;
+      // 删除了大部分 id 后缩小数组，避免从位图容器转回来的数组一直占用 8KB
+      if (values.length > 4 && size < values.length / 4) {
+        values = Arrays.copyOf(values, values.length / 2);
+      }
+      return true;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public long sizeInBytes() {
+      return (long) values.length * Character.BYTES;
+    }
+
+    BitmapContainer toBitmapContainer() {
+      BitmapContainer bitmapContainer = new BitmapContainer();
+      for (int i = 0; i < size; i++) {
+        bitmapContainer.add(values[i]);
+      }
+      return bitmapContainer;
+    }
+  }
+
+  private static class BitmapContainer implements Container {
+    private final long[] words = new long[(1 << 16) / Long.SIZE];
+
+    private int size;
+
+    @Override
+    public boolean contains(char low) {
+      return (words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    @Override
+    public boolean add(char low) {
+      long word = words[low >>> 6];
+      long newWord = word | (1L << low);
+      words[low >>> 6] = newWord;
+      if (newWord == word) {
+        return false;
+      }
+      size++;
+      return true;
+    }
+
+    @Override
+    public boolean remove(char low) {
+      long word = words[low >>> 6];
+      long newWord = word & ~(1L << low);
+      words[low >>> 6] = newWord;
+      if (newWord == word) {
+        return false;
+      }
+      size--;
+      return true;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public long sizeInBytes() {
+      return (long) words.length * Long.BYTES;
+    }
+
+    ArrayContainer toArrayContainer() {
+      ArrayContainer arrayContainer = new ArrayContainer();
+      for (int i = 0; i < words.length; i++) {
+        long word = words[i];
+        while (word != 0) {
+          arrayContainer.add((char) (i * Long.SIZE + Long.numberOfTrailingZeros(word)));
+          word &= word - 1;
+        }
+      }
+      return arrayContainer;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package cache.demo.util;
+
+import java.lang.management.ManagementFactory;
+import javax.management.*;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * JMX 工具类，注册的 MBean 可以在 JConsole 、VisualVM 等工具中查看
+ *
+ * @author Camio1945
+ */
+@Slf4j
+public class JmxUtil {
+  /** 所有 MBean 的域名 */
+  public static final String DOMAIN = "cache.demo";
+
+  private JmxUtil() {}
+
+  /**
+   * 注册 MBean ，已经存在同名的 MBean 时会先注销
+   *
+   * @param type 类型，如：SingleFlight
+   * @param name 名称，如：cache:goods:id
+   * @param mbean MBean 实现
+   * @param mbeanInterface MBean 接口
+   */
+  public static <T> void register(String type, String name, T mbean, Class<T> mbeanInterface) {
+    try {
+      ObjectName objectName =
+          new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+      mbeanServer.registerMBean(new StandardMBean(mbean, mbeanInterface), objectName);
+    } catch (JMException e) {
+      // 注册失败只影响监控，不影响业务
+      log.warn("注册 MBean 失败：{} {}", type, name, e);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package cache.demo.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图 <br>
+ * 按微秒的 2 的幂次分桶（第 i 个桶统计 [2^(i-1), 2^i) 微秒的次数），记录时没有锁，也不分配对象，适合在高并发的代码中统计耗时。 <br>
+ * 分位数是估算值，返回的是所在桶的上限。
+ *
+ * @author Camio1945
+ */
+public class LatencyHistogram {
+  private static final int BUCKET_COUNT = 40;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * 记录一次耗时
+   *
+   * @param nanos 耗时（纳秒）
+   */
+  public void record(long nanos) {
+    long micros = Math.max(nanos, 0) / 1000;
+    int index = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+    buckets[index].increment();
+    count.increment();
+    totalNanos.add(nanos);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * 平均耗时
+   *
+   * @return 平均耗时（毫秒），没有记录时返回 0
+   */
+  public double getMeanMillis() {
+    long c = count.sum();
+    return c == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / c;
+  }
+
+  /**
+   * 估算分位数
+   *
+   * @param percentile 分位，如 0.99
+   * @return 耗时（毫秒），没有记录时返回 0
+   */
+  public double getPercentileMillis(double percentile) {
+    long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long threshold = (long) Math.ceil(total * percentile);
+    long accumulated = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      accumulated += counts[i];
+      if (accumulated >= threshold) {
+        // 第 i 个桶的上限是 2^i 微秒
+        return (1L << i) / 1000.0;
+      }
+    }
+    return (1L << (BUCKET_COUNT - 1)) / 1000.0;
+  }
+
+  public void reset() {
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    count.reset();
+    totalNanos.reset();
+  }
+}
@@ -0,0 +1,225 @@
+package cache.demo.util;
+
+import java.util.Arrays;
+
+/**
+ * LZ4 块格式（block format）的纯 Java 实现，不依赖 JNI 或者第三方库 <br>
+ * 只实现了块格式，没有实现帧格式（frame format），原始长度由调用方自己保存。
+ *
+ * <pre>
+ * 压缩后的数据由若干个序列组成，每个序列是：
+ *   1 字节   token ，高 4 位是字面量长度，低 4 位是匹配长度减 4 ，等于 15 时后面跟着若干个 255 和一个小于 255 的字节累加
+ *   字面量   原样复制的字节
+ *   2 字节   匹配的偏移量（小端），即从已经解压的数据末尾往回数多少个字节
+ * 最后一个序列只有字面量。与 LZ4 的规定一样，最后 5 个字节一定是字面量，最后一个匹配在结束前 12 个字节之前开始。
+ * 压缩时用一个哈希表记录每 4 个字节最近一次出现的位置，只找最近的一个匹配，速度优先于压缩率（与 LZ4 的默认级别一样）。
+ * </pre>
+ *
+ * @author Camio1945
+ */
+public class Lz4Codec {
+  private static final int MIN_MATCH = 4;
+
+  /** 最后 5 个字节一定是字面量 */
+  private static final int LAST_LITERALS = 5;
+
+  /** 最后一个匹配在结束前 12 个字节之前开始 */
+  private static final int MF_LIMIT = 12;
+
+  private static final int MAX_OFFSET = 65535;
+
+  private static final int HASH_LOG = 12;
+
+  /** 连续多少次没有找到匹配后加大步长，不可压缩的数据可以更快跳过 */
+  private static final int SKIP_TRIGGER = 6;
+
+  private Lz4Codec() {}
+
+  /**
+   * 压缩后最大的长度（数据完全不可压缩时）
+   *
+   * @param length 原始长度
+   * @return 最大长度
+   */
+  public static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * 压缩
+   *
+   * @param source 原始数据
+   * @return 压缩后的数据，不包含原始长度
+   */
+  public static byte[] compress(byte[] source) {
+    int length = source.length;
+    byte[] target = new byte[maxCompressedLength(length)];
+    int targetPosition = 0;
+    int anchor = 0;
+    if (length > MF_LIMIT) {
+      // 保存的是位置加 1 ，0 表示没有
+      int[] hashTable = new int[1 << HASH_LOG];
+      int matchLimit = length - LAST_LITERALS;
+      int position = 0;
+      int misses = 0;
+      while (position < length - MF_LIMIT) {
+        int sequence = readInt(source, position);
+        int hash = hash(sequence);
+        int reference = hashTable[hash] - 1;
+        hashTable[hash] = position + 1;
+        if (reference < 0
+            || position - reference > MAX_OFFSET
+            || readInt(source, reference) != sequence) {
+          position += 1 + (misses++ >>> SKIP_TRIGGER);
+          continue;
+        }
+        misses = 0;
+        // 向前扩展匹配
+        while (position > anchor
+            && reference > 0
+            && source[position - 1] == source[reference - 1]) {
+          position--;
+          reference--;
+        }
+        int matchLength = MIN_MATCH;
+        while (position + matchLength < matchLimit
+            && source[position + matchLength] == source[reference + matchLength]) {
+          matchLength++;
+        }
+        targetPosition =
+            writeSequence(
+                source,
+                anchor,
+                position - anchor,
+                position - reference,
+                matchLength,
+                target,
+                targetPosition);
+        position += matchLength;
+        anchor = position;
+      }
+    }
+    targetPosition = writeLastLiterals(source, anchor, length - anchor, target, targetPosition);
+    return Arrays.copyOf(target, targetPosition);
+  }
+
+  /**
+   * 解压
+   *
+   * @param source 压缩后的数据，从 offset 开始一直到末尾都是压缩数据
+   * @param offset 压缩数据在 source 中的开始位置（前面可以是调用方自己的头部）
+   * @param originalLength 原始长度
+   * @return 原始数据
+   * @throws IllegalArgumentException 数据不完整或者已损坏
+   */
+  public static byte[] decompress(byte[] source, int offset, int originalLength) {
+    byte[] target = new byte[originalLength];
+    int sourcePosition = offset;
+    int targetPosition = 0;
+    try {
+      while (true) {
+        int token = source[sourcePosition++] & 0xFF;
+        int literalLength = token >>> 4;
+        if (literalLength == 15) {
+          int b;
+          do {
+            b = source[sourcePosition++] & 0xFF;
+            literalLength += b;
+          } while (b == 255);
+        }
+        System.arraycopy(source, sourcePosition, target, targetPosition, literalLength);
+        sourcePosition += literalLength;
+        targetPosition += literalLength;
+        if (sourcePosition == source.length) {
+          break;
+        }
+        int matchOffset = source[sourcePosition++] & 0xFF;
+        matchOffset |= (source[sourcePosition++] & 0xFF) << 8;
+        int matchLength = token & 0x0F;
+        if (matchLength == 15) {
+          int b;
+          do {
+            b = source[sourcePosition++] & 0xFF;
+            matchLength += b;
+          } while (b == 255);
+        }
+        matchLength += MIN_MATCH;
+        int reference = targetPosition - matchOffset;
+        if (matchOffset == 0 || reference < 0) {
+          throw new IllegalArgumentException("偏移量错误：" + matchOffset);
+        }
+        if (matchOffset >= matchLength) {
+          System.arraycopy(target, reference, target, targetPosition, matchLength);
+          targetPosition += matchLength;
+        } else {
+          // 重叠的匹配（如连续重复的字节）只能逐个字节复制
+          for (int i = 0; i < matchLength; i++) {
+            target[targetPosition++] = target[reference + i];
+          }
+        }
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("数据不完整或者已损坏", e);
+    }
+    if (targetPosition != originalLength) {
+      throw new IllegalArgumentException(
+          "解压后的长度错误：" + targetPosition + "，应该是：" + originalLength);
+    }
+    return target;
+  }
+
+  private static int writeSequence(
+      byte[] source,
+      int literalStart,
+      int literalLength,
+      int matchOffset,
+      int matchLength,
+      byte[] target,
+      int targetPosition) {
+    int tokenPosition = targetPosition++;
+    int token = Math.min(literalLength, 15) << 4;
+    targetPosition = writeLength(literalLength, target, targetPosition);
+    System.arraycopy(source, literalStart, target, targetPosition, literalLength);
+    targetPosition += literalLength;
+    target[targetPosition++] = (byte) matchOffset;
+    target[targetPosition++] = (byte) (matchOffset >>> 8);
+    int encodedMatchLength = matchLength - MIN_MATCH;
+    token |= Math.min(encodedMatchLength, 15);
+    targetPosition = writeLength(encodedMatchLength, target, targetPosition);
+    target[tokenPosition] = (byte) token;
+    return targetPosition;
+  }
+
+  private static int writeLastLiterals(
+      byte[] source, int literalStart, int literalLength, byte[] target, int targetPosition) {
+    target[targetPosition++] = (byte) (Math.min(literalLength, 15) << 4);
+    targetPosition = writeLength(literalLength, target, targetPosition);
+    System.arraycopy(source, literalStart, target, targetPosition, literalLength);
+    return targetPosition + literalLength;
+  }
+
+  /** 长度不小于 15 时，token 中写入 15 ，剩下的部分写成若干个 255 和一个小于 255 的字节 */
+  private static int writeLength(int length, byte[] target, int targetPosition) {
+    if (length < 15) {
+      return targetPosition;
+    }
+    int remaining = length - 15;
+    while (remaining >= 255) {
+      target[targetPosition++] = (byte) 255;
+      remaining -= 255;
+    }
+    target[targetPosition++] = (byte) remaining;
+    return targetPosition;
+  }
+
+  private static int readInt(byte[] bytes, int position) {
+    return (bytes[position] & 0xFF)
+        | (bytes[position + 1] & 0xFF) << 8
+        | (bytes[position + 2] & 0xFF) << 16
+        | (bytes[position + 3] & 0xFF) << 24;
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (Integer.SIZE - HASH_LOG);
+  }
+}
@@ -0,0 +1,43 @@
+package cache.demo.util;
+
+/**
+ * 令牌桶限流器，每秒产生 permitsPerSecond 个令牌，最多积攒 1 秒的令牌 <br>
+ * 拿不到令牌时不等待，由调用者决定是跳过还是稍后再试。
+ *
+ * @author Camio1945
+ */
+public class RateLimiter {
+  private final double permitsPerNano;
+
+  private final double maxPermits;
+
+  private double storedPermits;
+
+  private long lastNanos;
+
+  /**
+   * @param permitsPerSecond 每秒产生多少个令牌
+   */
+  public RateLimiter(double permitsPerSecond) {
+    this.permitsPerNano = permitsPerSecond / 1_000_000_000.0;
+    this.maxPermits = permitsPerSecond;
+    this.storedPermits = permitsPerSecond;
+    this.lastNanos = System.nanoTime();
+  }
+
+  /**
+   * 尝试拿一个令牌
+   *
+   * @return true 表示拿到了
+   */
+  public synchronized boolean tryAcquire() {
+    long now = System.nanoTime();
+    storedPermits = Math.min(maxPermits, storedPermits + (now - lastNanos) * permitsPerNano);
+    lastNanos = now;
+    if (storedPermits < 1) {
+      return false;
+    }
+    storedPermits--;
+    return true;
+  }
+}
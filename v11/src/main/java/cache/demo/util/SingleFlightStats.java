@@ -0,0 +1,154 @@
+package cache.demo.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+/**
+ * 单飞统计信息，按 key 的前缀（如 cache:goods:id 、cache:user:account）分别统计 <br>
+ * 每个前缀会注册一个 MBean ，名称为：cache.demo:type=SingleFlight,name="cache:goods:id"
+ *
+ * @author Camio1945
+ */
+public class SingleFlightStats implements SingleFlightStatsMBean {
+  private static final String KEY_SEPARATOR = "::";
+
+  /** 最多有多少个前缀可以不分配内存地查找，前缀一般只有几个，超过的从 PREFIX_TO_STATS 中查找 */
+  private static final int MAX_SCANNED_PREFIXES = 64;
+
+  private static final Map<String, SingleFlightStats> PREFIX_TO_STATS = new ConcurrentHashMap<>();
+
+  /** 已经注册的前缀，只增不减，每次增加时复制一份，查找时逐个比较，不需要截取字符串 */
+  private static volatile SingleFlightStats[] scannedStats = new SingleFlightStats[0];
+
+  @Getter private final String prefix;
+  private final LongAdder leaderCount = new LongAdder();
+  private final LongAdder followerCount = new LongAdder();
+  private final LongAdder failureCount = new LongAdder();
+  private final LatencyHistogram leaderLoadTime = new LatencyHistogram();
+  private final LatencyHistogram followerWaitTime = new LatencyHistogram();
+
+  private SingleFlightStats(String prefix) {
+    this.prefix = prefix;
+  }
+
+  /**
+   * 根据 key 获取统计信息
+   *
+   * @param key 键，如：cache:goods:id::1 ，统计时只取 :: 前面的部分
+   * @return 统计信息
+   */
+  public static SingleFlightStats of(String key) {
+    int index = key.indexOf(KEY_SEPARATOR);
+    int prefixLength = index < 0 ? key.length() : index;
+    // 每次加载都会调用，已经注册的前缀直接比较，不截取字符串，不分配内存
+    for (SingleFlightStats stats : scannedStats) {
+      if (stats.prefix.length() == prefixLength && key.startsWith(stats.prefix)) {
+        return stats;
+      }
+    }
+    String prefix = index < 0 ? key : key.substring(0, index);
+    return PREFIX_TO_STATS.computeIfAbsent(prefix, SingleFlightStats::register);
+  }
+
+  /**
+   * 获取所有前缀的统计信息
+   *
+   * @return 前缀到统计信息的映射
+   */
+  public static Map<String, SingleFlightStats> getAll() {
+    return Map.copyOf(PREFIX_TO_STATS);
+  }
+
+  /** 在 computeIfAbsent 中调用，同一个前缀只会注册一次 */
+  private static SingleFlightStats register(String prefix) {
+    SingleFlightStats stats = new SingleFlightStats(prefix);
+    JmxUtil.register("SingleFlight", prefix, stats, SingleFlightStatsMBean.class);
+    synchronized (SingleFlightStats.class) {
+      SingleFlightStats[] current = scannedStats;
+      if (current.length < MAX_SCANNED_PREFIXES) {
+        SingleFlightStats[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = stats;
+        scannedStats = next;
+      }
+    }
+    return stats;
+  }
+
+  void recordLeader(long loadNanos, boolean failed) {
+    leaderCount.increment();
+    leaderLoadTime.record(loadNanos);
+    if (failed) {
+      failureCount.increment();
+    }
+  }
+
+  void recordFollower(long waitNanos) {
+    followerCount.increment();
+    followerWaitTime.record(waitNanos);
+  }
+
+  @Override
+  public long getLeaderCount() {
+    return leaderCount.sum();
+  }
+
+  @Override
+  public long getFollowerCount() {
+    return followerCount.sum();
+  }
+
+  @Override
+  public long getFailureCount() {
+    return failureCount.sum();
+  }
+
+  @Override
+  public double getSuppressedRatio() {
+    long leaders = leaderCount.sum();
+    long followers = followerCount.sum();
+    long total = leaders + followers;
+    return total == 0 ? 0 : (double) followers / total;
+  }
+
+  @Override
+  public double getLeaderLoadTimeMeanMillis() {
+    return leaderLoadTime.getMeanMillis();
+  }
+
+  @Override
+  public double getLeaderLoadTimeP50Millis() {
+    return leaderLoadTime.getPercentileMillis(0.5);
+  }
+
+  @Override
+  public double getLeaderLoadTimeP99Millis() {
+    return leaderLoadTime.getPercentileMillis(0.99);
+  }
+
+  @Override
+  public double getFollowerWaitTimeMeanMillis() {
+    return followerWaitTime.getMeanMillis();
+  }
+
+  @Override
+  public double getFollowerWaitTimeP50Millis() {
+    return followerWaitTime.getPercentileMillis(0.5);
+  }
+
+  @Override
+  public double getFollowerWaitTimeP99Millis() {
+    return followerWaitTime.getPercentileMillis(0.99);
+  }
+
+  @Override
+  public void reset() {
+    leaderCount.reset();
+    followerCount.reset();
+    failureCount.reset();
+    leaderLoadTime.reset();
+    followerWaitTime.reset();
+  }
+}
@@ -0,0 +1,36 @@
+package cache.demo.util;
+
+/**
+ * 单飞统计信息（JMX 接口）
+ *
+ * @author Camio1945
+ */
+public interface SingleFlightStatsMBean {
+
+  /** 领导者执行次数（即实际查询数据库的次数） */
+  long getLeaderCount();
+
+  /** 跟随者次数（即被合并掉的数据库查询次数） */
+  long getFollowerCount();
+
+  /** 加载失败的次数 */
+  long getFailureCount();
+
+  /** 被合并掉的数据库查询占比，即：跟随者次数 / (领导者次数 + 跟随者次数) */
+  double getSuppressedRatio();
+
+  double getLeaderLoadTimeMeanMillis();
+
+  double getLeaderLoadTimeP50Millis();
+
+  double getLeaderLoadTimeP99Millis();
+
+  double getFollowerWaitTimeMeanMillis();
+
+  double getFollowerWaitTimeP50Millis();
+
+  double getFollowerWaitTimeP99Millis();
+
+  /** 清空统计信息 */
+  void reset();
+}
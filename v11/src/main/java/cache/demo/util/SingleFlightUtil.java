@@ -1,48 +1,280 @@
 package cache.demo.util;
 
 import cn.hutool.core.exceptions.ExceptionUtil;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 单飞工具类
  *
  * <pre>
  * 参考了<a href="https://pkg.go.dev/golang.org/x/sync/singleflight"> go 语言的 singleflight</a>
+ * 高并发访问同一个 key 时，绝大多数线程都是跟随者（只需要等待结果），所以先用 get 检查是否已有正在执行的任务，
+ * 有的话直接等待，不再为跟随者创建注定会被丢弃的对象。
+ * {@link #executeAsync} 是异步版本，领导者在虚拟线程中执行，所有调用者都不会被阻塞。
+ * 同步和异步共用同一个 map ，同一个 key 同时有同步和异步的调用时也只执行一次，同步的跟随者阻塞等待，异步的跟随者拿到结果的副本。
+ * 按 key 的前缀统计领导者、跟随者、失败次数和耗时，详见 {@link SingleFlightStats}。
+ * 可以通过 {@link #setLinger} 让成功的结果多停留一段时间，吸收紧随其后到达的请求。
  * </pre>
  *
  * @author Camio1945
  */
 public class SingleFlightUtil {
 
-  private static final ConcurrentHashMap<String, FutureTask> KEY_TO_FUTURE_TASK_MAP =
+  private static final ConcurrentHashMap<String, Flight<?>> KEY_TO_FLIGHT_MAP =
       new ConcurrentHashMap<>();
 
+  /** 当前停留在 map 中的结果数量 */
+  private static final AtomicInteger LINGERING_COUNT = new AtomicInteger(0);
+
+  private static volatile long lingerNanos = 0;
+
+  private static volatile int maxLingeringKeys = 0;
+
+  /** 异步版本的领导者在虚拟线程中执行，查询数据库时不会占用平台线程 */
+  private static final ExecutorService ASYNC_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
   private SingleFlightUtil() {}
 
   public static <T> T execute(String key, Callable<T> fn) {
-    FutureTask<T> task = new FutureTask<>(fn);
-    FutureTask<T> existingTask = KEY_TO_FUTURE_TASK_MAP.putIfAbsent(key, task);
+    // 快速路径：已经有线程在执行，当前线程是跟随者，直接等待结果，不分配任何对象
+    Flight<?> existingFlight = KEY_TO_FLIGHT_MAP.get(key);
+    if (existingFlight != null && !removeIfLingerExpired(key, existingFlight)) {
+      return follow(existingFlight);
+    }
+    Flight<T> flight = new Flight<>(SingleFlightStats.of(key));
+    // 在 get 和 putIfAbsent 之间，可能有其他线程抢先成为了领导者
+    while ((existingFlight = KEY_TO_FLIGHT_MAP.putIfAbsent(key, flight)) != null) {
+      if (!removeIfLingerExpired(key, existingFlight)) {
+        return follow(existingFlight);
+      }
+    }
+    lead(key, flight, fn);
+    return await(flight);
+  }
+
+  /**
+   * 设置结果的停留时间 <br>
+   * 领导者执行完成后，如果立即从 map 中删除，那么在 {@code @Cacheable} 把结果写入 Redis 之前到达的请求，又会再查询一次数据库。
+   * 设置停留时间后，成功的结果会在 map 中多停留一段时间，这段时间内到达的请求直接共享这个结果。
+   *
+   * @param linger 停留时间，为 0 表示不停留（默认）
+   * @param maxLingeringKeys 最多有多少个 key 同时停留，超过后不再停留，以限制占用的内存
+   */
+  public static void setLinger(Duration linger, int maxLingeringKeys) {
+    SingleFlightUtil.lingerNanos = linger.toNanos();
+    SingleFlightUtil.maxLingeringKeys = maxLingeringKeys;
+  }
+
+  /**
+   * 忘记这个 key 的执行（同步和异步的都一样），数据被修改后调用，避免继续共享旧的结果 <br>
+   * 停留中的结果被删除；正在执行的不会被中断，已经在等待的调用者仍然拿到它的结果，之后到达的调用者重新执行。
+   *
+   * @param key 键
+   */
+  public static void forget(String key) {
+    Flight<?> flight = KEY_TO_FLIGHT_MAP.get(key);
+    if (flight != null) {
+      removeLingering(key, flight);
+    }
+  }
+
+  /** 领导者执行函数，完成后从 map 中删除或者开始停留 */
+  private static <T> void lead(String key, Flight<T> flight, Callable<T> fn) {
+    long start = System.nanoTime();
+    boolean failed = false;
     try {
-      // 如果 key 不存在，则 existingTask 为 null，此时需要执行 task.run()，否则直接返回 existingTask.get()
-      if (existingTask == null) {
-        T res;
-        try {
-          task.run();
-          res = task.get();
-        } finally {
-          KEY_TO_FUTURE_TASK_MAP.remove(key);
+      flight.complete(fn.call());
+    } catch (Throwable e) {
+      failed = true;
+      flight.completeExceptionally(e);
+    } finally {
+      finish(key, flight);
+      flight.stats.recordLeader(System.nanoTime() - start, failed);
+    }
+  }
+
+  private static void finish(String key, Flight<?> flight) {
+    long linger = lingerNanos;
+    if (linger > 0 && flight.state() == Future.State.SUCCESS) {
+      if (LINGERING_COUNT.incrementAndGet() <= maxLingeringKeys) {
+        flight.startLingering(System.nanoTime() + linger);
+        CompletableFuture.delayedExecutor(linger, TimeUnit.NANOSECONDS)
+            .execute(() -> removeLingering(key, flight));
+        if (KEY_TO_FLIGHT_MAP.get(key) != flight) {
+          // 执行期间被忘记了，不再停留
+          removeLingering(key, flight);
         }
-        return res;
-      } else {
-        return existingTask.get();
+        return;
       }
+      LINGERING_COUNT.decrementAndGet();
+    }
+    // 只删除自己放进去的任务，避免误删其他领导者的任务
+    KEY_TO_FLIGHT_MAP.remove(key, flight);
+  }
+
+  /**
+   * 如果是已经超过停留时间的结果，从 map 中删除
+   *
+   * @return true 表示已经超过停留时间
+   */
+  private static boolean removeIfLingerExpired(String key, Flight<?> flight) {
+    long lingerUntil = flight.lingerUntil;
+    if (lingerUntil == 0 || lingerUntil - System.nanoTime() > 0) {
+      return false;
+    }
+    removeLingering(key, flight);
+    return true;
+  }
+
+  private static void removeLingering(String key, Flight<?> flight) {
+    KEY_TO_FLIGHT_MAP.remove(key, flight);
+    // 定时任务、忘记和其他线程都可能来删除，只有结束停留的那一个才减少计数
+    if (flight.stopLingering()) {
+      LINGERING_COUNT.decrementAndGet();
+    }
+  }
+
+  private static <T> T follow(Flight<?> flight) {
+    long start = System.nanoTime();
+    try {
+      return await(flight);
+    } finally {
+      flight.stats.recordFollower(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * 异步执行（不限制等待时间）
+   *
+   * @param key 键
+   * @param fn 要执行的函数
+   * @return 执行结果
+   */
+  public static <T> CompletableFuture<T> executeAsync(String key, Callable<T> fn) {
+    return executeAsync(key, fn, null);
+  }
+
+  /**
+   * 异步执行 <br>
+   * 每个调用者拿到的都是共享结果的副本，所以某个调用者取消或超时，不会影响其他调用者，也不会中断正在执行的函数。
+   *
+   * @param key 键
+   * @param fn 要执行的函数
+   * @param timeout 当前调用者最多等待多久，为 null 表示不限制，超时后返回的 CompletableFuture 会以 TimeoutException 结束
+   * @return 执行结果
+   */
+  public static <T> CompletableFuture<T> executeAsync(
+      String key, Callable<T> fn, Duration timeout) {
+    return executeAsync(key, fn, timeout, ASYNC_EXECUTOR);
+  }
+
+  /**
+   * 异步执行，领导者在指定的执行器中执行，如 {@link BoundedVirtualThreadExecutor} ，以限制同时查询数据库的数量 <br>
+   * 执行器拒绝执行时，当前调用者和同时到达的跟随者都以 RejectedExecutionException 结束
+   *
+   * @param key 键
+   * @param fn 要执行的函数
+   * @param timeout 当前调用者最多等待多久，为 null 表示不限制
+   * @param executor 执行领导者的执行器
+   * @return 执行结果
+   */
+  public static <T> CompletableFuture<T> executeAsync(
+      String key, Callable<T> fn, Duration timeout, Executor executor) {
+    Flight<?> existingFlight = KEY_TO_FLIGHT_MAP.get(key);
+    if (existingFlight != null && !removeIfLingerExpired(key, existingFlight)) {
+      return followAsync(existingFlight, timeout);
+    }
+    Flight<T> flight = new Flight<>(SingleFlightStats.of(key));
+    while ((existingFlight = KEY_TO_FLIGHT_MAP.putIfAbsent(key, flight)) != null) {
+      if (!removeIfLingerExpired(key, existingFlight)) {
+        return followAsync(existingFlight, timeout);
+      }
+    }
+    try {
+      executor.execute(() -> lead(key, flight, fn));
+    } catch (RejectedExecutionException e) {
+      KEY_TO_FLIGHT_MAP.remove(key, flight);
+      flight.completeExceptionally(e);
+    }
+    return withTimeout(flight.copy(), timeout);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> CompletableFuture<T> followAsync(Flight<?> flight, Duration timeout) {
+    long start = System.nanoTime();
+    CompletableFuture<T> copy = ((Flight<T>) flight).copy();
+    copy.whenComplete((res, e) -> flight.stats.recordFollower(System.nanoTime() - start));
+    return withTimeout(copy, timeout);
+  }
+
+  private static <T> CompletableFuture<T> withTimeout(
+      CompletableFuture<T> copy, Duration timeout) {
+    if (timeout != null) {
+      copy.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+    return copy;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T await(Flight<?> flight) {
+    try {
+      return (T) flight.get();
     } catch (InterruptedException e) {
       // 这里的代码在单元测试时覆盖不到，可以忽略
       Thread.currentThread().interrupt();
       throw ExceptionUtil.wrapRuntime(e);
     } catch (ExecutionException e) {
-      // 这里的代码在单元测试时覆盖不到，可以忽略
       throw ExceptionUtil.wrapRuntime(e);
     }
   }
+
+  /**
+   * 一次执行，同步和异步共用，本身就是执行结果：同步的跟随者阻塞等待，异步的跟随者拿到它的副本 <br>
+   * 带上统计信息，跟随者直接从这里拿到统计信息，不需要再解析 key 。
+   * 领导者每次执行只创建这一个对象，与原来的 FutureTask 一样。
+   */
+  private static class Flight<T> extends CompletableFuture<T> {
+    private static final VarHandle LINGER_UNTIL;
+
+    static {
+      try {
+        LINGER_UNTIL =
+            MethodHandles.lookup().findVarHandle(Flight.class, "lingerUntil", long.class);
+      } catch (ReflectiveOperationException e) {
+        throw new ExceptionInInitializerError(e);
+      }
+    }
+
+    private final SingleFlightStats stats;
+
+    /** 停留到什么时候（System.nanoTime），为 0 表示没有停留；不单独用一个字段表示是否停留，对象可以小 8 字节 */
+    private volatile long lingerUntil;
+
+    Flight(SingleFlightStats stats) {
+      this.stats = stats;
+    }
+
+    /**
+     * 开始停留
+     *
+     * @param until 停留到什么时候（System.nanoTime）
+     */
+    void startLingering(long until) {
+      lingerUntil = until == 0 ? 1 : until;
+    }
+
+    /**
+     * 结束停留
+     *
+     * @return 是否由当前调用结束的，多个线程同时调用时只有一个返回 true
+     */
+    boolean stopLingering() {
+      long until = lingerUntil;
+      return until != 0 && LINGER_UNTIL.compareAndSet(this, until, 0L);
+    }
+  }
 }
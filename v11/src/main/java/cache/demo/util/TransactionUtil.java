@@ -0,0 +1,32 @@
+package cache.demo.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务工具类
+ *
+ * @author Camio1945
+ */
+public class TransactionUtil {
+  private TransactionUtil() {}
+
+  /**
+   * 有事务时在提交后执行，回滚时不执行；没有事务时立即执行
+   *
+   * @param action 要执行的操作
+   */
+  public static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            action.run();
+          }
+        });
+  }
+}
@@ -0,0 +1,98 @@
+package cache.demo.cache;
+
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 自适应过期时间的测试
+ *
+ * @author Camio1945
+ */
+class AdaptiveTtlFunctionTest {
+  private static final String CACHE_NAME = "cache:goods:id";
+
+  private final AdaptiveTtlFunction ttlFunction =
+      new AdaptiveTtlFunction(
+          Duration.ofMinutes(10), Duration.ofMinutes(1000), 10, 1024, Duration.ofHours(1));
+
+  /** 加上随机偏移量之前的过期时间（分钟），偏移量不超过 10% */
+  private void assertTtlMinutes(long expected, Object key) {
+    long seconds = ttlFunction.getTimeToLive(key, "value").getSeconds();
+    Assertions.assertTrue(
+        seconds >= expected * 60 && seconds <= expected * 66, key + " 的过期时间是 " + seconds + " 秒");
+  }
+
+  @Test
+  void byReadCount() {
+    assertTtlMinutes(10, 1);
+    for (int i = 0; i < 5; i++) {
+      ttlFunction.recordRead(2);
+    }
+    // 10 + (1000 - 10) * 5 / 10
+    assertTtlMinutes(505, 2);
+    for (int i = 0; i < 20; i++) {
+      ttlFunction.recordRead(3);
+    }
+    assertTtlMinutes(1000, 3);
+  }
+
+  @Test
+  void recentlyUpdated() {
+    for (int i = 0; i < 10; i++) {
+      ttlFunction.recordRead(1);
+    }
+    ttlFunction.recordUpdate("1");
+    assertTtlMinutes(500, 1);
+    for (int i = 0; i < 10; i++) {
+      ttlFunction.recordUpdate(1);
+    }
+    assertTtlMinutes(10, 1);
+  }
+
+  /** 很久以前的修改不再缩短过期时间，即使之后没有其他修改 */
+  @Test
+  void updatesDecayOverTime() throws InterruptedException {
+    AdaptiveTtlFunction decayingTtlFunction =
+        new AdaptiveTtlFunction(
+            Duration.ofMinutes(10), Duration.ofMinutes(1000), 10, 1024, Duration.ofMillis(50));
+    for (int i = 0; i < 10; i++) {
+      decayingTtlFunction.recordRead(1);
+    }
+    decayingTtlFunction.recordUpdate(1);
+    decayingTtlFunction.recordUpdate(1);
+    Assertions.assertTrue(decayingTtlFunction.getTimeToLive(1, "value").toMinutes() < 1000 / 2);
+    // 两个周期之后修改次数减为 0
+    Thread.sleep(120);
+    Assertions.assertTrue(decayingTtlFunction.getTimeToLive(1, "value").toMinutes() >= 1000);
+  }
+
+  @Test
+  void recordThroughCacheManager() {
+    TwoLevelCacheManager cacheManager =
+        new TwoLevelCacheManager(
+            new ConcurrentMapCacheManager(),
+            mock(StringRedisTemplate.class),
+            false,
+            true,
+            List.of(),
+            10,
+            0,
+            0);
+    cacheManager.registerAdaptiveTtl(CACHE_NAME, ttlFunction);
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    Assertions.assertInstanceOf(AccessTrackingCache.class, cache);
+    for (int i = 0; i < 10; i++) {
+      cache.get(1);
+    }
+    assertTtlMinutes(1000, 1);
+    cacheManager.onUpdate(List.of(CACHE_NAME + "::1", "cache:user:id::1"));
+    assertTtlMinutes(500, 1);
+  }
+}
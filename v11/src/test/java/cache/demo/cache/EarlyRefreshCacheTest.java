@@ -0,0 +1,155 @@
+package cache.demo.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.data.redis.util.ByteUtils;
+
+/**
+ * 概率提前刷新的测试，用 mock 模拟 Redis 的 GET 和 PTTL
+ *
+ * @author Camio1945
+ */
+class EarlyRefreshCacheTest {
+  private static final String CACHE_NAME = "cache:goods:id";
+
+  private RedisCache redisCache;
+
+  private StringRedisTemplate stringRedisTemplate;
+
+  private TwoLevelCacheManager cacheManager;
+
+  private RedisCacheConfiguration cacheConfiguration;
+
+  @BeforeEach
+  void beforeEach() {
+    cacheConfiguration =
+        RedisCacheConfiguration.defaultCacheConfig()
+            .serializeValuesWith(
+                SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()));
+    redisCache = mock(RedisCache.class);
+    when(redisCache.getName()).thenReturn(CACHE_NAME);
+    when(redisCache.getCacheConfiguration()).thenReturn(cacheConfiguration);
+    CacheManager redisCacheManager = mock(CacheManager.class);
+    when(redisCacheManager.getCache(CACHE_NAME)).thenReturn(redisCache);
+    stringRedisTemplate = mock(StringRedisTemplate.class);
+    cacheManager =
+        new TwoLevelCacheManager(
+            redisCacheManager, stringRedisTemplate, false, true, List.of(), 10, 0, 0);
+    cacheManager.enableEarlyRefresh(List.of(CACHE_NAME), 1.0, Duration.ofMillis(50));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void mockRedis(Object value, long ttlMillis) {
+    byte[] bytes = ByteUtils.getBytes(cacheConfiguration.getValueSerializationPair().write(value));
+    when(stringRedisTemplate.executePipelined(any(RedisCallback.class), isNull()))
+        .thenReturn(Arrays.asList(bytes, ttlMillis));
+  }
+
+  @Test
+  void shouldRefresh() {
+    EarlyRefreshCache cache = (EarlyRefreshCache) cacheManager.getCache(CACHE_NAME);
+    Assertions.assertNotNull(cache);
+    // 没有过期时间
+    Assertions.assertFalse(cache.shouldRefresh(-1));
+    // 已经到期，一定刷新
+    Assertions.assertTrue(cache.shouldRefresh(0));
+    // 剩余 1 小时，重新加载只要 50 毫秒，不会刷新
+    Assertions.assertFalse(cache.shouldRefresh(Duration.ofHours(1).toMillis()));
+  }
+
+  @Test
+  void refreshNearExpiry() throws InterruptedException {
+    AtomicInteger loadCount = new AtomicInteger();
+    cacheManager.registerRefreshLoader(CACHE_NAME, id -> "b" + loadCount.incrementAndGet());
+    mockRedis("a", 0);
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    Assertions.assertNotNull(cache);
+    // 先返回旧值，新值在后台放入缓存
+    Assertions.assertEquals("a", cache.get(1, String.class));
+    // 键仍然存在时才写入（守护键和写入的键都是主缓存的键），刷新期间被删除的键不会被写回旧值
+    ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+    verify(stringRedisTemplate, timeout(1000))
+        .execute(
+            any(RedisScript.class),
+            isNull(),
+            any(),
+            eq(List.of(CACHE_NAME + "::1", CACHE_NAME + "::1")),
+            argsCaptor.capture());
+    List<Object> args = List.of(argsCaptor.getValue());
+    Assertions.assertEquals(3, args.size());
+    Assertions.assertArrayEquals(bytes("1"), (byte[]) args.get(0));
+    ByteBuffer value = ByteBuffer.wrap((byte[]) args.get(1));
+    Assertions.assertEquals("b1", cacheConfiguration.getValueSerializationPair().read(value));
+    // 默认的配置没有过期时间
+    Assertions.assertArrayEquals(bytes("0"), (byte[]) args.get(2));
+    verify(redisCache, never()).put(any(), any());
+    for (int i = 0; i < 100 && ((EarlyRefreshCache) cache).getRefreshCount() == 0; i++) {
+      Thread.sleep(10);
+    }
+    Assertions.assertEquals(1, ((EarlyRefreshCache) cache).getRefreshCount());
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void noRefreshFarFromExpiry() {
+    AtomicInteger loadCount = new AtomicInteger();
+    cacheManager.registerRefreshLoader(CACHE_NAME, id -> "b" + loadCount.incrementAndGet());
+    mockRedis("a", Duration.ofHours(1).toMillis());
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    Assertions.assertNotNull(cache);
+    for (int i = 0; i < 100; i++) {
+      Assertions.assertEquals("a", cache.get(1, String.class));
+    }
+    Assertions.assertEquals(0, loadCount.get());
+  }
+
+  @Test
+  void missWithoutRefresh() {
+    when(stringRedisTemplate.executePipelined(any(RedisCallback.class), isNull()))
+        .thenReturn(Arrays.asList(null, -2L));
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    Assertions.assertNotNull(cache);
+    Assertions.assertNull(cache.get(1));
+    verify(redisCache, never()).put(any(), any());
+  }
+
+  @Test
+  void cachedNull() {
+    when(stringRedisTemplate.executePipelined(any(RedisCallback.class), isNull()))
+        .thenReturn(Arrays.asList(CacheBatchWriter.BINARY_NULL_VALUE, 1000L));
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    Assertions.assertNotNull(cache);
+    Cache.ValueWrapper valueWrapper = cache.get(1);
+    Assertions.assertNotNull(valueWrapper);
+    Assertions.assertNull(valueWrapper.get());
+  }
+}
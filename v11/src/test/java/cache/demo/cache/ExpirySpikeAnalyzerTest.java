@@ -0,0 +1,170 @@
+package cache.demo.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 集中过期分析的测试，用 mock 模拟 Redis 的 SCAN 、PTTL 和 PEXPIRE
+ *
+ * @author Camio1945
+ */
+class ExpirySpikeAnalyzerTest {
+  private static final String CACHE_NAME = "cache:goods:id";
+
+  private static final Duration SPREAD_WINDOW = Duration.ofSeconds(30);
+
+  /** 每次 pipeline 最多 4 个键，让查询和修改都分成多批 */
+  private static final int BATCH_SIZE = 4;
+
+  private static final int SPIKE_KEY_COUNT = 20;
+
+  private StringRedisTemplate stringRedisTemplate;
+
+  /** 键到剩余时间的映射，按 SCAN 返回的顺序 */
+  private final Map<String, Long> keyToTtl = new LinkedHashMap<>();
+
+  /** 本次 pipeline 中 PTTL 查询的键 */
+  private final List<String> pTtlKeys = new ArrayList<>();
+
+  /** 每次 pipeline 中 PEXPIRE 的键和剩余时间 */
+  private final List<List<String>> pExpireKeyBatches = new ArrayList<>();
+
+  private final List<List<Long>> pExpireTtlBatches = new ArrayList<>();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void beforeEach() {
+    // 尖峰：20 个键都在 60 秒左右过期（同一个桶）
+    for (int i = 0; i < SPIKE_KEY_COUNT; i++) {
+      keyToTtl.put(keyOf(i), 60_000L + i * 10);
+    }
+    // 其他的键每个桶一个
+    for (int i = 0; i < 10; i++) {
+      keyToTtl.put(keyOf(100 + i), 1_000L + i * 7_000);
+    }
+    // 没有过期时间的和已经不存在的键会被忽略
+    keyToTtl.put(keyOf(200), -1L);
+    keyToTtl.put(keyOf(201), -2L);
+
+    stringRedisTemplate = mock(StringRedisTemplate.class);
+    Iterator<String> iterator = List.copyOf(keyToTtl.keySet()).iterator();
+    Cursor<String> cursor = mock(Cursor.class);
+    when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+    when(cursor.next()).thenAnswer(invocation -> iterator.next());
+    when(stringRedisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+
+    RedisKeyCommands keyCommands = mock(RedisKeyCommands.class);
+    RedisConnection connection = mock(RedisConnection.class);
+    when(connection.keyCommands()).thenReturn(keyCommands);
+    when(keyCommands.pTtl(any(byte[].class)))
+        .thenAnswer(
+            invocation -> {
+              pTtlKeys.add(toKey(invocation.getArgument(0)));
+              return null;
+            });
+    when(keyCommands.pExpire(any(byte[].class), anyLong()))
+        .thenAnswer(
+            invocation -> {
+              pExpireKeyBatches.getLast().add(toKey(invocation.getArgument(0)));
+              pExpireTtlBatches.getLast().add(invocation.getArgument(1));
+              return null;
+            });
+    when(stringRedisTemplate.executePipelined(any(RedisCallback.class), isNull()))
+        .thenAnswer(
+            invocation -> {
+              pTtlKeys.clear();
+              pExpireKeyBatches.add(new ArrayList<>());
+              pExpireTtlBatches.add(new ArrayList<>());
+              RedisCallback<Object> callback = invocation.getArgument(0);
+              callback.doInRedis(connection);
+              if (pExpireKeyBatches.getLast().isEmpty()) {
+                pExpireKeyBatches.removeLast();
+                pExpireTtlBatches.removeLast();
+              }
+              // PTTL 的结果与查询的键一一对应
+              List<Object> results = new ArrayList<>();
+              pTtlKeys.forEach(key -> results.add(keyToTtl.get(key)));
+              return results;
+            });
+  }
+
+  @Test
+  void analyze() {
+    ExpirySpikeAnalyzer analyzer = newAnalyzer(5);
+    Assertions.assertEquals(SPIKE_KEY_COUNT, analyzer.analyze(CACHE_NAME));
+    Assertions.assertEquals(SPIKE_KEY_COUNT, analyzer.getRejitteredCount());
+
+    // 只修改尖峰中的键
+    List<String> spikeKeys = new ArrayList<>();
+    for (int i = 0; i < SPIKE_KEY_COUNT; i++) {
+      spikeKeys.add(keyOf(i));
+    }
+    Assertions.assertEquals(spikeKeys, pExpireKeyBatches.stream().flatMap(List::stream).toList());
+
+    // 分批修改，每批的键和剩余时间一一对应，剩余时间只会延长，最多延长 spreadWindow
+    Assertions.assertEquals(SPIKE_KEY_COUNT / BATCH_SIZE, pExpireKeyBatches.size());
+    for (int batch = 0; batch < pExpireKeyBatches.size(); batch++) {
+      List<String> keys = pExpireKeyBatches.get(batch);
+      List<Long> ttls = pExpireTtlBatches.get(batch);
+      Assertions.assertEquals(keys.size(), ttls.size());
+      Assertions.assertTrue(keys.size() <= BATCH_SIZE);
+      for (int i = 0; i < keys.size(); i++) {
+        long oldTtl = keyToTtl.get(keys.get(i));
+        long newTtl = ttls.get(i);
+        Assertions.assertTrue(newTtl >= oldTtl, keys.get(i) + " 的剩余时间被缩短了：" + newTtl);
+        Assertions.assertTrue(
+            newTtl <= oldTtl + SPREAD_WINDOW.toMillis(), keys.get(i) + " 延长得太多：" + newTtl);
+      }
+    }
+  }
+
+  @Test
+  void analyzeWithoutSpike() {
+    // 尖峰的桶达不到 minSpikeKeys 时不修改任何键
+    ExpirySpikeAnalyzer analyzer = newAnalyzer(SPIKE_KEY_COUNT + 1);
+    Assertions.assertEquals(0, analyzer.analyze(CACHE_NAME));
+    Assertions.assertTrue(pExpireKeyBatches.isEmpty());
+  }
+
+  private ExpirySpikeAnalyzer newAnalyzer(int minSpikeKeys) {
+    return new ExpirySpikeAnalyzer(
+        stringRedisTemplate,
+        true,
+        List.of(CACHE_NAME),
+        1000,
+        100,
+        Duration.ofSeconds(1),
+        0.2,
+        minSpikeKeys,
+        SPREAD_WINDOW,
+        BATCH_SIZE);
+  }
+
+  private static String keyOf(int id) {
+    return CACHE_NAME + "::" + id;
+  }
+
+  private static String toKey(byte[] bytes) {
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,240 @@
+package cache.demo.cache;
+
+import static org.mockito.Answers.CALLS_REAL_METHODS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import cache.demo.entity.Goods;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+/**
+ * 商品哈希存储的测试：字段转换，以及 Lua 脚本的键和参数（使用真实的 StringRedisTemplate ，只模拟连接）
+ *
+ * @author Camio1945
+ */
+class GoodsHashStoreTest {
+  private static final Duration TIME_TO_LIVE = Duration.ofMinutes(10);
+
+  private RedisScriptingCommands scriptingCommands;
+
+  private GoodsHashStore goodsHashStore;
+
+  @BeforeEach
+  void beforeEach() {
+    // RedisTemplate 调用的是 RedisConnection 中已经过时的默认方法，由它们转交给 scriptingCommands()
+    RedisConnection connection =
+        mock(RedisConnection.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+    RedisConnectionFactory connectionFactory = mock(RedisConnectionFactory.class);
+    when(connectionFactory.getConnection()).thenReturn(connection);
+    scriptingCommands = mock(RedisScriptingCommands.class);
+    when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+    StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+    goodsHashStore =
+        new GoodsHashStore(
+            stringRedisTemplate,
+            true,
+            RedisCacheWriter.TtlFunction.just(TIME_TO_LIVE),
+            TIME_TO_LIVE);
+  }
+
+  private static Goods newGoods() {
+    Goods goods = new Goods();
+    goods.setId(1);
+    goods.setStoreId(2);
+    goods.setName("店铺2的商品1");
+    goods.setStock(100);
+    goods.setPrice(new BigDecimal("12.30"));
+    return goods;
+  }
+
+  @Test
+  void roundTrip() {
+    Goods goods = newGoods();
+    Map<String, String> hash = GoodsHashStore.toHash(goods);
+    Assertions.assertEquals("12.30", hash.get("price"));
+    // 没有版本号时说明哈希不存在
+    Assertions.assertNull(GoodsHashStore.fromHash(hash));
+    hash.put(GoodsHashStore.VERSION_FIELD, "0");
+    Assertions.assertEquals(goods, GoodsHashStore.fromHash(hash));
+    Assertions.assertNull(GoodsHashStore.fromHash(Map.of()));
+    Assertions.assertNull(GoodsHashStore.fromHash(null));
+  }
+
+  @Test
+  void nullFields() {
+    Goods goods = new Goods();
+    goods.setId(1);
+    Map<String, String> hash = GoodsHashStore.toHash(goods);
+    Assertions.assertEquals(Map.of("id", "1", "stock", "0"), hash);
+    hash.put(GoodsHashStore.VERSION_FIELD, "3");
+    Assertions.assertEquals(goods, GoodsHashStore.fromHash(hash));
+  }
+
+  @Test
+  void updatedFields() {
+    // 只修改库存时，updateById 只写入 stock ，其他为 null 的字段保留原来的值
+    Goods after = new Goods();
+    after.setId(1);
+    after.setStock(99);
+    Assertions.assertEquals(Map.of("stock", "99"), GoodsHashStore.updatedFields(after));
+    Map<String, String> fields = GoodsHashStore.updatedFields(newGoods());
+    Assertions.assertFalse(fields.containsKey("id"));
+    Assertions.assertEquals("店铺2的商品1", fields.get("name"));
+  }
+
+  @Test
+  void put() {
+    mockScriptResult(1L);
+    Assertions.assertTrue(goodsHashStore.put(newGoods(), 3));
+    List<String> keysAndArgs = captureScript(2);
+    Assertions.assertEquals(
+        List.of(
+            "cache:goods:hash::1",
+            "cache:goods:hash:version::1",
+            "3",
+            String.valueOf(TIME_TO_LIVE.toMillis()),
+            "id",
+            "1",
+            "storeId",
+            "2",
+            "name",
+            "店铺2的商品1",
+            "stock",
+            "100",
+            "price",
+            "12.30"),
+        keysAndArgs);
+    // 加载期间版本号变了，没有写入
+    mockScriptResult(0L);
+    Assertions.assertFalse(goodsHashStore.put(newGoods(), 3));
+  }
+
+  @Test
+  void update() {
+    mockScriptResult(-1L);
+    Assertions.assertEquals(-1, goodsHashStore.update(1, Map.of("stock", "99"), 4));
+    Assertions.assertEquals(List.of("cache:goods:hash::1", "4", "stock", "99"), captureScript(1));
+  }
+
+  @Test
+  void nextVersion() {
+    mockScriptResult(7L);
+    Assertions.assertEquals(7, goodsHashStore.nextVersion(1));
+    // 计数器的过期时间是哈希最长过期时间的 2 倍
+    String versionTtlMillis = String.valueOf(TIME_TO_LIVE.multipliedBy(2).toMillis());
+    Assertions.assertEquals(
+        List.of("cache:goods:hash:version::1", versionTtlMillis), captureScript(1));
+  }
+
+  @Test
+  void invalidate() {
+    mockScriptResult(8L);
+    goodsHashStore.invalidate(1);
+    String versionTtlMillis = String.valueOf(TIME_TO_LIVE.multipliedBy(2).toMillis());
+    Assertions.assertEquals(
+        List.of("cache:goods:hash:version::1", "cache:goods:hash::1", versionTtlMillis),
+        captureScript(2));
+  }
+
+  /** 事务中分配版本号，提交后才写入变化了的字段 */
+  @Test
+  void handleCacheAfterUpdateInTransaction() {
+    GoodsHashStore store = mockEnabledStore();
+    CacheInvalidator cacheInvalidator = mock(CacheInvalidator.class);
+    GoodsCache goodsCache = newGoodsCache(store, cacheInvalidator);
+    Goods after = new Goods();
+    after.setId(1);
+    after.setStock(99);
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      goodsCache.handleCacheAfterUpdate(newGoods(), after);
+      verify(store).nextVersion(1);
+      verify(store, never()).update(any(), anyMap(), any(Long.class));
+      verify(cacheInvalidator, never()).delete(any());
+      TransactionSynchronizationUtils.triggerAfterCommit();
+      InOrder inOrder = inOrder(store);
+      inOrder.verify(store).nextVersion(1);
+      inOrder.verify(store).update(1, Map.of("stock", "99"), 5L);
+      verify(cacheInvalidator).delete(any());
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  /** 回滚时不写入，分配了的版本号被跳过，之后的修改会因为版本号不连续而删除整个哈希 */
+  @Test
+  void handleCacheAfterUpdateRollback() {
+    GoodsHashStore store = mockEnabledStore();
+    CacheInvalidator cacheInvalidator = mock(CacheInvalidator.class);
+    GoodsCache goodsCache = newGoodsCache(store, cacheInvalidator);
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      goodsCache.handleCacheAfterUpdate(newGoods(), newGoods());
+      verify(store).nextVersion(1);
+      TransactionSynchronizationUtils.invokeAfterCompletion(
+          TransactionSynchronizationManager.getSynchronizations(),
+          TransactionSynchronization.STATUS_ROLLED_BACK);
+      verify(store, never()).update(any(), anyMap(), any(Long.class));
+      verify(cacheInvalidator, never()).delete(any());
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  private static GoodsHashStore mockEnabledStore() {
+    GoodsHashStore store = mock(GoodsHashStore.class);
+    when(store.isEnabled()).thenReturn(true);
+    when(store.nextVersion(1)).thenReturn(5L);
+    return store;
+  }
+
+  private static GoodsCache newGoodsCache(GoodsHashStore store, CacheInvalidator cacheInvalidator) {
+    return new GoodsCache(
+        null, null, null, cacheInvalidator, null, null, null, null, null, store, null, null);
+  }
+
+  private void mockScriptResult(Long result) {
+    when(scriptingCommands.evalSha(
+            anyString(), any(ReturnType.class), anyInt(), any(byte[][].class)))
+        .thenReturn(result);
+  }
+
+  /** 最后一次执行的脚本的键和参数 */
+  private List<String> captureScript(int numKeys) {
+    ArgumentCaptor<byte[][]> captor = ArgumentCaptor.forClass(byte[][].class);
+    verify(scriptingCommands, atLeastOnce())
+        .evalSha(anyString(), eq(ReturnType.INTEGER), eq(numKeys), captor.capture());
+    return Arrays.stream(captor.getValue())
+        .map(bytes -> new String(bytes, StandardCharsets.UTF_8))
+        .toList();
+  }
+}
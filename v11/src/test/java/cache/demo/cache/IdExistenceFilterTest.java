@@ -0,0 +1,183 @@
+package cache.demo.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+/**
+ * id 存在性过滤器的测试，不依赖 Spring 容器，用 mock 的 StringRedisTemplate 记录发布的消息，并模拟 Redis 中的高水位
+ *
+ * @author Camio1945
+ */
+class IdExistenceFilterTest {
+  private final List<String> messages = new ArrayList<>();
+
+  /** Redis 中的高水位 */
+  private String redisHighWaterMark;
+
+  private StringRedisTemplate stringRedisTemplate;
+
+  private ValueOperations<String, String> valueOperations;
+
+  @Test
+  void mightExist() {
+    IdExistenceFilter filter = newFilter(() -> List.of(1, 2, 3), true);
+    // 加载完成之前，所有的 id 都可能存在
+    Assertions.assertFalse(filter.isReady());
+    Assertions.assertTrue(filter.mightExist(100));
+    filter.rebuild();
+    Assertions.assertTrue(filter.isReady());
+    Assertions.assertTrue(filter.mightExist(1));
+    Assertions.assertFalse(filter.mightExist(100));
+    Assertions.assertFalse(filter.mightExist(null));
+    Assertions.assertEquals(3, filter.getHighWaterMark().getLocalValue());
+  }
+
+  /** 其他节点新增的 id ，在位图的消息到达之前，根据高水位判断为可能存在 */
+  @Test
+  void highWaterMark() {
+    IdExistenceFilter filter = newFilter(() -> List.of(1, 3), true);
+    filter.rebuild();
+    IdHighWaterMark highWaterMark = filter.getHighWaterMark();
+    highWaterMark.onMessage("cache:id:high-water-mark:goods\n10");
+    // 其他过滤器的高水位不影响当前过滤器
+    highWaterMark.onMessage("cache:id:high-water-mark:user\n20");
+    Assertions.assertEquals(10, highWaterMark.getLocalValue());
+    Assertions.assertTrue(filter.mightExist(8));
+    Assertions.assertTrue(filter.mightExist(10));
+    // 位图中最大 id 以下的空洞仍然判断为不存在
+    Assertions.assertFalse(filter.mightExist(2));
+    // 本地副本偏小时，先根据本地副本判断为不存在，同时在后台从 Redis 读取最新的值（这里的后台任务是同步执行的）
+    redisHighWaterMark = "15";
+    Assertions.assertFalse(filter.mightExist(12));
+    Assertions.assertEquals(15, highWaterMark.getLocalValue());
+    Assertions.assertTrue(filter.mightExist(12));
+    Assertions.assertFalse(filter.mightExist(16));
+    // 读取失败时仍然根据本地副本判断，不抛出异常
+    when(valueOperations.get(anyString())).thenThrow(new IllegalStateException("Redis 不可用"));
+    Assertions.assertFalse(filter.mightExist(40));
+    Assertions.assertEquals(15, highWaterMark.getLocalValue());
+  }
+
+  /** 两次从 Redis 读取高水位的间隔不小于 refreshInterval */
+  @Test
+  void highWaterMarkRefreshIsRateLimited() {
+    newFilter(() -> List.of(1), true);
+    List<Runnable> tasks = new ArrayList<>();
+    IdHighWaterMark highWaterMark =
+        new IdHighWaterMark("goods", stringRedisTemplate, Duration.ofHours(1), tasks::add);
+    highWaterMark.advance(10);
+    redisHighWaterMark = "20";
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertFalse(highWaterMark.mightContain(15));
+    }
+    Assertions.assertEquals(1, tasks.size());
+    verify(valueOperations, never()).get(anyString());
+    tasks.getFirst().run();
+    Assertions.assertTrue(highWaterMark.mightContain(15));
+    Assertions.assertFalse(highWaterMark.mightContain(25));
+    Assertions.assertEquals(1, tasks.size());
+  }
+
+  @Test
+  void disabled() {
+    IdExistenceFilter filter = newFilter(() -> List.of(1), false);
+    filter.rebuild();
+    filter.remove(1);
+    Assertions.assertFalse(filter.isReady());
+    Assertions.assertTrue(filter.mightExist(100));
+    Assertions.assertTrue(messages.isEmpty());
+  }
+
+  @Test
+  void addAndRemoveAcrossNodes() {
+    IdExistenceFilter node1 = newFilter(List::of, true);
+    IdExistenceFilter node2 = newFilter(List::of, true);
+    node1.rebuild();
+    node2.rebuild();
+    node1.add(5);
+    Assertions.assertTrue(node1.mightExist(5));
+    Assertions.assertEquals(1, messages.size());
+    // 两个节点的 NODE_ID 相同（同一个 JVM），所以这里模拟另一个节点的消息
+    node2.onMessage(messages.get(0).replaceFirst("^[^\\n]+", "other"));
+    Assertions.assertTrue(node2.mightExist(5));
+    node1.remove(5);
+    node2.onMessage(messages.get(1).replaceFirst("^[^\\n]+", "other"));
+    Assertions.assertFalse(node1.mightExist(5));
+    Assertions.assertFalse(node2.mightExist(5));
+    // 自己发出的消息和其他过滤器的消息会被忽略
+    node2.onMessage(messages.get(0));
+    node2.onMessage(messages.get(0).replaceFirst("^[^\\n]+", "other").replace("goods", "user"));
+    Assertions.assertFalse(node2.mightExist(5));
+  }
+
+  /** 加载期间新增和删除的 id ，不会被加载前查到的结果覆盖 */
+  @Test
+  void changesDuringRebuild() throws InterruptedException {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch changed = new CountDownLatch(1);
+    IdExistenceFilter filter =
+        newFilter(
+            () -> {
+              loading.countDown();
+              awaitQuietly(changed);
+              // 加载的是修改之前的数据
+              return List.of(1, 2);
+            },
+            true);
+    Thread rebuilder = Thread.ofPlatform().start(filter::rebuild);
+    loading.await();
+    filter.add(3);
+    filter.remove(1);
+    changed.countDown();
+    rebuilder.join();
+    Assertions.assertFalse(filter.mightExist(1));
+    Assertions.assertTrue(filter.mightExist(2));
+    Assertions.assertTrue(filter.mightExist(3));
+  }
+
+  private IdExistenceFilter newFilter(Supplier<Collection<Integer>> idsLoader, boolean enabled) {
+    StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+    this.stringRedisTemplate = stringRedisTemplate;
+    doAnswer(
+            invocation -> {
+              messages.add(invocation.getArgument(1));
+              return 1L;
+            })
+        .when(stringRedisTemplate)
+        .convertAndSend(anyString(), anyString());
+    // 执行 Lua 脚本时返回 null ，高水位只更新本地副本
+    when(stringRedisTemplate.execute(any(), any(), any(Object[].class))).thenReturn(null);
+    @SuppressWarnings("unchecked")
+    ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+    this.valueOperations = valueOperations;
+    when(valueOperations.get(anyString())).thenAnswer(invocation -> redisHighWaterMark);
+    when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+    IdHighWaterMark highWaterMark =
+        new IdHighWaterMark("goods", stringRedisTemplate, Duration.ZERO, Runnable::run);
+    return new IdExistenceFilter("goods", idsLoader, stringRedisTemplate, highWaterMark, enabled);
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package cache.demo.cache;
+
+import static org.mockito.Mockito.mock;
+
+import cache.demo.util.DistributedSingleFlight;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 逻辑过期的测试，用 ConcurrentMapCacheManager 模拟 Redis ，用内存中的租约存储模拟 Redis 租约
+ *
+ * @author Camio1945
+ */
+class LogicalExpiryCacheTest {
+  private static final String CACHE_NAME = "cache:goods:id";
+
+  private ConcurrentMapCacheManager redis;
+
+  private TwoLevelCacheManager cacheManager;
+
+  private HotKeyWhitelist whitelist;
+
+  private final Map<String, String> leases = new ConcurrentHashMap<>();
+
+  private final AtomicInteger loadCount = new AtomicInteger();
+
+  @BeforeEach
+  void beforeEach() {
+    redis = new ConcurrentMapCacheManager();
+    cacheManager =
+        new TwoLevelCacheManager(
+            redis, mock(StringRedisTemplate.class), false, true, List.of(), 10, 0, 0);
+    whitelist = new HotKeyWhitelist(Map.of(CACHE_NAME, List.of("1")), 60_000);
+    DistributedSingleFlight.LeaseStore leaseStore =
+        new DistributedSingleFlight.LeaseStore() {
+          @Override
+          public boolean tryAcquire(String leaseKey, String token, Duration leaseTime) {
+            return leases.putIfAbsent(leaseKey, token) == null;
+          }
+
+          @Override
+          public void release(String leaseKey, String token) {
+            leases.remove(leaseKey, token);
+          }
+        };
+    // 逻辑过期时间为 0 ，写入副本后立即逻辑过期
+    cacheManager.enableLogicalExpiry(
+        List.of(CACHE_NAME), whitelist, leaseStore, Duration.ZERO, Duration.ofSeconds(10));
+    cacheManager.registerRefreshLoader(
+        CACHE_NAME,
+        id -> {
+          loadCount.incrementAndGet();
+          return "new" + id;
+        });
+  }
+
+  private Cache hotCache() {
+    return redis.getCache(CACHE_NAME + LogicalExpiryCache.HOT_SUFFIX);
+  }
+
+  private void awaitLoadCount(int expected) throws InterruptedException {
+    for (int i = 0; i < 100 && loadCount.get() < expected; i++) {
+      Thread.sleep(10);
+    }
+    // 等待加载结果写入缓存
+    Thread.sleep(50);
+  }
+
+  @Test
+  void serveOldValueAndRebuild() throws InterruptedException {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    Assertions.assertInstanceOf(LogicalExpiryCache.class, cache);
+    cache.put(1, "old");
+    Assertions.assertEquals("old", hotCache().get(1, LogicalExpiryValue.class).getValue());
+    // 主缓存过期了，副本仍然在
+    redis.getCache(CACHE_NAME).evict(1);
+    Assertions.assertEquals("old", cache.get(1, String.class));
+    awaitLoadCount(1);
+    Assertions.assertEquals(1, loadCount.get());
+    Assertions.assertEquals("new1", redis.getCache(CACHE_NAME).get(1, String.class));
+    Assertions.assertEquals("new1", hotCache().get(1, LogicalExpiryValue.class).getValue());
+    Assertions.assertTrue(leases.isEmpty());
+  }
+
+  /** 重新加载期间数据被修改（主缓存和副本都被删除），加载到的旧值不会被写回去 */
+  @Test
+  void skipWriteAfterEvict() throws InterruptedException {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    cache.put(1, "old");
+    cacheManager.registerRefreshLoader(
+        CACHE_NAME,
+        id -> {
+          loadCount.incrementAndGet();
+          cache.evict(id);
+          return "loaded before update";
+        });
+    Assertions.assertEquals("old", cache.get(1, String.class));
+    awaitLoadCount(1);
+    Assertions.assertNull(redis.getCache(CACHE_NAME).get(1));
+    Assertions.assertNull(hotCache().get(1));
+    Assertions.assertTrue(leases.isEmpty());
+  }
+
+  @Test
+  void leaseHeldByOtherNode() throws InterruptedException {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    cache.put(1, "old");
+    leases.put("lock:" + CACHE_NAME + LogicalExpiryCache.HOT_SUFFIX + "::1", "other");
+    Assertions.assertEquals("old", cache.get(1, String.class));
+    Thread.sleep(100);
+    Assertions.assertEquals(0, loadCount.get());
+  }
+
+  @Test
+  void notWhitelisted() {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    cache.put(2, "value");
+    Assertions.assertNull(hotCache().get(2));
+    Assertions.assertEquals("value", cache.get(2, String.class));
+    redis.getCache(CACHE_NAME).evict(2);
+    Assertions.assertNull(cache.get(2));
+    Assertions.assertEquals(0, loadCount.get());
+  }
+
+  @Test
+  void fillHotFromMainCache() {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    redis.getCache(CACHE_NAME).put(1, "value");
+    Assertions.assertEquals("value", cache.get(1, String.class));
+    Assertions.assertEquals("value", hotCache().get(1, LogicalExpiryValue.class).getValue());
+  }
+
+  @Test
+  void evictRemovesHotCopy() {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    cache.put(1, "old");
+    cache.evict(1);
+    Assertions.assertNull(hotCache().get(1));
+    Assertions.assertNull(cache.get(1));
+    Assertions.assertEquals(
+        List.of("cache:goods:id::1", "cache:goods:id:hot::1"),
+        cacheManager.withShadowKeys(List.of("cache:goods:id::1")));
+  }
+
+  /** Redis 中的键都是字符串，ConcurrentMapCache 中的键区分类型，所以这里用字符串作为键 */
+  @Test
+  void removeFromWhitelist() {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    cache.put("1", "old");
+    whitelist.remove(CACHE_NAME, "1");
+    Assertions.assertNull(hotCache().get("1"));
+    Assertions.assertEquals("old", cache.get("1", String.class));
+    Assertions.assertNull(hotCache().get("1"));
+  }
+
+  @Test
+  void promote() {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    whitelist.promote(CACHE_NAME, List.of(3));
+    Assertions.assertEquals(List.of("1", "3"), whitelist.list(CACHE_NAME));
+    cache.put("3", "value");
+    Assertions.assertEquals("value", hotCache().get("3", LogicalExpiryValue.class).getValue());
+    whitelist.remove(CACHE_NAME, "3");
+    Assertions.assertNull(hotCache().get("3"));
+    Assertions.assertEquals(List.of("1"), whitelist.list(CACHE_NAME));
+  }
+}
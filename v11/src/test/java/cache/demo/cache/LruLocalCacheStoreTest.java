@@ -0,0 +1,76 @@
+package cache.demo.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 堆内一级缓存的测试，用字符串的长度作为值的字节数
+ *
+ * @author Camio1945
+ */
+class LruLocalCacheStoreTest {
+
+  @Test
+  void evictByBytes() {
+    LruLocalCacheStore store = new LruLocalCacheStore(100, 10, 0, LruLocalCacheStoreTest::sizeOf);
+    store.put("1", "aaaa");
+    store.put("2", "bbbb");
+    Assertions.assertEquals(8, store.getTotalBytes());
+    // 读取 1 之后，最近最少使用的是 2
+    Assertions.assertNotNull(store.get("1"));
+    store.put("3", "cccc");
+    Assertions.assertNull(store.get("2"));
+    Assertions.assertEquals("aaaa", store.get("1").get());
+    Assertions.assertEquals("cccc", store.get("3").get());
+    Assertions.assertEquals(8, store.getTotalBytes());
+    // 替换值时按新的大小计算
+    store.put("1", "a");
+    Assertions.assertEquals(5, store.getTotalBytes());
+    store.remove("3");
+    Assertions.assertEquals(1, store.getTotalBytes());
+    store.clear();
+    Assertions.assertEquals(0, store.getTotalBytes());
+    Assertions.assertEquals(0, store.size());
+  }
+
+  @Test
+  void tooLargeValue() {
+    LruLocalCacheStore store = new LruLocalCacheStore(100, 10, 0, LruLocalCacheStoreTest::sizeOf);
+    store.put("1", "aaaa");
+    store.put("2", "bbbb");
+    // 放不下的值不缓存，也不淘汰其他的值，但不能再读到旧值
+    store.put("1", "aaaaaaaaaaa");
+    Assertions.assertNull(store.get("1"));
+    Assertions.assertEquals("bbbb", store.get("2").get());
+    Assertions.assertEquals(4, store.getTotalBytes());
+  }
+
+  @Test
+  void evictBySize() {
+    LruLocalCacheStore store = new LruLocalCacheStore(2, 0, 0, LruLocalCacheStoreTest::sizeOf);
+    store.put("1", "aaaaaaaaaaa");
+    store.put("2", null);
+    store.put("3", "c");
+    Assertions.assertNull(store.get("1"));
+    // 缓存的是 null 时返回值为 null 的 ValueWrapper
+    Assertions.assertNotNull(store.get("2"));
+    Assertions.assertNull(store.get("2").get());
+    Assertions.assertEquals(2, store.size());
+    // 不限制字节数时不估算大小
+    Assertions.assertEquals(0, store.getTotalBytes());
+  }
+
+  @Test
+  void expire() throws InterruptedException {
+    LruLocalCacheStore store = new LruLocalCacheStore(10, 0, 20, LruLocalCacheStoreTest::sizeOf);
+    store.put("1", "a");
+    Assertions.assertNotNull(store.get("1"));
+    Thread.sleep(40);
+    Assertions.assertNull(store.get("1"));
+    Assertions.assertEquals(0, store.size());
+  }
+
+  private static int sizeOf(Object value) {
+    return value == null ? 1 : value.toString().length();
+  }
+}
@@ -0,0 +1,129 @@
+package cache.demo.cache;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 空值缓存的测试，用 ConcurrentMapCacheManager 模拟 Redis ，用两个 TwoLevelCacheManager 模拟两个节点
+ *
+ * @author Camio1945
+ */
+class NegativeCachingCacheTest {
+  private static final String CACHE_NAME = "cache:user:account";
+
+  private ConcurrentMapCacheManager redis;
+
+  private TwoLevelCacheManager node1;
+
+  private TwoLevelCacheManager node2;
+
+  @BeforeEach
+  void beforeEach() {
+    redis = new ConcurrentMapCacheManager();
+    AtomicReference<TwoLevelCacheManager> node1Ref = new AtomicReference<>();
+    AtomicReference<TwoLevelCacheManager> node2Ref = new AtomicReference<>();
+    StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+    doAnswer(
+            invocation -> {
+              String message = invocation.getArgument(1);
+              node1Ref.get().onInvalidationMessage(message);
+              node2Ref.get().onInvalidationMessage(message);
+              return 2L;
+            })
+        .when(stringRedisTemplate)
+        .convertAndSend(anyString(), anyString());
+    node1 = newNode(stringRedisTemplate);
+    node2 = newNode(stringRedisTemplate);
+    node1Ref.set(node1);
+    node2Ref.set(node2);
+  }
+
+  private TwoLevelCacheManager newNode(StringRedisTemplate stringRedisTemplate) {
+    // 不启用一级缓存、使用客户端缓存（不发布一级缓存的失效消息），空值缓存的消息仍然要发布
+    TwoLevelCacheManager node =
+        new TwoLevelCacheManager(redis, stringRedisTemplate, false, false, List.of(), 10, 0, 0);
+    node.registerNegativeCache(new NegativeCache(CACHE_NAME, 2, 60_000));
+    return node;
+  }
+
+  @Test
+  void nullNotWrittenToRedis() {
+    Cache cache = node1.getCache(CACHE_NAME);
+    Assertions.assertInstanceOf(NegativeCachingCache.class, cache);
+    cache.put("a", null);
+    Assertions.assertNull(redis.getCache(CACHE_NAME).get("a"));
+    Cache.ValueWrapper valueWrapper = cache.get("a");
+    Assertions.assertNotNull(valueWrapper);
+    Assertions.assertNull(valueWrapper.get());
+    // 其他节点没有这个空值
+    Assertions.assertNull(node2.getCache(CACHE_NAME).get("a"));
+  }
+
+  @Test
+  void putValueReplacesNull() {
+    Cache cache = node1.getCache(CACHE_NAME);
+    cache.put("a", null);
+    cache.put("a", 1);
+    Assertions.assertEquals(1, cache.get("a", Integer.class));
+    Assertions.assertEquals(1, redis.getCache(CACHE_NAME).get("a", Integer.class));
+  }
+
+  @Test
+  void getWithLoader() {
+    Cache cache = node1.getCache(CACHE_NAME);
+    AtomicInteger loadCount = new AtomicInteger();
+    Assertions.assertNull(cache.get("a", () -> loadCount.incrementAndGet() > 0 ? null : 1));
+    Assertions.assertNull(cache.get("a", () -> loadCount.incrementAndGet() > 0 ? null : 1));
+    Assertions.assertEquals(1, loadCount.get());
+  }
+
+  @Test
+  void invalidateOtherNodes() {
+    node1.getCache(CACHE_NAME).put("a", null);
+    node2.getCache(CACHE_NAME).put("a", null);
+    node1.invalidateLocal(List.of(CACHE_NAME + "::a"));
+    Assertions.assertNull(node1.getCache(CACHE_NAME).get("a"));
+    Assertions.assertNull(node2.getCache(CACHE_NAME).get("a"));
+  }
+
+  @Test
+  void clearOtherNodes() {
+    node1.getCache(CACHE_NAME).put("a", null);
+    node2.getCache(CACHE_NAME).put("a", null);
+    node1.getCache(CACHE_NAME).clear();
+    Assertions.assertNull(node2.getCache(CACHE_NAME).get("a"));
+  }
+
+  @Test
+  void capacityAndStats() {
+    NegativeCache negativeCache = new NegativeCache("test", 2, 60_000);
+    negativeCache.put("a");
+    negativeCache.put("b");
+    negativeCache.put("c");
+    Assertions.assertEquals(2, negativeCache.getSize());
+    Assertions.assertFalse(negativeCache.contains("a"));
+    Assertions.assertTrue(negativeCache.contains("c"));
+    Assertions.assertEquals(1, negativeCache.getHitCount());
+    Assertions.assertEquals(1, negativeCache.getMissCount());
+    Assertions.assertEquals(3, negativeCache.getPutCount());
+    Assertions.assertEquals(0.5, negativeCache.getHitRatio());
+  }
+
+  @Test
+  void putNegative() {
+    Assertions.assertTrue(node1.putNegative(CACHE_NAME, "a"));
+    Assertions.assertFalse(node1.putNegative("cache:other", "a"));
+    Assertions.assertNotNull(node1.getCache(CACHE_NAME).get("a"));
+  }
+}
@@ -0,0 +1,145 @@
+package cache.demo.cache;
+
+import cache.demo.entity.Goods;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache.ValueWrapper;
+
+/**
+ * 堆外商品一级缓存的测试
+ *
+ * @author Camio1945
+ */
+class OffHeapGoodsStoreTest {
+
+  @Test
+  void putAndGet() {
+    OffHeapGoodsStore store = new OffHeapGoodsStore(100, 0);
+    Goods goods = newGoods(1, "店铺1的商品1");
+    store.put("1", goods);
+    ValueWrapper valueWrapper = store.get("1");
+    Assertions.assertNotNull(valueWrapper);
+    Assertions.assertEquals(goods, valueWrapper.get());
+    Assertions.assertNotSame(goods, valueWrapper.get());
+    Assertions.assertNull(store.get("2"));
+    Assertions.assertNull(store.get("abc"));
+  }
+
+  @Test
+  void putNullFields() {
+    OffHeapGoodsStore store = new OffHeapGoodsStore(100, 0);
+    Goods goods = new Goods();
+    goods.setId(1);
+    store.put("1", goods);
+    Assertions.assertEquals(goods, store.get("1").get());
+    // 缓存的是 null 时，返回值为 null 的 ValueWrapper
+    store.put("2", null);
+    Assertions.assertNotNull(store.get("2"));
+    Assertions.assertNull(store.get("2").get());
+  }
+
+  @Test
+  void notEncodable() {
+    OffHeapGoodsStore store = new OffHeapGoodsStore(100, 0);
+    store.put("1", newGoods(1, "a"));
+    // 名称太长时不放入，并且删除旧值
+    store.put("1", newGoods(1, "a".repeat(OffHeapGoodsStore.NAME_CAPACITY + 1)));
+    Assertions.assertNull(store.get("1"));
+    Goods goods = newGoods(2, "b");
+    goods.setPrice(new BigDecimal("1000000000000000000000000.01"));
+    store.put("2", goods);
+    Assertions.assertNull(store.get("2"));
+    store.put("3", "不是商品");
+    Assertions.assertNull(store.get("3"));
+  }
+
+  @Test
+  void removeAndClear() {
+    OffHeapGoodsStore store = new OffHeapGoodsStore(1000, 0);
+    for (int id = 1; id <= 1000; id++) {
+      store.put(String.valueOf(id), newGoods(id, "商品" + id));
+    }
+    Assertions.assertEquals(1000, store.size());
+    // 删除一半后，另一半仍然能找到（验证删除时往前移的逻辑）
+    for (int id = 1; id <= 1000; id += 2) {
+      store.remove(String.valueOf(id));
+    }
+    for (int id = 1; id <= 1000; id++) {
+      ValueWrapper valueWrapper = store.get(String.valueOf(id));
+      if (id % 2 == 1) {
+        Assertions.assertNull(valueWrapper);
+      } else {
+        Assertions.assertEquals("商品" + id, ((Goods) valueWrapper.get()).getName());
+      }
+    }
+    Assertions.assertEquals(500, store.size());
+    store.clear();
+    Assertions.assertEquals(0, store.size());
+    Assertions.assertNull(store.get("2"));
+  }
+
+  @Test
+  void full() {
+    OffHeapGoodsStore store = new OffHeapGoodsStore(10, 0);
+    for (int id = 1; id <= 20; id++) {
+      store.put(String.valueOf(id), newGoods(id, "商品" + id));
+    }
+    Assertions.assertEquals(10, store.size());
+    Assertions.assertNotNull(store.get("10"));
+    Assertions.assertNull(store.get("11"));
+    // 已有的键可以更新
+    store.put("1", newGoods(1, "新名称"));
+    Assertions.assertEquals("新名称", ((Goods) store.get("1").get()).getName());
+  }
+
+  @Test
+  void expire() throws InterruptedException {
+    OffHeapGoodsStore store = new OffHeapGoodsStore(1, 50);
+    store.put("1", newGoods(1, "a"));
+    Assertions.assertNotNull(store.get("1"));
+    Thread.sleep(100);
+    Assertions.assertNull(store.get("1"));
+    // 满了之后会清理过期的记录
+    store.put("2", newGoods(2, "b"));
+    Assertions.assertNotNull(store.get("2"));
+    Assertions.assertEquals(1, store.size());
+  }
+
+  @Test
+  void concurrentReadWrite() throws InterruptedException {
+    OffHeapGoodsStore store = new OffHeapGoodsStore(1000, 0);
+    Thread writer =
+        Thread.ofPlatform()
+            .start(
+                () -> {
+                  for (int i = 0; i < 100_000; i++) {
+                    int id = ThreadLocalRandom.current().nextInt(2000);
+                    if (i % 3 == 0) {
+                      store.remove(String.valueOf(id));
+                    } else {
+                      store.put(String.valueOf(id), newGoods(id, "商品" + id));
+                    }
+                  }
+                });
+    while (writer.isAlive()) {
+      int id = ThreadLocalRandom.current().nextInt(2000);
+      ValueWrapper valueWrapper = store.get(String.valueOf(id));
+      if (valueWrapper != null) {
+        Assertions.assertEquals(newGoods(id, "商品" + id), valueWrapper.get());
+      }
+    }
+    writer.join();
+  }
+
+  private static Goods newGoods(int id, String name) {
+    Goods goods = new Goods();
+    goods.setId(id);
+    goods.setStoreId(id % 100);
+    goods.setName(name);
+    goods.setStock(id * 10);
+    goods.setPrice(new BigDecimal(id + ".99"));
+    return goods;
+  }
+}
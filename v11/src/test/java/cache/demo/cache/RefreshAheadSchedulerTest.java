@@ -0,0 +1,121 @@
+package cache.demo.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 热点键提前刷新的测试，用 mock 模拟 Redis 的 PTTL 和批量写入
+ *
+ * @author Camio1945
+ */
+class RefreshAheadSchedulerTest {
+  private static final String CACHE_NAME = "cache:goods:id";
+
+  private StringRedisTemplate stringRedisTemplate;
+
+  private CacheBatchWriter cacheBatchWriter;
+
+  private RefreshAheadScheduler scheduler;
+
+  private final List<List<Object>> loadedBatches = new ArrayList<>();
+
+  @BeforeEach
+  void beforeEach() {
+    stringRedisTemplate = mock(StringRedisTemplate.class);
+    cacheBatchWriter = mock(CacheBatchWriter.class);
+  }
+
+  @AfterEach
+  void afterEach() {
+    scheduler.close();
+  }
+
+  private void newScheduler(double maxQueriesPerSecond) {
+    scheduler =
+        new RefreshAheadScheduler(
+            stringRedisTemplate,
+            cacheBatchWriter,
+            true,
+            Duration.ofMinutes(5),
+            3,
+            100,
+            2,
+            1,
+            10,
+            maxQueriesPerSecond);
+    scheduler.register(
+        CACHE_NAME,
+        ids -> {
+          synchronized (loadedBatches) {
+            loadedBatches.add(ids);
+          }
+          return ids.stream().collect(Collectors.toMap(Function.identity(), id -> "v" + id));
+        });
+  }
+
+  @SuppressWarnings("unchecked")
+  private void mockTtls(Object... ttls) {
+    when(stringRedisTemplate.executePipelined(any(RedisCallback.class), isNull()))
+        .thenReturn(List.of(ttls));
+  }
+
+  private void access(int id, int times) {
+    for (int i = 0; i < times; i++) {
+      scheduler.recordAccess(CACHE_NAME, id);
+    }
+  }
+
+  @Test
+  void refreshHotKeysNearExpiry() {
+    newScheduler(100);
+    access(1, 50);
+    access(2, 40);
+    access(3, 30);
+    access(4, 20);
+    // 只检查最热的 3 个键：1 快过期了，2 不存在，3 还有 1 小时
+    mockTtls(1000L, -2L, Duration.ofHours(1).toMillis());
+    scheduler.refresh();
+    verify(cacheBatchWriter, timeout(1000)).putAllIfPresent(eq(CACHE_NAME), eq(Map.of(1, "v1")));
+    Assertions.assertEquals(List.of(List.of(1)), loadedBatches);
+  }
+
+  @Test
+  void batchAndRateLimit() {
+    // 每秒只允许查询 1 次，3 个键分成 2 个批次，第 2 个批次被跳过
+    newScheduler(1);
+    access(1, 30);
+    access(2, 20);
+    access(3, 10);
+    mockTtls(1000L, 1000L, 1000L);
+    scheduler.refresh();
+    verify(cacheBatchWriter, timeout(1000))
+        .putAllIfPresent(eq(CACHE_NAME), eq(Map.of(1, "v1", 2, "v2")));
+    Assertions.assertEquals(1, scheduler.getSkippedBatchCount());
+  }
+
+  @Test
+  void ignoreUnregistered() {
+    newScheduler(100);
+    scheduler.recordAccess("cache:other", 1);
+    scheduler.refresh();
+    Assertions.assertTrue(loadedBatches.isEmpty());
+  }
+}
@@ -0,0 +1,140 @@
+package cache.demo.cache;
+
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 过期后继续使用旧值的测试，用 ConcurrentMapCacheManager 模拟 Redis ，直接删除主缓存中的值来模拟过期
+ *
+ * @author Camio1945
+ */
+class StaleWhileRevalidateCacheTest {
+  private static final String CACHE_NAME = "cache:goods:id";
+
+  private ConcurrentMapCacheManager redis;
+
+  private TwoLevelCacheManager cacheManager;
+
+  private final AtomicInteger loadCount = new AtomicInteger();
+
+  private final AtomicBoolean loaderFails = new AtomicBoolean();
+
+  @BeforeEach
+  void beforeEach() {
+    redis = new ConcurrentMapCacheManager();
+    cacheManager =
+        new TwoLevelCacheManager(
+            redis, mock(StringRedisTemplate.class), false, true, List.of(), 10, 0, 0);
+    cacheManager.enableStaleWhileRevalidate(List.of(CACHE_NAME), Duration.ofMinutes(1), 100);
+    cacheManager.registerRefreshLoader(
+        CACHE_NAME,
+        id -> {
+          loadCount.incrementAndGet();
+          if (loaderFails.get()) {
+            throw new IllegalStateException("数据库不可用");
+          }
+          return "new" + id;
+        });
+  }
+
+  private void expire(Object key) {
+    redis.getCache(CACHE_NAME).evict(key);
+  }
+
+  private Cache staleCache() {
+    return redis.getCache(CACHE_NAME + StaleWhileRevalidateCache.STALE_SUFFIX);
+  }
+
+  private void awaitLoadCount(int expected) throws InterruptedException {
+    for (int i = 0; i < 100 && loadCount.get() < expected; i++) {
+      Thread.sleep(10);
+    }
+    // 等待加载结果写入缓存
+    Thread.sleep(50);
+  }
+
+  @Test
+  void serveStaleAndRevalidate() throws InterruptedException {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    Assertions.assertInstanceOf(StaleWhileRevalidateCache.class, cache);
+    cache.put(1, "old");
+    Assertions.assertEquals("old", staleCache().get(1, String.class));
+    expire(1);
+    Assertions.assertEquals("old", cache.get(1, String.class));
+    awaitLoadCount(1);
+    Assertions.assertEquals("new1", redis.getCache(CACHE_NAME).get(1, String.class));
+    Assertions.assertEquals("new1", cache.get(1, String.class));
+    Assertions.assertEquals("new1", staleCache().get(1, String.class));
+  }
+
+  @Test
+  void serveStaleOnError() throws InterruptedException {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    cache.put(1, "old");
+    expire(1);
+    loaderFails.set(true);
+    Assertions.assertEquals("old", cache.get(1, String.class));
+    awaitLoadCount(1);
+    // 加载失败后继续返回旧值，并且在重试间隔内不再加载
+    for (int i = 0; i < 10; i++) {
+      Assertions.assertEquals("old", cache.get(1, String.class));
+    }
+    Thread.sleep(50);
+    Assertions.assertEquals(1, loadCount.get());
+  }
+
+  /** 重新加载期间数据被修改（主缓存和副本都被删除），加载到的旧值不会被写回去 */
+  @Test
+  void skipWriteAfterEvict() throws InterruptedException {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    cache.put(1, "old");
+    expire(1);
+    cacheManager.registerRefreshLoader(
+        CACHE_NAME,
+        id -> {
+          loadCount.incrementAndGet();
+          cache.evict(id);
+          return "loaded before update";
+        });
+    Assertions.assertEquals("old", cache.get(1, String.class));
+    awaitLoadCount(1);
+    Assertions.assertNull(redis.getCache(CACHE_NAME).get(1));
+    Assertions.assertNull(staleCache().get(1));
+  }
+
+  @Test
+  void evictBoth() {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    cache.put(1, "old");
+    cache.evict(1);
+    Assertions.assertNull(cache.get(1));
+    Assertions.assertNull(staleCache().get(1));
+  }
+
+  @Test
+  void nullNotKeptAsStale() {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    cache.put(1, null);
+    Assertions.assertNull(staleCache().get(1));
+    expire(1);
+    Assertions.assertNull(cache.get(1));
+    Assertions.assertEquals(0, loadCount.get());
+  }
+
+  @Test
+  void withShadowKeys() {
+    Assertions.assertEquals(
+        List.of(CACHE_NAME + "::1", "cache:user:id::1", CACHE_NAME + ":stale::1"),
+        cacheManager.withShadowKeys(List.of(CACHE_NAME + "::1", "cache:user:id::1")));
+  }
+}
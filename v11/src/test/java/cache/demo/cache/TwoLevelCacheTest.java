@@ -0,0 +1,145 @@
+package cache.demo.cache;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 二级缓存的测试，不依赖 Spring 容器，用 ConcurrentMapCacheManager 模拟 Redis ，用两个 TwoLevelCacheManager 模拟两个节点
+ *
+ * @author Camio1945
+ */
+class TwoLevelCacheTest {
+  private static final String CACHE_NAME = "cache:goods:id";
+
+  private ConcurrentMapCacheManager redis;
+
+  private TwoLevelCacheManager node1;
+
+  private TwoLevelCacheManager node2;
+
+  @BeforeEach
+  void beforeEach() {
+    redis = new ConcurrentMapCacheManager();
+    AtomicReference<TwoLevelCacheManager> node1Ref = new AtomicReference<>();
+    AtomicReference<TwoLevelCacheManager> node2Ref = new AtomicReference<>();
+    // 每个节点都会收到所有的消息，包括自己发出的
+    StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+    doAnswer(
+            invocation -> {
+              String message = invocation.getArgument(1);
+              node1Ref.get().onInvalidationMessage(message);
+              node2Ref.get().onInvalidationMessage(message);
+              return 2L;
+            })
+        .when(stringRedisTemplate)
+        .convertAndSend(anyString(), anyString());
+    node1 = newNode(stringRedisTemplate);
+    node2 = newNode(stringRedisTemplate);
+    node1Ref.set(node1);
+    node2Ref.set(node2);
+  }
+
+  private TwoLevelCacheManager newNode(StringRedisTemplate stringRedisTemplate) {
+    return new TwoLevelCacheManager(
+        redis, stringRedisTemplate, true, true, List.of(CACHE_NAME), 10, 0, 0);
+  }
+
+  @Test
+  void getFromLocal() {
+    Cache cache = node1.getCache(CACHE_NAME);
+    Assertions.assertInstanceOf(TwoLevelCache.class, cache);
+    cache.put(1, "a");
+    // 直接修改 Redis 中的值，不经过一级缓存
+    redis.getCache(CACHE_NAME).put(1, "b");
+    Assertions.assertEquals("a", cache.get(1, String.class));
+    Assertions.assertEquals("b", node2.getCache(CACHE_NAME).get(1, String.class));
+  }
+
+  @Test
+  void evictOtherNodes() {
+    Cache cache1 = node1.getCache(CACHE_NAME);
+    Cache cache2 = node2.getCache(CACHE_NAME);
+    cache1.put(1, "a");
+    Assertions.assertEquals("a", cache2.get(1, String.class));
+    cache1.evict(1);
+    Assertions.assertNull(cache2.get(1));
+  }
+
+  @Test
+  void invalidateLocal() {
+    Cache cache1 = node1.getCache(CACHE_NAME);
+    Cache cache2 = node2.getCache(CACHE_NAME);
+    cache1.put(1, "a");
+    cache1.put(2, "b");
+    Assertions.assertEquals("a", cache2.get(1, String.class));
+    Assertions.assertEquals("b", cache2.get(2, String.class));
+    // 模拟 CacheInvalidator ：先删除 Redis 中的键，再失效所有节点的一级缓存
+    redis.getCache(CACHE_NAME).evict(1);
+    node1.invalidateLocal(List.of(CACHE_NAME + "::1"));
+    Assertions.assertNull(cache1.get(1));
+    Assertions.assertNull(cache2.get(1));
+    Assertions.assertEquals("b", cache2.get(2, String.class));
+  }
+
+  @Test
+  void clearOtherNodes() {
+    Cache cache1 = node1.getCache(CACHE_NAME);
+    Cache cache2 = node2.getCache(CACHE_NAME);
+    cache1.put(1, "a");
+    Assertions.assertEquals("a", cache2.get(1, String.class));
+    cache1.clear();
+    Assertions.assertNull(cache2.get(1));
+  }
+
+  @Test
+  void evictLocalOnly() {
+    List<String> filledKeys = new ArrayList<>();
+    node1.setLocalFillListener(filledKeys::add);
+    Cache cache1 = node1.getCache(CACHE_NAME);
+    Cache cache2 = node2.getCache(CACHE_NAME);
+    cache2.put(1, "a");
+    Assertions.assertEquals("a", cache1.get(1, String.class));
+    Assertions.assertEquals(List.of(CACHE_NAME + "::1"), filledKeys);
+    // 模拟 Redis 推送了失效消息：只删除本节点的一级缓存，Redis 中的值已经被修改
+    redis.getCache(CACHE_NAME).put(1, "b");
+    node1.evictLocal(CACHE_NAME + "::1");
+    Assertions.assertEquals("b", cache1.get(1, String.class));
+    redis.getCache(CACHE_NAME).put(1, "c");
+    node1.clearLocal();
+    Assertions.assertEquals("c", cache1.get(1, String.class));
+    Assertions.assertEquals("a", cache2.get(1, String.class));
+  }
+
+  @Test
+  void notLocalCacheName() {
+    Assertions.assertFalse(node1.getCache("cache:weibo:id") instanceof TwoLevelCache);
+  }
+
+  @Test
+  void accessTracking() {
+    List<Object> accessedKeys = new ArrayList<>();
+    node1.enableAccessTracking(List.of(CACHE_NAME));
+    node1.setAccessListener((cacheName, key) -> accessedKeys.add(key));
+    Cache cache1 = node1.getCache(CACHE_NAME);
+    Assertions.assertInstanceOf(AccessTrackingCache.class, cache1);
+    cache1.put(1, "a");
+    Assertions.assertEquals("a", cache1.get(1, String.class));
+    cache1.get(2);
+    Assertions.assertEquals(List.of(1, 2), accessedKeys);
+    // 包装后仍然能删除本节点的一级缓存
+    redis.getCache(CACHE_NAME).put(1, "b");
+    node1.evictLocal(CACHE_NAME + "::1");
+    Assertions.assertEquals("b", cache1.get(1, String.class));
+  }
+}
@@ -0,0 +1,287 @@
+package cache.demo.cache;
+
+import static org.mockito.Answers.CALLS_REAL_METHODS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import cache.demo.common.TypeAliasJsonRedisSerializer;
+import cache.demo.entity.Weibo;
+import cache.demo.mapper.WeiboMapper;
+import cache.demo.util.BoundedVirtualThreadExecutor;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.ReactiveZSetOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 微博列表中未命中的微博批量加载的测试（同步和异步版本），用 mock 模拟 Redis 和数据库
+ *
+ * @author Camio1945
+ */
+class WeiboCacheTest {
+  private static final int USER_ID = 1;
+
+  private WeiboMapper weiboMapper;
+
+  private RedisTemplate<String, Object> redisTemplate;
+
+  private CacheBatchWriter cacheBatchWriter;
+
+  private IdExistenceFilter weiboIdFilter;
+
+  private ReactiveValueOperations<String, byte[]> reactiveValueOperations;
+
+  private final TypeAliasJsonRedisSerializer serializer = new TypeAliasJsonRedisSerializer();
+
+  private WeiboCache weiboCache;
+
+  private final AtomicInteger singleLoadCount = new AtomicInteger();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void beforeEach() {
+    weiboMapper = mock(WeiboMapper.class);
+    redisTemplate = mock(RedisTemplate.class);
+    doReturn(serializer).when(redisTemplate).getValueSerializer();
+    ZSetOperations<String, Object> zSetOperations = mock(ZSetOperations.class);
+    when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+    when(zSetOperations.reverseRange(anyString(), anyLong(), anyLong()))
+        .thenReturn(new LinkedHashSet<>(List.of(5, 4, 3, 2, 1)));
+    weiboIdFilter = mock(IdExistenceFilter.class);
+    when(weiboIdFilter.mightExist(anyInt())).thenReturn(true);
+    when(weiboIdFilter.isReady()).thenReturn(true);
+    // 读取时解码 MGET 的结果，写入时什么也不做
+    cacheBatchWriter =
+        spy(
+            new CacheBatchWriter(
+                redisTemplate,
+                RedisCacheConfiguration.defaultCacheConfig(),
+                mock(TwoLevelCacheManager.class)));
+    ReactiveRedisTemplate<String, byte[]> reactiveRedisTemplate = mock(ReactiveRedisTemplate.class);
+    reactiveValueOperations = mock(ReactiveValueOperations.class);
+    ReactiveZSetOperations<String, byte[]> reactiveZSetOperations =
+        mock(ReactiveZSetOperations.class);
+    when(reactiveRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
+    when(reactiveRedisTemplate.opsForZSet()).thenReturn(reactiveZSetOperations);
+    when(reactiveZSetOperations.reverseRange(anyString(), any(Range.class)))
+        .thenReturn(Flux.just(5, 4, 3, 2, 1).map(serializer::serialize));
+    AsyncCacheLoader asyncCacheLoader =
+        new AsyncCacheLoader(
+            reactiveRedisTemplate,
+            serializer,
+            new BoundedVirtualThreadExecutor("test-weibo", 2, 100));
+    weiboCache =
+        new WeiboCache(
+            weiboMapper,
+            redisTemplate,
+            mock(TwoLevelCacheManager.class),
+            mock(CacheInvalidator.class),
+            mock(RefreshAheadScheduler.class),
+            null,
+            null,
+            weiboIdFilter,
+            RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)),
+            cacheBatchWriter,
+            asyncCacheLoader);
+  }
+
+  private static Weibo newWeibo(int id) {
+    Weibo weibo = new Weibo();
+    weibo.setId(id);
+    weibo.setUserId(USER_ID);
+    weibo.setContent("微博" + id);
+    return weibo;
+  }
+
+  /** 删除后 id 位图在事务提交后才删除，回滚时数据仍然存在 */
+  @Test
+  void removeIdAfterCommit() {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      weiboCache.handleCacheAfterDelete(newWeibo(3));
+      verify(weiboIdFilter, never()).remove(anyInt());
+      TransactionSynchronizationUtils.triggerAfterCommit();
+      verify(weiboIdFilter).remove(3);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  /** 模拟 MGET 返回的原始值，byte[] 原样返回，其他的值用 JSON 序列化 */
+  @SuppressWarnings("unchecked")
+  private void mockMultiGet(Object... values) {
+    List<byte[]> rawValues = new ArrayList<>();
+    for (Object value : values) {
+      rawValues.add(
+          value == null || value instanceof byte[] ? (byte[]) value : serializer.serialize(value));
+    }
+    when(redisTemplate.execute(any(RedisCallback.class))).thenReturn(rawValues);
+  }
+
+  private List<Weibo> getPage() {
+    return weiboCache.getLatestWeiboListByUserId(
+        USER_ID,
+        new Page<>(1, 10),
+        id -> {
+          singleLoadCount.incrementAndGet();
+          return newWeibo(id);
+        });
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void batchLoadMisses() {
+    // 5 、 3 在缓存中，其他的未命中
+    mockMultiGet(newWeibo(5), null, newWeibo(3), null, null);
+    when(weiboMapper.selectBatchIds(List.of(4, 2, 1)))
+        .thenReturn(List.of(newWeibo(4), newWeibo(2), newWeibo(1)));
+    List<Weibo> weiboList = getPage();
+    Assertions.assertEquals(
+        List.of(5, 4, 3, 2, 1), weiboList.stream().map(Weibo::getId).toList());
+    Assertions.assertEquals(0, singleLoadCount.get());
+    verify(weiboMapper, never()).selectById(any());
+    verify(cacheBatchWriter)
+        .putAll(eq(WeiboCache.WEIBO_ID_CACHE_PREFIX), (Map<?, ?>) any(Map.class));
+  }
+
+  @Test
+  void singleMissUsesFunction() {
+    mockMultiGet(newWeibo(5), newWeibo(4), newWeibo(3), null, newWeibo(1));
+    List<Weibo> weiboList = getPage();
+    Assertions.assertEquals(2, weiboList.get(3).getId());
+    Assertions.assertEquals(1, singleLoadCount.get());
+    verify(weiboMapper, never()).selectBatchIds(any());
+  }
+
+  /** 与异步版本一样，缓存了空值的微博返回 null ，不会被当作未命中再查询，也不会因为空值不是 JSON 而出错 */
+  @Test
+  void cachedNullSkipsLoad() {
+    // 5 、 3 在缓存中，4 缓存了空值，其他的未命中
+    mockMultiGet(newWeibo(5), CacheBatchWriter.BINARY_NULL_VALUE, newWeibo(3), null, null);
+    when(weiboMapper.selectBatchIds(List.of(2, 1)))
+        .thenReturn(List.of(newWeibo(2), newWeibo(1)));
+    List<Weibo> weiboList = getPage();
+    Assertions.assertEquals(newWeibo(5), weiboList.get(0));
+    Assertions.assertNull(weiboList.get(1));
+    Assertions.assertEquals(
+        List.of(3, 2, 1), weiboList.subList(2, 5).stream().map(Weibo::getId).toList());
+    Assertions.assertEquals(0, singleLoadCount.get());
+  }
+
+  @Test
+  void batchLoadMissesAsync() {
+    // 5 、 3 在缓存中，4 缓存了空值，其他的未命中
+    when(reactiveValueOperations.multiGet(any()))
+        .thenReturn(
+            Mono.just(
+                Arrays.asList(
+                    serializer.serialize(newWeibo(5)),
+                    CacheBatchWriter.BINARY_NULL_VALUE,
+                    serializer.serialize(newWeibo(3)),
+                    null,
+                    null)));
+    when(weiboMapper.selectBatchIds(List.of(2, 1)))
+        .thenReturn(List.of(newWeibo(2), newWeibo(1)));
+    List<Weibo> weiboList =
+        weiboCache
+            .getLatestWeiboListByUserIdAsync(USER_ID, new Page<>(1, 10), Duration.ofSeconds(10))
+            .join();
+    Assertions.assertEquals(newWeibo(5), weiboList.get(0));
+    Assertions.assertNull(weiboList.get(1));
+    Assertions.assertEquals(
+        List.of(3, 2, 1), weiboList.subList(2, 5).stream().map(Weibo::getId).toList());
+    verify(weiboMapper, never()).selectById(any());
+    verify(cacheBatchWriter)
+        .putAll(eq(WeiboCache.WEIBO_ID_CACHE_PREFIX), (Map<?, ?>) any(Map.class));
+  }
+
+  @Test
+  void appendWeiboIdInOneScript() {
+    // 使用真实的 RedisTemplate ，参数的序列化与线上一样，只模拟连接
+    // RedisTemplate 调用的是 RedisConnection 中已经过时的默认方法，由它们转交给 scriptingCommands()
+    RedisConnection connection =
+        mock(RedisConnection.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+    RedisConnectionFactory connectionFactory = mock(RedisConnectionFactory.class);
+    when(connectionFactory.getConnection()).thenReturn(connection);
+    RedisScriptingCommands scriptingCommands = mock(RedisScriptingCommands.class);
+    when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+    when(scriptingCommands.evalSha(
+            anyString(), any(ReturnType.class), anyInt(), any(byte[][].class)))
+        .thenReturn(1L);
+    RedisTemplate<String, Object> realRedisTemplate = new RedisTemplate<>();
+    realRedisTemplate.setConnectionFactory(connectionFactory);
+    realRedisTemplate.setKeySerializer(RedisSerializer.string());
+    realRedisTemplate.setValueSerializer(serializer);
+    realRedisTemplate.afterPropertiesSet();
+    WeiboCache cache =
+        new WeiboCache(
+            weiboMapper,
+            realRedisTemplate,
+            mock(TwoLevelCacheManager.class),
+            mock(CacheInvalidator.class),
+            mock(RefreshAheadScheduler.class),
+            null,
+            null,
+            weiboIdFilter,
+            RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)),
+            cacheBatchWriter,
+            null);
+    cache.handleCacheAfterAdd(newWeibo(6));
+    ArgumentCaptor<byte[][]> captor = ArgumentCaptor.forClass(byte[][].class);
+    verify(scriptingCommands)
+        .evalSha(anyString(), eq(ReturnType.INTEGER), eq(1), captor.capture());
+    // 一次往返：一个键和四个参数
+    List<byte[]> keysAndArgs = List.of(captor.getValue());
+    Assertions.assertEquals(5, keysAndArgs.size());
+    Assertions.assertEquals(
+        WeiboCache.WEIBO_IDS_BY_USER_ID_CACHE_PREFIX + "::" + USER_ID, utf8(keysAndArgs.get(0)));
+    // 成员与 getWeiboIdsByUserId 写入 zset 的一样
+    Assertions.assertArrayEquals(serializer.serialize(6), keysAndArgs.get(1));
+    Assertions.assertEquals("6", utf8(keysAndArgs.get(2)));
+    Assertions.assertEquals(
+        String.valueOf(WeiboCache.CACHE_WEIBO_SIZE_EACH_USER), utf8(keysAndArgs.get(3)));
+    Assertions.assertEquals(
+        String.valueOf(Duration.ofMinutes(10).toMillis()), utf8(keysAndArgs.get(4)));
+    verify(weiboIdFilter).add(6);
+  }
+
+  private static String utf8(byte[] bytes) {
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,83 @@
+package cache.demo.common;
+
+import cache.demo.entity.Weibo;
+import java.util.Arrays;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 值压缩的测试
+ *
+ * @author Camio1945
+ */
+class CompressingRedisSerializerTest {
+  private final RedisSerializer<Object> binary =
+      new EntityBinaryRedisSerializer(new TypeAliasJsonRedisSerializer());
+
+  private final CompressingRedisSerializer serializer = new CompressingRedisSerializer(binary, 256);
+
+  private static Weibo newWeibo(String content) {
+    Weibo weibo = new Weibo();
+    weibo.setId(1);
+    weibo.setUserId(2);
+    weibo.setContent(content);
+    return weibo;
+  }
+
+  @Test
+  void compressLargeValue() {
+    Weibo weibo = newWeibo("今天天气不错，出去走走。".repeat(100));
+    byte[] bytes = serializer.serialize(weibo);
+    Assertions.assertEquals(CompressingRedisSerializer.MAGIC, bytes[0]);
+    Assertions.assertTrue(bytes.length * 5 < binary.serialize(weibo).length, "长度：" + bytes.length);
+    Assertions.assertEquals(weibo, serializer.deserialize(bytes));
+    Assertions.assertEquals(1, serializer.getCompressedCount());
+    Assertions.assertEquals(1, serializer.getDecompressedCount());
+    Assertions.assertTrue(serializer.getCompressionRatio() < 0.2);
+  }
+
+  @Test
+  void smallValueAndUncompressedValue() {
+    Weibo weibo = newWeibo("短微博");
+    byte[] bytes = serializer.serialize(weibo);
+    Assertions.assertArrayEquals(binary.serialize(weibo), bytes);
+    Assertions.assertEquals(weibo, serializer.deserialize(bytes));
+    Assertions.assertEquals(1, serializer.getSkippedCount());
+    // 开启压缩前写入的值
+    Weibo large = newWeibo("今天天气不错，出去走走。".repeat(100));
+    Assertions.assertEquals(large, serializer.deserialize(binary.serialize(large)));
+    Assertions.assertNull(serializer.deserialize(null));
+  }
+
+  @Test
+  void incompressible() {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      content.append((char) ('一' + i * 7));
+    }
+    Weibo weibo = newWeibo(content.toString());
+    byte[] bytes = serializer.serialize(weibo);
+    Assertions.assertArrayEquals(binary.serialize(weibo), bytes);
+    Assertions.assertEquals(1, serializer.getIncompressibleCount());
+  }
+
+  @Test
+  void disabledStillReadsCompressed() {
+    Weibo weibo = newWeibo("今天天气不错，出去走走。".repeat(100));
+    byte[] compressed = serializer.serialize(weibo);
+    CompressingRedisSerializer disabled = new CompressingRedisSerializer(binary, Integer.MAX_VALUE);
+    Assertions.assertArrayEquals(binary.serialize(weibo), disabled.serialize(weibo));
+    Assertions.assertEquals(weibo, disabled.deserialize(compressed));
+  }
+
+  @Test
+  void corrupted() {
+    byte[] bytes = serializer.serialize(newWeibo("今天天气不错，出去走走。".repeat(100)));
+    byte[] truncated = Arrays.copyOf(bytes, bytes.length - 2);
+    Assertions.assertThrows(SerializationException.class, () -> serializer.deserialize(truncated));
+    Assertions.assertThrows(
+        SerializationException.class, () -> serializer.deserialize(new byte[] {bytes[0], 0}));
+  }
+}
@@ -0,0 +1,90 @@
+package cache.demo.common;
+
+import cache.demo.entity.Goods;
+import cache.demo.entity.User;
+import cache.demo.entity.Weibo;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 二进制序列化的测试
+ *
+ * @author Camio1945
+ */
+class EntityBinaryRedisSerializerTest {
+  private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+
+  private final EntityBinaryRedisSerializer serializer = new EntityBinaryRedisSerializer(json);
+
+  private static Goods newGoods() {
+    Goods goods = new Goods();
+    goods.setId(123456);
+    goods.setStoreId(-1);
+    goods.setName("店铺1的商品123456");
+    goods.setStock(100);
+    goods.setPrice(new BigDecimal("12.34"));
+    return goods;
+  }
+
+  private Object roundTrip(Object value) {
+    byte[] bytes = serializer.serialize(value);
+    Assertions.assertEquals(EntityBinaryRedisSerializer.MAGIC, bytes[0]);
+    return serializer.deserialize(bytes);
+  }
+
+  @Test
+  void goods() {
+    Goods goods = newGoods();
+    Assertions.assertEquals(goods, roundTrip(goods));
+    byte[] bytes = serializer.serialize(goods);
+    Assertions.assertTrue(bytes.length * 3 < json.serialize(goods).length, "长度：" + bytes.length);
+    Goods empty = new Goods();
+    Assertions.assertEquals(empty, roundTrip(empty));
+  }
+
+  @Test
+  void userAndWeibo() {
+    User user = new User();
+    user.setId(1);
+    user.setName("用户1");
+    user.setAccount("account1");
+    Assertions.assertEquals(user, roundTrip(user));
+    Weibo weibo = new Weibo();
+    weibo.setId(Integer.MAX_VALUE);
+    weibo.setUserId(Integer.MIN_VALUE);
+    weibo.setContent("微博内容".repeat(100));
+    Assertions.assertEquals(weibo, roundTrip(weibo));
+  }
+
+  @Test
+  void fallbackToJson() {
+    // 切换前写入的 JSON 值
+    Goods goods = newGoods();
+    Assertions.assertEquals(goods, serializer.deserialize(json.serialize(goods)));
+    // 其他类型以及 price 超出 long 范围的商品仍然使用 JSON
+    List<Integer> ids = new ArrayList<>(List.of(1, 2, 3));
+    Assertions.assertArrayEquals(json.serialize(ids), serializer.serialize(ids));
+    Assertions.assertEquals(ids, serializer.deserialize(serializer.serialize(ids)));
+    goods.setPrice(new BigDecimal("123456789012345678901234567890.12"));
+    byte[] bytes = serializer.serialize(goods);
+    Assertions.assertEquals('{', bytes[0]);
+    Assertions.assertEquals(goods, serializer.deserialize(bytes));
+    Assertions.assertNull(serializer.deserialize(new byte[0]));
+  }
+
+  @Test
+  void invalid() {
+    byte[] bytes = serializer.serialize(newGoods());
+    byte[] newerVersion = bytes.clone();
+    newerVersion[1] = EntityBinaryRedisSerializer.VERSION + 1;
+    Assertions.assertThrows(SerializationException.class, () -> serializer.deserialize(newerVersion));
+    byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+    Assertions.assertThrows(SerializationException.class, () -> serializer.deserialize(truncated));
+  }
+}
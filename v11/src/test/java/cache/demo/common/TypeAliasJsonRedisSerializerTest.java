@@ -0,0 +1,88 @@
+package cache.demo.common;
+
+import cache.demo.entity.Goods;
+import cache.demo.entity.User;
+import cache.demo.entity.Weibo;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+/**
+ * 短类型别名 JSON 序列化的测试
+ *
+ * @author Camio1945
+ */
+class TypeAliasJsonRedisSerializerTest {
+  private final TypeAliasJsonRedisSerializer serializer = new TypeAliasJsonRedisSerializer();
+
+  private final GenericJackson2JsonRedisSerializer legacy =
+      new GenericJackson2JsonRedisSerializer();
+
+  private static Goods newGoods(int id) {
+    Goods goods = new Goods();
+    goods.setId(id);
+    goods.setStoreId(1);
+    goods.setName("店铺1的商品" + id);
+    goods.setStock(100);
+    goods.setPrice(new BigDecimal("12.34"));
+    return goods;
+  }
+
+  @Test
+  void alias() {
+    Goods goods = newGoods(1);
+    byte[] bytes = serializer.serialize(goods);
+    String json = new String(bytes, StandardCharsets.UTF_8);
+    Assertions.assertTrue(json.startsWith("{\"@class\":\"G\""), json);
+    Assertions.assertTrue(bytes.length < legacy.serialize(goods).length);
+    Assertions.assertEquals(goods, serializer.deserialize(bytes));
+    User user = new User();
+    user.setId(1);
+    user.setName("用户1");
+    Assertions.assertEquals(user, serializer.deserialize(serializer.serialize(user)));
+    Weibo weibo = new Weibo();
+    weibo.setId(1);
+    weibo.setContent("微博1");
+    Assertions.assertEquals(weibo, serializer.deserialize(serializer.serialize(weibo)));
+  }
+
+  @Test
+  void collectionsAndNullValue() {
+    List<Goods> goodsList = new ArrayList<>(List.of(newGoods(1), newGoods(2)));
+    Assertions.assertEquals(goodsList, serializer.deserialize(serializer.serialize(goodsList)));
+    Assertions.assertInstanceOf(
+        NullValue.class, serializer.deserialize(serializer.serialize(NullValue.INSTANCE)));
+    Map<String, Object> map = new HashMap<>();
+    map.put("time", LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+    map.put("goods", newGoods(3));
+    Assertions.assertEquals(map, serializer.deserialize(serializer.serialize(map)));
+  }
+
+  @Test
+  void readLegacyFullClassName() {
+    // 切换前写入的值使用全类名
+    Goods goods = newGoods(1);
+    Assertions.assertEquals(goods, serializer.deserialize(legacy.serialize(goods)));
+    List<Goods> goodsList = new ArrayList<>(List.of(newGoods(1), newGoods(2)));
+    Assertions.assertEquals(goodsList, serializer.deserialize(legacy.serialize(goodsList)));
+    Assertions.assertInstanceOf(
+        NullValue.class, serializer.deserialize(legacy.serialize(NullValue.INSTANCE)));
+  }
+
+  @Test
+  void withBinaryCodec() {
+    EntityBinaryRedisSerializer binary = new EntityBinaryRedisSerializer(serializer);
+    List<Goods> goodsList = new ArrayList<>(List.of(newGoods(1)));
+    byte[] bytes = binary.serialize(goodsList);
+    Assertions.assertArrayEquals(serializer.serialize(goodsList), bytes);
+    Assertions.assertEquals(goodsList, binary.deserialize(bytes));
+  }
+}
@@ -4,6 +4,7 @@ import static cache.demo.cache.GoodsCache.*;
 
 import cache.demo.cache.CacheUtil;
 import cache.demo.cache.GoodsCache;
+import cache.demo.cache.IdExistenceFilter;
 import cache.demo.entity.Goods;
 import cache.demo.mapper.GoodsMapper;
 import cn.hutool.core.bean.BeanUtil;
@@ -49,8 +50,14 @@ class GoodsServiceTest extends WithSpringBootTestAnnotation {
 
   @Autowired RedisTemplate<String, Object> redisTemplate;
 
+  @Autowired IdExistenceFilter goodsIdFilter;
+
   @BeforeEach
   void beforeEach() {
+    // id 位图在启动后才在后台加载，这里同步加载，否则不存在的 id 也会被缓存空值
+    if (!goodsIdFilter.isReady()) {
+      goodsIdFilter.rebuild();
+    }
     // 删除一些缓存，并验证删除成功
     int[] ids = {MIN_ID, MAX_ID + 1};
     for (int id : ids) {
@@ -77,17 +84,17 @@ class GoodsServiceTest extends WithSpringBootTestAnnotation {
     Assertions.assertNotNull(cacheValue);
     Assertions.assertEquals(MIN_ID, cacheValue.getId().intValue());
 
-    // 测试查询数据库中不存在的数据，如果 id 只稍微大一点点，则会查到空值，并且会把空值放入缓存
+    // 测试查询数据库中不存在的数据，会查到空值，但不会把空值放入缓存（id 位图中没有的 id 直接返回 null ）
     goodsMapper.deleteById(MAX_ID + 1);
     int notExistsId = MAX_ID + 1;
     Goods notExistsGoods = goodsService.getById(notExistsId);
     Assertions.assertNull(notExistsGoods);
     Boolean hasKey = redisTemplate.hasKey(KEY_PREFIX + notExistsId);
-    Assertions.assertTrue(hasKey != null && hasKey);
+    Assertions.assertTrue(hasKey != null && !hasKey);
 
-    // 测试查询数据库中不存在的数据，如果 id 太大，则会直接抛异常，而不会放入缓存
+    // 测试查询数据库中不存在的数据，id 再大也只是返回 null ，而不会放入缓存
     int bigId = Integer.MAX_VALUE;
-    Assertions.assertThrows(RuntimeException.class, () -> goodsService.getById(bigId));
+    Assertions.assertNull(goodsService.getById(bigId));
     String notExistsKey = KEY_PREFIX + bigId;
     cacheValue = getGoodsFromCache(notExistsKey);
     Assertions.assertNull(cacheValue);
@@ -117,9 +124,9 @@ class GoodsServiceTest extends WithSpringBootTestAnnotation {
     int newId = MAX_ID + 1;
     goodsService.delete(newId);
 
-    // 特意缓存空值，确认 redis 缓存中存在这个键
-    goodsService.getById(newId);
-    Assertions.assertTrue(cacheUtil.hasKey(KEY_PREFIX + newId));
+    // 删除后 id 位图中没有这个 id ，查询直接返回 null ，并且不会缓存空值
+    Assertions.assertNull(goodsService.getById(newId));
+    Assertions.assertFalse(cacheUtil.hasKey(KEY_PREFIX + newId));
 
     // 测试添加商品到数据库中
     Goods goods = new Goods();
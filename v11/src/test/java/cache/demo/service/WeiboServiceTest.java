@@ -3,6 +3,7 @@ package cache.demo.service;
 import static cache.demo.cache.WeiboCache.*;
 
 import cache.demo.cache.CacheUtil;
+import cache.demo.cache.IdExistenceFilter;
 import cache.demo.entity.User;
 import cache.demo.entity.Weibo;
 import cache.demo.mapper.WeiboMapper;
@@ -41,8 +42,14 @@ class WeiboServiceTest extends WithSpringBootTestAnnotation {
 
   @Autowired RedisTemplate<String, Object> redisTemplate;
 
+  @Autowired IdExistenceFilter weiboIdFilter;
+
   @BeforeEach
   void beforeEach() {
+    // id 位图在启动后才在后台加载，这里同步加载，否则不存在的 id 也会被缓存空值
+    if (!weiboIdFilter.isReady()) {
+      weiboIdFilter.rebuild();
+    }
     // 删除一些缓存，并验证删除成功
     int[] ids = {MIN_ID, MAX_ID + 1};
     for (int id : ids) {
@@ -69,17 +76,17 @@ class WeiboServiceTest extends WithSpringBootTestAnnotation {
     Assertions.assertNotNull(cacheValue);
     Assertions.assertEquals(MIN_ID, cacheValue.getId().intValue());
 
-    // 测试查询数据库中不存在的数据，如果 id 只稍微大一点点，则会查到空值，并且会把空值放入缓存
+    // 测试查询数据库中不存在的数据，会查到空值，但不会把空值放入缓存（id 位图中没有的 id 直接返回 null ）
     weiboMapper.deleteById(MAX_ID + 1);
     int notExistsId = MAX_ID + 1;
     Weibo notExistsWeibo = weiboService.getById(notExistsId);
     Assertions.assertNull(notExistsWeibo);
     Boolean hasKey = redisTemplate.hasKey(ID_KEY_PREFIX + notExistsId);
-    Assertions.assertTrue(hasKey != null && hasKey);
+    Assertions.assertTrue(hasKey != null && !hasKey);
 
-    // 测试查询数据库中不存在的数据，如果 id 太大，则会直接抛异常，而不会放入缓存
+    // 测试查询数据库中不存在的数据，id 再大也只是返回 null ，而不会放入缓存
     int bigId = Integer.MAX_VALUE;
-    Assertions.assertThrows(RuntimeException.class, () -> weiboService.getById(bigId));
+    Assertions.assertNull(weiboService.getById(bigId));
     String notExistsKey = ID_KEY_PREFIX + bigId;
     cacheValue = getWeiboFromCache(notExistsKey);
     Assertions.assertNull(cacheValue);
@@ -109,10 +116,10 @@ class WeiboServiceTest extends WithSpringBootTestAnnotation {
     int newId = MAX_ID + 1;
     weiboService.delete(newId);
 
-    // 特意缓存空值，确认 redis 缓存中存在这个键
-    weiboService.getById(newId);
+    // 删除后 id 位图中没有这个 id ，查询直接返回 null ，并且不会缓存空值
+    Assertions.assertNull(weiboService.getById(newId));
     Boolean hasKey = redisTemplate.hasKey(ID_KEY_PREFIX + newId);
-    Assertions.assertTrue(hasKey != null && hasKey);
+    Assertions.assertTrue(hasKey != null && !hasKey);
 
     // 测试添加微博到数据库中
     Weibo weibo = new Weibo();
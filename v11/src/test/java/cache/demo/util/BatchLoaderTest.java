@@ -0,0 +1,120 @@
+package cache.demo.util;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 批量加载器测试，不依赖 Spring 容器
+ *
+ * @author Camio1945
+ */
+class BatchLoaderTest {
+
+  @Test
+  void load() throws Exception {
+    List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+    BatchLoader<Integer, String> batchLoader =
+        new BatchLoader<>(recordBatches(batches), true, Duration.ofMillis(50), 1000);
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    // 1 到 100 是存在的，101 是不存在的，1 重复出现
+    for (int id = 1; id <= 101; id++) {
+      futures.add(batchLoader.load(id));
+    }
+    CompletableFuture<String> duplicate = batchLoader.load(1);
+    for (int id = 1; id <= 100; id++) {
+      Assertions.assertEquals("value" + id, futures.get(id - 1).get(5, TimeUnit.SECONDS));
+    }
+    Assertions.assertNull(futures.get(100).get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals("value1", duplicate.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(1, batches.size(), "一个时间窗口内的 id 应该只查询一次");
+    Assertions.assertEquals(101, batches.get(0).size(), "重复的 id 只应该查询一次");
+  }
+
+  @Test
+  void loadWhenBatchIsFull() throws Exception {
+    List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+    // 时间窗口很长，只有凑够数量才会立即加载
+    BatchLoader<Integer, String> batchLoader =
+        new BatchLoader<>(recordBatches(batches), true, Duration.ofMinutes(1), 10);
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int id = 1; id <= 30; id++) {
+      futures.add(batchLoader.load(id));
+    }
+    for (int id = 1; id <= 30; id++) {
+      Assertions.assertEquals("value" + id, futures.get(id - 1).get(5, TimeUnit.SECONDS));
+    }
+    Assertions.assertEquals(3, batches.size());
+  }
+
+  @Test
+  void loadConcurrently() throws Exception {
+    AtomicInteger batchCount = new AtomicInteger(0);
+    BatchLoader<Integer, String> batchLoader =
+        new BatchLoader<>(
+            ids -> {
+              batchCount.incrementAndGet();
+              return recordBatches(new ArrayList<>()).apply(ids);
+            },
+            true,
+            Duration.ofMillis(20),
+            100);
+    int threadCount = 1000;
+    CountDownLatch countDownLatch = new CountDownLatch(1);
+    List<Thread> threadList = new ArrayList<>();
+    AtomicInteger successCount = new AtomicInteger(0);
+    for (int i = 0; i < threadCount; i++) {
+      int id = i + 200;
+      threadList.add(
+          Thread.startVirtualThread(
+              () -> {
+                try {
+                  countDownLatch.await();
+                  if (("value" + id).equals(batchLoader.load(id).join())) {
+                    successCount.incrementAndGet();
+                  }
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }));
+    }
+    countDownLatch.countDown();
+    for (Thread thread : threadList) {
+      thread.join();
+    }
+    Assertions.assertEquals(threadCount, successCount.get());
+    // 每批最多 100 个，所以至少 10 批，但远小于 1000 次单独查询
+    Assertions.assertTrue(batchCount.get() >= 10 && batchCount.get() < threadCount / 10 * 2);
+  }
+
+  @Test
+  void loadWithException() {
+    BatchLoader<Integer, String> batchLoader =
+        new BatchLoader<>(
+            ids -> {
+              throw new IllegalStateException("模拟数据库异常");
+            },
+            true,
+            Duration.ofMillis(1),
+            100);
+    CompletableFuture<String> future = batchLoader.load(1);
+    ExecutionException e =
+        Assertions.assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+    Assertions.assertInstanceOf(IllegalStateException.class, e.getCause());
+  }
+
+  /** 模拟 selectBatchIds ，id 在 101 到 199 之间的不存在 */
+  private static Function<List<Integer>, Map<Integer, String>> recordBatches(
+      List<List<Integer>> batches) {
+    return ids -> {
+      batches.add(ids);
+      Map<Integer, String> result = new HashMap<>();
+      ids.stream().filter(id -> id <= 100 || id >= 200).forEach(id -> result.put(id, "value" + id));
+      return result;
+    };
+  }
+}
@@ -0,0 +1,98 @@
+package cache.demo.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 有界虚拟线程执行器的测试
+ *
+ * @author Camio1945
+ */
+class BoundedVirtualThreadExecutorTest {
+
+  private static void awaitIdle(BoundedVirtualThreadExecutor executor) throws InterruptedException {
+    // 任务执行完之后才减少计数，比 future 完成稍晚一点
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (executor.getPendingCount() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  void boundedConcurrency() throws Exception {
+    BoundedVirtualThreadExecutor executor =
+        new BoundedVirtualThreadExecutor("test-bounded", 4, 100);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch doneLatch = new CountDownLatch(50);
+    for (int i = 0; i < 50; i++) {
+      executor.execute(
+          () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+              Thread.sleep(5);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            doneLatch.countDown();
+          });
+    }
+    Assertions.assertTrue(doneLatch.await(10, TimeUnit.SECONDS));
+    Assertions.assertTrue(maxRunning.get() <= 4, "同时执行的任务数：" + maxRunning.get());
+    Assertions.assertEquals(0, executor.getRejectedCount());
+  }
+
+  @Test
+  void rejectWhenFull() throws Exception {
+    BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("test-full", 1, 2);
+    CountDownLatch blockLatch = new CountDownLatch(1);
+    Runnable blocked =
+        () -> {
+          try {
+            blockLatch.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        };
+    executor.execute(blocked);
+    executor.execute(blocked);
+    Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(blocked));
+    Assertions.assertEquals(1, executor.getRejectedCount());
+    blockLatch.countDown();
+    awaitIdle(executor);
+    CompletableFuture<Integer> future = CompletableFuture.supplyAsync(() -> 1, executor);
+    Assertions.assertEquals(1, future.get(10, TimeUnit.SECONDS));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new BoundedVirtualThreadExecutor("test", 2, 1));
+  }
+
+  @Test
+  void singleFlightRejected() throws Exception {
+    BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("test-sf", 1, 1);
+    CountDownLatch blockLatch = new CountDownLatch(1);
+    CompletableFuture<Integer> first =
+        SingleFlightUtil.executeAsync(
+            "test:bounded::1",
+            () -> {
+              blockLatch.await();
+              return 1;
+            },
+            null,
+            executor);
+    CompletableFuture<Integer> rejected =
+        SingleFlightUtil.executeAsync("test:bounded::2", () -> 2, null, executor);
+    Assertions.assertTrue(rejected.isCompletedExceptionally());
+    // 被拒绝后 key 不会留在 map 中，之后的调用可以重新执行
+    blockLatch.countDown();
+    Assertions.assertEquals(1, first.join());
+    awaitIdle(executor);
+    Assertions.assertEquals(
+        2, SingleFlightUtil.executeAsync("test:bounded::2", () -> 2, null, executor).join());
+  }
+}
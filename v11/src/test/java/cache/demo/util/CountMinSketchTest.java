@@ -0,0 +1,42 @@
+package cache.demo.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 频率草图的测试
+ *
+ * @author Camio1945
+ */
+class CountMinSketchTest {
+
+  @Test
+  void estimate() {
+    CountMinSketch sketch = new CountMinSketch(1024, Long.MAX_VALUE);
+    for (int i = 0; i < 1000; i++) {
+      for (int j = 0; j < i % 10; j++) {
+        sketch.increment(i);
+      }
+    }
+    for (int i = 0; i < 1000; i++) {
+      // 只会偏大，不会偏小
+      Assertions.assertTrue(sketch.estimate(i) >= i % 10);
+    }
+    Assertions.assertEquals(0, sketch.estimate("never"), 2);
+  }
+
+  @Test
+  void halve() {
+    CountMinSketch sketch = new CountMinSketch(16, 20);
+    for (int i = 0; i < 10; i++) {
+      sketch.increment("hot");
+    }
+    Assertions.assertEquals(10, sketch.estimate("hot"));
+    for (int i = 0; i < 10; i++) {
+      sketch.increment("other");
+    }
+    // 总次数达到 20 后减半
+    Assertions.assertEquals(5, sketch.estimate("hot"));
+    Assertions.assertEquals(5, sketch.estimate("other"));
+  }
+}
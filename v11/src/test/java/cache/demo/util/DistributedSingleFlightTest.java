@@ -0,0 +1,179 @@
+package cache.demo.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+/**
+ * 集群级别单飞的测试，不依赖 Spring 容器，用内存中的租约存储和缓存模拟 Redis ，用多组线程模拟多个节点
+ *
+ * @author Camio1945
+ */
+@Slf4j
+class DistributedSingleFlightTest {
+  private static final int NODE_COUNT = 4;
+
+  private static final int THREAD_COUNT_EACH_NODE = 16;
+
+  private static final int KEY_COUNT = 8;
+
+  private static final Duration LOAD_TIME = Duration.ofMillis(50);
+
+  @Test
+  void execute() throws InterruptedException {
+    Map<Integer, AtomicInteger> withoutLease = simulate(false);
+    Map<Integer, AtomicInteger> withLease = simulate(true);
+    for (int id = 0; id < KEY_COUNT; id++) {
+      log.info(
+          "key {} 的数据库查询次数：不使用租约 {} 次，使用租约 {} 次",
+          id,
+          withoutLease.get(id).get(),
+          withLease.get(id).get());
+      Assertions.assertEquals(NODE_COUNT * THREAD_COUNT_EACH_NODE, withoutLease.get(id).get());
+      Assertions.assertEquals(1, withLease.get(id).get(), "集群中同一个 key 只应该查询一次数据库");
+    }
+  }
+
+  @Test
+  void executeWhenLeaderFailed() {
+    InMemoryLeaseStore leaseStore = new InMemoryLeaseStore();
+    DistributedSingleFlight singleFlight = newSingleFlight(leaseStore, true);
+    Cache cache = new ConcurrentMapCache("cache:goods:id");
+    String key = "cache:goods:id::1";
+    Assertions.assertThrows(
+        IllegalStateException.class,
+        () ->
+            singleFlight.execute(
+                key,
+                cache,
+                1,
+                () -> {
+                  throw new IllegalStateException("模拟数据库异常");
+                }));
+    // 查询失败后租约也会被释放，下一次调用可以重新拿到租约
+    Assertions.assertEquals("1", singleFlight.execute(key, cache, 1, () -> "1"));
+    Assertions.assertEquals("1", cache.get(1, String.class));
+  }
+
+  @Test
+  void executeWhenWaitTimeout() {
+    InMemoryLeaseStore leaseStore = new InMemoryLeaseStore();
+    DistributedSingleFlight singleFlight = newSingleFlight(leaseStore, true);
+    Cache cache = new ConcurrentMapCache("cache:goods:id");
+    String key = "cache:goods:id::1";
+    // 模拟其他节点拿到租约后宕机了，等待超时后会直接查询数据库
+    leaseStore.tryAcquire("lease:" + key, "other", Duration.ofMinutes(1));
+    Assertions.assertEquals("1", singleFlight.execute(key, cache, 1, () -> "1"));
+  }
+
+  @Test
+  void executeWhenPutSkipped() {
+    InMemoryLeaseStore leaseStore = new InMemoryLeaseStore();
+    DistributedSingleFlight singleFlight = newSingleFlight(leaseStore, true);
+    Cache cache = new ConcurrentMapCache("cache:goods:id");
+    // 与 isCachePutSkipped 一样，不需要缓存的结果不放入缓存，需要缓存的照常放入
+    Assertions.assertNull(
+        singleFlight.execute("cache:goods:id::1", cache, 1, () -> null, Objects::isNull));
+    Assertions.assertNull(cache.get(1));
+    Assertions.assertEquals(
+        "2", singleFlight.execute("cache:goods:id::2", cache, 2, () -> "2", Objects::isNull));
+    Assertions.assertEquals("2", cache.get(2, String.class));
+  }
+
+  private Map<Integer, AtomicInteger> simulate(boolean enabled) throws InterruptedException {
+    // 所有节点共享同一个 Redis
+    InMemoryLeaseStore leaseStore = new InMemoryLeaseStore();
+    Cache cache = new ConcurrentMapCache("cache:goods:id");
+    Map<Integer, AtomicInteger> idToDbHits = new ConcurrentHashMap<>();
+    for (int id = 0; id < KEY_COUNT; id++) {
+      idToDbHits.put(id, new AtomicInteger(0));
+    }
+    CountDownLatch countDownLatch = new CountDownLatch(1);
+    List<Thread> threadList = new ArrayList<>();
+    for (int node = 0; node < NODE_COUNT; node++) {
+      DistributedSingleFlight singleFlight = newSingleFlight(leaseStore, enabled);
+      for (int i = 0; i < THREAD_COUNT_EACH_NODE; i++) {
+        threadList.add(
+            Thread.startVirtualThread(
+                () -> {
+                  awaitCountDownLatch(countDownLatch);
+                  for (int id = 0; id < KEY_COUNT; id++) {
+                    int finalId = id;
+                    String key = "cache:goods:id::" + id;
+                    Object value =
+                        singleFlight.execute(
+                            key,
+                            cache,
+                            id,
+                            () -> {
+                              idToDbHits.get(finalId).incrementAndGet();
+                              sleep(LOAD_TIME);
+                              return "goods" + finalId;
+                            });
+                    Assertions.assertEquals("goods" + id, value);
+                  }
+                }));
+      }
+    }
+    countDownLatch.countDown();
+    for (Thread thread : threadList) {
+      thread.join();
+    }
+    return idToDbHits;
+  }
+
+  private static DistributedSingleFlight newSingleFlight(
+      DistributedSingleFlight.LeaseStore leaseStore, boolean enabled) {
+    return new DistributedSingleFlight(
+        leaseStore, enabled, Duration.ofSeconds(3), Duration.ofMillis(500), Duration.ofMillis(5));
+  }
+
+  private static void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void awaitCountDownLatch(CountDownLatch countDownLatch) {
+    try {
+      countDownLatch.await();
+    } catch (InterruptedException e) {
+      log.error("InterruptedException", e);
+    }
+  }
+
+  /** 模拟 Redis 的 SET NX PX 和带校验的 DEL */
+  private static class InMemoryLeaseStore implements DistributedSingleFlight.LeaseStore {
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(String leaseKey, String token, Duration leaseTime) {
+      long expireAt = System.nanoTime() + leaseTime.toNanos();
+      Lease newLease = new Lease(token, expireAt);
+      Lease lease =
+          leases.compute(
+              leaseKey,
+              (k, old) -> old == null || old.expireAt() - System.nanoTime() <= 0 ? newLease : old);
+      return lease == newLease;
+    }
+
+    @Override
+    public void release(String leaseKey, String token) {
+      leases.computeIfPresent(leaseKey, (k, old) -> old.token().equals(token) ? null : old);
+    }
+
+    private record Lease(String token, long expireAt) {}
+  }
+}
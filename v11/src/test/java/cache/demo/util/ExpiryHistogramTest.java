@@ -0,0 +1,44 @@
+package cache.demo.util;
+
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 过期时间直方图的测试
+ *
+ * @author Camio1945
+ */
+class ExpiryHistogramTest {
+  private static final long MINUTE = 60_000;
+
+  @Test
+  void uniform() {
+    ExpiryHistogram histogram = new ExpiryHistogram(5 * MINUTE);
+    // 24 小时内均匀分布，每个桶约占 0.35%
+    for (long ttl = 0; ttl < 24 * 60 * MINUTE; ttl += 1000) {
+      histogram.add(ttl);
+    }
+    Assertions.assertEquals(86400, histogram.getTotal());
+    Assertions.assertTrue(histogram.findSpikes(0.02, 100).isEmpty());
+  }
+
+  @Test
+  void bulkWarmUp() {
+    ExpiryHistogram histogram = new ExpiryHistogram(5 * MINUTE);
+    for (long ttl = 0; ttl < 24 * 60 * MINUTE; ttl += 10_000) {
+      histogram.add(ttl);
+    }
+    // 批量预热的 2000 个键都在 [600, 610) 分钟之间过期
+    for (int i = 0; i < 2000; i++) {
+      histogram.add(600 * MINUTE + i * 5 * MINUTE / 1000);
+    }
+    histogram.add(-1);
+    histogram.add(-2);
+    Assertions.assertEquals(8640 + 2000, histogram.getTotal());
+    Assertions.assertEquals(List.of(120L, 121L), histogram.findSpikes(0.02, 100));
+    Assertions.assertEquals(1030, histogram.countOf(120));
+    // 键太少时不算尖峰
+    Assertions.assertTrue(histogram.findSpikes(0.02, 2000).isEmpty());
+  }
+}
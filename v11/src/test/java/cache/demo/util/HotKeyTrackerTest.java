@@ -0,0 +1,58 @@
+package cache.demo.util;
+
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 热点键统计的测试
+ *
+ * @author Camio1945
+ */
+class HotKeyTrackerTest {
+
+  @Test
+  void pollHottest() {
+    HotKeyTracker<Integer> tracker = new HotKeyTracker<>(100);
+    for (int i = 1; i <= 5; i++) {
+      for (int j = 0; j < i * 10; j++) {
+        tracker.record(i);
+      }
+    }
+    Assertions.assertEquals(List.of(5, 4, 3), tracker.pollHottest(3));
+  }
+
+  @Test
+  void decay() {
+    HotKeyTracker<Integer> tracker = new HotKeyTracker<>(100);
+    tracker.record(1);
+    for (int i = 0; i < 4; i++) {
+      tracker.record(2);
+    }
+    // 1 只访问了 1 次，减半后不再记录； 2 减半后还剩 2 次
+    Assertions.assertEquals(List.of(2, 1), tracker.pollHottest(10));
+    Assertions.assertEquals(1, tracker.size());
+    Assertions.assertEquals(List.of(2), tracker.pollHottest(10));
+    Assertions.assertEquals(List.of(2), tracker.pollHottest(10));
+    Assertions.assertEquals(0, tracker.size());
+  }
+
+  @Test
+  void maxKeys() {
+    HotKeyTracker<Integer> tracker = new HotKeyTracker<>(2);
+    tracker.record(1);
+    tracker.record(2);
+    tracker.record(3);
+    tracker.record(1);
+    Assertions.assertEquals(2, tracker.size());
+    Assertions.assertEquals(List.of(1, 2), tracker.pollHottest(10));
+  }
+
+  @Test
+  void rateLimiter() {
+    RateLimiter rateLimiter = new RateLimiter(2);
+    Assertions.assertTrue(rateLimiter.tryAcquire());
+    Assertions.assertTrue(rateLimiter.tryAcquire());
+    Assertions.assertFalse(rateLimiter.tryAcquire());
+  }
+}
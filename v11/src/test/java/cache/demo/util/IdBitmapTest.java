@@ -0,0 +1,74 @@
+package cache.demo.util;
+
+import java.util.BitSet;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * id 位图的测试
+ *
+ * @author Camio1945
+ */
+class IdBitmapTest {
+
+  @Test
+  void addAndRemove() {
+    IdBitmap bitmap = new IdBitmap();
+    Assertions.assertFalse(bitmap.contains(1));
+    bitmap.add(1);
+    bitmap.add(1);
+    bitmap.add(Integer.MAX_VALUE);
+    bitmap.add(-1);
+    Assertions.assertTrue(bitmap.contains(1));
+    Assertions.assertTrue(bitmap.contains(Integer.MAX_VALUE));
+    Assertions.assertFalse(bitmap.contains(-1));
+    Assertions.assertFalse(bitmap.contains(2));
+    Assertions.assertEquals(2, bitmap.getCardinality());
+    bitmap.remove(1);
+    bitmap.remove(2);
+    Assertions.assertFalse(bitmap.contains(1));
+    Assertions.assertEquals(1, bitmap.getCardinality());
+  }
+
+  /** 与 BitSet 对比，覆盖数组容器和位图容器之间的转换 */
+  @Test
+  void compareWithBitSet() {
+    IdBitmap bitmap = new IdBitmap();
+    BitSet expected = new BitSet();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < 200_000; i++) {
+      // 大部分 id 集中在前两个容器中，使容器的数量在 4096 上下变化
+      int id = random.nextInt(i % 2 == 0 ? 10_000 : 300_000);
+      if (random.nextInt(3) == 0) {
+        bitmap.remove(id);
+        expected.clear(id);
+      } else {
+        bitmap.add(id);
+        expected.set(id);
+      }
+    }
+    for (int id = 0; id < 300_000; id++) {
+      Assertions.assertEquals(expected.get(id), bitmap.contains(id), "id：" + id);
+    }
+    Assertions.assertEquals(expected.cardinality(), bitmap.getCardinality());
+  }
+
+  @Test
+  void sizeInBytes() {
+    IdBitmap bitmap = new IdBitmap();
+    for (int id = 1; id <= 100_000; id++) {
+      bitmap.add(id);
+    }
+    // 连续的 10 万个 id 只需要 2 个位图容器
+    Assertions.assertEquals(2 * 8192, bitmap.getSizeInBytes());
+    for (int id = 1; id <= 100_000; id++) {
+      if (id % 100 != 0) {
+        bitmap.remove(id);
+      }
+    }
+    // 删除后只剩 1000 个 id ，转回数组容器
+    Assertions.assertEquals(1000, bitmap.getCardinality());
+    Assertions.assertTrue(bitmap.getSizeInBytes() < 8192);
+  }
+}
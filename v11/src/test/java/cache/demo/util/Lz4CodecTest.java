@@ -0,0 +1,77 @@
+package cache.demo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * LZ4 块格式的测试
+ *
+ * @author Camio1945
+ */
+class Lz4CodecTest {
+
+  private static byte[] roundTrip(byte[] source) {
+    byte[] compressed = Lz4Codec.compress(source);
+    Assertions.assertTrue(compressed.length <= Lz4Codec.maxCompressedLength(source.length));
+    byte[] decompressed = Lz4Codec.decompress(compressed, 0, source.length);
+    Assertions.assertArrayEquals(source, decompressed);
+    return compressed;
+  }
+
+  @Test
+  void shortAndEmpty() {
+    roundTrip(new byte[0]);
+    roundTrip(new byte[] {1});
+    roundTrip("0123456789ab".getBytes(StandardCharsets.UTF_8));
+    roundTrip("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void repetitive() {
+    byte[] source = "用户1发布的微博内容，".repeat(200).getBytes(StandardCharsets.UTF_8);
+    byte[] compressed = roundTrip(source);
+    Assertions.assertTrue(compressed.length * 10 < source.length, "长度：" + compressed.length);
+    // 连续重复的字节，匹配和偏移量重叠
+    byte[] zeros = new byte[100_000];
+    Assertions.assertTrue(roundTrip(zeros).length < 1000);
+  }
+
+  @Test
+  void randomAndMixed() {
+    Random random = new Random(1);
+    byte[] noise = new byte[70_000];
+    random.nextBytes(noise);
+    roundTrip(noise);
+    // 随机数据中夹着重复的片段，偏移量可能超过 64 KB
+    byte[] mixed = Arrays.copyOf(noise, 200_000);
+    for (int i = noise.length; i < mixed.length; i += 1000) {
+      int length = Math.min(1000, mixed.length - i);
+      System.arraycopy(noise, random.nextInt(noise.length - length), mixed, i, length);
+    }
+    roundTrip(mixed);
+  }
+
+  @Test
+  void offset() {
+    byte[] source = "abcdefgh".repeat(100).getBytes(StandardCharsets.UTF_8);
+    byte[] compressed = Lz4Codec.compress(source);
+    byte[] withHeader = new byte[3 + compressed.length];
+    System.arraycopy(compressed, 0, withHeader, 3, compressed.length);
+    Assertions.assertArrayEquals(source, Lz4Codec.decompress(withHeader, 3, source.length));
+  }
+
+  @Test
+  void corrupted() {
+    byte[] source = "abcdefgh".repeat(100).getBytes(StandardCharsets.UTF_8);
+    byte[] compressed = Lz4Codec.compress(source);
+    byte[] truncated = Arrays.copyOf(compressed, compressed.length - 3);
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> Lz4Codec.decompress(truncated, 0, source.length));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> Lz4Codec.decompress(compressed, 0, source.length + 1));
+  }
+}
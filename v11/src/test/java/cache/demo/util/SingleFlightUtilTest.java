@@ -0,0 +1,233 @@
+package cache.demo.util;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 单飞工具类测试，不依赖 Spring 容器
+ *
+ * @author Camio1945
+ */
+class SingleFlightUtilTest {
+
+  @AfterEach
+  void afterEach() {
+    SingleFlightUtil.setLinger(Duration.ZERO, 0);
+  }
+
+  @Test
+  void execute() throws Exception {
+    int threadCount = 256;
+    AtomicInteger loadCount = new AtomicInteger(0);
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch loadingLatch = new CountDownLatch(1);
+    List<Thread> threadList = new ArrayList<>();
+    List<Integer> results = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      threadList.add(
+          Thread.startVirtualThread(
+              () -> {
+                awaitLatch(startLatch);
+                Integer res =
+                    SingleFlightUtil.execute(
+                        "single:flight:test::1",
+                        () -> {
+                          loadCount.incrementAndGet();
+                          // 等所有线程都到达后再返回，保证它们都能共享这一次的结果
+                          awaitLatch(loadingLatch);
+                          return 1;
+                        });
+                synchronized (results) {
+                  results.add(res);
+                }
+              }));
+    }
+    startLatch.countDown();
+    Thread.sleep(200);
+    loadingLatch.countDown();
+    for (Thread thread : threadList) {
+      thread.join();
+    }
+    Assertions.assertEquals(1, loadCount.get(), "同一时刻只应该执行一次");
+    Assertions.assertEquals(threadCount, results.size());
+    Assertions.assertTrue(results.stream().allMatch(res -> res == 1));
+
+    // 执行完成后 key 应该被移除，再次调用会重新执行
+    Assertions.assertEquals(2, SingleFlightUtil.execute("single:flight:test::1", () -> 2));
+
+    // 统计信息按 :: 前面的前缀汇总
+    SingleFlightStats stats = SingleFlightStats.of("single:flight:test::2");
+    Assertions.assertEquals(2, stats.getLeaderCount());
+    Assertions.assertEquals(threadCount - 1, stats.getFollowerCount());
+    Assertions.assertEquals(0, stats.getFailureCount());
+    Assertions.assertTrue(stats.getSuppressedRatio() > 0.99);
+    Assertions.assertTrue(stats.getLeaderLoadTimeP99Millis() >= 100, "领导者至少执行了 200ms");
+
+    // 可以通过 JMX 查看
+    ObjectName objectName =
+        new ObjectName("cache.demo:type=SingleFlight,name=" + ObjectName.quote("single:flight:test"));
+    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    Assertions.assertEquals(2L, mbeanServer.getAttribute(objectName, "LeaderCount"));
+  }
+
+  @Test
+  void executeWithException() {
+    Assertions.assertThrows(
+        RuntimeException.class,
+        () ->
+            SingleFlightUtil.execute(
+                "single:flight:exception",
+                () -> {
+                  throw new IllegalStateException("模拟数据库异常");
+                }));
+    // 异常后 key 也应该被移除
+    Assertions.assertEquals(1, SingleFlightUtil.execute("single:flight:exception", () -> 1));
+    SingleFlightStats stats = SingleFlightStats.of("single:flight:exception");
+    Assertions.assertEquals(2, stats.getLeaderCount());
+    Assertions.assertEquals(1, stats.getFailureCount());
+  }
+
+  /** 前缀相同的 key 共用一个统计信息，只有第一个 :: 前面的部分是前缀 */
+  @Test
+  void statsOf() {
+    SingleFlightStats stats = SingleFlightStats.of("single:flight:stats::1");
+    Assertions.assertEquals("single:flight:stats", stats.getPrefix());
+    Assertions.assertSame(stats, SingleFlightStats.of("single:flight:stats::2::3"));
+    Assertions.assertSame(stats, SingleFlightStats.of("single:flight:stats"));
+    Assertions.assertNotSame(stats, SingleFlightStats.of("single:flight:stat::1"));
+    Assertions.assertNotSame(stats, SingleFlightStats.of("single:flight:stats:x::1"));
+    Assertions.assertEquals(
+        "single:flight:stats:x", SingleFlightStats.of("single:flight:stats:x::1").getPrefix());
+  }
+
+  @Test
+  void executeAsync() throws Exception {
+    AtomicInteger loadCount = new AtomicInteger(0);
+    CountDownLatch loadingLatch = new CountDownLatch(1);
+    Callable<Integer> fn =
+        () -> {
+          loadCount.incrementAndGet();
+          awaitLatch(loadingLatch);
+          return 1;
+        };
+    String key = "single:flight:async";
+    CompletableFuture<Integer> future1 = SingleFlightUtil.executeAsync(key, fn);
+    CompletableFuture<Integer> future2 = SingleFlightUtil.executeAsync(key, fn);
+    CompletableFuture<Integer> cancelled = SingleFlightUtil.executeAsync(key, fn);
+    CompletableFuture<Integer> timeout =
+        SingleFlightUtil.executeAsync(key, fn, Duration.ofMillis(50));
+
+    // 调用者不会被阻塞，此时结果还没有出来
+    Assertions.assertFalse(future1.isDone());
+    // 取消和超时只影响自己，不影响其他调用者
+    cancelled.cancel(true);
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class, timeout::get);
+    Assertions.assertInstanceOf(TimeoutException.class, e.getCause());
+    Assertions.assertFalse(future1.isDone());
+
+    loadingLatch.countDown();
+    Assertions.assertEquals(1, future1.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(1, future2.get(5, TimeUnit.SECONDS));
+    Assertions.assertTrue(cancelled.isCancelled());
+    Assertions.assertEquals(1, loadCount.get(), "同一时刻只应该执行一次");
+  }
+
+  @Test
+  void executeAsyncWithException() {
+    CompletableFuture<Object> future =
+        SingleFlightUtil.executeAsync(
+            "single:flight:async:exception",
+            () -> {
+              throw new IllegalStateException("模拟数据库异常");
+            });
+    ExecutionException e =
+        Assertions.assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+    Assertions.assertInstanceOf(IllegalStateException.class, e.getCause());
+  }
+
+  @Test
+  void executeAndExecuteAsyncShareOneFlight() throws Exception {
+    AtomicInteger loadCount = new AtomicInteger(0);
+    CountDownLatch loadingLatch = new CountDownLatch(1);
+    Callable<Integer> fn =
+        () -> {
+          int count = loadCount.incrementAndGet();
+          awaitLatch(loadingLatch);
+          return count;
+        };
+    String key = "single:flight:mixed";
+    CompletableFuture<Integer> sync =
+        CompletableFuture.supplyAsync(() -> SingleFlightUtil.execute(key, fn));
+    while (loadCount.get() == 0) {
+      Thread.sleep(1);
+    }
+    // 同步的领导者正在执行，异步的调用者跟随它
+    CompletableFuture<Integer> async = SingleFlightUtil.executeAsync(key, fn);
+    // 忘记后，之后到达的调用者重新执行
+    SingleFlightUtil.forget(key);
+    CompletableFuture<Integer> afterForget = SingleFlightUtil.executeAsync(key, fn);
+
+    loadingLatch.countDown();
+    Assertions.assertEquals(1, sync.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(1, async.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(2, afterForget.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  void executeWithLinger() throws InterruptedException {
+    SingleFlightUtil.setLinger(Duration.ofMillis(200), 1);
+    AtomicInteger loadCount = new AtomicInteger(0);
+    Callable<Integer> fn = loadCount::incrementAndGet;
+    String key = "single:flight:linger::1";
+    Assertions.assertEquals(1, SingleFlightUtil.execute(key, fn));
+    // 停留时间内共享上一次的结果
+    Assertions.assertEquals(1, SingleFlightUtil.execute(key, fn));
+    // 最多只有 1 个 key 停留，第 2 个 key 不会停留
+    String otherKey = "single:flight:linger::2";
+    Assertions.assertEquals(2, SingleFlightUtil.execute(otherKey, fn));
+    Assertions.assertEquals(3, SingleFlightUtil.execute(otherKey, fn));
+    // 忘记后重新执行
+    SingleFlightUtil.forget(key);
+    Assertions.assertEquals(4, SingleFlightUtil.execute(key, fn));
+    Assertions.assertEquals(4, SingleFlightUtil.execute(key, fn));
+    // 超过停留时间后重新执行
+    Thread.sleep(300);
+    Assertions.assertEquals(5, SingleFlightUtil.execute(key, fn));
+  }
+
+  @Test
+  void executeWithLingerAndException() {
+    SingleFlightUtil.setLinger(Duration.ofMinutes(1), 100);
+    AtomicInteger loadCount = new AtomicInteger(0);
+    String key = "single:flight:linger:exception::1";
+    Callable<Integer> fn =
+        () -> {
+          if (loadCount.incrementAndGet() == 1) {
+            throw new IllegalStateException("模拟数据库异常");
+          }
+          return loadCount.get();
+        };
+    Assertions.assertThrows(RuntimeException.class, () -> SingleFlightUtil.execute(key, fn));
+    // 失败的结果不会停留
+    Assertions.assertEquals(2, SingleFlightUtil.execute(key, fn));
+    SingleFlightUtil.forget(key);
+  }
+
+  private static void awaitLatch(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
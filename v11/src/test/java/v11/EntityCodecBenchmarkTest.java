@@ -0,0 +1,129 @@
+package v11;
+
+import cache.demo.common.EntityBinaryRedisSerializer;
+import cache.demo.common.TypeAliasJsonRedisSerializer;
+import cache.demo.entity.Goods;
+import cache.demo.entity.User;
+import cache.demo.entity.Weibo;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 值的序列化方式的基准测试，不依赖 Spring 容器，也不需要连接数据库和 Redis。 <br>
+ * 对比 JSON（{@link GenericJackson2JsonRedisSerializer}）、短类型别名的 JSON（{@link
+ * TypeAliasJsonRedisSerializer}）和 {@link EntityBinaryRedisSerializer}
+ * 序列化商品、用户、微博时每个值的平均字节数，以及序列化和反序列化的平均耗时。 <br>
+ * 注：项目中没有引入 JMH ，耗时是预热之后直接用 System.nanoTime() 统计的，只是近似值。
+ *
+ * @author Camio1945
+ */
+@Tag("benchmark")
+@Slf4j
+class EntityCodecBenchmarkTest {
+  private static final int VALUE_COUNT = 10_000;
+
+  private static final int ROUNDS = 20;
+
+  @Test
+  void benchmark() {
+    List<Object> values = new ArrayList<>();
+    for (int id = 1; id <= VALUE_COUNT; id++) {
+      values.add(newGoods(id));
+      values.add(newUser(id));
+      values.add(newWeibo(id));
+    }
+    GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+    TypeAliasJsonRedisSerializer alias = new TypeAliasJsonRedisSerializer();
+    EntityBinaryRedisSerializer binary = new EntityBinaryRedisSerializer(alias);
+    // 预热，让 JIT 编译完成
+    for (int i = 0; i < 3; i++) {
+      run(json, values);
+      run(alias, values);
+      run(binary, values);
+    }
+    for (String type : List.of("Goods", "User", "Weibo")) {
+      List<Object> typeValues =
+          values.stream().filter(value -> value.getClass().getSimpleName().equals(type)).toList();
+      Result jsonResult = run(json, typeValues);
+      Result aliasResult = run(alias, typeValues);
+      Result binaryResult = run(binary, typeValues);
+      log.info(
+          "{} ：JSON {} 字节/个，序列化 {} ns/次，反序列化 {} ns/次；短别名 JSON {} 字节/个，序列化 {} ns/次，"
+              + "反序列化 {} ns/次；二进制 {} 字节/个，序列化 {} ns/次，反序列化 {} ns/次",
+          type,
+          jsonResult.bytesPerValue(),
+          jsonResult.encodeNanos(),
+          jsonResult.decodeNanos(),
+          aliasResult.bytesPerValue(),
+          aliasResult.encodeNanos(),
+          aliasResult.decodeNanos(),
+          binaryResult.bytesPerValue(),
+          binaryResult.encodeNanos(),
+          binaryResult.decodeNanos());
+      Assertions.assertTrue(
+          aliasResult.bytesPerValue() < jsonResult.bytesPerValue(), "短别名应该更小");
+      Assertions.assertTrue(
+          binaryResult.bytesPerValue() < aliasResult.bytesPerValue(), "二进制格式应该更小");
+    }
+  }
+
+  private Result run(RedisSerializer<Object> serializer, List<Object> values) {
+    byte[][] encoded = new byte[values.size()][];
+    long bytes = 0;
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (int i = 0; i < values.size(); i++) {
+        encoded[i] = serializer.serialize(values.get(i));
+      }
+    }
+    long encodeNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (byte[] value : encoded) {
+        Assertions.assertNotNull(serializer.deserialize(value));
+      }
+    }
+    long decodeNanos = System.nanoTime() - start;
+    for (byte[] value : encoded) {
+      bytes += value.length;
+    }
+    long operations = (long) values.size() * ROUNDS;
+    return new Result(bytes / values.size(), encodeNanos / operations, decodeNanos / operations);
+  }
+
+  private static Goods newGoods(int id) {
+    Goods goods = new Goods();
+    goods.setId(id);
+    goods.setStoreId(id % 1000 + 1);
+    goods.setName("店铺" + goods.getStoreId() + "的商品" + id);
+    goods.setStock(ThreadLocalRandom.current().nextInt(1000));
+    goods.setPrice(BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(100000), 2));
+    return goods;
+  }
+
+  private static User newUser(int id) {
+    User user = new User();
+    user.setId(id);
+    user.setName("用户" + id);
+    user.setAccount("account" + id);
+    return user;
+  }
+
+  private static Weibo newWeibo(int id) {
+    Weibo weibo = new Weibo();
+    weibo.setId(id);
+    weibo.setUserId(id % 1000 + 1);
+    weibo.setContent("用户" + weibo.getUserId() + "发布的第" + id + "条微博");
+    return weibo;
+  }
+
+  private record Result(long bytesPerValue, long encodeNanos, long decodeNanos) {}
+}
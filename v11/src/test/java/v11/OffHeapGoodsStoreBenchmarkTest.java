@@ -0,0 +1,147 @@
+package v11;
+
+import cache.demo.cache.OffHeapGoodsStore;
+import cache.demo.entity.Goods;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache.ValueWrapper;
+
+/**
+ * 堆外商品一级缓存的基准测试，不依赖 Spring 容器，也不需要连接数据库和 Redis。 <br>
+ * 缓存 10 万个商品，对比堆内的 ConcurrentHashMap&lt;Integer, Goods&gt; 和 {@link OffHeapGoodsStore} 的堆内存占用、 查询时的 GC
+ * 次数和耗时、以及每次查询的平均耗时。 <br>
+ * 注：项目中没有引入 JMH ，堆内存占用是在 System.gc() 之后用 {@link MemoryMXBean} 统计的，只是近似值。
+ *
+ * @author Camio1945
+ */
+@Tag("benchmark")
+@Slf4j
+class OffHeapGoodsStoreBenchmarkTest {
+  private static final int GOODS_COUNT = 100_000;
+
+  private static final int LOOKUP_COUNT = 2_000_000;
+
+  private static final String[] KEYS = new String[GOODS_COUNT + 1];
+
+  private static final MemoryMXBean MEMORY_MX_BEAN = ManagementFactory.getMemoryMXBean();
+
+  static {
+    // 提前生成好 key ，避免把拼接字符串的耗时也统计进去
+    for (int id = 1; id <= GOODS_COUNT; id++) {
+      KEYS[id] = String.valueOf(id);
+    }
+  }
+
+  @Test
+  void benchmark() {
+    long before = usedHeap();
+    Map<Integer, Goods> heapMap = new ConcurrentHashMap<>();
+    for (int id = 1; id <= GOODS_COUNT; id++) {
+      heapMap.put(id, newGoods(id));
+    }
+    long heapMapBytes = usedHeap() - before;
+
+    before = usedHeap();
+    OffHeapGoodsStore offHeapStore = new OffHeapGoodsStore(GOODS_COUNT, 0);
+    for (int id = 1; id <= GOODS_COUNT; id++) {
+      offHeapStore.put(KEYS[id], newGoods(id));
+    }
+    long offHeapStoreBytes = usedHeap() - before;
+    Assertions.assertEquals(GOODS_COUNT, offHeapStore.size());
+
+    // 预热，让 JIT 编译完成
+    for (int i = 0; i < 3; i++) {
+      lookupHeapMap(heapMap);
+      lookupOffHeapStore(offHeapStore);
+    }
+    Result heapMapResult = lookupHeapMap(heapMap);
+    Result offHeapStoreResult = lookupOffHeapStore(offHeapStore);
+    log.info(
+        "堆内 map ：堆内存 {} KB ，查询 {} ns/次，GC {} 次、{} ms",
+        heapMapBytes / 1024,
+        heapMapResult.nanosPerLookup(),
+        heapMapResult.gcCount(),
+        heapMapResult.gcMillis());
+    log.info(
+        "堆外存储：堆内存 {} KB ，直接内存 {} KB ，查询 {} ns/次，GC {} 次、{} ms",
+        offHeapStoreBytes / 1024,
+        offHeapStore.getMemoryBytes() / 1024,
+        offHeapStoreResult.nanosPerLookup(),
+        offHeapStoreResult.gcCount(),
+        offHeapStoreResult.gcMillis());
+    Assertions.assertTrue(offHeapStoreBytes < heapMapBytes, "堆外存储占用的堆内存应该更少");
+    // 保证 heapMap 在统计 offHeapStoreBytes 时仍然存活
+    Assertions.assertEquals(GOODS_COUNT, heapMap.size());
+  }
+
+  private Result lookupHeapMap(Map<Integer, Goods> heapMap) {
+    GcSnapshot gcSnapshot = GcSnapshot.take();
+    long start = System.nanoTime();
+    long checksum = 0;
+    for (int i = 0; i < LOOKUP_COUNT; i++) {
+      int id = ThreadLocalRandom.current().nextInt(1, GOODS_COUNT + 1);
+      checksum += heapMap.get(id).getStock();
+    }
+    return Result.of(start, gcSnapshot, checksum);
+  }
+
+  private Result lookupOffHeapStore(OffHeapGoodsStore offHeapStore) {
+    GcSnapshot gcSnapshot = GcSnapshot.take();
+    long start = System.nanoTime();
+    long checksum = 0;
+    for (int i = 0; i < LOOKUP_COUNT; i++) {
+      int id = ThreadLocalRandom.current().nextInt(1, GOODS_COUNT + 1);
+      ValueWrapper valueWrapper = offHeapStore.get(KEYS[id]);
+      checksum += ((Goods) valueWrapper.get()).getStock();
+    }
+    return Result.of(start, gcSnapshot, checksum);
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return MEMORY_MX_BEAN.getHeapMemoryUsage().getUsed();
+  }
+
+  private static Goods newGoods(int id) {
+    Goods goods = new Goods();
+    goods.setId(id);
+    goods.setStoreId(id % 1000 + 1);
+    goods.setName("店铺" + goods.getStoreId() + "的商品" + id);
+    goods.setStock(ThreadLocalRandom.current().nextInt(1000));
+    goods.setPrice(BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(100000), 2));
+    return goods;
+  }
+
+  private record GcSnapshot(long count, long millis) {
+    static GcSnapshot take() {
+      long count = 0;
+      long millis = 0;
+      for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+        count += Math.max(bean.getCollectionCount(), 0);
+        millis += Math.max(bean.getCollectionTime(), 0);
+      }
+      return new GcSnapshot(count, millis);
+    }
+  }
+
+  private record Result(long nanosPerLookup, long gcCount, long gcMillis) {
+    static Result of(long start, GcSnapshot before, long checksum) {
+      long nanos = System.nanoTime() - start;
+      GcSnapshot after = GcSnapshot.take();
+      Assertions.assertTrue(checksum >= 0);
+      return new Result(
+          nanos / LOOKUP_COUNT, after.count() - before.count(), after.millis() - before.millis());
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package v11;
+
+import cache.demo.util.SingleFlightUtil;
+import cn.hutool.core.exceptions.ExceptionUtil;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 单飞的基准测试，不依赖 Spring 容器，也不需要连接数据库和 Redis。 <br>
+ * 分别在单个 key 和多个 key 的情况下，对比旧版实现（先创建 FutureTask 再 putIfAbsent）和当前实现（先 get 再创建）的吞吐量和每次调用的内存分配量。
+ * <br>
+ * 单个 key 、调用者足够多时，断言平均每次加载至少被 2 个调用共享，并且新版每次调用分配的内存比旧版少。 <br>
+ * 注：项目中没有引入 JMH，这里用 {@link com.sun.management.ThreadMXBean} 统计每个线程分配的字节数，
+ * 虚拟线程不支持这个统计，所以这里用的是平台线程。
+ *
+ * @author Camio1945
+ */
+@Tag("benchmark")
+@Slf4j
+class SingleFlightBenchmarkTest {
+  private static final int[] CALLER_COUNTS = {1, 4, 16, 64, 256};
+
+  private static final int TOTAL_CALLS = 20000;
+
+  private static final int MANY_KEY_COUNT = 1024;
+
+  /** 至少有这么多调用者时，跟随者远多于领导者，才比较加载次数和内存分配量 */
+  private static final int SHARED_CALLER_COUNT = 16;
+
+  /** 模拟查询数据库的耗时 */
+  private static final long LOAD_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+  private static final String[] KEYS = new String[MANY_KEY_COUNT];
+
+  private static final Object RESULT = new Object();
+
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private static final ConcurrentHashMap<String, FutureTask<?>> LEGACY_MAP =
+      new ConcurrentHashMap<>();
+
+  static {
+    // 提前生成好 key ，避免把拼接字符串的内存分配也统计进去
+    for (int i = 0; i < MANY_KEY_COUNT; i++) {
+      KEYS[i] = "cache:goods:id::" + i;
+    }
+  }
+
+  @Test
+  void benchmark() throws InterruptedException {
+    // 预热，让 JIT 编译完成
+    for (int i = 0; i < 2; i++) {
+      run(16, false, true);
+      run(16, false, false);
+    }
+    for (boolean manyKeys : new boolean[] {false, true}) {
+      for (int callerCount : CALLER_COUNTS) {
+        Result legacy = run(callerCount, manyKeys, true);
+        Result current = run(callerCount, manyKeys, false);
+        log.info(
+            "{}，{} 个调用者：旧版 {} 次/ms、{} B/次、加载 {} 次；新版 {} 次/ms、{} B/次、加载 {} 次",
+            manyKeys ? "多个 key" : "单个 key",
+            callerCount,
+            legacy.callsPerMs(),
+            legacy.bytesPerCall(),
+            legacy.loadCount(),
+            current.callsPerMs(),
+            current.bytesPerCall(),
+            current.loadCount());
+        if (!manyKeys && callerCount >= SHARED_CALLER_COUNT) {
+          assertSharedLoad(callerCount, legacy, current);
+        }
+      }
+    }
+  }
+
+  /** 单个 key 、调用者足够多时，大多数调用都是跟随者，共享领导者的结果，并且不分配内存 */
+  private static void assertSharedLoad(int callerCount, Result legacy, Result current) {
+    Assertions.assertTrue(
+        current.loadCount() * 2 <= TOTAL_CALLS,
+        callerCount + " 个调用者加载了 " + current.loadCount() + " 次，平均每次加载被共享不到 2 次");
+    Assertions.assertTrue(
+        current.bytesPerCall() < legacy.bytesPerCall(),
+        callerCount
+            + " 个调用者：新版 "
+            + current.bytesPerCall()
+            + " B/次，不少于旧版 "
+            + legacy.bytesPerCall()
+            + " B/次");
+  }
+
+  private Result run(int callerCount, boolean manyKeys, boolean legacy)
+      throws InterruptedException {
+    int callsPerCaller = TOTAL_CALLS / callerCount;
+    LongAdder allocatedBytes = new LongAdder();
+    LongAdder loadCount = new LongAdder();
+    Callable<Object> loader =
+        () -> {
+          loadCount.increment();
+          LockSupport.parkNanos(LOAD_NANOS);
+          return RESULT;
+        };
+    CountDownLatch countDownLatch = new CountDownLatch(1);
+    List<Thread> threadList = new ArrayList<>();
+    for (int i = 0; i < callerCount; i++) {
+      int offset = i;
+      Thread thread =
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    awaitCountDownLatch(countDownLatch);
+                    long before = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+                    for (int j = 0; j < callsPerCaller; j++) {
+                      String key = manyKeys ? KEYS[(offset + j) % MANY_KEY_COUNT] : KEYS[0];
+                      Object res =
+                          legacy
+                              ? legacyExecute(key, loader)
+                              : SingleFlightUtil.execute(key, loader);
+                      assert res == RESULT;
+                    }
+                    allocatedBytes.add(THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() - before);
+                  });
+      threadList.add(thread);
+    }
+    long start = System.nanoTime();
+    countDownLatch.countDown();
+    for (Thread thread : threadList) {
+      thread.join();
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    long totalCalls = (long) callsPerCaller * callerCount;
+    return new Result(
+        totalCalls * 1_000_000 / Math.max(elapsedNanos, 1),
+        allocatedBytes.sum() / totalCalls,
+        loadCount.sum());
+  }
+
+  /** 旧版实现，每个调用者都会先创建一个 FutureTask ，仅用于对比 */
+  private static <T> T legacyExecute(String key, Callable<T> fn) {
+    FutureTask<T> task = new FutureTask<>(fn);
+    @SuppressWarnings("unchecked")
+    FutureTask<T> existingTask = (FutureTask<T>) LEGACY_MAP.putIfAbsent(key, task);
+    try {
+      if (existingTask == null) {
+        try {
+          task.run();
+          return task.get();
+        } finally {
+          LEGACY_MAP.remove(key);
+        }
+      }
+      return existingTask.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw ExceptionUtil.wrapRuntime(e);
+    } catch (ExecutionException e) {
+      throw ExceptionUtil.wrapRuntime(e);
+    }
+  }
+
+  private void awaitCountDownLatch(CountDownLatch countDownLatch) {
+    try {
+      countDownLatch.await();
+    } catch (InterruptedException e) {
+      log.error("InterruptedException", e);
+    }
+  }
+
+  private record Result(long callsPerMs, long bytesPerCall, long loadCount) {}
+}
@@ -0,0 +1,119 @@
+package v11;
+
+import cache.demo.util.SingleFlightUtil;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 单飞停留时间的基准测试，不依赖 Spring 容器，也不需要连接数据库和 Redis。 <br>
+ * 用一个 map 模拟 Redis ，每个请求先查 map ，没有的话通过单飞查询“数据库”，再写入 map （模拟 @Cacheable 的行为，写入也有耗时）。 <br>
+ * 模拟多次缓存过期，对比有无停留时间时，每次过期平均查询了多少次数据库。
+ *
+ * @author Camio1945
+ */
+@Tag("benchmark")
+@Slf4j
+class SingleFlightLingerBenchmarkTest {
+  private static final String KEY = "cache:goods:id::1";
+
+  private static final int EXPIRY_EVENTS = 20;
+
+  private static final int THREAD_COUNT = 64;
+
+  /** 每次过期后，持续请求多久 */
+  private static final long REQUEST_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+  /** 请求在过期后的多长时间内陆续到达 */
+  private static final long ARRIVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(6);
+
+  /** 模拟查询数据库的耗时 */
+  private static final long LOAD_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+  /** 模拟写入 Redis 的耗时 */
+  private static final long WRITE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final Map<String, Object> redis = new ConcurrentHashMap<>();
+
+  @AfterEach
+  void afterEach() {
+    SingleFlightUtil.setLinger(Duration.ZERO, 0);
+  }
+
+  @Test
+  void benchmark() throws InterruptedException {
+    double withoutLinger = loadsPerExpiry(Duration.ZERO);
+    double withLinger = loadsPerExpiry(Duration.ofMillis(10));
+    log.info("每次缓存过期平均查询数据库的次数：不停留 {} 次，停留 10ms {} 次", withoutLinger, withLinger);
+    Assertions.assertTrue(withLinger <= withoutLinger);
+  }
+
+  private double loadsPerExpiry(Duration linger) throws InterruptedException {
+    SingleFlightUtil.setLinger(linger, 10000);
+    LongAdder loadCount = new LongAdder();
+    for (int event = 0; event < EXPIRY_EVENTS; event++) {
+      // 模拟缓存过期，同时也要清掉上一轮停留的结果
+      redis.remove(KEY);
+      SingleFlightUtil.forget(KEY);
+      CountDownLatch countDownLatch = new CountDownLatch(1);
+      List<Thread> threadList = new ArrayList<>();
+      for (int i = 0; i < THREAD_COUNT; i++) {
+        threadList.add(
+            Thread.startVirtualThread(
+                () -> {
+                  awaitCountDownLatch(countDownLatch);
+                  // 请求是陆续到达的，而不是同时到达
+                  LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(ARRIVAL_NANOS));
+                  long deadline = System.nanoTime() + REQUEST_NANOS;
+                  while (System.nanoTime() - deadline < 0) {
+                    get(loadCount);
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                  }
+                }));
+      }
+      countDownLatch.countDown();
+      for (Thread thread : threadList) {
+        thread.join();
+      }
+    }
+    return (double) loadCount.sum() / EXPIRY_EVENTS;
+  }
+
+  private Object get(LongAdder loadCount) {
+    Object value = redis.get(KEY);
+    if (value != null) {
+      return value;
+    }
+    value =
+        SingleFlightUtil.execute(
+            KEY,
+            () -> {
+              loadCount.increment();
+              LockSupport.parkNanos(LOAD_NANOS);
+              return new Object();
+            });
+    LockSupport.parkNanos(WRITE_NANOS);
+    redis.put(KEY, value);
+    return value;
+  }
+
+  private void awaitCountDownLatch(CountDownLatch countDownLatch) {
+    try {
+      countDownLatch.await();
+    } catch (InterruptedException e) {
+      log.error("InterruptedException", e);
+    }
+  }
+}
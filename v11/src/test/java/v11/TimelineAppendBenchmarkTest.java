@@ -0,0 +1,168 @@
+package v11;
+
+import static cache.demo.cache.WeiboCache.CACHE_WEIBO_SIZE_EACH_USER;
+import static cache.demo.cache.WeiboCache.WEIBO_IDS_BY_USER_ID_CACHE_PREFIX;
+
+import cache.demo.cache.WeiboCache;
+import common.WithSpringBootTestAnnotation;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+/**
+ * 发微博时把新微博加到用户的微博 id 列表中的基准测试，需要连接 Redis 。 <br>
+ * 对比旧版实现（ZCARD 、 ZADD 、 EXPIRE 、 ZPOPMIN 四次往返）和当前实现（一个 Lua 脚本，一次往返）的吞吐量，
+ * 分别模拟一个热点用户（所有人同时给同一个用户发微博）和很多个用户的情况，并检查结束后列表是否正好保留了最新的若干条。 <br>
+ * 注：使用不存在的用户 id ，测试结束后删除，不影响其他数据。
+ *
+ * @author Camio1945
+ */
+@Tag("benchmark")
+@Slf4j
+class TimelineAppendBenchmarkTest extends WithSpringBootTestAnnotation {
+  private static final int[] THREAD_COUNTS = {1, 16, 64};
+
+  private static final int TOTAL_POSTS = 20000;
+
+  private static final int MANY_USER_COUNT = 1000;
+
+  /** 测试用的用户 id 从这里开始，远大于真实的用户 id */
+  private static final int FIRST_USER_ID = 1_900_000_000;
+
+  private static final Duration TIME_TO_LIVE = Duration.ofMinutes(10);
+
+  @Autowired WeiboCache weiboCache;
+
+  @Autowired RedisTemplate<String, Object> redisTemplate;
+
+  @AfterEach
+  void afterEach() {
+    redisTemplate.delete(
+        IntStream.range(0, MANY_USER_COUNT).mapToObj(TimelineAppendBenchmarkTest::keyOf).toList());
+  }
+
+  @Test
+  void benchmark() throws InterruptedException {
+    // 预热
+    run(16, MANY_USER_COUNT, true);
+    run(16, MANY_USER_COUNT, false);
+    for (int userCount : new int[] {1, MANY_USER_COUNT}) {
+      for (int threadCount : THREAD_COUNTS) {
+        Result legacy = run(threadCount, userCount, true);
+        Result current = run(threadCount, userCount, false);
+        log.info(
+            "{}，{} 个线程：旧版 {} 次/s 、保留条数错误的用户 {} 个；新版 {} 次/s 、保留条数错误的用户 {} 个",
+            userCount == 1 ? "一个热点用户" : userCount + " 个用户",
+            threadCount,
+            legacy.postsPerSecond(),
+            legacy.wrongUserCount(),
+            current.postsPerSecond(),
+            current.wrongUserCount());
+        Assertions.assertEquals(0, current.wrongUserCount());
+      }
+    }
+  }
+
+  private Result run(int threadCount, int userCount, boolean legacy)
+      throws InterruptedException {
+    seed(userCount);
+    int postsPerThread = TOTAL_POSTS / threadCount;
+    // 新微博的 id 比预先放入的都大
+    AtomicInteger nextWeiboId = new AtomicInteger(CACHE_WEIBO_SIZE_EACH_USER + 1);
+    CountDownLatch countDownLatch = new CountDownLatch(1);
+    List<Thread> threadList = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      int offset = i;
+      threadList.add(
+          Thread.startVirtualThread(
+              () -> {
+                awaitCountDownLatch(countDownLatch);
+                for (int j = 0; j < postsPerThread; j++) {
+                  int userId = FIRST_USER_ID + (offset + j) % userCount;
+                  int weiboId = nextWeiboId.getAndIncrement();
+                  if (legacy) {
+                    legacyAppend(userId, weiboId);
+                  } else {
+                    weiboCache.appendWeiboId(userId, weiboId);
+                  }
+                }
+              }));
+    }
+    long start = System.nanoTime();
+    countDownLatch.countDown();
+    for (Thread thread : threadList) {
+      thread.join();
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    long totalPosts = (long) postsPerThread * threadCount;
+    return new Result(
+        totalPosts * 1_000_000_000 / Math.max(elapsedNanos, 1), countWrongUsers(userCount));
+  }
+
+  /** 每个用户预先放入 CACHE_WEIBO_SIZE_EACH_USER 条，模拟列表已经缓存 */
+  private void seed(int userCount) {
+    Set<ZSetOperations.TypedTuple<Object>> set =
+        IntStream.rangeClosed(1, CACHE_WEIBO_SIZE_EACH_USER)
+            .mapToObj(id -> ZSetOperations.TypedTuple.of((Object) id, (double) id))
+            .collect(Collectors.toSet());
+    for (int i = 0; i < userCount; i++) {
+      String key = keyOf(i);
+      redisTemplate.delete(key);
+      redisTemplate.opsForZSet().add(key, set);
+      redisTemplate.expire(key, TIME_TO_LIVE);
+    }
+  }
+
+  /** 结束后每个用户的列表应该正好有 CACHE_WEIBO_SIZE_EACH_USER 条，且有过期时间 */
+  private int countWrongUsers(int userCount) {
+    int wrongUserCount = 0;
+    for (int i = 0; i < userCount; i++) {
+      String key = keyOf(i);
+      Long size = redisTemplate.opsForZSet().size(key);
+      Long expire = redisTemplate.getExpire(key);
+      if (size == null || size != CACHE_WEIBO_SIZE_EACH_USER || expire == null || expire <= 0) {
+        wrongUserCount++;
+      }
+    }
+    return wrongUserCount;
+  }
+
+  /** 旧版实现（列表已经缓存时的部分），仅用于对比 */
+  private void legacyAppend(int userId, int weiboId) {
+    ZSetOperations<String, Object> zSetOperations = redisTemplate.opsForZSet();
+    String key = WEIBO_IDS_BY_USER_ID_CACHE_PREFIX + "::" + userId;
+    Long size = zSetOperations.size(key);
+    zSetOperations.add(key, weiboId, weiboId);
+    redisTemplate.expire(key, TIME_TO_LIVE);
+    if (size != null && size >= CACHE_WEIBO_SIZE_EACH_USER) {
+      zSetOperations.popMin(key, (size + 1) - CACHE_WEIBO_SIZE_EACH_USER);
+    }
+  }
+
+  private static String keyOf(int userIndex) {
+    return WEIBO_IDS_BY_USER_ID_CACHE_PREFIX + "::" + (FIRST_USER_ID + userIndex);
+  }
+
+  private static void awaitCountDownLatch(CountDownLatch countDownLatch) {
+    try {
+      countDownLatch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private record Result(long postsPerSecond, int wrongUserCount) {}
+}